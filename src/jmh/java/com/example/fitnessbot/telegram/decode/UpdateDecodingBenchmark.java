@@ -0,0 +1,103 @@
+package com.example.fitnessbot.telegram.decode;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares binding a webhook body into the full Update graph with the streaming decoder.
+ * Run with -prof gc to compare allocation per update as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpdateDecodingBenchmark {
+
+    private static final String FORWARDED_DAY = """
+            {"update_id": 101, "message": {"message_id": 7, "date": 1700000000,
+              "from": {"id": 5, "is_bot": false, "first_name": "Ann", "username": "ann", "language_code": "en"},
+              "chat": {"id": 5, "type": "private", "first_name": "Ann", "username": "ann"},
+              "forward_from_chat": {"id": -100200, "type": "channel", "title": "Coach", "username": "coach"},
+              "forward_from_message_id": 12, "forward_date": 1699990000,
+              "text": "Day 1:\\n- Squat 3 x 5\\n- Bench Press 3 x 8\\nhttps://youtube.com/watch?v=a",
+              "entities": [{"type": "bold", "offset": 0, "length": 6},
+                           {"type": "url", "offset": 44, "length": 29}],
+              "link_preview_options": {"is_disabled": false}}}
+            """;
+
+    private static final String GROUP_PHOTO = """
+            {"update_id": 102, "message": {"message_id": 8, "date": 1700000000,
+              "from": {"id": 6, "is_bot": false, "first_name": "Bob"},
+              "chat": {"id": -300, "type": "supergroup", "title": "Gym"},
+              "photo": [{"file_id": "a", "file_unique_id": "a1", "width": 90, "height": 90, "file_size": 1000},
+                        {"file_id": "b", "file_unique_id": "b1", "width": 320, "height": 320, "file_size": 9000},
+                        {"file_id": "c", "file_unique_id": "c1", "width": 1280, "height": 1280, "file_size": 90000}],
+              "caption": "Leg day done",
+              "reply_to_message": {"message_id": 5, "date": 1699999000, "chat": {"id": -300, "type": "supergroup"},
+                "from": {"id": 7, "is_bot": false, "first_name": "Eve"}, "text": "Who is training today?"}}}
+            """;
+
+    private static final String CALLBACK = """
+            {"update_id": 103, "callback_query": {"id": "4382", "chat_instance": "-12", "data": "show_day_1",
+              "from": {"id": 5, "is_bot": false, "first_name": "Ann"},
+              "message": {"message_id": 9, "date": 1700000000, "chat": {"id": 5, "type": "private"},
+                "from": {"id": 99, "is_bot": true, "first_name": "Fitness", "username": "fitness_bot"},
+                "text": "Your program",
+                "reply_markup": {"inline_keyboard": [[{"text": "Day 1", "callback_data": "show_day_1"}],
+                                                     [{"text": "Day 2", "callback_data": "show_day_2"}]]}}}}
+            """;
+
+    @Param({"forwarded", "group_photo", "callback"})
+    public String payload;
+
+    private byte[] json;
+    private ObjectMapper objectMapper;
+    private UpdateDecoder decoder;
+
+    @Setup
+    public void setUp() {
+        String update = switch (payload) {
+            case "forwarded" -> FORWARDED_DAY;
+            case "group_photo" -> GROUP_PHOTO;
+            default -> CALLBACK;
+        };
+        json = update.getBytes(StandardCharsets.UTF_8);
+        objectMapper = new ObjectMapper();
+        decoder = new UpdateDecoder(objectMapper);
+    }
+
+    @Benchmark
+    public Update fullBinding() throws IOException {
+        return objectMapper.readValue(json, Update.class);
+    }
+
+    @Benchmark
+    public Update streamingDecode() throws IOException {
+        return decoder.decode(json);
+    }
+
+    /**
+     * Decoding followed by completing the update, as happens for updates that reach a handler
+     */
+    @Benchmark
+    public Update streamingDecodeThenComplete() throws IOException {
+        return LazyUpdate.complete(decoder.decode(json));
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.fitnessbot.controller;
+
+import com.example.fitnessbot.telegram.FitnessTelegramBot;
+import com.example.fitnessbot.telegram.decode.UpdateDecoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Receives updates pushed by Telegram when the bot runs in webhook mode.
+ * The update is only queued here; handling happens on the dispatcher workers.
+ * The body is decoded with {@link UpdateDecoder}, so updates dropped before handling are never fully bound.
+ */
+@RestController
+@ConditionalOnProperty(name = "telegram.bot.mode", havingValue = "webhook")
+public class TelegramWebhookController {
+
+    private static final Logger log = LoggerFactory.getLogger(TelegramWebhookController.class);
+
+    public static final String SECRET_TOKEN_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    private final FitnessTelegramBot fitnessTelegramBot;
+    private final UpdateDecoder updateDecoder;
+    private final byte[] secretToken;
+
+    public TelegramWebhookController(FitnessTelegramBot fitnessTelegramBot,
+                                     UpdateDecoder updateDecoder,
+                                     @Value("${telegram.bot.webhook.secret-token}") String secretToken) {
+        if (secretToken == null || secretToken.isBlank()) {
+            throw new IllegalStateException("telegram.bot.webhook.secret-token must be set in webhook mode");
+        }
+        this.fitnessTelegramBot = fitnessTelegramBot;
+        this.updateDecoder = updateDecoder;
+        this.secretToken = secretToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @PostMapping("${telegram.bot.webhook.path:/telegram/webhook}")
+    public ResponseEntity<Void> onUpdate(
+            @RequestHeader(name = SECRET_TOKEN_HEADER, required = false) String providedToken,
+            @RequestBody byte[] body) {
+        if (providedToken == null ||
+                !MessageDigest.isEqual(secretToken, providedToken.getBytes(StandardCharsets.UTF_8))) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        Update update;
+        try {
+            update = updateDecoder.decode(body);
+        } catch (IOException e) {
+            log.warn("Rejecting malformed update: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+
+        if (!fitnessTelegramBot.offerUpdate(update)) {
+            // Telegram redelivers the update later when the response is not 2xx
+            log.warn("Dispatch queue is full, deferring update {}", update.getUpdateId());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+
+        return ResponseEntity.ok().build();
+    }
+}
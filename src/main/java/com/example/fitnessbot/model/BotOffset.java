@@ -0,0 +1,47 @@
+package com.example.fitnessbot.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Last update id confirmed by a bot's polling session
+ */
+@Entity
+@Table(name = "bot_offsets")
+public class BotOffset {
+    @Id
+    @Column(name = "bot_username")
+    private String botUsername;
+
+    @Column(name = "last_update_id", nullable = false)
+    private Long lastUpdateId;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
+    // Getters and setters
+    public String getBotUsername() {
+        return botUsername;
+    }
+
+    public void setBotUsername(String botUsername) {
+        this.botUsername = botUsername;
+    }
+
+    public Long getLastUpdateId() {
+        return lastUpdateId;
+    }
+
+    public void setLastUpdateId(Long lastUpdateId) {
+        this.lastUpdateId = lastUpdateId;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -1,21 +1,39 @@
 package com.example.fitnessbot.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.TenantId;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "training_days")
+@Table(name = "training_days",
+        uniqueConstraints = @UniqueConstraint(name = "uk_training_days_source", columnNames = {"tenant_id", "source_chat_id", "source_message_id"}))
 public class TrainingDay {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Sequence ids let Hibernate batch inserts of a burst of forwarded days
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "training_day_seq")
+    @SequenceGenerator(name = "training_day_seq", sequenceName = "training_days_seq", allocationSize = 50)
     private Long id;
 
+    /** Bot the day was ingested through */
+    @TenantId
+    @Column(name = "tenant_id", nullable = false, updatable = false)
+    private String tenantId;
+
+    /** Owner of the day; null for a shared day ingested from a coach channel */
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "user_id", nullable = false)
+    @JoinColumn(name = "user_id")
     private User user;
 
+    /** Channel the shared day was posted in */
+    @Column(name = "source_chat_id")
+    private Long sourceChatId;
+
+    /** Id of the channel post the shared day was parsed from */
+    @Column(name = "source_message_id")
+    private Integer sourceMessageId;
+
     private String title; // e.g. "Треня 3"
 
     @Column(name = "raw_text")
@@ -39,6 +57,14 @@ public class TrainingDay {
         this.id = id;
     }
 
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    public void setTenantId(String tenantId) {
+        this.tenantId = tenantId;
+    }
+
     public User getUser() {
         return user;
     }
@@ -47,6 +73,30 @@ public class TrainingDay {
         this.user = user;
     }
 
+    public Long getSourceChatId() {
+        return sourceChatId;
+    }
+
+    public void setSourceChatId(Long sourceChatId) {
+        this.sourceChatId = sourceChatId;
+    }
+
+    public Integer getSourceMessageId() {
+        return sourceMessageId;
+    }
+
+    public void setSourceMessageId(Integer sourceMessageId) {
+        this.sourceMessageId = sourceMessageId;
+    }
+
+    /**
+     * Check whether this day was ingested from a channel and is referenced by many users
+     * @return true if the day has no owner
+     */
+    public boolean isShared() {
+        return user == null;
+    }
+
     public String getTitle() {
         return title;
     }
@@ -1,17 +1,24 @@
 package com.example.fitnessbot.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.TenantId;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users",
+        uniqueConstraints = @UniqueConstraint(name = "uk_users_tenant_telegram", columnNames = {"tenant_id", "telegram_id"}))
 public class User {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(name = "telegram_id", nullable = false, unique = true)
+    /** Bot the user talks to; set and filtered on by Hibernate from the current tenant */
+    @TenantId
+    @Column(name = "tenant_id", nullable = false, updatable = false)
+    private String tenantId;
+
+    @Column(name = "telegram_id", nullable = false)
     private Long telegramId;
 
     private String name;
@@ -31,6 +38,14 @@ public class User {
         this.id = id;
     }
 
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    public void setTenantId(String tenantId) {
+        this.tenantId = tenantId;
+    }
+
     public Long getTelegramId() {
         return telegramId;
     }
@@ -0,0 +1,61 @@
+package com.example.fitnessbot.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Reference of a user to a shared training day they forwarded from a coach channel
+ */
+@Entity
+@Table(name = "user_training_days",
+        uniqueConstraints = @UniqueConstraint(name = "uk_user_training_days", columnNames = {"user_id", "training_day_id"}))
+public class UserTrainingDay {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "training_day_id", nullable = false)
+    private TrainingDay trainingDay;
+
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    // Getters and setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    public TrainingDay getTrainingDay() {
+        return trainingDay;
+    }
+
+    public void setTrainingDay(TrainingDay trainingDay) {
+        this.trainingDay = trainingDay;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.fitnessbot.repository;
+
+import com.example.fitnessbot.model.BotOffset;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface BotOffsetRepository extends JpaRepository<BotOffset, String> {
+}
@@ -0,0 +1,13 @@
+package com.example.fitnessbot.repository;
+
+import com.example.fitnessbot.model.BotTenant;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface BotTenantRepository extends JpaRepository<BotTenant, String> {
+    List<BotTenant> findByEnabledTrue();
+    boolean existsByBotUsername(String botUsername);
+}
@@ -0,0 +1,31 @@
+package com.example.fitnessbot.repository;
+
+import com.example.fitnessbot.model.OutboxMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, Long> {
+
+    boolean existsByTenantIdAndIdempotencyKey(String tenantId, String idempotencyKey);
+
+    @Query("SELECT m.idempotencyKey FROM OutboxMessage m WHERE m.tenantId = :tenantId AND m.idempotencyKey IN :keys")
+    List<String> findIdempotencyKeys(@Param("tenantId") String tenantId, @Param("keys") List<String> keys);
+
+    /**
+     * Lock the messages due for sending; messages locked by another relay are skipped, not waited for
+     */
+    @Query(value = "SELECT * FROM outbox_messages WHERE sent_at IS NULL AND failed_at IS NULL AND next_attempt_at <= :now " +
+            "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<OutboxMessage> lockDue(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Modifying
+    @Query("DELETE FROM OutboxMessage m WHERE m.sentAt < :before OR m.failedAt < :before")
+    int deleteFinishedBefore(@Param("before") LocalDateTime before);
+}
@@ -1,6 +1,7 @@
 package com.example.fitnessbot.repository;
 
 import com.example.fitnessbot.model.Program;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -12,4 +13,10 @@ public interface ProgramRepository extends JpaRepository<Program, Long> {
     List<Program> findByUserId(Long userId);
     Optional<Program> findByIdAndUserId(Long id, Long userId);
     Optional<Program> findFirstByUserIdOrderByCreatedAtDesc(Long userId);
+
+    /**
+     * Load a program with its training days in a single query
+     */
+    @EntityGraph(attributePaths = {"programTrainingDays", "programTrainingDays.trainingDay"})
+    Optional<Program> findWithTrainingDaysById(Long id);
 }
\ No newline at end of file
@@ -2,8 +2,21 @@ package com.example.fitnessbot.repository;
 
 import com.example.fitnessbot.model.TrainingDay;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface TrainingDayRepository extends JpaRepository<TrainingDay, Long> {
-}
\ No newline at end of file
+    Optional<TrainingDay> findBySourceChatIdAndSourceMessageId(Long sourceChatId, Integer sourceMessageId);
+
+    /**
+     * Find the days a user owns and the shared days they forwarded, oldest first
+     */
+    @Query("SELECT d FROM TrainingDay d WHERE d.user.id = :userId " +
+            "OR d.id IN (SELECT r.trainingDay.id FROM UserTrainingDay r WHERE r.user.id = :userId) ORDER BY d.createdAt, d.id")
+    List<TrainingDay> findAllOfUser(@Param("userId") Long userId);
+}
@@ -0,0 +1,10 @@
+package com.example.fitnessbot.repository;
+
+import com.example.fitnessbot.model.UserTrainingDay;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UserTrainingDayRepository extends JpaRepository<UserTrainingDay, Long> {
+    boolean existsByUserIdAndTrainingDayId(Long userId, Long trainingDayId);
+}
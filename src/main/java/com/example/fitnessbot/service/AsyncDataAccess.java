@@ -0,0 +1,87 @@
+package com.example.fitnessbot.service;
+
+import com.example.fitnessbot.tenant.TenantContext;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Runs read queries off the caller's thread and completes a future with their result.
+ * Each read runs on its own virtual thread inside a read-only transaction of the caller's tenant, so a JDBC
+ * call parks a cheap virtual thread instead of holding a platform thread, and callers hold no connection
+ * while they wait. Reads beyond the connection pool size wait for a permit instead of for a connection.
+ */
+@Component
+public class AsyncDataAccess implements DisposableBean {
+
+    private final TransactionTemplate transactionTemplate;
+    private final Executor executor;
+    private final Semaphore permits;
+
+    @Autowired
+    public AsyncDataAccess(PlatformTransactionManager transactionManager,
+                           @Value("${telegram.async-reads.concurrency:${spring.datasource.hikari.maximum-pool-size:10}}") int concurrency) {
+        this(readOnly(transactionManager), Executors.newVirtualThreadPerTaskExecutor(), concurrency);
+    }
+
+    /**
+     * @param transactionTemplate Transaction to run each read in, or null to run reads without one
+     * @param executor Executor to run reads on
+     * @param concurrency Maximum number of reads running at once
+     */
+    public AsyncDataAccess(TransactionTemplate transactionTemplate, Executor executor, int concurrency) {
+        this.transactionTemplate = transactionTemplate;
+        this.executor = executor;
+        this.permits = new Semaphore(concurrency);
+    }
+
+    /**
+     * Data access that runs reads on the calling thread without a transaction, for tests
+     */
+    public static AsyncDataAccess direct() {
+        return new AsyncDataAccess(null, Runnable::run, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Run a read query asynchronously. Entities it returns are detached, so it should also touch
+     * or map everything the caller needs.
+     * @param query The query
+     * @return A future completed with the result of the query, or exceptionally with its failure
+     */
+    public <T> CompletableFuture<T> read(Supplier<T> query) {
+        String tenantId = TenantContext.current();
+        return CompletableFuture.supplyAsync(() -> {
+            permits.acquireUninterruptibly();
+            try {
+                return TenantContext.call(tenantId, () -> transactionTemplate != null
+                        ? transactionTemplate.execute(status -> query.get())
+                        : query.get());
+            } finally {
+                permits.release();
+            }
+        }, executor);
+    }
+
+    @Override
+    public void destroy() {
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
+
+    private static TransactionTemplate readOnly(PlatformTransactionManager transactionManager) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        return template;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.fitnessbot.service;
+
+/**
+ * Text of a forwarded message and, for forwarded channel posts, the post it came from
+ * @param text The forwarded text
+ * @param sourceChatId The channel the post was forwarded from, or null
+ * @param sourceMessageId The id of the post in that channel, or null
+ */
+public record ForwardedMessage(String text, Long sourceChatId, Integer sourceMessageId) {
+
+    public static ForwardedMessage of(String text) {
+        return new ForwardedMessage(text, null, null);
+    }
+
+    /**
+     * Check whether the message is a forwarded channel post that may already be stored as a shared day
+     * @return true if the source post is known
+     */
+    public boolean hasSource() {
+        return sourceChatId != null && sourceMessageId != null;
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.fitnessbot.service;
+
+import com.example.fitnessbot.model.OutboxMessage;
+import com.example.fitnessbot.repository.OutboxMessageRepository;
+import com.example.fitnessbot.tenant.TenantContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Transactional outbox for replies confirming a change. The reply is stored in the transaction of the change,
+ * so a saved change always has its reply, and a reply is never sent for a change that was rolled back.
+ * The handler sends the reply right after the commit; whatever it could not send, because it failed or
+ * the process died, is sent by the relay once the message's claim expires.
+ */
+@Service
+public class OutboxService {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxService.class);
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+    static final String IDEMPOTENCY_KEY_CONSTRAINT = "uk_outbox_messages_idempotency_key";
+
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final TransactionOperations transactionOperations;
+    private final Duration claimTimeout;
+    private final Duration retryDelay;
+    private final int maxAttempts;
+
+    @Autowired
+    public OutboxService(OutboxMessageRepository outboxMessageRepository,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${telegram.outbox.claim-timeout:30s}") Duration claimTimeout,
+                         @Value("${telegram.outbox.retry-delay:5s}") Duration retryDelay,
+                         @Value("${telegram.outbox.max-attempts:10}") int maxAttempts) {
+        this(outboxMessageRepository, new TransactionTemplate(transactionManager), claimTimeout, retryDelay, maxAttempts);
+    }
+
+    /**
+     * @param transactionOperations Runs the change and its reply in one transaction
+     */
+    public OutboxService(OutboxMessageRepository outboxMessageRepository,
+                         TransactionOperations transactionOperations,
+                         Duration claimTimeout,
+                         Duration retryDelay,
+                         int maxAttempts) {
+        this.outboxMessageRepository = outboxMessageRepository;
+        this.transactionOperations = transactionOperations;
+        this.claimTimeout = claimTimeout;
+        this.retryDelay = retryDelay;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Make a change and store the reply confirming it in the same transaction, unless the update was handled before.
+     * When another replica handles the same update at the same time, the one committing second fails on the
+     * unique key and its change is rolled back; that counts as handled before too. Callers must only act on the
+     * change, like updating in-memory state, once this returned a reply, since the change is committed by then.
+     * @param idempotencyKey Identifies the update, e.g. the chat and id of the message being answered
+     * @param chatId The chat to reply to
+     * @param change Makes the change and returns the text of the reply
+     * @return The stored reply, claimed by the caller to send it, or empty if the key was already recorded and
+     *         the change was not made again
+     */
+    public Optional<OutboxMessage> saveWithReply(String idempotencyKey, String chatId, Supplier<String> change) {
+        String tenantId = TenantContext.current();
+        return saveOnce(tenantId, List.of(idempotencyKey), () -> {
+            if (outboxMessageRepository.existsByTenantIdAndIdempotencyKey(tenantId, idempotencyKey)) {
+                return Optional.empty();
+            }
+            return Optional.of(outboxMessageRepository.saveAndFlush(reply(tenantId, idempotencyKey, chatId, change.get())));
+        });
+    }
+
+    /**
+     * Make one change for several updates and store a single reply confirming it, see
+     * {@link #saveWithReply(String, String, Supplier)}. Every update keeps its own key, so updates grouped
+     * differently when they are delivered again are still recognized one by one: the change is only made for the
+     * updates not handled before. The reply is stored under the last of their keys, the others are stored as sent.
+     * @param idempotencyKeys Identify the updates, in order
+     * @param chatId The chat to reply to
+     * @param change Makes the change for the keys of the updates not handled before and returns the text of the reply
+     * @return The stored reply, claimed by the caller to send it, or empty if every key was already recorded
+     */
+    public Optional<OutboxMessage> saveWithReply(List<String> idempotencyKeys, String chatId,
+                                                 Function<List<String>, String> change) {
+        String tenantId = TenantContext.current();
+        return saveOnce(tenantId, idempotencyKeys, () -> {
+            Set<String> handled = Set.copyOf(outboxMessageRepository.findIdempotencyKeys(tenantId, idempotencyKeys));
+            List<String> newKeys = idempotencyKeys.stream().filter(key -> !handled.contains(key)).toList();
+            if (newKeys.isEmpty()) {
+                return Optional.empty();
+            }
+            String text = change.apply(newKeys);
+            LocalDateTime now = LocalDateTime.now();
+            for (String key : newKeys.subList(0, newKeys.size() - 1)) {
+                OutboxMessage recorded = reply(tenantId, key, chatId, text);
+                recorded.setSentAt(now);
+                outboxMessageRepository.save(recorded);
+            }
+            return Optional.of(outboxMessageRepository.saveAndFlush(reply(tenantId, newKeys.getLast(), chatId, text)));
+        });
+    }
+
+    /**
+     * Run a change in a transaction, treating a concurrent save of one of its keys as handled before
+     */
+    private Optional<OutboxMessage> saveOnce(String tenantId, List<String> idempotencyKeys,
+                                             Supplier<Optional<OutboxMessage>> save) {
+        try {
+            // The violation may only surface on commit, so it is caught outside the transaction
+            return transactionOperations.execute(status -> save.get());
+        } catch (DataIntegrityViolationException e) {
+            if (!isIdempotencyKeyViolation(e)) {
+                throw e;
+            }
+            log.info("Updates {} of tenant {} were handled concurrently, the change was rolled back", idempotencyKeys, tenantId);
+            return Optional.empty();
+        }
+    }
+
+    private OutboxMessage reply(String tenantId, String idempotencyKey, String chatId, String text) {
+        OutboxMessage message = new OutboxMessage();
+        message.setTenantId(tenantId);
+        message.setIdempotencyKey(idempotencyKey);
+        message.setChatId(chatId);
+        message.setText(text);
+        message.setNextAttemptAt(LocalDateTime.now().plus(claimTimeout));
+        return message;
+    }
+
+    private static boolean isIdempotencyKeyViolation(DataIntegrityViolationException e) {
+        String message = e.getMostSpecificCause().getMessage();
+        return message != null && message.contains(IDEMPOTENCY_KEY_CONSTRAINT);
+    }
+
+    /**
+     * Claim the messages due for sending, oldest first. Relays of other replicas skip the claimed messages
+     * until the claim expires, so each message is sent again only if its relay died before confirming it.
+     * @param limit Maximum number of messages
+     * @return The claimed messages
+     */
+    @Transactional
+    public List<OutboxMessage> claimDue(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxMessage> due = outboxMessageRepository.lockDue(now, limit);
+        for (OutboxMessage message : due) {
+            message.setNextAttemptAt(now.plus(claimTimeout));
+        }
+        return due;
+    }
+
+    /**
+     * Confirm that a message was sent
+     */
+    @Transactional
+    public void markSent(Long messageId) {
+        outboxMessageRepository.findById(messageId).ifPresent(message -> message.setSentAt(LocalDateTime.now()));
+    }
+
+    /**
+     * Record a failed attempt. The message is retried with an exponential backoff and given up after
+     * telegram.outbox.max-attempts.
+     * @return true if the message was given up
+     */
+    @Transactional
+    public boolean markFailed(Long messageId, Throwable failure) {
+        OutboxMessage message = outboxMessageRepository.findById(messageId).orElse(null);
+        if (message == null) {
+            return false;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        message.setAttempts(message.getAttempts() + 1);
+        String error = String.valueOf(failure.getMessage());
+        message.setLastError(error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+        if (message.getAttempts() >= maxAttempts) {
+            message.setFailedAt(now);
+            return true;
+        }
+        message.setNextAttemptAt(now.plus(retryDelay.multipliedBy(1L << Math.min(message.getAttempts() - 1, 16))));
+        return false;
+    }
+
+    /**
+     * Delete sent and given up messages. Their idempotency keys are forgotten with them.
+     * @param retention How long to keep them
+     * @return The number of deleted messages
+     */
+    @Transactional
+    public int deleteFinished(Duration retention) {
+        return outboxMessageRepository.deleteFinishedBefore(LocalDateTime.now().minus(retention));
+    }
+}
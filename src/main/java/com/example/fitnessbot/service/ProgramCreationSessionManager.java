@@ -2,11 +2,14 @@ package com.example.fitnessbot.service;
 
 import com.example.fitnessbot.model.Program;
 import com.example.fitnessbot.model.TrainingDay;
+import com.example.fitnessbot.tenant.TenantContext;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -15,23 +18,30 @@ import java.util.concurrent.ConcurrentHashMap;
 @Component
 public class ProgramCreationSessionManager {
     
-    // Maps userId to their current program creation session
-    private final Map<Long, ProgramCreationSession> sessions = new ConcurrentHashMap<>();
+    // Maps tenant and userId to the user's current program creation session with that tenant's bot
+    private final Map<SessionKey, ProgramCreationSession> sessions = new ConcurrentHashMap<>();
     
     public void startSession(Long userId, Program program) {
-        sessions.put(userId, new ProgramCreationSession(program));
+        sessions.put(key(userId), new ProgramCreationSession(program));
     }
     
     public ProgramCreationSession getSession(Long userId) {
-        return sessions.get(userId);
+        return sessions.get(key(userId));
     }
     
     public void endSession(Long userId) {
-        sessions.remove(userId);
+        sessions.remove(key(userId));
     }
     
     public boolean hasActiveSession(Long userId) {
-        return sessions.containsKey(userId);
+        return sessions.containsKey(key(userId));
+    }
+
+    private static SessionKey key(Long userId) {
+        return new SessionKey(TenantContext.current(), userId);
+    }
+
+    private record SessionKey(String tenantId, Long userId) {
     }
     
     /**
@@ -39,7 +49,8 @@ public class ProgramCreationSessionManager {
      */
     public static class ProgramCreationSession {
         private final Program program;
-        private final Map<Long, TrainingDay> trainingDays = new HashMap<>();
+        // Keeps the order in which days were forwarded, which becomes their position in the program
+        private final Map<Long, TrainingDay> trainingDays = new LinkedHashMap<>();
         
         public ProgramCreationSession(Program program) {
             this.program = program;
@@ -60,5 +71,16 @@ public class ProgramCreationSessionManager {
         public int getTrainingDaysCount() {
             return trainingDays.size();
         }
+
+        /**
+         * Count the training days the session would have with some more added, without adding them
+         * @param added The training days to count in, possibly already in the session
+         * @return The number of distinct training days
+         */
+        public int getTrainingDaysCountWith(List<TrainingDay> added) {
+            Set<Long> ids = new HashSet<>(trainingDays.keySet());
+            added.forEach(trainingDay -> ids.add(trainingDay.getId()));
+            return ids.size();
+        }
     }
 }
\ No newline at end of file
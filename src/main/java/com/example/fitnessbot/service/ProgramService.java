@@ -6,10 +6,14 @@ import com.example.fitnessbot.repository.ProgramTrainingDayRepository;
 import com.example.fitnessbot.repository.TrainingDayRepository;
 import com.example.fitnessbot.repository.UserRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class ProgramService {
@@ -67,8 +71,8 @@ public class ProgramService {
         TrainingDay trainingDay = trainingDayRepository.findById(trainingDayId)
                 .orElseThrow(() -> new RuntimeException("Training day not found with ID: " + trainingDayId));
 
-        // Check that the training day belongs to the same user as the program
-        if (!program.getUser().getId().equals(trainingDay.getUser().getId())) {
+        // Check that the training day belongs to the same user as the program; shared days belong to everyone
+        if (!trainingDay.isShared() && !program.getUser().getId().equals(trainingDay.getUser().getId())) {
             throw new RuntimeException("Training day does not belong to the same user as the program");
         }
 
@@ -80,6 +84,43 @@ public class ProgramService {
         return programTrainingDayRepository.save(programTrainingDay);
     }
 
+    /**
+     * Add training days to an existing program in one transaction, so either all of them are linked or none.
+     * Positions follow the order of the given IDs, starting at 1.
+     * @param programId ID of the program
+     * @param trainingDayIds IDs of the training days to add
+     * @return The ProgramTrainingDay entities that link them
+     */
+    @Transactional
+    public List<ProgramTrainingDay> addTrainingDaysToProgram(Long programId, List<Long> trainingDayIds) {
+        Program program = programRepository.findById(programId)
+                .orElseThrow(() -> new RuntimeException("Program not found with ID: " + programId));
+
+        Map<Long, TrainingDay> trainingDays = trainingDayRepository.findAllById(trainingDayIds).stream()
+                .collect(Collectors.toMap(TrainingDay::getId, Function.identity()));
+
+        List<ProgramTrainingDay> links = new ArrayList<>();
+        int position = 1;
+        for (Long trainingDayId : trainingDayIds) {
+            TrainingDay trainingDay = trainingDays.get(trainingDayId);
+            if (trainingDay == null) {
+                throw new RuntimeException("Training day not found with ID: " + trainingDayId);
+            }
+            // Check that the training day belongs to the same user as the program; shared days belong to everyone
+            if (!trainingDay.isShared() && !program.getUser().getId().equals(trainingDay.getUser().getId())) {
+                throw new RuntimeException("Training day does not belong to the same user as the program");
+            }
+
+            ProgramTrainingDay programTrainingDay = new ProgramTrainingDay();
+            programTrainingDay.setProgram(program);
+            programTrainingDay.setTrainingDay(trainingDay);
+            programTrainingDay.setPosition(position++);
+            links.add(programTrainingDay);
+        }
+
+        return programTrainingDayRepository.saveAll(links);
+    }
+
     /**
      * Get all programs for a user
      * @param telegramUserId Telegram user ID
@@ -120,6 +161,42 @@ public class ProgramService {
         return null;
     }
     
+    /**
+     * Create the context of a user for handling one update; its facts are loaded on first use
+     * @param telegramUserId Telegram user ID
+     * @return The user context
+     */
+    public UserContext getUserContext(Long telegramUserId) {
+        return new UserContext(telegramUserId, this, sessionManager);
+    }
+
+    /**
+     * Find a user by Telegram user ID
+     * @param telegramUserId Telegram user ID
+     * @return The user if known
+     */
+    public Optional<User> findUser(Long telegramUserId) {
+        return userRepository.findByTelegramId(telegramUserId);
+    }
+
+    /**
+     * Get the ID of the most recently created program of a user
+     * @param userId ID of the user row, not the Telegram user ID
+     * @return The program ID, or null if the user has no programs
+     */
+    public Long getActiveProgramId(Long userId) {
+        return programRepository.findFirstByUserIdOrderByCreatedAtDesc(userId).map(Program::getId).orElse(null);
+    }
+
+    /**
+     * Get a program with its training days loaded
+     * @param programId ID of the program
+     * @return The program, or null if not found
+     */
+    public Program getProgramWithTrainingDays(Long programId) {
+        return programRepository.findWithTrainingDaysById(programId).orElse(null);
+    }
+
     /**
      * Get the most recently created program for a user (considered as active program)
      * @param telegramUserId Telegram user ID
@@ -0,0 +1,21 @@
+package com.example.fitnessbot.service;
+
+import com.example.fitnessbot.model.TrainingDay;
+
+/**
+ * Outcome of re-ingesting an edited message into a stored training day
+ * @param trainingDay The updated training day
+ * @param inserted Number of exercises added by the edit
+ * @param updated Number of exercises whose fields changed
+ * @param deleted Number of exercises removed by the edit
+ */
+public record TrainingDayEdit(TrainingDay trainingDay, int inserted, int updated, int deleted) {
+
+    /**
+     * Check whether the edit changed any exercise
+     * @return true if rows were written for exercises
+     */
+    public boolean changedExercises() {
+        return inserted + updated + deleted > 0;
+    }
+}
@@ -3,13 +3,20 @@ package com.example.fitnessbot.service;
 import com.example.fitnessbot.model.Exercise;
 import com.example.fitnessbot.model.TrainingDay;
 import com.example.fitnessbot.model.User;
+import com.example.fitnessbot.model.UserTrainingDay;
 import com.example.fitnessbot.parser.TrainingDayParser;
 import com.example.fitnessbot.repository.ExerciseRepository;
 import com.example.fitnessbot.repository.TrainingDayRepository;
 import com.example.fitnessbot.repository.UserRepository;
+import com.example.fitnessbot.repository.UserTrainingDayRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
 
 /**
  * Service responsible for handling forwarded training‑day messages.
@@ -22,13 +29,16 @@ public class TrainingDayService {
     private final UserRepository userRepository;
     private final TrainingDayRepository trainingDayRepository;
     private final ExerciseRepository exerciseRepository;
+    private final UserTrainingDayRepository userTrainingDayRepository;
 
     public TrainingDayService(TrainingDayParser parser, UserRepository userRepository,
-                              TrainingDayRepository trainingDayRepository, ExerciseRepository exerciseRepository) {
+                              TrainingDayRepository trainingDayRepository, ExerciseRepository exerciseRepository,
+                              UserTrainingDayRepository userTrainingDayRepository) {
         this.parser = parser;
         this.userRepository = userRepository;
         this.trainingDayRepository = trainingDayRepository;
         this.exerciseRepository = exerciseRepository;
+        this.userTrainingDayRepository = userTrainingDayRepository;
     }
 
     /**
@@ -39,41 +49,271 @@ public class TrainingDayService {
      */
     public TrainingDay processForwardedMessage(Long telegramUserId, String rawText) {
         // 1. Find or create the user
-        User user = userRepository.findByTelegramId(telegramUserId)
+        User user = findOrCreateUser(telegramUserId);
+
+        // 2. Parse the raw text and save the training day (this will cascade to exercises)
+        return trainingDayRepository.save(buildTrainingDay(user, rawText));
+    }
+
+    /**
+     * Process a forwarded message for a given user.
+     * A forwarded channel post that was already ingested resolves to the shared day instead of a new copy,
+     * which the user then references.
+     * @param telegramUserId Telegram chat identifier
+     * @param message the forwarded message
+     * @return the shared or the newly persisted TrainingDay entity
+     */
+    @Transactional
+    public TrainingDay processForwardedMessage(Long telegramUserId, ForwardedMessage message) {
+        Optional<TrainingDay> shared = findSharedTrainingDay(message);
+        if (shared.isEmpty()) {
+            return processForwardedMessage(telegramUserId, message.text());
+        }
+        referenceSharedDay(findOrCreateUser(telegramUserId), shared.get());
+        return shared.get();
+    }
+
+    /**
+     * Process a burst of forwarded messages for a given user in one transaction.
+     * Either all training days are saved or none; their inserts are sent to the database in JDBC batches.
+     * Already ingested channel posts resolve to their shared day, which the user then references.
+     * @param telegramUserId Telegram chat identifier
+     * @param messages the forwarded messages in the order they were sent
+     * @return the shared or persisted TrainingDay entities in the same order
+     */
+    @Transactional
+    public List<TrainingDay> processForwardedMessages(Long telegramUserId, List<ForwardedMessage> messages) {
+        User user = findOrCreateUser(telegramUserId);
+
+        List<TrainingDay> trainingDays = new ArrayList<>(messages.size());
+        List<TrainingDay> newTrainingDays = new ArrayList<>(messages.size());
+        for (ForwardedMessage message : messages) {
+            TrainingDay trainingDay = findSharedTrainingDay(message).orElse(null);
+            if (trainingDay == null) {
+                trainingDay = buildTrainingDay(user, message.text());
+                newTrainingDays.add(trainingDay);
+            } else {
+                referenceSharedDay(user, trainingDay);
+            }
+            trainingDays.add(trainingDay);
+        }
+        trainingDayRepository.saveAll(newTrainingDays);
+        return trainingDays;
+    }
+
+    /**
+     * Ingest a post of a coach channel as a shared training day.
+     * Each post is parsed and stored once, however many users later forward it.
+     * @param channelId Telegram id of the channel
+     * @param messageId Id of the post in the channel
+     * @param rawText the text of the post
+     * @return the shared TrainingDay entity
+     */
+    @Transactional
+    public TrainingDay processChannelPost(Long channelId, Integer messageId, String rawText) {
+        Optional<TrainingDay> existing = trainingDayRepository.findBySourceChatIdAndSourceMessageId(channelId, messageId);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+
+        TrainingDay trainingDay = buildTrainingDay(null, rawText);
+        trainingDay.setSourceChatId(channelId);
+        trainingDay.setSourceMessageId(messageId);
+        return trainingDayRepository.save(trainingDay);
+    }
+
+    /**
+     * Re-ingest an edited message into the training day stored for it.
+     * The new text is parsed again and compared with the stored exercises by name and position,
+     * so only exercises that actually changed are updated, inserted or deleted.
+     * @param chatId Telegram id of the chat the message was posted in
+     * @param messageId Id of the edited message
+     * @param rawText the new text of the message
+     * @return the applied edit, or empty if no training day was stored for the message
+     */
+    @Transactional
+    public Optional<TrainingDayEdit> processEditedMessage(Long chatId, Integer messageId, String rawText) {
+        Optional<TrainingDay> stored = trainingDayRepository.findBySourceChatIdAndSourceMessageId(chatId, messageId);
+        if (stored.isEmpty()) {
+            return Optional.empty();
+        }
+
+        TrainingDay trainingDay = stored.get();
+        if (rawText.equals(trainingDay.getRawText())) {
+            return Optional.of(new TrainingDayEdit(trainingDay, 0, 0, 0));
+        }
+        TrainingDay parsed = buildTrainingDay(trainingDay.getUser(), rawText);
+        trainingDay.setRawText(rawText);
+        trainingDay.setTitle(parsed.getTitle());
+        return Optional.of(mergeExercises(trainingDay, parsed.getExercises() == null ? List.of() : parsed.getExercises()));
+    }
+
+    /**
+     * Apply parsed exercises to a stored day. An exercise is matched first at its own position with the same name,
+     * then by name anywhere in the day (it moved), then at its own position under another name (it was renamed,
+     * e.g. a typo fixed), so its last weight and videos are kept; unmatched parsed exercises are inserted,
+     * unmatched stored ones deleted.
+     */
+    private TrainingDayEdit mergeExercises(TrainingDay trainingDay, List<Exercise> parsedExercises) {
+        if (trainingDay.getExercises() == null) {
+            trainingDay.setExercises(new ArrayList<>());
+        }
+        List<Exercise> storedExercises = new ArrayList<>(trainingDay.getExercises());
+        storedExercises.sort(Comparator.comparing(Exercise::getPosition, Comparator.nullsLast(Comparator.naturalOrder())));
+
+        Exercise[] matches = new Exercise[parsedExercises.size()];
+        boolean[] matched = new boolean[storedExercises.size()];
+        for (int i = 0; i < Math.min(parsedExercises.size(), storedExercises.size()); i++) {
+            if (Objects.equals(parsedExercises.get(i).getName(), storedExercises.get(i).getName())) {
+                matches[i] = storedExercises.get(i);
+                matched[i] = true;
+            }
+        }
+        for (int i = 0; i < parsedExercises.size(); i++) {
+            for (int j = 0; matches[i] == null && j < storedExercises.size(); j++) {
+                if (!matched[j] && Objects.equals(parsedExercises.get(i).getName(), storedExercises.get(j).getName())) {
+                    matches[i] = storedExercises.get(j);
+                    matched[j] = true;
+                }
+            }
+        }
+        for (int i = 0; i < Math.min(parsedExercises.size(), storedExercises.size()); i++) {
+            if (matches[i] == null && !matched[i]) {
+                matches[i] = storedExercises.get(i);
+                matched[i] = true;
+            }
+        }
+
+        int inserted = 0;
+        int updated = 0;
+        int deleted = 0;
+        for (int i = 0; i < parsedExercises.size(); i++) {
+            Exercise parsed = parsedExercises.get(i);
+            if (matches[i] == null) {
+                parsed.setTrainingDay(trainingDay);
+                trainingDay.getExercises().add(parsed);
+                inserted++;
+            } else if (copyChangedFields(parsed, matches[i])) {
+                updated++;
+            }
+        }
+        for (int j = 0; j < storedExercises.size(); j++) {
+            if (!matched[j]) {
+                // Orphan removal deletes the row together with its videos
+                trainingDay.getExercises().remove(storedExercises.get(j));
+                deleted++;
+            }
+        }
+        return new TrainingDayEdit(trainingDay, inserted, updated, deleted);
+    }
+
+    /**
+     * Copy the parsed fields onto a stored exercise, touching only those that differ so that
+     * dirty checking writes nothing for unchanged exercises. The user's last weight is kept.
+     */
+    private static boolean copyChangedFields(Exercise parsed, Exercise stored) {
+        boolean changed = false;
+        if (!Objects.equals(parsed.getName(), stored.getName())) {
+            stored.setName(parsed.getName());
+            changed = true;
+        }
+        if (!Objects.equals(parsed.getPosition(), stored.getPosition())) {
+            stored.setPosition(parsed.getPosition());
+            changed = true;
+        }
+        if (!Objects.equals(parsed.getSection(), stored.getSection())) {
+            stored.setSection(parsed.getSection());
+            changed = true;
+        }
+        if (!Objects.equals(parsed.getSets(), stored.getSets())) {
+            stored.setSets(parsed.getSets());
+            changed = true;
+        }
+        if (!Objects.equals(parsed.getRepsOrDuration(), stored.getRepsOrDuration())) {
+            stored.setRepsOrDuration(parsed.getRepsOrDuration());
+            changed = true;
+        }
+        if (!Objects.equals(parsed.getNotes(), stored.getNotes())) {
+            stored.setNotes(parsed.getNotes());
+            changed = true;
+        }
+        // Replacing the collection rewrites all video rows, so only do it when the links changed
+        if (!sameVideoUrls(parsed.getVideoUrls(), stored.getVideoUrls())) {
+            stored.setVideoUrls(parsed.getVideoUrls());
+            changed = true;
+        }
+        return changed;
+    }
+
+    private static boolean sameVideoUrls(List<String> parsed, List<String> stored) {
+        // Hibernate's persistent bag compares by identity, so compare the elements in order
+        List<String> parsedUrls = parsed == null ? List.of() : parsed;
+        List<String> storedUrls = stored == null ? List.of() : stored;
+        return new ArrayList<>(parsedUrls).equals(new ArrayList<>(storedUrls));
+    }
+
+    private Optional<TrainingDay> findSharedTrainingDay(ForwardedMessage message) {
+        if (!message.hasSource()) {
+            return Optional.empty();
+        }
+        return trainingDayRepository.findBySourceChatIdAndSourceMessageId(message.sourceChatId(), message.sourceMessageId());
+    }
+
+    private void referenceSharedDay(User user, TrainingDay sharedDay) {
+        if (userTrainingDayRepository.existsByUserIdAndTrainingDayId(user.getId(), sharedDay.getId())) {
+            return;
+        }
+        UserTrainingDay reference = new UserTrainingDay();
+        reference.setUser(user);
+        reference.setTrainingDay(sharedDay);
+        userTrainingDayRepository.save(reference);
+    }
+
+    private User findOrCreateUser(Long telegramUserId) {
+        return userRepository.findByTelegramId(telegramUserId)
                 .orElseGet(() -> {
                     User newUser = new User();
                     newUser.setTelegramId(telegramUserId);
                     // Name and weight will be set later through user profile management
                     return userRepository.save(newUser);
                 });
+    }
 
-        // 2. Parse the raw text into a structured model
+    private TrainingDay buildTrainingDay(User user, String rawText) {
+        // Parse the raw text into a structured model
         TrainingDay parsedTrainingDay = parser.parse(rawText);
 
-        // 3. Set the user and raw text
+        // Set the user and raw text
         parsedTrainingDay.setUser(user);
         parsedTrainingDay.setRawText(rawText);
 
-        // 4. Extract title from the first line
+        // Extract title from the first line
         String[] lines = rawText.split("\\r?\\n");
         if (lines.length > 0) {
             parsedTrainingDay.setTitle(lines[0].trim());
         }
 
-        // 5. Set the training day reference for exercises before saving
+        // Set the training day reference for exercises before saving
         List<Exercise> exercises = parsedTrainingDay.getExercises();
         if (exercises != null) {
             for (Exercise exercise : exercises) {
                 exercise.setTrainingDay(parsedTrainingDay);
             }
         }
+        return parsedTrainingDay;
+    }
 
-        // 6. Save the training day (this will cascade to exercises)
-        TrainingDay savedTrainingDay = trainingDayRepository.save(parsedTrainingDay);
-
-        return savedTrainingDay;
+    /**
+     * Get the training days of a user: the ones they forwarded as their own and the shared days they referenced
+     * @param telegramUserId Telegram chat identifier
+     * @return The training days, oldest first, or an empty list for an unknown user
+     */
+    public List<TrainingDay> getTrainingDaysOfUser(Long telegramUserId) {
+        return userRepository.findByTelegramId(telegramUserId)
+                .map(user -> trainingDayRepository.findAllOfUser(user.getId()))
+                .orElse(List.of());
     }
-    
+
     /**
      * Get a training day by its ID
      * @param id The ID of the training day
@@ -0,0 +1,47 @@
+package com.example.fitnessbot.service;
+
+import com.example.fitnessbot.model.BotOffset;
+import com.example.fitnessbot.repository.BotOffsetRepository;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Persists the polling offset so a restarted bot resumes right after the last confirmed update
+ */
+@Service
+public class UpdateOffsetService {
+
+    private final BotOffsetRepository botOffsetRepository;
+
+    public UpdateOffsetService(BotOffsetRepository botOffsetRepository) {
+        this.botOffsetRepository = botOffsetRepository;
+    }
+
+    /**
+     * Get the offset to pass to the first getUpdates call
+     * @param botUsername Username of the polling bot
+     * @return The id following the last confirmed update, or null if nothing was confirmed yet
+     */
+    public Integer getNextOffset(String botUsername) {
+        return botOffsetRepository.findById(botUsername)
+                .map(offset -> Math.toIntExact(offset.getLastUpdateId() + 1))
+                .orElse(null);
+    }
+
+    /**
+     * Remember the last update id confirmed by the bot
+     * @param botUsername Username of the polling bot
+     * @param lastUpdateId Id of the last confirmed update
+     */
+    public void confirm(String botUsername, long lastUpdateId) {
+        BotOffset offset = botOffsetRepository.findById(botUsername).orElseGet(() -> {
+            BotOffset newOffset = new BotOffset();
+            newOffset.setBotUsername(botUsername);
+            return newOffset;
+        });
+        offset.setLastUpdateId(lastUpdateId);
+        offset.setUpdatedAt(LocalDateTime.now());
+        botOffsetRepository.save(offset);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.fitnessbot.service;
+
+import com.example.fitnessbot.model.User;
+import com.example.fitnessbot.service.ProgramCreationSessionManager.ProgramCreationSession;
+
+import java.util.Optional;
+
+/**
+ * What the handlers of one update know about its user: the user row, the active program and the program
+ * creation session. Each fact is loaded the first time it is asked for and then shared by every handler
+ * and suggestion looking at the same update, so an update costs at most one round-trip per fact.
+ * Facts are not refreshed; a context belongs to a single update on a single thread.
+ */
+public class UserContext {
+
+    private final Long telegramUserId;
+    private final ProgramService programService;
+    private final ProgramCreationSessionManager sessionManager;
+
+    private Optional<User> user;
+    private boolean activeProgramLoaded;
+    private Long activeProgramId;
+    private boolean sessionLoaded;
+    private ProgramCreationSession session;
+
+    public UserContext(Long telegramUserId, ProgramService programService, ProgramCreationSessionManager sessionManager) {
+        this.telegramUserId = telegramUserId;
+        this.programService = programService;
+        this.sessionManager = sessionManager;
+    }
+
+    public Long getTelegramUserId() {
+        return telegramUserId;
+    }
+
+    /**
+     * Get the user row
+     * @return The user, or null if the user never saved anything
+     */
+    public User getUser() {
+        if (user == null) {
+            user = programService.findUser(telegramUserId);
+        }
+        return user.orElse(null);
+    }
+
+    /**
+     * Get the ID of the user's most recently created program
+     * @return The program ID, or null if the user has no programs
+     */
+    public Long getActiveProgramId() {
+        if (!activeProgramLoaded) {
+            User current = getUser();
+            activeProgramId = current != null ? programService.getActiveProgramId(current.getId()) : null;
+            activeProgramLoaded = true;
+        }
+        return activeProgramId;
+    }
+
+    public boolean hasActiveProgram() {
+        return getActiveProgramId() != null;
+    }
+
+    /**
+     * Get the user's program creation session
+     * @return The session, or null if none is active
+     */
+    public ProgramCreationSession getSession() {
+        if (!sessionLoaded) {
+            session = sessionManager.getSession(telegramUserId);
+            sessionLoaded = true;
+        }
+        return session;
+    }
+
+    public boolean hasActiveSession() {
+        return getSession() != null;
+    }
+}
@@ -1,13 +1,34 @@
 package com.example.fitnessbot.telegram;
 
+import com.example.fitnessbot.model.OutboxMessage;
 import com.example.fitnessbot.model.TrainingDay;
+import com.example.fitnessbot.service.ForwardedMessage;
+import com.example.fitnessbot.service.OutboxService;
 import com.example.fitnessbot.service.ProgramCreationSessionManager;
+import com.example.fitnessbot.service.ProgramService;
 import com.example.fitnessbot.service.TrainingDayService;
+import com.example.fitnessbot.service.UserContext;
+import com.example.fitnessbot.telegram.bulkhead.HandlerBulkheads;
 import com.example.fitnessbot.telegram.commands.CallbackQueryHandler;
+import com.example.fitnessbot.telegram.commands.CallbackRoutingTable;
 import com.example.fitnessbot.telegram.commands.CommandHandler;
 import com.example.fitnessbot.telegram.commands.CommandMetadata;
 import com.example.fitnessbot.telegram.commands.CommandRegistryService;
+import com.example.fitnessbot.telegram.commands.CommandRoutingTable;
+import com.example.fitnessbot.telegram.commands.CommandUpdates;
 import com.example.fitnessbot.telegram.commands.ContextAwareCommandHandler;
+import com.example.fitnessbot.telegram.commands.HandlerResponses;
+import com.example.fitnessbot.telegram.decode.LazyUpdate;
+import com.example.fitnessbot.telegram.dispatch.UpdateDeduplicator;
+import com.example.fitnessbot.telegram.dispatch.UpdateDispatcher;
+import com.example.fitnessbot.telegram.dispatch.UpdateHandler;
+import com.example.fitnessbot.telegram.filter.UpdateFilter;
+import com.example.fitnessbot.telegram.outbound.OutboundSender;
+import com.example.fitnessbot.telegram.ratelimit.InboundRateLimiter;
+import com.example.fitnessbot.telegram.replay.UpdateRecorder;
+import com.example.fitnessbot.telegram.spool.DatabaseOutages;
+import com.example.fitnessbot.telegram.spool.UpdateSpool;
+import com.example.fitnessbot.tenant.TenantContext;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,9 +36,12 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
 import org.telegram.telegrambots.meta.api.methods.commands.SetMyCommands;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageReplyMarkup;
 import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
 import org.telegram.telegrambots.meta.api.objects.commands.BotCommand;
@@ -28,6 +52,13 @@ import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Component
 @ConditionalOnProperty(name = "telegram.bot.token")
@@ -35,50 +66,119 @@ public class FitnessTelegramBot extends TelegramLongPollingBot {
 
     private static final Logger log = LoggerFactory.getLogger(FitnessTelegramBot.class);
 
+    // The parts of response batches that run in parallel are sent on virtual threads
+    private static final ExecutorService TELEGRAM_CALLS = Executors.newVirtualThreadPerTaskExecutor();
+
+    private static final String SPOOLED_TEXT = "⏳ I can't reach my database right now. Your training program is kept " +
+            "and will be saved as soon as it's back, no need to forward it again.";
+
     private final TrainingDayService trainingDayService;
     private final ProgramCreationSessionManager sessionManager;
+    private final ProgramService programService;
+    private final OutboxService outboxService;
     private final List<CommandHandler> commandHandlers;
-    private final List<CallbackQueryHandler> callbackQueryHandlers;
+    private final CommandRoutingTable commandRoutes;
+    private final CallbackRoutingTable callbackRoutes;
     private final CommandRegistryService commandRegistryService;
-
+    private final UpdateDispatcher updateDispatcher;
+    private final UpdateDeduplicator updateDeduplicator;
+    private final UpdateFilter updateFilter;
+    private final InboundRateLimiter rateLimiter;
+    private final UpdateSpool updateSpool;
+    private final UpdateRecorder updateRecorder;
+    private final HandlerBulkheads handlerBulkheads;
+    private final OutboundSender outboundSender;
+
+    private final String tenantId;
     private final String botUsername;
 
     public FitnessTelegramBot(TrainingDayService trainingDayService,
                               ProgramCreationSessionManager sessionManager,
+                              ProgramService programService,
+                              OutboxService outboxService,
                               List<CommandHandler> commandHandlers,
                               List<CallbackQueryHandler> callbackQueryHandlers,
                               CommandRegistryService commandRegistryService,
+                              UpdateDispatcher updateDispatcher,
+                              UpdateDeduplicator updateDeduplicator,
+                              UpdateFilter updateFilter,
+                              InboundRateLimiter rateLimiter,
+                              UpdateSpool updateSpool,
+                              UpdateRecorder updateRecorder,
+                              HandlerBulkheads handlerBulkheads,
+                              OutboundSender outboundSender,
                               @Value("${telegram.bot.token:}") String botToken,
                               @Value("${telegram.bot.username:}") String botUsername) {
         super(botToken);
         this.trainingDayService = trainingDayService;
         this.sessionManager = sessionManager;
+        this.programService = programService;
+        this.outboxService = outboxService;
         this.commandHandlers = commandHandlers;
-        this.callbackQueryHandlers = callbackQueryHandlers;
+        this.commandRoutes = new CommandRoutingTable(commandHandlers, botUsername);
+        this.callbackRoutes = new CallbackRoutingTable(callbackQueryHandlers);
         this.commandRegistryService = commandRegistryService;
+        this.updateDispatcher = updateDispatcher;
+        this.updateDeduplicator = updateDeduplicator;
+        this.updateFilter = updateFilter;
+        this.rateLimiter = rateLimiter;
+        this.updateSpool = updateSpool;
+        this.updateRecorder = updateRecorder;
+        this.handlerBulkheads = handlerBulkheads;
+        this.outboundSender = outboundSender;
+        this.tenantId = TenantContext.DEFAULT_TENANT;
         this.botUsername = botUsername;
     }
 
+    private FitnessTelegramBot(FitnessTelegramBot template, String tenantId, String botToken, String botUsername) {
+        super(botToken);
+        this.trainingDayService = template.trainingDayService;
+        this.sessionManager = template.sessionManager;
+        this.programService = template.programService;
+        this.outboxService = template.outboxService;
+        this.commandHandlers = template.commandHandlers;
+        this.commandRoutes = new CommandRoutingTable(commandHandlers, botUsername);
+        this.callbackRoutes = template.callbackRoutes;
+        this.commandRegistryService = template.commandRegistryService;
+        this.updateDispatcher = template.updateDispatcher;
+        this.updateDeduplicator = template.updateDeduplicator;
+        this.updateFilter = template.updateFilter;
+        this.rateLimiter = template.rateLimiter;
+        this.updateSpool = template.updateSpool;
+        this.updateRecorder = template.updateRecorder;
+        this.handlerBulkheads = template.handlerBulkheads;
+        this.outboundSender = template.outboundSender;
+        this.tenantId = tenantId;
+        this.botUsername = botUsername;
+    }
+
+    /**
+     * Create the bot of another tenant. It shares this bot's handlers, services and dispatcher,
+     * and handles its updates with {@link TenantContext} set to the tenant.
+     * @param tenantId The tenant id
+     * @param botToken Token of the tenant's bot
+     * @param botUsername Username of the tenant's bot
+     */
+    public FitnessTelegramBot forTenant(String tenantId, String botToken, String botUsername) {
+        return new FitnessTelegramBot(this, tenantId, botToken, botUsername);
+    }
+
 
     @PostConstruct
     public void registerCommands() {
-        // Only register commands when not in test environment
-        if (!"true".equals(System.getProperty("test.profile"))) {
-            try {
-                List<BotCommand> botCommands = commandHandlers.stream()
-                        .map(handler -> new BotCommand(handler.getCommand(), handler.getCommandDescription()))
-                        .toList();
+        List<BotCommand> botCommands = commandHandlers.stream()
+                .map(handler -> new BotCommand(handler.getCommand(), handler.getCommandDescription()))
+                .toList();
 
-                SetMyCommands setMyCommands = new SetMyCommands();
+        SetMyCommands setMyCommands = new SetMyCommands();
 
-                setMyCommands.setCommands(botCommands);
-                setMyCommands.setScope(new BotCommandScopeDefault());
+        setMyCommands.setCommands(botCommands);
+        setMyCommands.setScope(new BotCommandScopeDefault());
 
-                execute(setMyCommands);
-            } catch (TelegramApiException e) {
-                log.error("Failed to register bot commands", e);
-            }
-        }
+        outboundSender.send(this, setMyCommands).exceptionally(e -> {
+            log.error("Failed to register bot commands", e);
+            return null;
+        });
     }
     
     @Override
@@ -86,8 +186,121 @@ public class FitnessTelegramBot extends TelegramLongPollingBot {
         return botUsername;
     }
 
+    public String getTenantId() {
+        return tenantId;
+    }
+
     @Override
     public void onUpdateReceived(Update update) {
+        if (!admit(update)) {
+            return;
+        }
+        // Hand the update off the polling thread; updates of one chat stay ordered
+        updateDispatcher.dispatch(update, new BotUpdateHandler(this));
+    }
+
+    /**
+     * Dispatch a polled update and report when it has been fully handled
+     * @param update The update to handle
+     * @param onHandled Called once the update was handled, failed, or was dropped
+     */
+    public void onUpdateReceived(Update update, Runnable onHandled) {
+        if (!admit(update)) {
+            onHandled.run();
+            return;
+        }
+        updateDispatcher.dispatch(update, new BotUpdateHandler(this), onHandled);
+    }
+
+    /**
+     * Offer an update received through the webhook
+     * @param update The update to handle
+     * @return true if the update was queued, dropped or is a duplicate, false if the dispatch queue is full
+     */
+    public boolean offerUpdate(Update update) {
+        if (!admit(update)) {
+            return true;
+        }
+        if (!updateDispatcher.tryDispatch(update, new BotUpdateHandler(this))) {
+            // Telegram will deliver it again, which must not count as a duplicate
+            updateDeduplicator.release(botUsername, update.getUpdateId());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Run the cheap stages in front of the dispatcher: pre-filter, deduplication and the per-user rate limit.
+     * Every received update is recorded first when recording is enabled.
+     * @return true if the update should be dispatched to the handlers
+     */
+    private boolean admit(Update update) {
+        updateRecorder.record(update);
+        if (updateFilter.check(update, botUsername) != null || updateDeduplicator.isDuplicate(botUsername, update.getUpdateId())) {
+            return false;
+        }
+        InboundRateLimiter.Decision decision = rateLimiter.check(update);
+        if (decision == InboundRateLimiter.Decision.LIMITED_NOTIFY) {
+            // Best effort: the notice is skipped if the dispatch queue is full
+            updateDispatcher.tryDispatch(update, this::sendRateLimitNotice);
+        }
+        if (decision == InboundRateLimiter.Decision.ALLOWED && update.hasCallbackQuery()) {
+            // Stop the button's spinner now; the handler may wait behind the chat's queued updates and its reads
+            answerCallbackQuery(update);
+        }
+        if (decision == InboundRateLimiter.Decision.ALLOWED && updateSpool.spoolIfChatSpooled(tenantId, update)) {
+            // Earlier updates of the chat wait in the spool for the database, this one is handled after them
+            updateDeduplicator.markHandled(botUsername, update.getUpdateId());
+            return false;
+        }
+        return decision == InboundRateLimiter.Decision.ALLOWED;
+    }
+
+    /**
+     * Answer a button press asynchronously. A command suggestion is answered with the command it runs.
+     */
+    private void answerCallbackQuery(Update update) {
+        CallbackQuery callbackQuery = update.getCallbackQuery();
+        if (callbackQuery.getId() == null) {
+            return;
+        }
+        AnswerCallbackQuery answer = new AnswerCallbackQuery();
+        answer.setCallbackQueryId(callbackQuery.getId());
+        if (CommandUpdates.isSuggestion(update)) {
+            answer.setText("Executing: " + CommandUpdates.text(update));
+        }
+        outboundSender.send(this, answer).exceptionally(e -> {
+            log.warn("Failed to answer callback query {}", callbackQuery.getId(), e);
+            return null;
+        });
+    }
+
+    /**
+     * Tell a user who exceeded their budget that some of their updates are skipped
+     */
+    protected void sendRateLimitNotice(Update update) {
+        try {
+            if (update.hasCallbackQuery()) {
+                AnswerCallbackQuery answer = new AnswerCallbackQuery();
+                answer.setCallbackQueryId(update.getCallbackQuery().getId());
+                answer.setText("⏳ Too many taps, please slow down a little.");
+                send(answer);
+                return;
+            }
+            SendMessage sendMessage = new SendMessage();
+            sendMessage.setChatId(update.getMessage().getChatId().toString());
+            sendMessage.setText("⏳ You're sending messages faster than I can process them. " +
+                    "I'll skip some of them, please wait a minute before sending more.");
+            sendTelegramMessage(sendMessage);
+        } catch (Exception e) {
+            log.error("Failed to send rate limit notice", e);
+        }
+    }
+
+    /**
+     * Route a single update to the matching handler. Runs on a dispatcher worker thread.
+     */
+    protected void handleUpdate(Update update) {
         // Handle forwarded messages
         if (update.hasMessage() && update.getMessage().hasText() &&
                 (update.getMessage().getForwardFrom() != null || update.getMessage().getForwardFromChat() != null)) {
@@ -99,107 +312,78 @@ public class FitnessTelegramBot extends TelegramLongPollingBot {
         }
         // Handle callback queries (button presses)
         else if (update.hasCallbackQuery()) {
-            handleCallbackQuery(update.getCallbackQuery());
+            handleCallbackQuery(update);
+        }
+        // Handle posts of coach channels the bot administers
+        else if (update.hasChannelPost() && update.getChannelPost().hasText()) {
+            handleChannelPost(update);
+        }
+        // Handle edits of messages a training day was stored for
+        else if (update.hasEditedChannelPost() && update.getEditedChannelPost().hasText()) {
+            handleEditedMessage(update, update.getEditedChannelPost());
         }
+        else if (update.hasEditedMessage() && update.getEditedMessage().hasText()) {
+            handleEditedMessage(update, update.getEditedMessage());
+        }
+    }
+
+    /**
+     * Route a burst of coalesced updates. Runs on a dispatcher worker thread.
+     * A burst of forwarded training days is saved at once and answered with a single summary.
+     */
+    protected void handleUpdates(List<Update> updates) {
+        boolean allForwarded = updates.stream().allMatch(FitnessTelegramBot::isForwardedText);
+        if (updates.size() == 1 || !allForwarded) {
+            updates.forEach(this::handleUpdate);
+            return;
+        }
+        handleForwardedBurst(updates);
+    }
+
+    private static boolean isForwardedText(Update update) {
+        return update.hasMessage() && update.getMessage().hasText() &&
+                (update.getMessage().getForwardFrom() != null || update.getMessage().getForwardFromChat() != null);
     }
 
     /**
-     * Handle callback queries from inline keyboard buttons
+     * Dispatch an update that was spooled while the database was unavailable. It queues behind the updates
+     * of its chat that are already dispatched, and runs in its lane like any other update.
+     * @return Completes once the update was handled, or with the failure, e.g. the database being unavailable again
      */
-    private void handleCallbackQuery(CallbackQuery callbackQuery) {
+    public CompletableFuture<Void> replaySpooledUpdate(Update update) {
+        CompletableFuture<Void> handled = new CompletableFuture<>();
+        updateDispatcher.dispatch(update, new SpooledUpdateHandler(this, handled));
+        return handled;
+    }
+
+    /**
+     * Spool updates that could not be saved because the database is unavailable
+     * @return true if the updates were spooled and will be handled again later
+     */
+    private boolean spoolIfDatabaseUnavailable(List<Update> updates, Exception e) {
+        if (!DatabaseOutages.isOutage(e)) {
+            return false;
+        }
+        if (UpdateSpool.isReplaying()) {
+            throw new IllegalStateException("Database unavailable while replaying spooled updates", e);
+        }
+        if (!updateSpool.spool(tenantId, updates)) {
+            return false;
+        }
+        log.warn("Database unavailable, spooled {} updates", updates.size());
+        return true;
+    }
+
+    /**
+     * Handle callback queries from inline keyboard buttons. The query was already answered on admission.
+     */
+    private void handleCallbackQuery(Update update) {
+        CallbackQuery callbackQuery = update.getCallbackQuery();
         String callbackData = callbackQuery.getData();
         Long chatId = callbackQuery.getMessage().getChatId();
 
         try {
-            // First, try to handle with registered callback query handlers
-            for (CallbackQueryHandler handler : callbackQueryHandlers) {
-                if (handler.canHandle(callbackQuery)) {
-                    SendMessage message = handler.handle(new Update() {{
-                        setCallbackQuery(callbackQuery);
-                    }});
-                    
-                    sendTelegramMessage(message);
-                    
-                    // Acknowledge the callback query to remove loading indicator
-                    if (callbackQuery.getId() != null) {
-                        AnswerCallbackQuery answer = new AnswerCallbackQuery();
-                        answer.setCallbackQueryId(callbackQuery.getId());
-                        execute(answer);
-                    }
-                    
-                    return;
-                }
-            }
-            
-            // If no handler matched, use the default handling
-            SendMessage message = new SendMessage();
-            message.setChatId(chatId.toString());
-
-            // Handle main menu callbacks (existing functionality)
-            switch (callbackData) {
-                case "create_program":
-                    message.setText("To create a program, use the /create_program <name> command.\nExample: /create_program My Workout Plan");
-                    break;
-                case "view_programs":
-                    message.setText("To view your programs, this feature will be implemented soon!");
-                    break;
-                case "cancel_program":
-                    Long userId = callbackQuery.getFrom().getId();
-                    if (sessionManager.hasActiveSession(userId)) {
-                        sessionManager.endSession(userId);
-                        message.setText("✅ Program creation cancelled.");
-                    } else {
-                        message.setText("You don't have an active program creation session to cancel.");
-                    }
-                    break;
-                case "help":
-                    message.setText("""
-                            Simply forward your workout program messages to me and I'll parse and save them.
-
-                            Supported format:
-                            - Section headers ending with ':'
-                            - Exercises with bullet points ('⁃' or '-')
-                            - Sets and reps like "3 x 10"
-                            - Video links
-
-                            Program Creation Commands:
-                            - /create_program <name> - Start creating a new program
-                            - Forward training day messages to add them to the program
-                            - /finish_program - Finish and save the program
-                            - /cancel_program - Cancel program creation
-
-                            Example:
-                            Upper Body:
-                            - Bench Press 3 x 10 (Warm up set)
-                            - https://youtube.com/watch?v=example""");
-                    break;
-                case "start_menu":
-                    message.setText("Welcome to Fitness Bot! Choose an option below:");
-                    message.setReplyMarkup(createMainMenuKeyboard(callbackQuery.getFrom().getId()));
-                    break;
-                default:
-                    // Handle command suggestions (new functionality)
-                    if (callbackData.startsWith("cmd:")) {
-                        handleCommandSuggestion(callbackQuery);
-                        return; // We've handled the callback, so we can return early
-                    } else {
-                        message.setText("Unknown button action. Please try again.");
-                    }
-                    break;
-            }
-
-            sendTelegramMessage(message);
-
-            // Acknowledge the callback query to remove loading indicator
-            // Only if callbackQueryId is not null (e.g., in real Telegram environment)
-            if (callbackQuery.getId() != null) {
-                AnswerCallbackQuery answer = new AnswerCallbackQuery();
-                answer.setCallbackQueryId(callbackQuery.getId());
-                // Skip actual Telegram API calls during testing
-                if (!"true".equals(System.getProperty("test.profile"))) {
-                    execute(answer);
-                }
-            }
+            executeResponses(callbackResponses(update));
         } catch (Exception e) {
             log.error("Error handling callback query: {}", callbackData, e);
             try {
@@ -207,16 +391,6 @@ public class FitnessTelegramBot extends TelegramLongPollingBot {
                 errorMessage.setChatId(chatId.toString());
                 errorMessage.setText("Sorry, there was an error processing your request. Please try again.");
                 sendTelegramMessage(errorMessage);
-
-                // Acknowledge the callback query even in case of error
-                if (callbackQuery.getId() != null) {
-                    AnswerCallbackQuery answer = new AnswerCallbackQuery();
-                    answer.setCallbackQueryId(callbackQuery.getId());
-                    // Skip actual Telegram API calls during testing
-                    if (!"true".equals(System.getProperty("test.profile"))) {
-                        execute(answer);
-                    }
-                }
             } catch (Exception telegramException) {
                 log.error("Failed to send error message for callback query: {}", callbackData, telegramException);
             }
@@ -224,34 +398,88 @@ public class FitnessTelegramBot extends TelegramLongPollingBot {
     }
 
     /**
-     * Handle command suggestion selected from inline keyboard
+     * Respond to a button press
+     * @return The Bot API methods to execute in response
      */
-    private void handleCommandSuggestion(CallbackQuery callbackQuery) throws Exception {
+    private List<BotApiMethod<?>> callbackResponses(Update update) {
+        CallbackQuery callbackQuery = update.getCallbackQuery();
         String callbackData = callbackQuery.getData();
-        String command = callbackData.substring(4); // Remove "cmd:" prefix
-
-        // Acknowledge the callback query
-        AnswerCallbackQuery answer = new AnswerCallbackQuery();
-        answer.setCallbackQueryId(callbackQuery.getId());
-        answer.setText("Executing: " + command);
-        execute(answer);
+        Long chatId = callbackQuery.getMessage().getChatId();
 
-        // Create a fake update to simulate the command being sent
-        Update fakeUpdate = new Update();
-        org.telegram.telegrambots.meta.api.objects.Message fakeMessage = new org.telegram.telegrambots.meta.api.objects.Message();
-        fakeMessage.setText(command);
+        // First, try the handler the callback data is routed to
+        CallbackQueryHandler handler = callbackRoutes.resolve(callbackQuery);
+        if (handler != null) {
+            return HandlerResponses.awaitAll(
+                    handlerBulkheads.call(handler.getBulkheadGroup(), chatId, () -> handler.handleAsync(update)));
+        }
 
-        // Cast to Message to access getChat() method
-        if (callbackQuery.getMessage() instanceof org.telegram.telegrambots.meta.api.objects.Message originalMessage) {
-            fakeMessage.setChat(originalMessage.getChat());
+        // A suggested command runs like one the user sent, in the chat the button was pressed in
+        if (CommandUpdates.isSuggestion(update)) {
+            return commandResponses(update);
         }
 
-        fakeMessage.setFrom(callbackQuery.getFrom());
-        fakeUpdate.setMessage(fakeMessage);
-        fakeUpdate.setUpdateId(1); // Set a dummy update ID
+        // If no handler matched, use the default handling
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId.toString());
+        List<BotApiMethod<?>> responses = new ArrayList<>();
+        responses.add(message);
+
+        // Handle main menu callbacks (existing functionality)
+        switch (callbackData) {
+            case "create_program":
+                message.setText("To create a program, use the /create_program <name> command.\nExample: /create_program My Workout Plan");
+                break;
+            case "view_programs":
+                message.setText("To view your programs, this feature will be implemented soon!");
+                break;
+            case "cancel_program":
+                Long userId = callbackQuery.getFrom().getId();
+                if (sessionManager.hasActiveSession(userId)) {
+                    sessionManager.endSession(userId);
+                    message.setText("✅ Program creation cancelled.");
+                    // The menu the button was pressed on no longer offers to cancel
+                    if (callbackQuery.getMessage() instanceof Message menu) {
+                        EditMessageReplyMarkup refreshMenu = new EditMessageReplyMarkup();
+                        refreshMenu.setChatId(chatId.toString());
+                        refreshMenu.setMessageId(menu.getMessageId());
+                        refreshMenu.setReplyMarkup(createMainMenuKeyboard(userId));
+                        responses.add(refreshMenu);
+                    }
+                } else {
+                    message.setText("You don't have an active program creation session to cancel.");
+                }
+                break;
+            case "help":
+                message.setText("""
+                        Simply forward your workout program messages to me and I'll parse and save them.
+
+                        Supported format:
+                        - Section headers ending with ':'
+                        - Exercises with bullet points ('⁃' or '-')
+                        - Sets and reps like "3 x 10"
+                        - Video links
+
+                        Program Creation Commands:
+                        - /create_program <name> - Start creating a new program
+                        - Forward training day messages to add them to the program
+                        - /finish_program - Finish and save the program
+                        - /cancel_program - Cancel program creation
+
+                        Example:
+                        Upper Body:
+                        - Bench Press 3 x 10 (Warm up set)
+                        - https://youtube.com/watch?v=example""");
+                break;
+            case "start_menu":
+                message.setText("Welcome to Fitness Bot! Choose an option below:");
+                message.setReplyMarkup(createMainMenuKeyboard(callbackQuery.getFrom().getId()));
+                break;
+            default:
+                message.setText("Unknown button action. Please try again.");
+                break;
+        }
 
-        // Handle the command
-        handleCommand(fakeUpdate);
+        return responses;
     }
 
     /**
@@ -313,20 +541,21 @@ public class FitnessTelegramBot extends TelegramLongPollingBot {
         log.info("Processing forwarded message from user {} with text length {}", userId, messageText.length());
 
         try {
-            TrainingDay trainingDay = trainingDayService.processForwardedMessage(userId, messageText);
-
-            SendMessage sendMessage = new SendMessage();
-            sendMessage.setChatId(update.getMessage().getChatId().toString());
-            sendMessage.setText("✅ Training program received and processed successfully! Saved " +
-                    trainingDay.getExercises().size() + " exercises.");
-
-            sendTelegramMessage(sendMessage);
+            Message message = update.getMessage();
+            outboxService.saveWithReply(replyKey(message), message.getChatId().toString(), () -> {
+                TrainingDay trainingDay = trainingDayService.processForwardedMessage(userId, forwardedMessage(message));
+                return "✅ Training program received and processed successfully! Saved " +
+                        trainingDay.getExercises().size() + " exercises.";
+            }).ifPresentOrElse(this::sendReply, () -> log.info("Message {} was already saved", message.getMessageId()));
         } catch (Exception e) {
-            log.error("Error processing forwarded message from user " + userId, e);
-
             SendMessage sendMessage = new SendMessage();
             sendMessage.setChatId(update.getMessage().getChatId().toString());
-            sendMessage.setText("❌ Sorry, there was an error processing your training program. Please try again.");
+            if (spoolIfDatabaseUnavailable(List.of(update), e)) {
+                sendMessage.setText(SPOOLED_TEXT);
+            } else {
+                log.error("Error processing forwarded message from user " + userId, e);
+                sendMessage.setText("❌ Sorry, there was an error processing your training program. Please try again.");
+            }
 
             try {
                 sendTelegramMessage(sendMessage);
@@ -336,91 +565,176 @@ public class FitnessTelegramBot extends TelegramLongPollingBot {
         }
     }
 
-    private void handleForwardedMessageDuringProgramCreation(Update update) {
-        Long userId = update.getMessage().getFrom().getId();
-        String messageText = update.getMessage().getText();
-
-        try {
-            // Process the training day normally
-            TrainingDay trainingDay = trainingDayService.processForwardedMessage(userId, messageText);
-
-            // Add it to the program creation session
-            var session = sessionManager.getSession(userId);
-            session.addTrainingDay(trainingDay);
+    private void handleForwardedBurst(List<Update> updates) {
+        Long userId = updates.get(0).getMessage().getFrom().getId();
+        String chatId = updates.get(0).getMessage().getChatId().toString();
+        // Which updates are coalesced depends on timing, so each message keeps its own key when redelivered
+        Map<String, ForwardedMessage> messagesByKey = new LinkedHashMap<>();
+        updates.forEach(update -> messagesByKey.put(replyKey(update.getMessage()), forwardedMessage(update.getMessage())));
+        List<ForwardedMessage> messages = List.copyOf(messagesByKey.values());
+        boolean inProgramCreation = sessionManager.hasActiveSession(userId);
 
-            SendMessage sendMessage = new SendMessage();
-            sendMessage.setChatId(update.getMessage().getChatId().toString());
-            sendMessage.setText("✅ Training day added to your program! (Total: " +
-                               session.getTrainingDaysCount() + " days)");
+        log.info("Processing burst of {} forwarded messages from user {}", messages.size(), userId);
 
-            sendTelegramMessage(sendMessage);
+        try {
+            var session = inProgramCreation ? sessionManager.getSession(userId) : null;
+            List<TrainingDay> saved = new ArrayList<>();
+            outboxService.saveWithReply(List.copyOf(messagesByKey.keySet()), chatId, newKeys -> {
+                List<ForwardedMessage> newMessages = newKeys.stream().map(messagesByKey::get).toList();
+                List<TrainingDay> trainingDays = trainingDayService.processForwardedMessages(userId, newMessages);
+                saved.addAll(trainingDays);
+
+                if (session != null) {
+                    return "✅ " + trainingDays.size() + " training days added to your program! (Total: " +
+                            session.getTrainingDaysCountWith(trainingDays) + " days)";
+                }
+                int exerciseCount = trainingDays.stream().mapToInt(day -> day.getExercises().size()).sum();
+                return "✅ " + trainingDays.size() + " training days received and processed successfully! Saved " +
+                        exerciseCount + " exercises.";
+            }).ifPresentOrElse(reply -> {
+                // The days join the session only once committed; a rolled back burst must not end up in the program
+                if (session != null) {
+                    saved.forEach(session::addTrainingDay);
+                }
+                sendReply(reply);
+            }, () -> log.info("Burst of {} messages was already saved", messages.size()));
         } catch (Exception e) {
-            log.error("Error processing forwarded message during program creation for user " + userId, e);
-
             SendMessage sendMessage = new SendMessage();
-            sendMessage.setChatId(update.getMessage().getChatId().toString());
-            sendMessage.setText("❌ Sorry, there was an error adding this training day to your program. Please try again.");
+            sendMessage.setChatId(chatId);
+            if (spoolIfDatabaseUnavailable(updates, e)) {
+                sendMessage.setText(SPOOLED_TEXT);
+            } else {
+                log.error("Error processing burst of forwarded messages from user " + userId, e);
+                sendMessage.setText("❌ Sorry, there was an error processing your " + messages.size() +
+                        " training days. None of them were saved, please forward them again.");
+            }
 
             try {
                 sendTelegramMessage(sendMessage);
             } catch (Exception telegramApiException) {
-                log.error("Failed to send error message to user", telegramApiException);
+                log.error("Failed to send burst error message to user", telegramApiException);
             }
         }
     }
 
-    private void handleCommand(Update update) {
-        String command = update.getMessage().getText();
+    /**
+     * Store a channel post once as a shared training day; users forwarding it later reference that day
+     */
+    private void handleChannelPost(Update update) {
+        Message channelPost = update.getChannelPost();
+        try {
+            TrainingDay trainingDay = trainingDayService.processChannelPost(channelPost.getChatId(),
+                    channelPost.getMessageId(), channelPost.getText());
+            log.info("Stored post {} of channel {} as shared training day {}",
+                    channelPost.getMessageId(), channelPost.getChatId(), trainingDay.getId());
+        } catch (Exception e) {
+            if (spoolIfDatabaseUnavailable(List.of(update), e)) {
+                return;
+            }
+            log.error("Error processing post " + channelPost.getMessageId() + " of channel " + channelPost.getChatId(), e);
+        }
+    }
 
-        // Check for slash command to show all available commands
-        if ("/".equals(command)) {
-            showAllCommands(update);
-            return;
+    /**
+     * Re-parse an edited message and apply only the changed exercises to its stored training day
+     */
+    private void handleEditedMessage(Update update, Message message) {
+        try {
+            trainingDayService.processEditedMessage(message.getChatId(), message.getMessageId(), message.getText())
+                    .ifPresent(edit -> log.info("Applied edit of message {} in chat {} to training day {}: {} inserted, {} updated, {} deleted",
+                            message.getMessageId(), message.getChatId(), edit.trainingDay().getId(),
+                            edit.inserted(), edit.updated(), edit.deleted()));
+        } catch (Exception e) {
+            if (spoolIfDatabaseUnavailable(List.of(update), e)) {
+                return;
+            }
+            log.error("Error processing edit of message " + message.getMessageId() + " in chat " + message.getChatId(), e);
         }
+    }
 
-        // Check for partial commands and offer suggestions
-        if (command.startsWith("/")) {
-            // Check if this is exactly a known command
-            boolean isKnownCommand = commandHandlers.stream()
-                    .anyMatch(h -> h.canHandle(command));
+    /**
+     * Idempotency key of a forwarded message: the same message handled again, alone or in a burst, gets the same key
+     */
+    private static String replyKey(Message message) {
+        return "forward:" + message.getChatId() + ":" + message.getMessageId();
+    }
 
-            if (!isKnownCommand) {
-                // This might be a partial command, show suggestions
-                showCommandSuggestions(update, command);
-                return;
+    /**
+     * Send the reply stored in the outbox and confirm it. A reply that could not be sent is left to the outbox relay.
+     */
+    private void sendReply(OutboxMessage reply) {
+        SendMessage sendMessage = new SendMessage();
+        sendMessage.setChatId(reply.getChatId());
+        sendMessage.setText(reply.getText());
+        try {
+            sendTelegramMessage(sendMessage);
+        } catch (Exception e) {
+            log.warn("Failed to send reply {}, the outbox relay will retry it", reply.getId(), e);
+            try {
+                outboxService.markFailed(reply.getId(), e);
+            } catch (Exception markException) {
+                log.error("Failed to record the failure of reply {}", reply.getId(), markException);
             }
+            return;
         }
+        try {
+            outboxService.markSent(reply.getId());
+        } catch (Exception e) {
+            // The relay sends it again once its claim expires
+            log.error("Failed to confirm reply {}", reply.getId(), e);
+        }
+    }
+
+    private static ForwardedMessage forwardedMessage(Message message) {
+        if (message.getForwardFromChat() != null && message.getForwardFromChat().isChannelChat()) {
+            return new ForwardedMessage(message.getText(), message.getForwardFromChat().getId(),
+                    message.getForwardFromMessageId());
+        }
+        return ForwardedMessage.of(message.getText());
+    }
+
+    private void handleForwardedMessageDuringProgramCreation(Update update) {
+        Long userId = update.getMessage().getFrom().getId();
 
         try {
-            // Find the appropriate handler
-            CommandHandler handler = commandHandlers.stream()
-                    .filter(h -> h.canHandle(command))
-                    .findFirst()
-                    .orElse(null);
-
-            // Handle the command
-            SendMessage response;
-            if (handler != null) {
-                // Check if it's a context-aware handler and if it's available
-                if (handler instanceof ContextAwareCommandHandler contextAwareHandler) {
-                    Long userId = update.getMessage().getFrom().getId();
-                    if (!contextAwareHandler.isAvailable(userId, sessionManager)) {
-                        response = contextAwareHandler.handleUnavailable(update);
-                    } else {
-                        response = handler.handle(update);
-                    }
-                } else {
-                    response = handler.handle(update);
-                }
+            Message message = update.getMessage();
+            var session = sessionManager.getSession(userId);
+            List<TrainingDay> saved = new ArrayList<>(1);
+            outboxService.saveWithReply(replyKey(message), message.getChatId().toString(), () -> {
+                // Process the training day normally
+                TrainingDay trainingDay = trainingDayService.processForwardedMessage(userId, forwardedMessage(message));
+                saved.add(trainingDay);
+
+                return "✅ Training day added to your program! (Total: " +
+                        session.getTrainingDaysCountWith(saved) + " days)";
+            }).ifPresentOrElse(reply -> {
+                // Add it to the program creation session once committed
+                saved.forEach(session::addTrainingDay);
+                sendReply(reply);
+            }, () -> log.info("Message {} was already saved", message.getMessageId()));
+        } catch (Exception e) {
+            SendMessage sendMessage = new SendMessage();
+            sendMessage.setChatId(update.getMessage().getChatId().toString());
+            if (spoolIfDatabaseUnavailable(List.of(update), e)) {
+                sendMessage.setText(SPOOLED_TEXT);
             } else {
-                response = new SendMessage();
-                response.setChatId(update.getMessage().getChatId().toString());
-                response.setText("Unknown command. Send /help for usage instructions.");
+                log.error("Error processing forwarded message during program creation for user " + userId, e);
+                sendMessage.setText("❌ Sorry, there was an error adding this training day to your program. Please try again.");
             }
 
-            if (response != null) {
-                sendTelegramMessage(response);
+            try {
+                sendTelegramMessage(sendMessage);
+            } catch (Exception telegramApiException) {
+                log.error("Failed to send error message to user", telegramApiException);
             }
+        }
+    }
+
+    private void handleCommand(Update update) {
+        String command = update.getMessage().getText();
+
+        try {
+            executeResponses(commandResponses(update));
         } catch (Exception e) {
             log.error("Failed to handle command: {}", command, e);
 
@@ -436,29 +750,62 @@ public class FitnessTelegramBot extends TelegramLongPollingBot {
     }
 
     /**
-     * Show all available commands when user types just "/"
+     * Respond to a command message, or to the press of a button suggesting a command
+     * @return The Bot API methods to execute in response
      */
-    private void showAllCommands(Update update) {
+    private List<BotApiMethod<?>> commandResponses(Update update) {
+        String command = CommandUpdates.text(update);
+
+        // Check for slash command to show all available commands
+        if ("/".equals(command)) {
+            return List.of(allCommandsMessage(update));
+        }
+
+        CommandHandler handler = commandRoutes.resolve(command);
+
+        // Not a known command, it might be a partial one: offer suggestions
+        if (handler == null) {
+            return List.of(commandSuggestionsMessage(update, command));
+        }
+
+        CompletionStage<List<BotApiMethod<?>>> responses = handlerBulkheads.call(handler.getBulkheadGroup(),
+                CommandUpdates.chatId(update), () -> startCommand(handler, update));
+        // The chat's next update waits for this one; this is a virtual worker thread, so waiting costs nothing
+        return HandlerResponses.awaitAll(responses);
+    }
+
+    private CompletionStage<List<BotApiMethod<?>>> startCommand(CommandHandler handler, Update update) {
+        // Check if it's a context-aware handler and if it's available
+        if (handler instanceof ContextAwareCommandHandler contextAwareHandler) {
+            UserContext userContext = programService.getUserContext(CommandUpdates.from(update).getId());
+            if (!contextAwareHandler.isAvailable(userContext)) {
+                return HandlerResponses.completed(contextAwareHandler.handleUnavailable(update));
+            }
+            return contextAwareHandler.handleAsync(update, userContext);
+        }
+        return handler.handleAsync(update);
+    }
+
+    /**
+     * List all available commands when user types just "/"
+     */
+    private SendMessage allCommandsMessage(Update update) {
         SendMessage message = new SendMessage();
-        message.setChatId(update.getMessage().getChatId().toString());
+        message.setChatId(CommandUpdates.chatId(update).toString());
         message.setText("📋 Available commands:");
 
         // Create inline keyboard with all commands
         InlineKeyboardMarkup markup = createCommandKeyboard(commandRegistryService.getAllCommands());
         message.setReplyMarkup(markup);
-
-        try {
-            sendTelegramMessage(message);
-        } catch (Exception e) {
-            log.error("Failed to send command list", e);
-        }
+        return message;
     }
 
     /**
-     * Show suggestions for partial command
+     * Suggest commands for a partial command
      */
-    private void showCommandSuggestions(Update update, String partialCommand) {
-        Long userId = update.getMessage().getFrom().getId();
+    private SendMessage commandSuggestionsMessage(Update update, String partialCommand) {
+        // Shared by the suggestions, so each fact about the user is loaded at most once
+        UserContext userContext = programService.getUserContext(CommandUpdates.from(update).getId());
         List<CommandMetadata> suggestions = commandRegistryService.findCommandsByPrefix(partialCommand);
 
         // If no prefix matches, try similarity search
@@ -469,15 +816,11 @@ public class FitnessTelegramBot extends TelegramLongPollingBot {
         // Filter suggestions to only include available commands for context-aware handlers
         suggestions = suggestions.stream()
                 .filter(cmd -> {
-                    // Find the handler for this command
-                    CommandHandler handler = commandHandlers.stream()
-                            .filter(h -> h.canHandle(cmd.getCommand()))
-                            .findFirst()
-                            .orElse(null);
-                    
+                    CommandHandler handler = commandRoutes.resolve(cmd.getCommand());
+
                     // If it's a context-aware handler, check if it's available
                     if (handler instanceof ContextAwareCommandHandler contextAwareHandler) {
-                        return contextAwareHandler.isAvailable(userId, sessionManager);
+                        return contextAwareHandler.isAvailable(userContext);
                     }
                     
                     // Non-context-aware commands are always available
@@ -487,30 +830,20 @@ public class FitnessTelegramBot extends TelegramLongPollingBot {
 
         if (!suggestions.isEmpty()) {
             SendMessage message = new SendMessage();
-            message.setChatId(update.getMessage().getChatId().toString());
+            message.setChatId(CommandUpdates.chatId(update).toString());
             message.setText("❓ Did you mean one of these commands?");
 
             // Create inline keyboard with suggested commands
             InlineKeyboardMarkup markup = createCommandKeyboard(suggestions);
             message.setReplyMarkup(markup);
-
-            try {
-                sendTelegramMessage(message);
-            } catch (Exception e) {
-                log.error("Failed to send command suggestions", e);
-            }
-        } else {
-            // No suggestions, send unknown command message
-            SendMessage message = new SendMessage();
-            message.setChatId(update.getMessage().getChatId().toString());
-            message.setText("Unknown command. Send /help for usage instructions.");
-
-            try {
-                sendTelegramMessage(message);
-            } catch (Exception e) {
-                log.error("Failed to send unknown command message", e);
-            }
+            return message;
         }
+
+        // No suggestions, send unknown command message
+        SendMessage message = new SendMessage();
+        message.setChatId(CommandUpdates.chatId(update).toString());
+        message.setText("Unknown command. Send /help for usage instructions.");
+        return message;
     }
 
     /**
@@ -527,14 +860,14 @@ public class FitnessTelegramBot extends TelegramLongPollingBot {
             // First command in row
             InlineKeyboardButton button1 = new InlineKeyboardButton();
             button1.setText(commands.get(i).getCommand());
-            button1.setCallbackData("cmd:" + commands.get(i).getCommand());
+            button1.setCallbackData(CommandUpdates.SUGGESTION_PREFIX + commands.get(i).getCommand());
             row.add(button1);
 
             // Second command in row (if exists)
             if (i + 1 < commands.size()) {
                 InlineKeyboardButton button2 = new InlineKeyboardButton();
                 button2.setText(commands.get(i + 1).getCommand());
-                button2.setCallbackData("cmd:" + commands.get(i + 1).getCommand());
+                button2.setCallbackData(CommandUpdates.SUGGESTION_PREFIX + commands.get(i + 1).getCommand());
                 row.add(button2);
             }
 
@@ -545,13 +878,84 @@ public class FitnessTelegramBot extends TelegramLongPollingBot {
         return markup;
     }
 
+    /**
+     * Routes dispatched updates back into this bot under its tenant, completing webhook updates first. Handlers of the same bot are equal,
+     * which lets the dispatcher coalesce their updates into one batch.
+     */
+    private record BotUpdateHandler(FitnessTelegramBot bot) implements UpdateHandler {
+        @Override
+        public void handle(Update update) {
+            handleRecorded(List.of(update), () -> bot.handleUpdate(LazyUpdate.complete(update)));
+        }
+
+        @Override
+        public void handleBatch(List<Update> updates) {
+            handleRecorded(updates, () -> bot.handleUpdates(LazyUpdate.complete(updates)));
+        }
+
+        /**
+         * Record the updates as handled for deduplication once handled, or forget them if handling failed
+         */
+        private void handleRecorded(List<Update> updates, Runnable handling) {
+            try {
+                TenantContext.run(bot.tenantId, handling);
+            } catch (RuntimeException e) {
+                updates.forEach(update -> bot.updateDeduplicator.release(bot.botUsername, update.getUpdateId()));
+                throw e;
+            }
+            updates.forEach(update -> bot.updateDeduplicator.markHandled(bot.botUsername, update.getUpdateId()));
+        }
+    }
+
+    /**
+     * Handles a replayed spooled update under the bot's tenant and reports the outcome to the spool replayer.
+     * Every spooled update has its own handler, so spooled updates are never coalesced.
+     */
+    private record SpooledUpdateHandler(FitnessTelegramBot bot, CompletableFuture<Void> handled) implements UpdateHandler {
+        @Override
+        public void handle(Update update) {
+            try {
+                UpdateSpool.runReplaying(() -> TenantContext.run(bot.tenantId, () -> bot.handleUpdate(update)));
+                handled.complete(null);
+            } catch (RuntimeException e) {
+                handled.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Execute a batch of responses, in order within each chat
+     */
+    private void executeResponses(List<BotApiMethod<?>> responses) throws Exception {
+        ResponseBatch.execute(responses, this::executeResponse, TELEGRAM_CALLS);
+    }
+
+    private void executeResponse(BotApiMethod<?> response) throws Exception {
+        if (response instanceof SendMessage sendMessage) {
+            sendTelegramMessage(sendMessage);
+        } else {
+            send(response);
+        }
+    }
+
     /**
      * Wrapper method for sending Telegram messages to enable easier testing
      */
     protected void sendTelegramMessage(SendMessage sendMessage) throws Exception {
-        // Skip actual Telegram API calls during testing
-        if (!"true".equals(System.getProperty("test.profile"))) {
-            execute(sendMessage);
+        send(sendMessage);
+    }
+
+    /**
+     * Send a method through the outbound sender and wait until it was sent
+     */
+    private void send(BotApiMethod<?> method) throws TelegramApiException {
+        try {
+            outboundSender.send(this, method).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TelegramApiException cause) {
+                throw cause;
+            }
+            throw e;
         }
     }
 }
\ No newline at end of file
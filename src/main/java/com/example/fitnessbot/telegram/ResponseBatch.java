@@ -0,0 +1,125 @@
+package com.example.fitnessbot.telegram;
+
+import com.example.fitnessbot.telegram.outbound.OutboundSender;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Executes the ordered Bot API methods a handler responded with.
+ * Methods for the same chat are executed one after another in their order, so a reply is never overtaken by
+ * the edit that follows it. Methods for different chats, and callback answers, which belong to no chat, do not
+ * wait for each other and run in parallel, so a batch costs about as many sequential round-trips as its longest
+ * chat sequence rather than as it has methods. Requests reuse the sender's pooled keep-alive connections.
+ */
+public final class ResponseBatch {
+
+    /**
+     * Executes a single method
+     */
+    @FunctionalInterface
+    public interface MethodExecutor {
+        void execute(BotApiMethod<?> method) throws Exception;
+    }
+
+    // Group of methods that belong to no chat; each of them runs on its own
+    private static final String NO_CHAT = "";
+
+    private ResponseBatch() {
+    }
+
+    /**
+     * Execute a batch, waiting until every method was executed
+     * @param methods The methods in the order the handler returned them
+     * @param methodExecutor Executes a single method
+     * @param executor Runs the chat sequences that do not run on the calling thread
+     * @throws Exception the first failure; the other sequences still run to completion
+     */
+    public static void execute(List<BotApiMethod<?>> methods, MethodExecutor methodExecutor, Executor executor) throws Exception {
+        List<List<BotApiMethod<?>>> sequences = sequences(methods);
+        if (sequences.size() <= 1) {
+            for (List<BotApiMethod<?>> sequence : sequences) {
+                run(sequence, methodExecutor);
+            }
+            return;
+        }
+
+        List<CompletableFuture<Void>> others = new ArrayList<>();
+        for (List<BotApiMethod<?>> sequence : sequences.subList(1, sequences.size())) {
+            others.add(CompletableFuture.runAsync(() -> {
+                try {
+                    run(sequence, methodExecutor);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+        }
+        Exception failure = null;
+        try {
+            run(sequences.getFirst(), methodExecutor);
+        } catch (Exception e) {
+            failure = e;
+        }
+        for (CompletableFuture<Void> other : others) {
+            try {
+                other.join();
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof Exception cause ? cause : e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Split a batch into sequences that may run in parallel, keeping the order within each sequence
+     * @param methods The methods in the order the handler returned them
+     * @return The sequences, in the order of their first method
+     */
+    static List<List<BotApiMethod<?>>> sequences(List<BotApiMethod<?>> methods) {
+        Map<String, List<BotApiMethod<?>>> byChat = new LinkedHashMap<>();
+        List<List<BotApiMethod<?>>> sequences = new ArrayList<>();
+        for (BotApiMethod<?> method : methods) {
+            String chatId = chatOf(method);
+            if (NO_CHAT.equals(chatId)) {
+                sequences.add(List.of(method));
+                continue;
+            }
+            List<BotApiMethod<?>> sequence = byChat.get(chatId);
+            if (sequence == null) {
+                sequence = new ArrayList<>();
+                byChat.put(chatId, sequence);
+                sequences.add(sequence);
+            }
+            sequence.add(method);
+        }
+        return sequences;
+    }
+
+    /**
+     * @return The chat a method acts on, {@link #NO_CHAT} for methods of no chat,
+     *         or null for unknown methods, which are kept in order with each other
+     */
+    private static String chatOf(BotApiMethod<?> method) {
+        if (method instanceof AnswerCallbackQuery) {
+            return NO_CHAT;
+        }
+        return OutboundSender.chatOf(method);
+    }
+
+    private static void run(List<BotApiMethod<?>> sequence, MethodExecutor methodExecutor) throws Exception {
+        for (BotApiMethod<?> method : sequence) {
+            methodExecutor.execute(method);
+        }
+    }
+}
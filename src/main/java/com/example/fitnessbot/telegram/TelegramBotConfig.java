@@ -1,22 +1,154 @@
 package com.example.fitnessbot.telegram;
 
+import com.example.fitnessbot.service.UpdateOffsetService;
+import com.example.fitnessbot.telegram.cluster.ClusterPollerElection;
+import com.example.fitnessbot.telegram.cluster.RedisLease;
+import com.example.fitnessbot.telegram.cluster.StreamPublishingSession;
+import com.example.fitnessbot.telegram.cluster.UpdateStreamConsumer;
+import com.example.fitnessbot.telegram.cluster.UpdateStreams;
+import com.example.fitnessbot.telegram.dispatch.UpdateDispatcher;
+import com.example.fitnessbot.telegram.polling.AdaptiveLongPollingSession;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
-import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 @Configuration
 public class TelegramBotConfig {
 
+    private static final List<String> CHANNEL_POST_UPDATES = List.of("channel_post", "edited_channel_post");
+
+    /**
+     * Poll Telegram for updates with our own session instead of the library's DefaultBotSession
+     */
+    @Bean
+    @ConditionalOnProperty(name = "telegram.bot.mode", havingValue = "polling", matchIfMissing = true)
+    public AdaptiveLongPollingSession longPollingSession(FitnessTelegramBot fitnessTelegramBot,
+                                                         UpdateDispatcher updateDispatcher,
+                                                         UpdateOffsetService updateOffsetService,
+                                                         MeterRegistry meterRegistry,
+                                                         @Value("${telegram.bot.allowed-updates:message,callback_query}") List<String> allowedUpdates,
+                                                         @Value("${telegram.bot.channel-posts.enabled:false}") boolean channelPosts,
+                                                         @Value("${telegram.bot.polling.timeout-seconds:50}") int timeoutSeconds) {
+        // Only start polling if token and username are not empty
+        if (fitnessTelegramBot.getBotUsername() != null && !fitnessTelegramBot.getBotUsername().isEmpty()) {
+            return new AdaptiveLongPollingSession(fitnessTelegramBot, updateDispatcher, updateOffsetService,
+                    allowedUpdates(allowedUpdates, channelPosts), timeoutSeconds, meterRegistry);
+        }
+        return null;
+    }
+
+    /**
+     * Point Telegram at our webhook endpoint instead of polling for updates
+     */
     @Bean
-    public TelegramBotsApi telegramBotsApi(FitnessTelegramBot fitnessTelegramBot) throws TelegramApiException {
-        // Only register the bot if token and username are not empty
+    @ConditionalOnProperty(name = "telegram.bot.mode", havingValue = "webhook")
+    public SetWebhook telegramWebhook(FitnessTelegramBot fitnessTelegramBot,
+                                      @Value("${telegram.bot.webhook.url}") String webhookUrl,
+                                      @Value("${telegram.bot.webhook.secret-token}") String secretToken,
+                                      @Value("${telegram.bot.webhook.max-connections:40}") int maxConnections,
+                                      @Value("${telegram.bot.allowed-updates:message,callback_query}") List<String> allowedUpdates,
+                                      @Value("${telegram.bot.channel-posts.enabled:false}") boolean channelPosts)
+            throws TelegramApiException {
+        // Only register the webhook if token and username are not empty
         if (fitnessTelegramBot.getBotUsername() != null && !fitnessTelegramBot.getBotUsername().isEmpty()) {
-            TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
-            botsApi.registerBot(fitnessTelegramBot);
-            return botsApi;
+            SetWebhook setWebhook = new SetWebhook(webhookUrl);
+            setWebhook.setSecretToken(secretToken);
+            setWebhook.setMaxConnections(maxConnections);
+            setWebhook.setAllowedUpdates(allowedUpdates(allowedUpdates, channelPosts));
+            fitnessTelegramBot.execute(setWebhook);
+            return setWebhook;
         }
         return null;
     }
+
+    /**
+     * Partitioned Redis streams carrying updates from the polling leader to the workers in cluster mode
+     */
+    @Bean
+    @ConditionalOnProperty(name = "telegram.bot.mode", havingValue = "cluster")
+    public UpdateStreams updateStreams(FitnessTelegramBot fitnessTelegramBot,
+                                       StringRedisTemplate redisTemplate,
+                                       ObjectMapper objectMapper,
+                                       @Value("${telegram.cluster.partitions:16}") int partitions) {
+        return new UpdateStreams(redisTemplate, objectMapper, fitnessTelegramBot.getBotUsername(), partitions);
+    }
+
+    /**
+     * Let the replica holding the polling lease poll Telegram and publish updates to the streams
+     */
+    @Bean
+    @ConditionalOnProperty(name = "telegram.bot.mode", havingValue = "cluster")
+    public ClusterPollerElection clusterPollerElection(FitnessTelegramBot fitnessTelegramBot,
+                                                       UpdateDispatcher updateDispatcher,
+                                                       UpdateOffsetService updateOffsetService,
+                                                       UpdateStreams updateStreams,
+                                                       StringRedisTemplate redisTemplate,
+                                                       MeterRegistry meterRegistry,
+                                                       @Value("${telegram.bot.allowed-updates:message,callback_query}") List<String> allowedUpdates,
+                                                       @Value("${telegram.bot.channel-posts.enabled:false}") boolean channelPosts,
+                                                       @Value("${telegram.bot.polling.timeout-seconds:50}") int timeoutSeconds,
+                                                       @Value("${telegram.cluster.node-id:}") String nodeId,
+                                                       @Value("${telegram.cluster.lease-ttl:15s}") Duration leaseTtl) {
+        RedisLease lease = new RedisLease(redisTemplate, "tg:poller:" + fitnessTelegramBot.getBotUsername(),
+                clusterNodeId(nodeId), leaseTtl);
+        List<String> updateTypes = allowedUpdates(allowedUpdates, channelPosts);
+        return new ClusterPollerElection(lease,
+                () -> new StreamPublishingSession(fitnessTelegramBot, updateDispatcher, updateOffsetService,
+                        updateStreams, updateTypes, timeoutSeconds, meterRegistry),
+                leaseTtl, meterRegistry);
+    }
+
+    /**
+     * Read this replica's share of the update streams and handle the updates locally
+     */
+    @Bean
+    @ConditionalOnProperty(name = "telegram.bot.mode", havingValue = "cluster")
+    public UpdateStreamConsumer updateStreamConsumer(FitnessTelegramBot fitnessTelegramBot,
+                                                     UpdateDispatcher updateDispatcher,
+                                                     UpdateStreams updateStreams,
+                                                     StringRedisTemplate redisTemplate,
+                                                     MeterRegistry meterRegistry,
+                                                     @Value("${telegram.cluster.node-id:}") String nodeId,
+                                                     @Value("${telegram.cluster.lease-ttl:15s}") Duration leaseTtl,
+                                                     @Value("${telegram.cluster.read-batch-size:20}") int readBatchSize) {
+        return new UpdateStreamConsumer(fitnessTelegramBot, updateDispatcher, updateStreams, redisTemplate,
+                clusterNodeId(nodeId), leaseTtl, readBatchSize, meterRegistry);
+    }
+
+    /**
+     * Identify this replica in Redis leases; without a configured id the host name and process id are used
+     */
+    static String clusterNodeId(String configured) {
+        if (configured != null && !configured.isBlank()) {
+            return configured;
+        }
+        String hostname = System.getenv("HOSTNAME");
+        return (hostname != null && !hostname.isBlank() ? hostname : "localhost") + "-" + ProcessHandle.current().pid();
+    }
+
+    /**
+     * Add channel posts and their edits to the requested update types when coach channel ingestion is enabled
+     */
+    public static List<String> allowedUpdates(List<String> configured, boolean channelPosts) {
+        if (!channelPosts) {
+            return configured;
+        }
+        List<String> allowedUpdates = new ArrayList<>(configured);
+        for (String updateType : CHANNEL_POST_UPDATES) {
+            if (!allowedUpdates.contains(updateType)) {
+                allowedUpdates.add(updateType);
+            }
+        }
+        return allowedUpdates;
+    }
 }
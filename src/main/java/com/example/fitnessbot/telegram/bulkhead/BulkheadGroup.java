@@ -0,0 +1,28 @@
+package com.example.fitnessbot.telegram.bulkhead;
+
+/**
+ * Group of handlers sharing a bulkhead. Handlers of one group cannot use up the capacity of another,
+ * so slow database reads do not delay the static replies.
+ */
+public enum BulkheadGroup {
+    /**
+     * Replies built without touching the database, like /start, /help and /menu
+     */
+    STATIC,
+    /**
+     * Handlers reading programs and training days to show them
+     */
+    READS,
+    /**
+     * Every other handler
+     */
+    DEFAULT;
+
+    /**
+     * Get the group name used in configuration and metric tags
+     * @return The lower-case group name
+     */
+    public String tag() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.fitnessbot.telegram.bulkhead;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bulkheads isolating groups of handlers from each other. Each group runs at most a configured number of
+ * handlers at once and lets a bounded number of updates wait for a slot. An update finding the queue full,
+ * or not answered within the group's timeout, gets the group's fallback reply instead of holding up the chat.
+ * A timed-out handler keeps its slot until it completes, so a degraded database cannot start ever more reads.
+ * The handler timeout only applies to asynchronous handlers, like the reads: a synchronous handler does its work
+ * while it is started on the calling thread, so for the static and default groups the timeout bounds the wait for
+ * a slot only. They are deliberately not moved to another thread, since the default group's handlers change the
+ * chat's state and the chat's next update must not start before they are done.
+ */
+@Component
+public class HandlerBulkheads {
+
+    private static final Logger log = LoggerFactory.getLogger(HandlerBulkheads.class);
+
+    public static final String DEFAULT_FALLBACK = "⏳ This is taking longer than usual. Please try again in a moment.";
+
+    public static final Map<BulkheadGroup, Settings> DEFAULT_SETTINGS = Map.of(
+            BulkheadGroup.STATIC, new Settings(64, 256, Duration.ofSeconds(2), DEFAULT_FALLBACK),
+            BulkheadGroup.READS, new Settings(8, 32, Duration.ofSeconds(5), DEFAULT_FALLBACK),
+            BulkheadGroup.DEFAULT, new Settings(16, 64, Duration.ofSeconds(10), DEFAULT_FALLBACK));
+
+    private final Map<BulkheadGroup, Bulkhead> bulkheads = new EnumMap<>(BulkheadGroup.class);
+
+    @Autowired
+    public HandlerBulkheads(@Value("${telegram.bulkheads.static.concurrency:64}") int staticConcurrency,
+                            @Value("${telegram.bulkheads.static.queue-size:256}") int staticQueueSize,
+                            @Value("${telegram.bulkheads.static.timeout:2s}") Duration staticTimeout,
+                            @Value("${telegram.bulkheads.static.fallback:" + DEFAULT_FALLBACK + "}") String staticFallback,
+                            @Value("${telegram.bulkheads.reads.concurrency:8}") int readsConcurrency,
+                            @Value("${telegram.bulkheads.reads.queue-size:32}") int readsQueueSize,
+                            @Value("${telegram.bulkheads.reads.timeout:5s}") Duration readsTimeout,
+                            @Value("${telegram.bulkheads.reads.fallback:" + DEFAULT_FALLBACK + "}") String readsFallback,
+                            @Value("${telegram.bulkheads.default.concurrency:16}") int defaultConcurrency,
+                            @Value("${telegram.bulkheads.default.queue-size:64}") int defaultQueueSize,
+                            @Value("${telegram.bulkheads.default.timeout:10s}") Duration defaultTimeout,
+                            @Value("${telegram.bulkheads.default.fallback:" + DEFAULT_FALLBACK + "}") String defaultFallback,
+                            MeterRegistry meterRegistry) {
+        this(Map.of(BulkheadGroup.STATIC, new Settings(staticConcurrency, staticQueueSize, staticTimeout, staticFallback),
+                        BulkheadGroup.READS, new Settings(readsConcurrency, readsQueueSize, readsTimeout, readsFallback),
+                        BulkheadGroup.DEFAULT, new Settings(defaultConcurrency, defaultQueueSize, defaultTimeout, defaultFallback)),
+                meterRegistry);
+    }
+
+    public HandlerBulkheads(Map<BulkheadGroup, Settings> settings, MeterRegistry meterRegistry) {
+        for (BulkheadGroup group : BulkheadGroup.values()) {
+            bulkheads.put(group, new Bulkhead(group, settings.get(group), meterRegistry));
+        }
+    }
+
+    /**
+     * Run a handler in the bulkhead of its group. Waits on the calling thread for a free slot, for at most
+     * the group's timeout, so it should be called from a dispatcher worker.
+     * @param group The group of the handler
+     * @param chatId The chat to send the fallback reply to
+     * @param handler Starts the handler and returns the stage of its responses
+     * @return The stage of the handler's responses, or of the fallback reply if the handler was rejected or timed out
+     */
+    public CompletionStage<List<BotApiMethod<?>>> call(BulkheadGroup group, Long chatId,
+                                                       Supplier<CompletionStage<List<BotApiMethod<?>>>> handler) {
+        return bulkheads.get(group).call(chatId, handler);
+    }
+
+    /**
+     * Limits of one group
+     * @param concurrency Handlers running at once
+     * @param queueSize Updates waiting for a running slot; further ones are rejected at once
+     * @param timeout How long an update may wait for a slot and its asynchronous handler together;
+     *                a synchronous handler is only bounded in its wait for a slot
+     * @param fallback Reply sent instead when an update is rejected or times out
+     */
+    public record Settings(int concurrency, int queueSize, Duration timeout, String fallback) {
+    }
+
+    private static final class Bulkhead {
+
+        private final BulkheadGroup group;
+        private final Settings settings;
+        private final Semaphore permits;
+        private final AtomicInteger queued = new AtomicInteger();
+        private final Counter rejected;
+        private final Counter timeouts;
+
+        Bulkhead(BulkheadGroup group, Settings settings, MeterRegistry meterRegistry) {
+            this.group = group;
+            this.settings = settings;
+            this.permits = new Semaphore(settings.concurrency());
+            this.rejected = Counter.builder("telegram.handlers.bulkhead.rejected")
+                    .description("Updates answered with the fallback reply because the bulkhead queue was full")
+                    .tag("group", group.tag())
+                    .register(meterRegistry);
+            this.timeouts = Counter.builder("telegram.handlers.bulkhead.timeouts")
+                    .description("Updates answered with the fallback reply because they were not handled in time")
+                    .tag("group", group.tag())
+                    .register(meterRegistry);
+            Gauge.builder("telegram.handlers.bulkhead.active", permits, p -> settings.concurrency() - p.availablePermits())
+                    .description("Handlers running in the bulkhead")
+                    .tag("group", group.tag())
+                    .register(meterRegistry);
+            Gauge.builder("telegram.handlers.bulkhead.queued", queued, AtomicInteger::get)
+                    .description("Updates waiting for a bulkhead slot")
+                    .tag("group", group.tag())
+                    .register(meterRegistry);
+        }
+
+        CompletionStage<List<BotApiMethod<?>>> call(Long chatId, Supplier<CompletionStage<List<BotApiMethod<?>>>> handler) {
+            long deadline = System.nanoTime() + settings.timeout().toNanos();
+            if (!permits.tryAcquire()) {
+                if (queued.incrementAndGet() > settings.queueSize()) {
+                    queued.decrementAndGet();
+                    rejected.increment();
+                    log.warn("Bulkhead {} is full, sending the fallback reply to chat {}", group.tag(), chatId);
+                    return CompletableFuture.completedFuture(fallback(chatId));
+                }
+                boolean acquired;
+                try {
+                    acquired = permits.tryAcquire(settings.timeout().toNanos(), TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    acquired = false;
+                } finally {
+                    queued.decrementAndGet();
+                }
+                if (!acquired) {
+                    timeouts.increment();
+                    log.warn("No slot of bulkhead {} within {}, sending the fallback reply to chat {}",
+                            group.tag(), settings.timeout(), chatId);
+                    return CompletableFuture.completedFuture(fallback(chatId));
+                }
+            }
+
+            CompletableFuture<List<BotApiMethod<?>>> responses;
+            try {
+                responses = handler.get().toCompletableFuture();
+            } catch (RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+            responses.whenComplete((result, failure) -> permits.release());
+
+            // Time out a copy, the handler itself runs on and keeps its slot
+            return responses.copy()
+                    .orTimeout(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)
+                    .exceptionally(failure -> {
+                        Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                                ? failure.getCause() : failure;
+                        if (cause instanceof TimeoutException) {
+                            timeouts.increment();
+                            log.warn("Handler in bulkhead {} did not complete within {}, sending the fallback reply to chat {}",
+                                    group.tag(), settings.timeout(), chatId);
+                            return fallback(chatId);
+                        }
+                        throw failure instanceof CompletionException completionException
+                                ? completionException : new CompletionException(failure);
+                    });
+        }
+
+        private List<BotApiMethod<?>> fallback(Long chatId) {
+            SendMessage message = new SendMessage();
+            message.setChatId(chatId.toString());
+            message.setText(settings.fallback());
+            return List.of(message);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.fitnessbot.telegram.cluster;
+
+import com.example.fitnessbot.telegram.polling.AdaptiveLongPollingSession;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Makes sure only one replica calls getUpdates, which Telegram allows once per token.
+ * Every replica competes for a Redis lease; the holder runs a polling session and renews the lease
+ * every third of its ttl. A replica that fails to renew stops polling, and another one takes over
+ * from the persisted offset once the lease expires.
+ */
+public class ClusterPollerElection implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterPollerElection.class);
+
+    private final RedisLease lease;
+    private final Supplier<AdaptiveLongPollingSession> sessionFactory;
+    private final Duration renewInterval;
+
+    private volatile boolean running;
+    private volatile AdaptiveLongPollingSession session;
+    private Thread electionThread;
+
+    public ClusterPollerElection(RedisLease lease,
+                                 Supplier<AdaptiveLongPollingSession> sessionFactory,
+                                 Duration leaseTtl,
+                                 MeterRegistry meterRegistry) {
+        this.lease = lease;
+        this.sessionFactory = sessionFactory;
+        this.renewInterval = leaseTtl.dividedBy(3);
+        Gauge.builder("telegram.cluster.poller.leader", this, election -> election.isLeader() ? 1 : 0)
+                .description("1 while this replica holds the polling lease")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        electionThread = Thread.ofPlatform()
+                .name("telegram-poller-election")
+                .daemon()
+                .start(this::electionLoop);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (electionThread != null) {
+            electionThread.interrupt();
+            try {
+                electionThread.join(renewInterval.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        resign();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    public boolean isLeader() {
+        return session != null;
+    }
+
+    private void electionLoop() {
+        while (running) {
+            try {
+                checkLease();
+            } catch (Exception e) {
+                // Without Redis we cannot tell whether another replica took over
+                log.error("Polling lease check failed", e);
+                stopSession();
+            }
+            try {
+                Thread.sleep(renewInterval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Take the lease and start polling, or renew it and keep polling
+     */
+    synchronized void checkLease() {
+        if (!running) {
+            return;
+        }
+        if (session == null) {
+            if (lease.tryAcquire()) {
+                log.info("Acquired polling lease {}", lease.getKey());
+                AdaptiveLongPollingSession newSession = sessionFactory.get();
+                newSession.start();
+                session = newSession;
+            }
+        } else if (!lease.renew()) {
+            log.warn("Lost polling lease {}, stopping polling", lease.getKey());
+            stopSession();
+        }
+    }
+
+    private synchronized void resign() {
+        boolean wasLeader = session != null;
+        stopSession();
+        if (wasLeader) {
+            try {
+                lease.release();
+            } catch (Exception e) {
+                log.warn("Failed to release polling lease {}, it expires on its own", lease.getKey(), e);
+            }
+        }
+    }
+
+    private synchronized void stopSession() {
+        if (session != null) {
+            session.stop();
+            session = null;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.fitnessbot.telegram.cluster;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Exclusive, expiring ownership of a Redis key by one node.
+ * The holder must renew the lease well within its ttl; a node that stops renewing loses it to the next
+ * node asking for it once the key expires.
+ */
+public class RedisLease {
+
+    // Only the current holder may extend or delete the key
+    private static final RedisScript<Long> RENEW = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end",
+            Long.class);
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final String key;
+    private final String owner;
+    private final Duration ttl;
+
+    public RedisLease(StringRedisTemplate redisTemplate, String key, String owner, Duration ttl) {
+        this.redisTemplate = redisTemplate;
+        this.key = key;
+        this.owner = owner;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Take the lease if it is free, or extend it if this node already holds it
+     * @return true if this node holds the lease afterwards
+     */
+    public boolean tryAcquire() {
+        if (Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, owner, ttl))) {
+            return true;
+        }
+        return renew();
+    }
+
+    /**
+     * Extend the lease
+     * @return false if the lease expired and was taken by another node, or is not held at all
+     */
+    public boolean renew() {
+        Long renewed = redisTemplate.execute(RENEW, List.of(key), owner, String.valueOf(ttl.toMillis()));
+        return renewed != null && renewed == 1;
+    }
+
+    /**
+     * Give the lease up so another node can take it without waiting for it to expire
+     */
+    public void release() {
+        redisTemplate.execute(RELEASE, List.of(key), owner);
+    }
+
+    public String getKey() {
+        return key;
+    }
+}
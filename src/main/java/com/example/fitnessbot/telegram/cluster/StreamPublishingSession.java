@@ -0,0 +1,48 @@
+package com.example.fitnessbot.telegram.cluster;
+
+import com.example.fitnessbot.service.UpdateOffsetService;
+import com.example.fitnessbot.telegram.FitnessTelegramBot;
+import com.example.fitnessbot.telegram.dispatch.UpdateDispatcher;
+import com.example.fitnessbot.telegram.polling.AdaptiveLongPollingSession;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.List;
+
+/**
+ * Long-polling session of the elected leader in cluster mode.
+ * Instead of handling updates locally it appends them to the Redis stream of their chat's partition;
+ * an update counts as handled, and its offset is confirmed, once Redis accepted it.
+ */
+public class StreamPublishingSession extends AdaptiveLongPollingSession {
+
+    private final UpdateStreams updateStreams;
+
+    public StreamPublishingSession(FitnessTelegramBot bot,
+                                   UpdateDispatcher updateDispatcher,
+                                   UpdateOffsetService updateOffsetService,
+                                   UpdateStreams updateStreams,
+                                   List<String> allowedUpdates,
+                                   int timeoutSeconds,
+                                   MeterRegistry meterRegistry) {
+        super(bot, updateDispatcher, updateOffsetService, allowedUpdates, timeoutSeconds, meterRegistry);
+        this.updateStreams = updateStreams;
+    }
+
+    @Override
+    protected int freeRoom() {
+        // Backpressure is applied by the workers reading the streams
+        return MAX_BATCH_SIZE;
+    }
+
+    @Override
+    protected void deliver(Update update, Runnable onHandled) {
+        updateStreams.publish(update);
+        onHandled.run();
+    }
+
+    @Override
+    protected void drainDelivered() {
+        // Published updates are already durable in Redis
+    }
+}
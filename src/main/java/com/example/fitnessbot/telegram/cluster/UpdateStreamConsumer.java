@@ -0,0 +1,346 @@
+package com.example.fitnessbot.telegram.cluster;
+
+import com.example.fitnessbot.telegram.FitnessTelegramBot;
+import com.example.fitnessbot.telegram.dispatch.UpdateDispatcher;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * Worker side of cluster mode: reads the update streams and hands updates to the local dispatcher.
+ * Each partition is read by at most one replica at a time, which owns it through a Redis lease, so the
+ * updates of a chat are still handled in order. Replicas announce themselves with a heartbeat and each
+ * takes its share of the partitions, giving up extra ones when another replica joins.
+ * An entry is acknowledged only after the bot handled it, so a crashed replica's unfinished entries are
+ * handled again by the partition's next owner. A partition given up to a joining replica first stops being read
+ * and keeps its lease until every entry already handed to the dispatcher is acknowledged, so the next owner never
+ * handles a chat's updates alongside or before this replica. Only a replica that lost a lease by stalling past its
+ * ttl can still be handling entries the next owner reads again. Entries it already handled are dropped by the update
+ * ids recorded in Redis, which cluster mode always does; one it is still handling may be handled twice, though
+ * forwarded training days are still saved once through their outbox keys.
+ */
+public class UpdateStreamConsumer implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(UpdateStreamConsumer.class);
+
+    private static final long FULL_QUEUE_BACKOFF_MS = 200;
+    private static final long ERROR_BACKOFF_MS = 1_000;
+    private static final Duration READ_BLOCK = Duration.ofSeconds(2);
+
+    private final FitnessTelegramBot bot;
+    private final UpdateDispatcher updateDispatcher;
+    private final UpdateStreams updateStreams;
+    private final StringRedisTemplate redisTemplate;
+    private final IntFunction<RedisLease> partitionLeases;
+    private final String nodeId;
+    private final String nodesKey;
+    private final Duration leaseTtl;
+    private final int readBatchSize;
+
+    private final Map<Integer, RedisLease> ownedLeases = new ConcurrentHashMap<>();
+    private final Map<Integer, Thread> readers = new ConcurrentHashMap<>();
+    // Owned partitions no longer read, whose lease is released once their handed-out entries are acknowledged
+    private final Set<Integer> draining = ConcurrentHashMap.newKeySet();
+    // Entries per partition handed to the dispatcher and not acknowledged yet
+    private final Map<Integer, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+    private Thread coordinatorThread;
+
+    public UpdateStreamConsumer(FitnessTelegramBot bot,
+                                UpdateDispatcher updateDispatcher,
+                                UpdateStreams updateStreams,
+                                StringRedisTemplate redisTemplate,
+                                String nodeId,
+                                Duration leaseTtl,
+                                int readBatchSize,
+                                MeterRegistry meterRegistry) {
+        this(bot, updateDispatcher, updateStreams, redisTemplate, partition -> new RedisLease(redisTemplate,
+                updateStreams.streamKey(partition) + ":owner", nodeId, leaseTtl), nodeId, leaseTtl, readBatchSize,
+                meterRegistry);
+    }
+
+    UpdateStreamConsumer(FitnessTelegramBot bot,
+                         UpdateDispatcher updateDispatcher,
+                         UpdateStreams updateStreams,
+                         StringRedisTemplate redisTemplate,
+                         IntFunction<RedisLease> partitionLeases,
+                         String nodeId,
+                         Duration leaseTtl,
+                         int readBatchSize,
+                         MeterRegistry meterRegistry) {
+        this.bot = bot;
+        this.updateDispatcher = updateDispatcher;
+        this.updateStreams = updateStreams;
+        this.redisTemplate = redisTemplate;
+        this.partitionLeases = partitionLeases;
+        this.nodeId = nodeId;
+        this.nodesKey = "tg:nodes:" + bot.getBotUsername();
+        this.leaseTtl = leaseTtl;
+        this.readBatchSize = readBatchSize;
+        Gauge.builder("telegram.cluster.partitions.owned", ownedLeases, Map::size)
+                .description("Update stream partitions read by this replica")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        coordinatorThread = Thread.ofPlatform()
+                .name("telegram-stream-coordinator")
+                .daemon()
+                .start(this::coordinatorLoop);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (coordinatorThread != null) {
+            coordinatorThread.interrupt();
+        }
+        List<Thread> stopping = List.copyOf(readers.values());
+        stopping.forEach(Thread::interrupt);
+        for (Thread reader : stopping) {
+            try {
+                reader.join(READ_BLOCK.toMillis() + ERROR_BACKOFF_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // Acknowledge what is already queued before other replicas may take the partitions over
+        updateDispatcher.drain(updateDispatcher.getDrainTimeout());
+        for (Integer partition : Set.copyOf(ownedLeases.keySet())) {
+            releasePartition(partition);
+        }
+        try {
+            redisTemplate.opsForZSet().remove(nodesKey, nodeId);
+        } catch (Exception e) {
+            log.warn("Failed to deregister node {}", nodeId, e);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void coordinatorLoop() {
+        while (running) {
+            try {
+                rebalance();
+            } catch (Exception e) {
+                log.error("Partition rebalance failed", e);
+            }
+            try {
+                Thread.sleep(leaseTtl.dividedBy(3));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Renew owned partitions and take or give up partitions until this replica owns its share
+     */
+    synchronized void rebalance() {
+        long now = System.currentTimeMillis();
+        redisTemplate.opsForZSet().add(nodesKey, nodeId, now + leaseTtl.toMillis());
+        redisTemplate.opsForZSet().removeRangeByScore(nodesKey, Double.NEGATIVE_INFINITY, now);
+        Long liveNodes = redisTemplate.opsForZSet().zCard(nodesKey);
+        int partitions = updateStreams.getPartitions();
+        int share = (int) Math.ceil((double) partitions / Math.max(1, liveNodes == null ? 1 : liveNodes));
+
+        for (Map.Entry<Integer, RedisLease> owned : Set.copyOf(ownedLeases.entrySet())) {
+            if (!owned.getValue().renew()) {
+                log.warn("Lost stream partition {} with {} entries still being handled", owned.getKey(), inFlightCount(owned.getKey()));
+                ownedLeases.remove(owned.getKey());
+                draining.remove(owned.getKey());
+                stopReader(owned.getKey());
+            }
+        }
+        for (Integer partition : Set.copyOf(draining)) {
+            if (!readers.containsKey(partition) && inFlightCount(partition) == 0) {
+                releasePartition(partition);
+            }
+        }
+        for (Integer partition : Set.copyOf(ownedLeases.keySet())) {
+            if (readingCount() <= share) {
+                break;
+            }
+            drainPartition(partition);
+        }
+
+        // Start at a node-specific partition so that joining replicas don't all race for the same ones
+        int first = Math.floorMod(nodeId.hashCode(), partitions);
+        for (int i = 0; i < partitions && readingCount() < share && running; i++) {
+            int partition = (first + i) % partitions;
+            if (ownedLeases.containsKey(partition)) {
+                continue;
+            }
+            RedisLease lease = partitionLeases.apply(partition);
+            if (lease.tryAcquire()) {
+                ownedLeases.put(partition, lease);
+                startReader(partition);
+            }
+        }
+    }
+
+    private int readingCount() {
+        return ownedLeases.size() - draining.size();
+    }
+
+    private int inFlightCount(int partition) {
+        AtomicInteger count = inFlight.get(partition);
+        return count == null ? 0 : count.get();
+    }
+
+    private void startReader(int partition) {
+        log.info("Reading stream partition {}", partition);
+        readers.put(partition, Thread.ofVirtual()
+                .name("telegram-stream-reader-" + partition)
+                .start(() -> readLoop(partition)));
+    }
+
+    private void stopReader(int partition) {
+        Thread reader = readers.get(partition);
+        if (reader != null) {
+            reader.interrupt();
+        }
+    }
+
+    /**
+     * Stop reading a partition and give it up on a later rebalance, once its handed-out entries are acknowledged
+     */
+    private void drainPartition(int partition) {
+        if (draining.add(partition)) {
+            log.info("Giving up stream partition {} once its {} entries are handled", partition, inFlightCount(partition));
+            stopReader(partition);
+        }
+    }
+
+    private void releasePartition(int partition) {
+        stopReader(partition);
+        draining.remove(partition);
+        RedisLease lease = ownedLeases.remove(partition);
+        if (lease != null) {
+            try {
+                lease.release();
+            } catch (Exception e) {
+                log.warn("Failed to release stream partition {}, it expires on its own", partition, e);
+            }
+        }
+    }
+
+    private void readLoop(int partition) {
+        try {
+            readPartition(partition);
+        } finally {
+            readers.remove(partition, Thread.currentThread());
+        }
+    }
+
+    private void readPartition(int partition) {
+        // Entries the previous owner read but never acknowledged come first, then new ones
+        String pendingAfter = "0";
+        while (running && isReading(partition) && !Thread.currentThread().isInterrupted()) {
+            try {
+                int room = updateDispatcher.getQueueCapacity() - updateDispatcher.getPendingCount();
+                if (room <= 0) {
+                    Thread.sleep(FULL_QUEUE_BACKOFF_MS);
+                    continue;
+                }
+                if (pendingAfter != null) {
+                    updateStreams.createGroup(partition);
+                }
+                ReadOffset offset = pendingAfter != null ? ReadOffset.from(pendingAfter) : ReadOffset.lastConsumed();
+                List<MapRecord<String, Object, Object>> records = updateStreams.read(partition, offset,
+                        Math.min(room, readBatchSize), READ_BLOCK);
+                if (pendingAfter != null) {
+                    pendingAfter = records.isEmpty() ? null : records.get(records.size() - 1).getId().getValue();
+                }
+                for (MapRecord<String, Object, Object> record : records) {
+                    // Entries read but not handed out stay pending and go to the partition's next owner
+                    if (!isReading(partition)) {
+                        return;
+                    }
+                    dispatch(partition, record);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                if (!running || Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                log.error("Failed to read stream partition {}", partition, e);
+                try {
+                    Thread.sleep(ERROR_BACKOFF_MS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void dispatch(int partition, MapRecord<String, Object, Object> record) {
+        RecordId recordId = record.getId();
+        Update update;
+        try {
+            update = updateStreams.decode(record);
+        } catch (IllegalArgumentException e) {
+            // Retrying cannot fix a broken entry
+            log.error("Dropping undecodable stream entry {}", recordId, e);
+            updateStreams.acknowledge(partition, recordId);
+            return;
+        }
+        AtomicInteger count = inFlight.computeIfAbsent(partition, key -> new AtomicInteger());
+        count.incrementAndGet();
+        try {
+            bot.onUpdateReceived(update, () -> {
+                try {
+                    acknowledge(partition, recordId);
+                } finally {
+                    count.decrementAndGet();
+                }
+            });
+        } catch (RuntimeException e) {
+            count.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private boolean isReading(int partition) {
+        return ownedLeases.containsKey(partition) && !draining.contains(partition);
+    }
+
+    private void acknowledge(int partition, RecordId recordId) {
+        try {
+            updateStreams.acknowledge(partition, recordId);
+        } catch (Exception e) {
+            // The entry is read again by this partition's next reader, which drops it as a duplicate
+            // through the update id claimed in Redis
+            log.warn("Failed to acknowledge stream entry {}", recordId, e);
+        }
+    }
+
+    Set<Integer> getOwnedPartitions() {
+        return Set.copyOf(ownedLeases.keySet());
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.fitnessbot.telegram.cluster;
+
+import com.example.fitnessbot.telegram.dispatch.UpdateKeys;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Redis Streams work queue between the polling leader and the workers.
+ * Updates are partitioned by chat id into a fixed number of streams, so all updates of a chat land in
+ * the same stream in Telegram's order. Each partition is read by the consumer group {@value #GROUP}
+ * under a consumer name fixed per partition: whichever node owns the partition next picks up the entries
+ * its predecessor read but never acknowledged.
+ */
+public class UpdateStreams {
+
+    static final String GROUP = "workers";
+    private static final String FIELD_UPDATE = "update";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final String keyPrefix;
+    private final int partitions;
+
+    public UpdateStreams(StringRedisTemplate redisTemplate, ObjectMapper objectMapper, String botUsername, int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("At least one stream partition is required");
+        }
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.keyPrefix = "tg:updates:" + botUsername + ":";
+        this.partitions = partitions;
+    }
+
+    /**
+     * Get the partition all updates of the update's chat go to
+     */
+    public int partitionOf(Update update) {
+        return (int) Math.floorMod(UpdateKeys.chatKey(update), (long) partitions);
+    }
+
+    /**
+     * Append an update to the stream of its partition
+     * @return The id Redis assigned to the entry
+     */
+    public RecordId publish(Update update) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(update);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to serialize update " + update.getUpdateId(), e);
+        }
+        return redisTemplate.opsForStream().add(StreamRecords.string(Map.of(FIELD_UPDATE, json))
+                .withStreamKey(streamKey(partitionOf(update))));
+    }
+
+    /**
+     * Create the consumer group of a partition, and its stream if nothing was published yet
+     */
+    public void createGroup(int partition) {
+        byte[] key = streamKey(partition).getBytes(StandardCharsets.UTF_8);
+        try {
+            redisTemplate.execute((RedisCallback<String>) connection ->
+                    connection.streamCommands().xGroupCreate(key, GROUP, ReadOffset.from("0"), true));
+        } catch (RuntimeException e) {
+            // BUSYGROUP: another node created it first. The driver's error is wrapped without its text
+            String message = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            if (message == null || !message.startsWith("BUSYGROUP")) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Read entries of a partition as the partition's consumer
+     * @param partition The partition
+     * @param offset {@link ReadOffset#lastConsumed()} for new entries, or an entry id to re-read
+     *               unacknowledged entries after it
+     * @param count Maximum number of entries
+     * @param block How long to wait for new entries
+     */
+    public List<MapRecord<String, Object, Object>> read(int partition, ReadOffset offset, int count, Duration block) {
+        // read takes the offsets as generic varargs, which the interface method cannot declare safe
+        @SuppressWarnings("unchecked")
+        List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().read(
+                Consumer.from(GROUP, consumerName(partition)),
+                StreamReadOptions.empty().count(count).block(block),
+                StreamOffset.create(streamKey(partition), offset));
+        return records == null ? List.of() : records;
+    }
+
+    /**
+     * Mark an entry as handled and remove it, so it is neither redelivered nor kept in memory
+     */
+    public void acknowledge(int partition, RecordId recordId) {
+        String key = streamKey(partition);
+        redisTemplate.opsForStream().acknowledge(key, GROUP, recordId);
+        redisTemplate.opsForStream().delete(key, recordId);
+    }
+
+    /**
+     * Turn a stream entry back into the update it was published from
+     */
+    public Update decode(MapRecord<String, Object, Object> record) {
+        try {
+            return objectMapper.readValue((String) record.getValue().get(FIELD_UPDATE), Update.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to deserialize stream entry " + record.getId(), e);
+        }
+    }
+
+    public String streamKey(int partition) {
+        return keyPrefix + partition;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    private static String consumerName(int partition) {
+        return "p" + partition;
+    }
+}
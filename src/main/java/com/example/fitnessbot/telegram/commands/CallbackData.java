@@ -0,0 +1,150 @@
+package com.example.fitnessbot.telegram.commands;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Compact typed callback data: a short tag naming the handler, a dot, and the payload values as zigzag
+ * varints in unpadded base64url. A training day id takes a handful of characters instead of its decimal
+ * digits after a verbose prefix, which leaves room in Telegram's 64 bytes for several ids, page numbers
+ * and action codes. Data without a dot is from buttons sent before this format and is not decoded.
+ */
+public final class CallbackData {
+
+    /**
+     * Telegram's limit for callback_data, in bytes
+     */
+    public static final int MAX_LENGTH = 64;
+
+    private static final char SEPARATOR = '.';
+    private static final int MAX_TAG_LENGTH = 8;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final String tag;
+    private final long[] values;
+
+    private CallbackData(String tag, long[] values) {
+        this.tag = tag;
+        this.values = values;
+    }
+
+    /**
+     * Encode callback data
+     * @param tag Tag of the handler, up to 8 letters, digits or underscores
+     * @param values Payload values such as ids, page numbers or action codes
+     * @return The callback data for a button
+     * @throws IllegalArgumentException if the tag is invalid or the data exceeds 64 bytes
+     */
+    public static String encode(String tag, long... values) {
+        if (!isValidTag(tag)) {
+            throw new IllegalArgumentException("Invalid callback tag: " + tag);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(values.length * 2);
+        for (long value : values) {
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                bytes.write((int) ((zigzag & 0x7F) | 0x80));
+                zigzag >>>= 7;
+            }
+            bytes.write((int) zigzag);
+        }
+        String data = tag + SEPARATOR + ENCODER.encodeToString(bytes.toByteArray());
+        if (data.getBytes(StandardCharsets.UTF_8).length > MAX_LENGTH) {
+            throw new IllegalArgumentException("Callback data longer than " + MAX_LENGTH + " bytes: " + data);
+        }
+        return data;
+    }
+
+    /**
+     * Decode callback data
+     * @param data The callback data of a button press
+     * @return The decoded data, or null if it is not in this format or is malformed
+     */
+    public static CallbackData decode(String data) {
+        String tag = tagOf(data);
+        if (tag == null) {
+            return null;
+        }
+        byte[] bytes;
+        try {
+            bytes = DECODER.decode(data.substring(tag.length() + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        long[] values = new long[bytes.length];
+        int count = 0;
+        long zigzag = 0;
+        int shift = 0;
+        for (byte b : bytes) {
+            if (shift >= Long.SIZE) {
+                return null;
+            }
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                values[count++] = (zigzag >>> 1) ^ -(zigzag & 1);
+                zigzag = 0;
+                shift = 0;
+            } else {
+                shift += 7;
+            }
+        }
+        if (shift != 0) {
+            return null;
+        }
+        return new CallbackData(tag, Arrays.copyOf(values, count));
+    }
+
+    /**
+     * Get the tag of callback data without decoding its payload
+     * @return The tag, or null if the data is not in this format
+     */
+    public static String tagOf(String data) {
+        if (data == null) {
+            return null;
+        }
+        int separator = data.indexOf(SEPARATOR);
+        if (separator < 1 || separator > MAX_TAG_LENGTH) {
+            return null;
+        }
+        String tag = data.substring(0, separator);
+        return isValidTag(tag) ? tag : null;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    /**
+     * Number of payload values
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Get a payload value
+     * @param index Position of the value
+     * @return The value
+     * @throws IndexOutOfBoundsException if the payload has fewer values
+     */
+    public long getLong(int index) {
+        return values[index];
+    }
+
+    private static boolean isValidTag(String tag) {
+        if (tag == null || tag.isEmpty() || tag.length() > MAX_TAG_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < tag.length(); i++) {
+            char c = tag.charAt(i);
+            if (!(c >= 'a' && c <= 'z') && !(c >= 'A' && c <= 'Z') && !(c >= '0' && c <= '9') && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
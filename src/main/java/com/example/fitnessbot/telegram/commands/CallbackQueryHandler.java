@@ -1,9 +1,14 @@
 package com.example.fitnessbot.telegram.commands;
 
+import com.example.fitnessbot.telegram.bulkhead.BulkheadGroup;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
 /**
  * Interface for handling callback queries from inline keyboards
  */
@@ -21,4 +26,30 @@ public interface CallbackQueryHandler {
      * @return The response message
      */
     SendMessage handle(Update update);
-}
\ No newline at end of file
+
+    /**
+     * Handle the callback query without keeping the caller's thread busy while data is loaded.
+     * The default adapts {@link #handle(Update)} and runs it on the calling thread.
+     * @param update The update containing the callback query
+     * @return The Bot API methods to execute in response, in order
+     */
+    default CompletionStage<List<BotApiMethod<?>>> handleAsync(Update update) {
+        return HandlerResponses.completed(handle(update));
+    }
+
+    /**
+     * Tag of the {@link CallbackData} on this handler's buttons
+     * @return The tag, or null if the handler only recognizes its data through {@link #canHandle}
+     */
+    default String getCallbackTag() {
+        return null;
+    }
+
+    /**
+     * Bulkhead group the handler runs in
+     * @return The group, {@link BulkheadGroup#DEFAULT} unless the handler only builds static replies or only reads
+     */
+    default BulkheadGroup getBulkheadGroup() {
+        return BulkheadGroup.DEFAULT;
+    }
+}
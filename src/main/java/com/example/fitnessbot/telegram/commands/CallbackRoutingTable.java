@@ -0,0 +1,57 @@
+package com.example.fitnessbot.telegram.commands;
+
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves the handler of a button press from the tag of its {@link CallbackData}.
+ * Only data of buttons sent before typed callback data existed falls back to asking each handler.
+ */
+public final class CallbackRoutingTable {
+
+    private final List<CallbackQueryHandler> handlers;
+    private final Map<String, CallbackQueryHandler> handlersByTag = new HashMap<>();
+
+    /**
+     * @param handlers The handlers to route to
+     * @throws IllegalStateException if two handlers claim the same tag
+     */
+    public CallbackRoutingTable(List<CallbackQueryHandler> handlers) {
+        this.handlers = handlers;
+        for (CallbackQueryHandler handler : handlers) {
+            String tag = handler.getCallbackTag();
+            if (tag == null) {
+                continue;
+            }
+            CallbackQueryHandler previous = handlersByTag.putIfAbsent(tag, handler);
+            if (previous != null) {
+                throw new IllegalStateException("Callback tag " + tag + " is used by both " +
+                        previous.getClass().getSimpleName() + " and " + handler.getClass().getSimpleName());
+            }
+        }
+    }
+
+    /**
+     * Find the handler of a button press
+     * @return The handler, or null if no handler takes the callback data
+     */
+    public CallbackQueryHandler resolve(CallbackQuery callbackQuery) {
+        String data = callbackQuery.getData();
+        if (data == null) {
+            return null;
+        }
+        String tag = CallbackData.tagOf(data);
+        if (tag != null) {
+            return handlersByTag.get(tag);
+        }
+        for (CallbackQueryHandler handler : handlers) {
+            if (handler.canHandle(callbackQuery)) {
+                return handler;
+            }
+        }
+        return null;
+    }
+}
@@ -1,10 +1,13 @@
 package com.example.fitnessbot.telegram.commands;
 
 import com.example.fitnessbot.service.ProgramCreationSessionManager;
+import com.example.fitnessbot.service.UserContext;
 import org.springframework.stereotype.Component;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
+import java.util.List;
+
 /**
  * Handler for the /cancel_program command
  */
@@ -24,26 +27,26 @@ public class CancelProgramCommandHandler implements ContextAwareCommandHandler {
     }
 
     @Override
-    public boolean isAvailable(Long userId, ProgramCreationSessionManager sessionManager) {
-        return sessionManager.hasActiveSession(userId);
+    public boolean isAvailable(UserContext context) {
+        return context.hasActiveSession();
     }
 
     @Override
     public SendMessage handleUnavailable(Update update) {
         SendMessage response = new SendMessage();
-        response.setChatId(update.getMessage().getChatId().toString());
+        response.setChatId(CommandUpdates.chatId(update).toString());
         response.setText("You don't have an active program creation session to cancel.");
         return response;
     }
 
     @Override
     public SendMessage handle(Update update) {
-        Long userId = update.getMessage().getFrom().getId();
+        Long userId = CommandUpdates.from(update).getId();
 
         // Check if user has an active session
         if (!sessionManager.hasActiveSession(userId)) {
             SendMessage response = new SendMessage();
-            response.setChatId(update.getMessage().getChatId().toString());
+            response.setChatId(CommandUpdates.chatId(update).toString());
             response.setText("You don't have an active program creation session to cancel.");
             return response;
         }
@@ -52,7 +55,7 @@ public class CancelProgramCommandHandler implements ContextAwareCommandHandler {
         sessionManager.endSession(userId);
 
         SendMessage response = new SendMessage();
-        response.setChatId(update.getMessage().getChatId().toString());
+        response.setChatId(CommandUpdates.chatId(update).toString());
         response.setText("✅ Program creation cancelled.");
         return response;
     }
@@ -64,6 +67,11 @@ public class CancelProgramCommandHandler implements ContextAwareCommandHandler {
 
     @Override
     public String getCommandDescription() {
-        return "Cancel program creation";
+        return "Cancel the current program creation session";
+    }
+
+    @Override
+    public List<String> getAliases() {
+        return List.of("/cancel", "/отмена");
     }
-}
\ No newline at end of file
+}
@@ -1,8 +1,13 @@
 package com.example.fitnessbot.telegram.commands;
 
+import com.example.fitnessbot.telegram.bulkhead.BulkheadGroup;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
 /**
  * Interface for handling Telegram bot commands
  */
@@ -21,7 +26,50 @@ public interface CommandHandler {
      */
     SendMessage handle(Update update);
 
+    /**
+     * Handle the command without keeping the caller's thread busy while data is loaded.
+     * The default adapts {@link #handle(Update)} and runs it on the calling thread.
+     * @param update the Telegram update object
+     * @return The Bot API methods to execute in response, in order
+     */
+    default CompletionStage<List<BotApiMethod<?>>> handleAsync(Update update) {
+        return HandlerResponses.completed(handle(update));
+    }
+
     String getCommand();
 
+    /**
+     * Whether the command takes arguments after its name, like /create_program <name>
+     * @return true to also route "/command args" to this handler
+     */
+    default boolean acceptsArguments() {
+        return false;
+    }
+
     String getCommandDescription();
-}
\ No newline at end of file
+
+    /**
+     * Example of using the command, shown in the help
+     * @return The example, the command itself by default
+     */
+    default String getUsageExample() {
+        return getCommand();
+    }
+
+    /**
+     * Other names users may type for the command, such as shorter or localized names.
+     * They are offered as suggestions for the command and are not routed themselves.
+     * @return The aliases, each starting with "/"
+     */
+    default List<String> getAliases() {
+        return List.of();
+    }
+
+    /**
+     * Bulkhead group the handler runs in
+     * @return The group, {@link BulkheadGroup#DEFAULT} unless the handler only builds static replies or only reads
+     */
+    default BulkheadGroup getBulkheadGroup() {
+        return BulkheadGroup.DEFAULT;
+    }
+}
@@ -1,17 +1,33 @@
 package com.example.fitnessbot.telegram.commands;
 
+import java.util.List;
+
 /**
- * Metadata for a bot command including its name, description, and usage example
+ * Metadata for a bot command including its name, description, usage example and aliases
  */
 public class CommandMetadata {
     private final String command;
     private final String description;
     private final String usageExample;
+    private final List<String> aliases;
 
     public CommandMetadata(String command, String description, String usageExample) {
+        this(command, description, usageExample, List.of());
+    }
+
+    public CommandMetadata(String command, String description, String usageExample, List<String> aliases) {
         this.command = command;
         this.description = description;
         this.usageExample = usageExample;
+        this.aliases = List.copyOf(aliases);
+    }
+
+    /**
+     * Describe the command of a handler
+     */
+    public static CommandMetadata of(CommandHandler handler) {
+        return new CommandMetadata(handler.getCommand(), handler.getCommandDescription(),
+                handler.getUsageExample(), handler.getAliases());
     }
 
     public String getCommand() {
@@ -26,12 +42,17 @@ public class CommandMetadata {
         return usageExample;
     }
 
+    public List<String> getAliases() {
+        return aliases;
+    }
+
     @Override
     public String toString() {
         return "CommandMetadata{" +
                 "command='" + command + '\'' +
                 ", description='" + description + '\'' +
                 ", usageExample='" + usageExample + '\'' +
+                ", aliases=" + aliases +
                 '}';
     }
 }
\ No newline at end of file
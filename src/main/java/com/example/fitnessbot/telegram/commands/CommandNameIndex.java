@@ -0,0 +1,169 @@
+package com.example.fitnessbot.telegram.commands;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Index of command names and aliases for suggestions, case-insensitive.
+ * Prefix lookups use a sorted map. Typo lookups use a BK-tree: a child hangs off its parent by its edit
+ * distance to it, so by the triangle inequality a search only descends into children whose edge is within
+ * the search distance of the query's distance to the parent. Distances are computed row by row and given up
+ * as soon as a row exceeds what the node's children can still use, so a lookup touches a few short names
+ * however many commands and languages are indexed.
+ */
+final class CommandNameIndex {
+
+    private final NavigableMap<String, String> commandsByName = new TreeMap<>();
+    private Node root;
+
+    /**
+     * Add a name of a command. A name already taken by another command is ignored.
+     * @param name The command name or one of its aliases
+     * @param command The command the name stands for
+     */
+    void add(String name, String command) {
+        String key = normalize(name);
+        if (key.isEmpty() || commandsByName.putIfAbsent(key, command) != null) {
+            return;
+        }
+        if (root == null) {
+            root = new Node(key);
+            return;
+        }
+        Node node = root;
+        while (true) {
+            int distance = distance(key, node.name, Math.max(key.length(), node.name.length()));
+            Node child = node.child(distance);
+            if (child == null) {
+                node.addChild(distance, new Node(key));
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Find commands with a name starting with a prefix
+     * @return The commands, ordered by the matching name
+     */
+    List<String> findByPrefix(String prefix) {
+        String key = normalize(prefix);
+        Set<String> commands = new LinkedHashSet<>(commandsByName
+                .subMap(key, true, key + Character.MAX_VALUE, false)
+                .values());
+        return new ArrayList<>(commands);
+    }
+
+    /**
+     * Find commands with a name within an edit distance of the input
+     * @return The commands, closest first
+     */
+    List<String> findWithin(String input, int maxDistance) {
+        String key = normalize(input);
+        List<Match> matches = new ArrayList<>();
+        if (root != null && !key.isEmpty()) {
+            search(root, key, maxDistance, matches);
+        }
+        matches.sort(Comparator.comparingInt(Match::distance).thenComparing(Match::name));
+        Set<String> commands = new LinkedHashSet<>();
+        for (Match match : matches) {
+            commands.add(commandsByName.get(match.name()));
+        }
+        return new ArrayList<>(commands);
+    }
+
+    private static void search(Node node, String key, int maxDistance, List<Match> matches) {
+        // Children further than this can not lead to a match, nor can a larger distance to this node
+        int limit = node.maxEdge() + maxDistance;
+        int distance = distance(key, node.name, Math.max(limit, maxDistance));
+        if (distance <= maxDistance) {
+            matches.add(new Match(node.name, distance));
+        }
+        int from = Math.max(1, distance - maxDistance);
+        int to = Math.min(node.maxEdge(), distance + maxDistance);
+        for (int edge = from; edge <= to; edge++) {
+            Node child = node.child(edge);
+            if (child != null) {
+                search(child, key, maxDistance, matches);
+            }
+        }
+    }
+
+    /**
+     * Levenshtein distance of two strings
+     * @return The distance, or limit + 1 once it is known to exceed the limit
+     */
+    static int distance(String a, String b, int limit) {
+        if (Math.abs(a.length() - b.length()) > limit) {
+            return limit + 1;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1], previous[j]) + 1, previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            // Distances never decrease from one row to the next
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], limit + 1);
+    }
+
+    /**
+     * Lower-case the command name of a text, dropping a bot mention and arguments
+     */
+    private static String normalize(String text) {
+        int end = 0;
+        while (end < text.length() && text.charAt(end) != '@' && !Character.isWhitespace(text.charAt(end))) {
+            end++;
+        }
+        return text.substring(0, end).toLowerCase(Locale.ROOT);
+    }
+
+    private record Match(String name, int distance) {
+    }
+
+    private static final class Node {
+        private final String name;
+        // Children by their distance to this node; index 0 is never used, equal names are not added
+        private Node[] children = new Node[0];
+
+        private Node(String name) {
+            this.name = name;
+        }
+
+        private int maxEdge() {
+            return children.length - 1;
+        }
+
+        private Node child(int distance) {
+            return distance < children.length ? children[distance] : null;
+        }
+
+        private void addChild(int distance, Node child) {
+            if (distance >= children.length) {
+                children = Arrays.copyOf(children, distance + 1);
+            }
+            children[distance] = child;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.fitnessbot.telegram.commands;
+
+import java.util.List;
+
+/**
+ * Resolves the handler of a command message in a single hash lookup.
+ * Built once per bot from the command handlers: each handler's command is stored in an open-addressing
+ * table, and the command name of a message is hashed and compared in place, so resolving allocates nothing.
+ * "/command@BotName" resolves like "/command" when it names this bot; "/command args" resolves only to
+ * handlers that accept arguments.
+ */
+public final class CommandRoutingTable {
+
+    private final String botUsername;
+    private final String[] commands;
+    private final CommandHandler[] handlers;
+    private final int mask;
+
+    /**
+     * @param commandHandlers The handlers to route to
+     * @param botUsername Username of the bot the table is for
+     * @throws IllegalStateException if two handlers claim the same command
+     */
+    public CommandRoutingTable(List<CommandHandler> commandHandlers, String botUsername) {
+        this.botUsername = botUsername;
+        // At most half full, so that probe sequences stay short
+        int capacity = Integer.highestOneBit(Math.max(1, commandHandlers.size()) * 4 - 1) << 1;
+        this.commands = new String[capacity];
+        this.handlers = new CommandHandler[capacity];
+        this.mask = capacity - 1;
+        for (CommandHandler handler : commandHandlers) {
+            add(handler);
+        }
+    }
+
+    /**
+     * Find the handler of a command message
+     * @param text Text of the message, starting with the command
+     * @return The handler, or null if no handler takes the command, it names another bot,
+     *         or it has arguments its handler does not accept
+     */
+    public CommandHandler resolve(String text) {
+        if (text == null || text.length() < 2 || text.charAt(0) != '/') {
+            return null;
+        }
+
+        int nameEnd = text.length();
+        int hash = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '@' || Character.isWhitespace(c)) {
+                nameEnd = i;
+                break;
+            }
+            hash = 31 * hash + c;
+        }
+
+        int argumentsStart = nameEnd;
+        if (nameEnd < text.length() && text.charAt(nameEnd) == '@') {
+            int mentionEnd = nameEnd + 1;
+            while (mentionEnd < text.length() && !Character.isWhitespace(text.charAt(mentionEnd))) {
+                mentionEnd++;
+            }
+            int mentionLength = mentionEnd - nameEnd - 1;
+            if (botUsername == null || mentionLength != botUsername.length()
+                    || !text.regionMatches(true, nameEnd + 1, botUsername, 0, mentionLength)) {
+                return null;
+            }
+            argumentsStart = mentionEnd;
+        }
+
+        CommandHandler handler = find(text, nameEnd, hash);
+        if (handler == null || handler.acceptsArguments()) {
+            return handler;
+        }
+        for (int i = argumentsStart; i < text.length(); i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return null;
+            }
+        }
+        return handler;
+    }
+
+    private CommandHandler find(String text, int nameEnd, int hash) {
+        for (int slot = spread(hash) & mask; commands[slot] != null; slot = (slot + 1) & mask) {
+            String command = commands[slot];
+            if (command.length() == nameEnd && text.startsWith(command)) {
+                return handlers[slot];
+            }
+        }
+        return null;
+    }
+
+    private void add(CommandHandler handler) {
+        String command = handler.getCommand();
+        if (command == null || command.length() < 2 || command.charAt(0) != '/') {
+            throw new IllegalStateException("Invalid command " + command + " of " + handler.getClass().getSimpleName());
+        }
+        int slot = spread(command.hashCode()) & mask;
+        while (commands[slot] != null) {
+            if (commands[slot].equals(command)) {
+                throw new IllegalStateException("Command " + command + " is handled by both " +
+                        handlers[slot].getClass().getSimpleName() + " and " + handler.getClass().getSimpleName());
+            }
+            slot = (slot + 1) & mask;
+        }
+        commands[slot] = command;
+        handlers[slot] = handler;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.fitnessbot.telegram.commands;
+
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.User;
+
+/**
+ * Reads the command, chat and sender of the update that runs a command: a command message, or a press of a button
+ * suggesting the command, whose callback data carries it. Command handlers read their update through this, so
+ * a suggested command runs with the chat and user of the real button press.
+ */
+public final class CommandUpdates {
+
+    /**
+     * Prefix of the callback data of buttons suggesting a command
+     */
+    public static final String SUGGESTION_PREFIX = "cmd:";
+
+    private CommandUpdates() {
+    }
+
+    /**
+     * Check whether an update is the press of a button suggesting a command
+     * @param update The update
+     * @return true if the callback data carries a command
+     */
+    public static boolean isSuggestion(Update update) {
+        return update.hasCallbackQuery() && update.getCallbackQuery().getData() != null
+                && update.getCallbackQuery().getData().startsWith(SUGGESTION_PREFIX);
+    }
+
+    /**
+     * @param update The update running the command
+     * @return The command with its arguments, e.g. "/create_program My Plan"
+     */
+    public static String text(Update update) {
+        return isSuggestion(update)
+                ? update.getCallbackQuery().getData().substring(SUGGESTION_PREFIX.length())
+                : update.getMessage().getText();
+    }
+
+    /**
+     * @param update The update running the command
+     * @return The chat to answer in
+     */
+    public static Long chatId(Update update) {
+        return isSuggestion(update) ? update.getCallbackQuery().getMessage().getChatId() : update.getMessage().getChatId();
+    }
+
+    /**
+     * @param update The update running the command
+     * @return The user who sent the command or pressed the button
+     */
+    public static User from(Update update) {
+        return isSuggestion(update) ? update.getCallbackQuery().getFrom() : update.getMessage().getFrom();
+    }
+}
@@ -1,9 +1,13 @@
 package com.example.fitnessbot.telegram.commands;
 
-import com.example.fitnessbot.service.ProgramCreationSessionManager;
+import com.example.fitnessbot.service.UserContext;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
 /**
  * Interface for command handlers that can make decisions based on user context
  */
@@ -11,11 +15,30 @@ public interface ContextAwareCommandHandler extends CommandHandler {
     
     /**
      * Check if this command is available in the current context
-     * @param userId The user ID to check context for
-     * @param sessionManager The session manager to check for active sessions
+     * @param context The context of the user who sent the update
      * @return true if the command is available, false otherwise
      */
-    boolean isAvailable(Long userId, ProgramCreationSessionManager sessionManager);
+    boolean isAvailable(UserContext context);
+
+    /**
+     * Handle the command reusing what its availability check already loaded
+     * @param update The update that triggered the command
+     * @param context The context the availability was checked with
+     * @return The response message to send to the user
+     */
+    default SendMessage handle(Update update, UserContext context) {
+        return handle(update);
+    }
+
+    /**
+     * Asynchronous variant of {@link #handle(Update, UserContext)}; the default adapts it
+     * @param update The update that triggered the command
+     * @param context The context the availability was checked with
+     * @return The Bot API methods to execute in response, in order
+     */
+    default CompletionStage<List<BotApiMethod<?>>> handleAsync(Update update, UserContext context) {
+        return HandlerResponses.completed(handle(update, context));
+    }
     
     /**
      * Handle the command when it's not available in the current context
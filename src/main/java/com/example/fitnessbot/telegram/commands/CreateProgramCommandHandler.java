@@ -7,6 +7,8 @@ import org.springframework.stereotype.Component;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
+import java.util.List;
+
 /**
  * Handler for the /create_program command
  */
@@ -30,13 +32,13 @@ public class CreateProgramCommandHandler implements CommandHandler {
     
     @Override
     public SendMessage handle(Update update) {
-        Long userId = update.getMessage().getFrom().getId();
-        String messageText = update.getMessage().getText();
+        Long userId = CommandUpdates.from(update).getId();
+        String messageText = CommandUpdates.text(update);
         
         // Check if user already has an active session
         if (sessionManager.hasActiveSession(userId)) {
             SendMessage response = new SendMessage();
-            response.setChatId(update.getMessage().getChatId().toString());
+            response.setChatId(CommandUpdates.chatId(update).toString());
             response.setText("You already have an active program creation session. Please finish it first with /finish_program or cancel it with /cancel_program.");
             return response;
         }
@@ -56,14 +58,14 @@ public class CreateProgramCommandHandler implements CommandHandler {
             sessionManager.startSession(userId, program);
             
             SendMessage response = new SendMessage();
-            response.setChatId(update.getMessage().getChatId().toString());
+            response.setChatId(CommandUpdates.chatId(update).toString());
             response.setText("✅ Started creating program: \"" + programName + "\"\n\n" +
                           "Now forward the training day messages you want to include in this program.\n" +
                           "When you're done, send /finish_program to complete the process.");
             return response;
         } catch (Exception e) {
             SendMessage response = new SendMessage();
-            response.setChatId(update.getMessage().getChatId().toString());
+            response.setChatId(CommandUpdates.chatId(update).toString());
             response.setText("❌ Sorry, there was an error starting program creation. Please try again.");
             return response;
         }
@@ -74,8 +76,23 @@ public class CreateProgramCommandHandler implements CommandHandler {
         return COMMAND;
     }
 
+    @Override
+    public boolean acceptsArguments() {
+        return true;
+    }
+
     @Override
     public String getCommandDescription() {
-        return "Create training program";
+        return "Start creating a new workout program";
+    }
+
+    @Override
+    public String getUsageExample() {
+        return "/create_program My Workout Plan";
+    }
+
+    @Override
+    public List<String> getAliases() {
+        return List.of("/new_program", "/новая_программа");
     }
-}
\ No newline at end of file
+}
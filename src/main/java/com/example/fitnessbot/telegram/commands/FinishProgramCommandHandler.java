@@ -3,10 +3,13 @@ package com.example.fitnessbot.telegram.commands;
 import com.example.fitnessbot.model.TrainingDay;
 import com.example.fitnessbot.service.ProgramCreationSessionManager;
 import com.example.fitnessbot.service.ProgramService;
+import com.example.fitnessbot.service.UserContext;
 import org.springframework.stereotype.Component;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
+import java.util.List;
+
 /**
  * Handler for the /finish_program command
  */
@@ -29,26 +32,26 @@ public class FinishProgramCommandHandler implements ContextAwareCommandHandler {
     }
 
     @Override
-    public boolean isAvailable(Long userId, ProgramCreationSessionManager sessionManager) {
-        return sessionManager.hasActiveSession(userId);
+    public boolean isAvailable(UserContext context) {
+        return context.hasActiveSession();
     }
 
     @Override
     public SendMessage handleUnavailable(Update update) {
         SendMessage response = new SendMessage();
-        response.setChatId(update.getMessage().getChatId().toString());
+        response.setChatId(CommandUpdates.chatId(update).toString());
         response.setText("You don't have an active program creation session. Start one with /create_program <program_name>");
         return response;
     }
 
     @Override
     public SendMessage handle(Update update) {
-        Long userId = update.getMessage().getFrom().getId();
+        Long userId = CommandUpdates.from(update).getId();
 
         // Check if user has an active session
         if (!sessionManager.hasActiveSession(userId)) {
             SendMessage response = new SendMessage();
-            response.setChatId(update.getMessage().getChatId().toString());
+            response.setChatId(CommandUpdates.chatId(update).toString());
             response.setText("You don't have an active program creation session. Start one with /create_program <program_name>");
             return response;
         }
@@ -62,28 +65,26 @@ public class FinishProgramCommandHandler implements ContextAwareCommandHandler {
             // Check if any training days were added
             if (trainingDays.isEmpty()) {
                 SendMessage response = new SendMessage();
-                response.setChatId(update.getMessage().getChatId().toString());
+                response.setChatId(CommandUpdates.chatId(update).toString());
                 response.setText("⚠️ No training days were added to your program. Please forward at least one training day message before finishing.");
                 return response;
             }
 
-            // Add all training days to the program
-            int position = 1;
-            for (TrainingDay trainingDay : trainingDays) {
-                programService.addTrainingDayToProgram(program.getId(), trainingDay.getId(), position++);
-            }
+            // Add all training days to the program at once, so a failure leaves no partial program
+            programService.addTrainingDaysToProgram(program.getId(),
+                    trainingDays.stream().map(TrainingDay::getId).toList());
 
             // End the session
             sessionManager.endSession(userId);
 
             SendMessage response = new SendMessage();
-            response.setChatId(update.getMessage().getChatId().toString());
+            response.setChatId(CommandUpdates.chatId(update).toString());
             response.setText("✅ Program \"" + program.getName() + "\" created successfully!\n" +
                           "Added " + trainingDays.size() + " training days to the program.");
             return response;
         } catch (Exception e) {
             SendMessage response = new SendMessage();
-            response.setChatId(update.getMessage().getChatId().toString());
+            response.setChatId(CommandUpdates.chatId(update).toString());
             response.setText("❌ Sorry, there was an error finishing program creation. Please try again.");
             return response;
         }
@@ -96,6 +97,11 @@ public class FinishProgramCommandHandler implements ContextAwareCommandHandler {
 
     @Override
     public String getCommandDescription() {
-        return "Finish current session of programm creation";
+        return "Finish and save the current program creation session";
+    }
+
+    @Override
+    public List<String> getAliases() {
+        return List.of("/done", "/готово");
     }
-}
\ No newline at end of file
+}
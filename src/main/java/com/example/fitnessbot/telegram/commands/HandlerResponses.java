@@ -0,0 +1,68 @@
+package com.example.fitnessbot.telegram.commands;
+
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Adapts between the synchronous handler methods returning one {@link SendMessage}
+ * and the asynchronous ones completing with the list of Bot API methods to execute.
+ */
+public final class HandlerResponses {
+
+    private HandlerResponses() {
+    }
+
+    /**
+     * Wrap the response of a synchronous handler
+     * @param response The response, may be null for none
+     * @return A completed stage with the response as the only method, or with no methods
+     */
+    public static CompletionStage<List<BotApiMethod<?>>> completed(SendMessage response) {
+        return CompletableFuture.completedFuture(of(response));
+    }
+
+    /**
+     * @param response The response, may be null for none
+     * @return The response as the only method, or no methods
+     */
+    public static List<BotApiMethod<?>> of(SendMessage response) {
+        return response != null ? List.of(response) : List.of();
+    }
+
+    /**
+     * Wait for the responses of an asynchronous handler
+     * @param responses The stage of the asynchronous handler
+     * @return The Bot API methods it completed with
+     * @throws RuntimeException the failure of the handler
+     */
+    public static List<BotApiMethod<?>> awaitAll(CompletionStage<List<BotApiMethod<?>>> responses) {
+        try {
+            return responses.toCompletableFuture().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Wait for the response of an asynchronous handler, for callers of the synchronous methods
+     * @param responses The stage of the asynchronous handler
+     * @return The first message it sends, or null if it sends none
+     * @throws RuntimeException the failure of the handler
+     */
+    public static SendMessage await(CompletionStage<List<BotApiMethod<?>>> responses) {
+        for (BotApiMethod<?> method : awaitAll(responses)) {
+            if (method instanceof SendMessage message) {
+                return message;
+            }
+        }
+        return null;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.fitnessbot.telegram.commands;
 
+import com.example.fitnessbot.telegram.bulkhead.BulkheadGroup;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
@@ -29,7 +30,7 @@ public class HelpCommandHandler implements CommandHandler {
     @Override
     public SendMessage handle(Update update) {
         SendMessage sendMessage = new SendMessage();
-        sendMessage.setChatId(update.getMessage().getChatId().toString());
+        sendMessage.setChatId(CommandUpdates.chatId(update).toString());
         
         // Build help text using command registry
         StringBuilder helpText = new StringBuilder();
@@ -68,6 +69,16 @@ public class HelpCommandHandler implements CommandHandler {
 
     @Override
     public String getCommandDescription() {
-        return "Show help";
+        return "Show help information about available commands";
     }
-}
\ No newline at end of file
+
+    @Override
+    public List<String> getAliases() {
+        return List.of("/помощь");
+    }
+
+    @Override
+    public BulkheadGroup getBulkheadGroup() {
+        return BulkheadGroup.STATIC;
+    }
+}
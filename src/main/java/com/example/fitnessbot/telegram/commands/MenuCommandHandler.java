@@ -1,5 +1,6 @@
 package com.example.fitnessbot.telegram.commands;
 
+import com.example.fitnessbot.telegram.bulkhead.BulkheadGroup;
 import org.springframework.stereotype.Component;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.Update;
@@ -25,7 +26,7 @@ public class MenuCommandHandler implements CommandHandler {
     @Override
     public SendMessage handle(Update update) {
         SendMessage sendMessage = new SendMessage();
-        sendMessage.setChatId(update.getMessage().getChatId().toString());
+        sendMessage.setChatId(CommandUpdates.chatId(update).toString());
         sendMessage.setText("Welcome to Fitness Bot! Choose an option below:");
         
         // Create inline keyboard markup
@@ -68,6 +69,16 @@ public class MenuCommandHandler implements CommandHandler {
 
     @Override
     public String getCommandDescription() {
-        return "Show menu";
+        return "Show main menu with available options";
     }
-}
\ No newline at end of file
+
+    @Override
+    public List<String> getAliases() {
+        return List.of("/меню");
+    }
+
+    @Override
+    public BulkheadGroup getBulkheadGroup() {
+        return BulkheadGroup.STATIC;
+    }
+}
@@ -2,53 +2,81 @@ package com.example.fitnessbot.telegram.commands;
 
 import com.example.fitnessbot.model.Exercise;
 import com.example.fitnessbot.model.TrainingDay;
+import com.example.fitnessbot.service.AsyncDataAccess;
 import com.example.fitnessbot.service.TrainingDayService;
+import com.example.fitnessbot.telegram.bulkhead.BulkheadGroup;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
-import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
 /**
- * Handler for showing details of a specific training day
+ * Handler for showing details of a specific training day.
+ * The training day is loaded and formatted asynchronously, see {@link AsyncDataAccess}.
  */
 @Component
 public class ShowDayCommandHandler implements CallbackQueryHandler {
 
+    public static final String CALLBACK_TAG = "d";
+    // Data of buttons sent before typed callback data
+    private static final String LEGACY_PREFIX = "show_day_";
+
     private final TrainingDayService trainingDayService;
+    private final AsyncDataAccess asyncDataAccess;
 
-    public ShowDayCommandHandler(TrainingDayService trainingDayService) {
+    public ShowDayCommandHandler(TrainingDayService trainingDayService, AsyncDataAccess asyncDataAccess) {
         this.trainingDayService = trainingDayService;
+        this.asyncDataAccess = asyncDataAccess;
+    }
+
+    /**
+     * Get the callback data of a button showing a training day
+     * @param trainingDayId The training day id
+     */
+    public static String callbackData(long trainingDayId) {
+        return CallbackData.encode(CALLBACK_TAG, trainingDayId);
     }
 
     @Override
     public boolean canHandle(CallbackQuery callbackQuery) {
-        return callbackQuery.getData().startsWith("show_day_");
+        String data = callbackQuery.getData();
+        return data.startsWith(LEGACY_PREFIX) || CALLBACK_TAG.equals(CallbackData.tagOf(data));
+    }
+
+    @Override
+    public String getCallbackTag() {
+        return CALLBACK_TAG;
     }
 
-    @Transactional
     @Override
     public SendMessage handle(Update update) {
+        return HandlerResponses.await(handleAsync(update));
+    }
+
+    @Override
+    public CompletionStage<List<BotApiMethod<?>>> handleAsync(Update update) {
         CallbackQuery callbackQuery = update.getCallbackQuery();
-        String data = callbackQuery.getData();
         Long chatId = callbackQuery.getMessage().getChatId();
         Long userId = callbackQuery.getFrom().getId();
 
-        // Extract training day ID from callback data
-        Long trainingDayId;
-        try {
-            trainingDayId = Long.parseLong(data.substring("show_day_".length()));
-        } catch (NumberFormatException e) {
+        Long trainingDayId = trainingDayIdOf(callbackQuery.getData());
+        if (trainingDayId == null) {
             SendMessage errorMessage = new SendMessage();
             errorMessage.setChatId(chatId.toString());
             errorMessage.setText("Invalid training day ID.");
-            return errorMessage;
+            return HandlerResponses.completed(errorMessage);
         }
 
-        // Get training day details
-        TrainingDay trainingDay = trainingDayService.getTrainingDayById(trainingDayId);
+        // Formatting reads the exercises, so it runs in the transaction of the read
+        return asyncDataAccess.read(() -> describe(trainingDayService.getTrainingDayById(trainingDayId), chatId, userId))
+                .thenApply(HandlerResponses::of);
+    }
 
+    private SendMessage describe(TrainingDay trainingDay, Long chatId, Long userId) {
         if (trainingDay == null) {
             SendMessage errorMessage = new SendMessage();
             errorMessage.setChatId(chatId.toString());
@@ -56,8 +84,8 @@ public class ShowDayCommandHandler implements CallbackQueryHandler {
             return errorMessage;
         }
 
-        // Check if the training day belongs to the user
-        if (!trainingDay.getUser().getTelegramId().equals(userId)) {
+        // Check if the training day belongs to the user; shared channel days are visible to everyone
+        if (!trainingDay.isShared() && !trainingDay.getUser().getTelegramId().equals(userId)) {
             SendMessage errorMessage = new SendMessage();
             errorMessage.setChatId(chatId.toString());
             errorMessage.setText("You don't have permission to view this training day.");
@@ -124,4 +152,21 @@ public class ShowDayCommandHandler implements CallbackQueryHandler {
 
         return sendMessage;
     }
-}
\ No newline at end of file
+
+    private static Long trainingDayIdOf(String data) {
+        CallbackData callbackData = CallbackData.decode(data);
+        if (callbackData != null) {
+            return callbackData.size() == 1 ? callbackData.getLong(0) : null;
+        }
+        try {
+            return Long.parseLong(data.substring(LEGACY_PREFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public BulkheadGroup getBulkheadGroup() {
+        return BulkheadGroup.READS;
+    }
+}
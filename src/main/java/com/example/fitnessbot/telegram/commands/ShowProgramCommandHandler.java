@@ -2,10 +2,12 @@ package com.example.fitnessbot.telegram.commands;
 
 import com.example.fitnessbot.model.Program;
 import com.example.fitnessbot.model.ProgramTrainingDay;
-import com.example.fitnessbot.service.ProgramCreationSessionManager;
+import com.example.fitnessbot.service.AsyncDataAccess;
 import com.example.fitnessbot.service.ProgramService;
+import com.example.fitnessbot.service.UserContext;
+import com.example.fitnessbot.telegram.bulkhead.BulkheadGroup;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
@@ -13,6 +15,7 @@ import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKe
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Handler for the /show_program command
@@ -23,9 +26,11 @@ public class ShowProgramCommandHandler implements ContextAwareCommandHandler {
     public static final String COMMAND = "/show_program";
 
     private final ProgramService programService;
+    private final AsyncDataAccess asyncDataAccess;
 
-    public ShowProgramCommandHandler(ProgramService programService) {
+    public ShowProgramCommandHandler(ProgramService programService, AsyncDataAccess asyncDataAccess) {
         this.programService = programService;
+        this.asyncDataAccess = asyncDataAccess;
     }
 
     @Override
@@ -34,30 +39,48 @@ public class ShowProgramCommandHandler implements ContextAwareCommandHandler {
     }
 
     @Override
-    public boolean isAvailable(Long userId, ProgramCreationSessionManager sessionManager) {
+    public boolean isAvailable(UserContext context) {
         // Show program is available if user has an active program or active session
-        return programService.getActiveProgram(userId) != null || sessionManager.hasActiveSession(userId);
+        return context.hasActiveProgram() || context.hasActiveSession();
     }
 
     @Override
     public SendMessage handleUnavailable(Update update) {
         SendMessage sendMessage = new SendMessage();
-        sendMessage.setChatId(update.getMessage().getChatId().toString());
+        sendMessage.setChatId(CommandUpdates.chatId(update).toString());
         sendMessage.setText("You don't have an active program or program creation session. Start one with /create_program <name>");
         return sendMessage;
     }
 
-    @Transactional(readOnly = true)
     @Override
     public SendMessage handle(Update update) {
-        SendMessage sendMessage = new SendMessage();
-        sendMessage.setChatId(update.getMessage().getChatId().toString());
+        return HandlerResponses.await(handleAsync(update));
+    }
+
+    @Override
+    public CompletionStage<List<BotApiMethod<?>>> handleAsync(Update update) {
+        return handleAsync(update, programService.getUserContext(CommandUpdates.from(update).getId()));
+    }
+
+    @Override
+    public SendMessage handle(Update update, UserContext context) {
+        return HandlerResponses.await(handleAsync(update, context));
+    }
+
+    @Override
+    public CompletionStage<List<BotApiMethod<?>>> handleAsync(Update update, UserContext context) {
+        Long chatId = CommandUpdates.chatId(update);
+        // The active program id is usually known from the availability check already
+        return asyncDataAccess.read(() -> {
+            Long activeProgramId = context.getActiveProgramId();
+            return describe(activeProgramId != null ? programService.getProgramWithTrainingDays(activeProgramId) : null, chatId);
+        }).thenApply(HandlerResponses::of);
+    }
 
-        Long telegramUserId = update.getMessage().getFrom().getId();
+    private SendMessage describe(Program activeProgram, Long chatId) {
+        SendMessage sendMessage = new SendMessage();
+        sendMessage.setChatId(chatId.toString());
 
-        // Check if user has an active program
-        Program activeProgram = programService.getActiveProgram(telegramUserId);
-        
         if (activeProgram != null) {
             StringBuilder response = new StringBuilder();
             response.append("*Active Program: ").append(activeProgram.getName()).append("*\n\n");
@@ -74,7 +97,7 @@ public class ShowProgramCommandHandler implements ContextAwareCommandHandler {
                     List<InlineKeyboardButton> row = new ArrayList<>();
                     InlineKeyboardButton button = new InlineKeyboardButton();
                     button.setText(ptd.getTrainingDay().getTitle());
-                    button.setCallbackData("show_day_" + ptd.getTrainingDay().getId());
+                    button.setCallbackData(ShowDayCommandHandler.callbackData(ptd.getTrainingDay().getId()));
                     row.add(button);
                     rows.add(row);
                     
@@ -103,6 +126,16 @@ public class ShowProgramCommandHandler implements ContextAwareCommandHandler {
 
     @Override
     public String getCommandDescription() {
-        return "Show details of the current active program";
+        return "Show details of the current program being created";
+    }
+
+    @Override
+    public List<String> getAliases() {
+        return List.of("/program", "/программа");
+    }
+
+    @Override
+    public BulkheadGroup getBulkheadGroup() {
+        return BulkheadGroup.READS;
     }
-}
\ No newline at end of file
+}
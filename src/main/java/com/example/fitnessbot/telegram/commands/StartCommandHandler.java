@@ -1,5 +1,6 @@
 package com.example.fitnessbot.telegram.commands;
 
+import com.example.fitnessbot.telegram.bulkhead.BulkheadGroup;
 import org.springframework.stereotype.Component;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.Update;
@@ -25,7 +26,7 @@ public class StartCommandHandler implements CommandHandler {
     @Override
     public SendMessage handle(Update update) {
         SendMessage sendMessage = new SendMessage();
-        sendMessage.setChatId(update.getMessage().getChatId().toString());
+        sendMessage.setChatId(CommandUpdates.chatId(update).toString());
         sendMessage.setText("Welcome to Fitness Bot! Forward your workout programs to me and I'll parse and save them for you.\n\nClick the button below to open the main menu:");
         
         // Create inline keyboard with menu button
@@ -52,6 +53,11 @@ public class StartCommandHandler implements CommandHandler {
 
     @Override
     public String getCommandDescription() {
-        return "Start bot";
+        return "Start the bot and get welcome message";
     }
-}
\ No newline at end of file
+
+    @Override
+    public BulkheadGroup getBulkheadGroup() {
+        return BulkheadGroup.STATIC;
+    }
+}
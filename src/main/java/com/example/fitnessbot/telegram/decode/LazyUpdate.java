@@ -0,0 +1,52 @@
+package com.example.fitnessbot.telegram.decode;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Update decoded by {@link UpdateDecoder} with only the fields the filter, deduplicator, rate limiter and
+ * dispatcher look at. The complete update is bound from the original JSON the first time a handler needs it.
+ */
+public class LazyUpdate extends Update {
+
+    private final transient byte[] json;
+    private final transient ObjectMapper objectMapper;
+    private transient volatile Update complete;
+
+    LazyUpdate(byte[] json, ObjectMapper objectMapper) {
+        this.json = json;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Get the update with every field Telegram sent
+     * @param update A decoded update, or an update that is already complete
+     * @return The complete update
+     */
+    public static Update complete(Update update) {
+        return update instanceof LazyUpdate lazyUpdate ? lazyUpdate.complete() : update;
+    }
+
+    /**
+     * Get the updates with every field Telegram sent
+     */
+    public static List<Update> complete(List<Update> updates) {
+        return updates.stream().map(LazyUpdate::complete).toList();
+    }
+
+    private Update complete() {
+        Update result = complete;
+        if (result == null) {
+            try {
+                result = objectMapper.readValue(json, Update.class);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to bind update " + getUpdateId(), e);
+            }
+            complete = result;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.fitnessbot.telegram.decode;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.User;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Decodes webhook request bodies in a single streaming pass.
+ * Only what the stages in front of the handlers read is kept: update id, chat, sender, text, forward
+ * markers, callback data and whether a message is a service message. Entities, media, reply markup and
+ * quoted messages are skipped without being bound; handlers get them through {@link LazyUpdate#complete}.
+ */
+@Component
+public class UpdateDecoder {
+
+    // Service messages are dropped before handling; only their presence matters
+    private static final Message PRESENT_MESSAGE = new Message();
+    private static final User PRESENT_USER = new User();
+
+    private final ObjectMapper objectMapper;
+
+    public UpdateDecoder(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Decode an update
+     * @param json The update as sent by Telegram
+     * @return The update with the fields needed for dispatch
+     * @throws IOException if the body is not a JSON object
+     */
+    public LazyUpdate decode(byte[] json) throws IOException {
+        LazyUpdate update = new LazyUpdate(json, objectMapper);
+        try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+            expectObject(parser.nextToken());
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "update_id" -> update.setUpdateId(parser.getIntValue());
+                    case "message" -> update.setMessage(readMessage(parser, value));
+                    case "edited_message" -> update.setEditedMessage(readMessage(parser, value));
+                    case "channel_post" -> update.setChannelPost(readMessage(parser, value));
+                    case "edited_channel_post" -> update.setEditedChannelPost(readMessage(parser, value));
+                    case "callback_query" -> update.setCallbackQuery(readCallbackQuery(parser, value));
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        return update;
+    }
+
+    private Message readMessage(JsonParser parser, JsonToken start) throws IOException {
+        if (start == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expectObject(start);
+        Message message = new Message();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "message_id" -> message.setMessageId(parser.getIntValue());
+                case "date" -> message.setDate(parser.getIntValue());
+                case "chat" -> message.setChat(readChat(parser, value));
+                case "from" -> message.setFrom(readUser(parser, value));
+                case "text" -> message.setText(parser.getText());
+                case "forward_from" -> message.setForwardFrom(readUser(parser, value));
+                case "forward_from_chat" -> message.setForwardFromChat(readChat(parser, value));
+                case "forward_from_message_id" -> message.setForwardFromMessageId(parser.getIntValue());
+                case "new_chat_members" -> {
+                    parser.skipChildren();
+                    message.setNewChatMembers(List.of(PRESENT_USER));
+                }
+                case "left_chat_member" -> {
+                    parser.skipChildren();
+                    message.setLeftChatMember(PRESENT_USER);
+                }
+                case "pinned_message" -> {
+                    parser.skipChildren();
+                    message.setPinnedMessage(PRESENT_MESSAGE);
+                }
+                case "new_chat_title" -> message.setNewChatTitle(parser.getText());
+                case "new_chat_photo" -> {
+                    parser.skipChildren();
+                    message.setNewChatPhoto(List.of());
+                }
+                case "delete_chat_photo" -> message.setDeleteChatPhoto(parser.getBooleanValue());
+                case "group_chat_created" -> message.setGroupchatCreated(parser.getBooleanValue());
+                case "supergroup_chat_created" -> message.setSuperGroupCreated(parser.getBooleanValue());
+                case "migrate_to_chat_id" -> message.setMigrateToChatId(parser.getLongValue());
+                default -> parser.skipChildren();
+            }
+        }
+        return message;
+    }
+
+    private CallbackQuery readCallbackQuery(JsonParser parser, JsonToken start) throws IOException {
+        if (start == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expectObject(start);
+        CallbackQuery callbackQuery = new CallbackQuery();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "id" -> callbackQuery.setId(parser.getText());
+                case "from" -> callbackQuery.setFrom(readUser(parser, value));
+                case "message" -> callbackQuery.setMessage(readMessage(parser, value));
+                case "data" -> callbackQuery.setData(parser.getText());
+                default -> parser.skipChildren();
+            }
+        }
+        return callbackQuery;
+    }
+
+    private static Chat readChat(JsonParser parser, JsonToken start) throws IOException {
+        if (start == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expectObject(start);
+        Chat chat = new Chat();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "id" -> chat.setId(parser.getLongValue());
+                case "type" -> chat.setType(parser.getText());
+                default -> parser.skipChildren();
+            }
+        }
+        return chat;
+    }
+
+    private static User readUser(JsonParser parser, JsonToken start) throws IOException {
+        if (start == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expectObject(start);
+        User user = new User();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "id" -> user.setId(parser.getLongValue());
+                case "is_bot" -> user.setIsBot(parser.getBooleanValue());
+                default -> parser.skipChildren();
+            }
+        }
+        return user;
+    }
+
+    private static void expectObject(JsonToken token) throws IOException {
+        if (token != JsonToken.START_OBJECT) {
+            throw new IOException("Expected a JSON object but got " + token);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.fitnessbot.telegram.dispatch;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Assigns updates to priority lanes
+ */
+@Component
+public class UpdateClassifier {
+
+    public static final List<String> DEFAULT_INTERACTIVE_COMMANDS = List.of("/start", "/menu", "/help");
+
+    private final Set<String> interactiveCommands;
+
+    @Autowired
+    public UpdateClassifier(@Value("${telegram.dispatch.lanes.interactive.commands:/start,/menu,/help}") List<String> interactiveCommands) {
+        this.interactiveCommands = Set.copyOf(interactiveCommands);
+    }
+
+    public UpdateClassifier() {
+        this(DEFAULT_INTERACTIVE_COMMANDS);
+    }
+
+    /**
+     * Classify an update
+     * @param update The update to classify
+     * @return The lane the update should be handled on
+     */
+    public UpdateLane classify(Update update) {
+        if (update.hasCallbackQuery()) {
+            return UpdateLane.INTERACTIVE;
+        }
+        Message message = update.getMessage();
+        if (message == null || !message.hasText()) {
+            return UpdateLane.INGEST;
+        }
+        // Forwarded text is a training day to parse, even if it happens to start with a slash
+        if (message.getForwardFrom() != null || message.getForwardFromChat() != null) {
+            return UpdateLane.INGEST;
+        }
+        String text = message.getText();
+        if (!text.startsWith("/")) {
+            return UpdateLane.INGEST;
+        }
+        return interactiveCommands.contains(commandOf(text)) ? UpdateLane.INTERACTIVE : UpdateLane.COMMAND;
+    }
+
+    /**
+     * Check whether an update may be handled out of order with the other updates of its chat
+     * @param update The update to inspect
+     * @return true for the interactive commands, which neither read nor change the chat's program creation
+     *         session; false for button presses, which may finish or cancel it
+     */
+    public boolean isStateless(Update update) {
+        return !update.hasCallbackQuery() && classify(update) == UpdateLane.INTERACTIVE;
+    }
+
+    /**
+     * Get the key under which consecutive updates may be coalesced into one batch
+     * @param update The update to inspect
+     * @return The sender id for forwarded text messages, null if the update must be handled on its own
+     */
+    public Long coalesceKey(Update update) {
+        Message message = update.getMessage();
+        if (message == null || !message.hasText() || message.getFrom() == null) {
+            return null;
+        }
+        if (message.getForwardFrom() == null && message.getForwardFromChat() == null) {
+            return null;
+        }
+        return message.getFrom().getId();
+    }
+
+    private static String commandOf(String text) {
+        int end = text.length();
+        for (int i = 1; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c) || c == '@') {
+                end = i;
+                break;
+            }
+        }
+        return text.substring(0, end);
+    }
+}
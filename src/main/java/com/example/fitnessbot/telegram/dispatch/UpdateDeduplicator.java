@@ -0,0 +1,124 @@
+package com.example.fitnessbot.telegram.dispatch;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Drops updates Telegram delivers more than once (webhook retries, re-fetched polling batches)
+ * before any parsing or database work is done.
+ * Each bot has an in-memory window of recent update ids; optionally handled updates are also
+ * recorded in Redis so that several replicas don't handle the same update. Cluster mode always records them,
+ * as a stream entry may be read again by another replica.
+ * An update is recorded in Redis only once it was handled: an update admitted by a replica that crashed or
+ * stopped before handling it must still be handled when it is delivered again.
+ */
+@Component
+public class UpdateDeduplicator {
+
+    private static final Logger log = LoggerFactory.getLogger(UpdateDeduplicator.class);
+
+    private static final String REDIS_KEY_PREFIX = "tg:dedup:";
+    // Telegram keeps undelivered updates for 24 hours
+    private static final Duration REDIS_TTL = Duration.ofHours(24);
+
+    private final int windowSizeBits;
+    private final StringRedisTemplate redisTemplate;
+    private final Map<String, UpdateIdWindow> windows = new ConcurrentHashMap<>();
+    private final Counter duplicates;
+
+    @Autowired
+    public UpdateDeduplicator(@Value("${telegram.dispatch.dedup.window-size-bits:16}") int windowSizeBits,
+                              @Value("${telegram.dispatch.dedup.redis-enabled:false}") boolean redisEnabled,
+                              @Value("${telegram.bot.mode:polling}") String mode,
+                              ObjectProvider<StringRedisTemplate> redisTemplate,
+                              MeterRegistry meterRegistry) {
+        this(windowSizeBits, redisEnabled || "cluster".equals(mode) ? redisTemplate.getObject() : null, meterRegistry);
+    }
+
+    public UpdateDeduplicator(int windowSizeBits, StringRedisTemplate redisTemplate, MeterRegistry meterRegistry) {
+        this.windowSizeBits = windowSizeBits;
+        this.redisTemplate = redisTemplate;
+        this.duplicates = Counter.builder("telegram.updates.duplicates")
+                .description("Redelivered updates dropped before dispatch")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Check whether an update was already received by the given bot or handled by any replica,
+     * and remember it in this replica if not
+     * @param botUsername Username of the receiving bot
+     * @param updateId The update id
+     * @return true if the update is a duplicate and must be dropped
+     */
+    public boolean isDuplicate(String botUsername, Integer updateId) {
+        if (updateId == null) {
+            return false;
+        }
+
+        UpdateIdWindow window = windows.computeIfAbsent(botUsername, key -> new UpdateIdWindow(windowSizeBits));
+        boolean firstSeen = window.markSeen(updateId) && !handledInRedis(botUsername, updateId);
+        if (!firstSeen) {
+            duplicates.increment();
+        }
+        return !firstSeen;
+    }
+
+    /**
+     * Record that an update was handled, so other replicas drop it when it is delivered again
+     * @param botUsername Username of the receiving bot
+     * @param updateId The update id
+     */
+    public void markHandled(String botUsername, Integer updateId) {
+        if (updateId == null || redisTemplate == null) {
+            return;
+        }
+        try {
+            redisTemplate.opsForValue().set(redisKey(botUsername, updateId), "1", REDIS_TTL);
+        } catch (Exception e) {
+            log.warn("Failed to record update {} as handled in Redis", updateId, e);
+        }
+    }
+
+    /**
+     * Forget an update that was refused or failed, so its redelivery is not treated as a duplicate
+     * @param botUsername Username of the receiving bot
+     * @param updateId The update id
+     */
+    public void release(String botUsername, Integer updateId) {
+        if (updateId == null) {
+            return;
+        }
+        UpdateIdWindow window = windows.get(botUsername);
+        if (window != null) {
+            window.unmark(updateId);
+        }
+    }
+
+    private boolean handledInRedis(String botUsername, int updateId) {
+        if (redisTemplate == null) {
+            return false;
+        }
+        try {
+            return Boolean.TRUE.equals(redisTemplate.hasKey(redisKey(botUsername, updateId)));
+        } catch (Exception e) {
+            // Handling an update twice is better than losing it while Redis is unavailable
+            log.warn("Failed to check update {} in Redis, handling it anyway", updateId, e);
+            return false;
+        }
+    }
+
+    private static String redisKey(String botUsername, int updateId) {
+        return REDIS_KEY_PREFIX + botUsername + ":" + updateId;
+    }
+}
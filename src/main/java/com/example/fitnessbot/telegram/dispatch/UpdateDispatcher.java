@@ -0,0 +1,431 @@
+package com.example.fitnessbot.telegram.dispatch;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands updates off the polling thread to virtual-thread workers.
+ * Updates of the same chat are handled strictly one after another in arrival order,
+ * updates of different chats are handled in parallel.
+ * Updates are classified into priority lanes, and every lane has its own concurrency limit, so cheap updates
+ * of one chat never wait for permits held by another chat's bulk ingestion. Within a chat the order is kept:
+ * only the stateless interactive commands get a queue of their own, since button presses like cancel_program
+ * or a suggested /finish_program must run after the forwarded days queued before them.
+ * A burst of forwarded messages from one sender is coalesced and handed to the handler as one batch.
+ * The total number of pending updates is bounded by the configured queue capacity.
+ * On shutdown intake is closed and queued updates are drained within a deadline.
+ */
+@Component
+public class UpdateDispatcher implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(UpdateDispatcher.class);
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+    public static final Duration DEFAULT_DRAIN_TIMEOUT = Duration.ofSeconds(20);
+    // Stops after the polling session, which has the default phase, so intake is closed first
+    public static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 100;
+    public static final Map<UpdateLane, LaneSettings> DEFAULT_LANE_SETTINGS = Map.of(
+            UpdateLane.INTERACTIVE, new LaneSettings(64, Duration.ofMillis(300)),
+            UpdateLane.COMMAND, new LaneSettings(32, Duration.ofSeconds(1)),
+            UpdateLane.INGEST, new LaneSettings(8, Duration.ofSeconds(5)));
+    public static final Coalescing NO_COALESCING = new Coalescing(Duration.ZERO, 1);
+
+    private final Executor executor;
+    private final int queueCapacity;
+    private final Duration drainTimeout;
+    private final UpdateClassifier classifier;
+    // Maps chat, and whether its updates are stateless, to the mailbox holding its not yet handled updates
+    private final Map<MailboxKey, ChatMailbox> mailboxes = new ConcurrentHashMap<>();
+    private final Map<UpdateLane, Semaphore> lanePermits = new EnumMap<>(UpdateLane.class);
+    private final Map<UpdateLane, Timer> laneLatency = new EnumMap<>(UpdateLane.class);
+    private final Coalescing coalescing;
+    private final DistributionSummary coalescedBatchSize;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Timer chatLag;
+    private final Timer handleTime;
+    private final Counter rejected;
+    private final Timer drainTime;
+    private final Counter drainDropped;
+
+    private volatile boolean accepting = true;
+    private volatile boolean running;
+
+    @Autowired
+    public UpdateDispatcher(MeterRegistry meterRegistry,
+                            UpdateClassifier classifier,
+                            @Value("${telegram.dispatch.queue-capacity:" + DEFAULT_QUEUE_CAPACITY + "}") int queueCapacity,
+                            @Value("${telegram.dispatch.shutdown.drain-timeout:20s}") Duration drainTimeout,
+                            @Value("${telegram.dispatch.lanes.interactive.concurrency:64}") int interactiveConcurrency,
+                            @Value("${telegram.dispatch.lanes.interactive.slo:300ms}") Duration interactiveSlo,
+                            @Value("${telegram.dispatch.lanes.command.concurrency:32}") int commandConcurrency,
+                            @Value("${telegram.dispatch.lanes.command.slo:1s}") Duration commandSlo,
+                            @Value("${telegram.dispatch.lanes.ingest.concurrency:8}") int ingestConcurrency,
+                            @Value("${telegram.dispatch.lanes.ingest.slo:5s}") Duration ingestSlo,
+                            @Value("${telegram.dispatch.coalesce.window:500ms}") Duration coalesceWindow,
+                            @Value("${telegram.dispatch.coalesce.max-batch:20}") int coalesceMaxBatch) {
+        this(Executors.newVirtualThreadPerTaskExecutor(), queueCapacity, drainTimeout, classifier,
+                Map.of(UpdateLane.INTERACTIVE, new LaneSettings(interactiveConcurrency, interactiveSlo),
+                        UpdateLane.COMMAND, new LaneSettings(commandConcurrency, commandSlo),
+                        UpdateLane.INGEST, new LaneSettings(ingestConcurrency, ingestSlo)),
+                new Coalescing(coalesceWindow, coalesceMaxBatch), meterRegistry);
+    }
+
+    public UpdateDispatcher(Executor executor, MeterRegistry meterRegistry) {
+        this(executor, DEFAULT_QUEUE_CAPACITY, meterRegistry);
+    }
+
+    public UpdateDispatcher(Executor executor, int queueCapacity, MeterRegistry meterRegistry) {
+        this(executor, queueCapacity, DEFAULT_DRAIN_TIMEOUT, meterRegistry);
+    }
+
+    public UpdateDispatcher(Executor executor, int queueCapacity, Duration drainTimeout, MeterRegistry meterRegistry) {
+        this(executor, queueCapacity, drainTimeout, new UpdateClassifier(), DEFAULT_LANE_SETTINGS, NO_COALESCING,
+                meterRegistry);
+    }
+
+    public UpdateDispatcher(Executor executor, int queueCapacity, Duration drainTimeout, UpdateClassifier classifier,
+                            Map<UpdateLane, LaneSettings> laneSettings, Coalescing coalescing,
+                            MeterRegistry meterRegistry) {
+        this.executor = executor;
+        this.queueCapacity = queueCapacity;
+        this.drainTimeout = drainTimeout;
+        this.classifier = classifier;
+        this.coalescing = coalescing;
+        this.coalescedBatchSize = DistributionSummary.builder("telegram.dispatch.coalesced.batch.size")
+                .description("Number of updates handed to a handler as one coalesced batch")
+                .register(meterRegistry);
+        for (UpdateLane lane : UpdateLane.values()) {
+            LaneSettings settings = laneSettings.get(lane);
+            lanePermits.put(lane, new Semaphore(settings.concurrency()));
+            laneLatency.put(lane, Timer.builder("telegram.dispatch.lane.latency")
+                    .description("Time from accepting an update until it was handled")
+                    .tag("lane", lane.tag())
+                    .serviceLevelObjectives(settings.slo())
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry));
+        }
+        this.chatLag = Timer.builder("telegram.dispatch.chat.lag")
+                .description("Time an update waits behind earlier updates of the same chat")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.handleTime = Timer.builder("telegram.dispatch.handle")
+                .description("Time spent handling a single update")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("telegram.dispatch.rejected")
+                .description("Updates refused because the dispatch queue was full or closed")
+                .register(meterRegistry);
+        this.drainTime = Timer.builder("telegram.dispatch.drain.time")
+                .description("Time spent draining queued updates on shutdown")
+                .register(meterRegistry);
+        this.drainDropped = Counter.builder("telegram.dispatch.drain.dropped")
+                .description("Updates still pending when the shutdown drain deadline passed")
+                .register(meterRegistry);
+        Gauge.builder("telegram.dispatch.queue.depth", pending, AtomicInteger::get)
+                .description("Updates accepted but not yet handled")
+                .register(meterRegistry);
+        Gauge.builder("telegram.dispatch.chats.active", mailboxes, Map::size)
+                .description("Chat mailboxes with queued or running updates")
+                .register(meterRegistry);
+        Gauge.builder("telegram.dispatch.chat.backlog.max", this, UpdateDispatcher::maxChatBacklog)
+                .description("Largest number of queued updates for a single chat")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queue an update for handling on a worker thread, regardless of the queue capacity.
+     * Used by the polling session, which already limits how much it fetches.
+     * @param update The update to handle
+     * @param handler The handler to run for the update
+     */
+    public void dispatch(Update update, UpdateHandler handler) {
+        dispatch(update, handler, null);
+    }
+
+    /**
+     * Queue an update like {@link #dispatch(Update, UpdateHandler)} and report when it has been handled
+     * @param update The update to handle
+     * @param handler The handler to run for the update
+     * @param onHandled Called after the handler finished or failed, may be null
+     */
+    public void dispatch(Update update, UpdateHandler handler, Runnable onHandled) {
+        pending.incrementAndGet();
+        enqueue(update, handler, onHandled);
+    }
+
+    /**
+     * Queue an update for handling on a worker thread if the queue has room
+     * @param update The update to handle
+     * @param handler The handler to run for the update
+     * @return true if the update was queued, false if the queue is full
+     */
+    public boolean tryDispatch(Update update, UpdateHandler handler) {
+        int current;
+        do {
+            current = pending.get();
+            if (!accepting || current >= queueCapacity) {
+                rejected.increment();
+                return false;
+            }
+        } while (!pending.compareAndSet(current, current + 1));
+
+        enqueue(update, handler, null);
+        return true;
+    }
+
+    private void enqueue(Update update, UpdateHandler handler, Runnable onHandled) {
+        UpdateLane lane = classifier.classify(update);
+        // Everything touching the session shares one queue per chat, so e.g. /finish_program runs after the forwarded days
+        MailboxKey key = new MailboxKey(UpdateKeys.chatKey(update), classifier.isStateless(update));
+        Long coalesceKey = coalescing.enabled() ? classifier.coalesceKey(update) : null;
+        DispatchTask task = new DispatchTask(update, handler, onHandled, lane, coalesceKey, System.nanoTime());
+
+        while (true) {
+            ChatMailbox mailbox = mailboxes.computeIfAbsent(key, ChatMailbox::new);
+            boolean startWorker;
+            synchronized (mailbox) {
+                // The worker retires an empty mailbox; a retired one must not receive tasks
+                if (mailbox.retired) {
+                    continue;
+                }
+                mailbox.queue.add(task);
+                startWorker = !mailbox.running;
+                mailbox.running = true;
+            }
+            if (startWorker) {
+                executor.execute(() -> drainMailbox(mailbox));
+            }
+            return;
+        }
+    }
+
+    /**
+     * Get the number of updates that were accepted but not yet handled
+     * @return The number of pending updates
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Get the maximum number of pending updates accepted by {@link #tryDispatch}
+     * @return The queue capacity
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    private void drainMailbox(ChatMailbox mailbox) {
+        while (true) {
+            DispatchTask task;
+            synchronized (mailbox) {
+                task = mailbox.queue.poll();
+                if (task == null) {
+                    mailbox.running = false;
+                    mailbox.retired = true;
+                    mailboxes.remove(mailbox.key, mailbox);
+                    return;
+                }
+            }
+            run(task.coalesceKey() == null ? List.of(task) : collectBurst(mailbox, task));
+        }
+    }
+
+    /**
+     * Wait until the coalescing window of the first task has passed, then take the run of queued
+     * tasks that can be handled together with it
+     */
+    private List<DispatchTask> collectBurst(ChatMailbox mailbox, DispatchTask first) {
+        long remaining = first.enqueuedAt() + coalescing.window().toNanos() - System.nanoTime();
+        if (remaining > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        List<DispatchTask> burst = new ArrayList<>();
+        burst.add(first);
+        synchronized (mailbox) {
+            while (burst.size() < coalescing.maxBatch()) {
+                DispatchTask next = mailbox.queue.peek();
+                if (next == null || !first.coalescesWith(next)) {
+                    break;
+                }
+                burst.add(mailbox.queue.poll());
+            }
+        }
+        return burst;
+    }
+
+    private void run(List<DispatchTask> tasks) {
+        DispatchTask first = tasks.get(0);
+        Semaphore permits = lanePermits.get(first.lane());
+        permits.acquireUninterruptibly();
+        long startedAt = System.nanoTime();
+        for (DispatchTask task : tasks) {
+            chatLag.record(startedAt - task.enqueuedAt(), TimeUnit.NANOSECONDS);
+        }
+        try {
+            if (tasks.size() == 1) {
+                first.handler().handle(first.update());
+            } else {
+                coalescedBatchSize.record(tasks.size());
+                first.handler().handleBatch(tasks.stream().map(DispatchTask::update).toList());
+            }
+        } catch (Exception e) {
+            log.error("Unhandled error while processing update {}", first.update().getUpdateId(), e);
+        } finally {
+            permits.release();
+            long finishedAt = System.nanoTime();
+            handleTime.record(finishedAt - startedAt, TimeUnit.NANOSECONDS);
+            for (DispatchTask task : tasks) {
+                laneLatency.get(task.lane()).record(finishedAt - task.enqueuedAt(), TimeUnit.NANOSECONDS);
+                if (task.onHandled() != null) {
+                    task.onHandled().run();
+                }
+            }
+            pending.addAndGet(-tasks.size());
+        }
+    }
+
+    private double maxChatBacklog() {
+        int max = 0;
+        for (ChatMailbox mailbox : mailboxes.values()) {
+            synchronized (mailbox) {
+                max = Math.max(max, mailbox.queue.size());
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Stop accepting webhook updates and wait until all queued and running updates are handled
+     * @param timeout How long to wait at most
+     * @return true if everything was handled, false if updates were still pending at the deadline
+     */
+    public boolean drain(Duration timeout) {
+        accepting = false;
+        long startedAt = System.nanoTime();
+        long deadline = startedAt + timeout.toNanos();
+        try {
+            while (pending.get() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drainTime.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+
+        int left = pending.get();
+        if (left > 0) {
+            drainDropped.increment(left);
+            log.warn("Shutdown drain deadline passed with {} updates still pending", left);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get the configured shutdown drain deadline
+     * @return The drain timeout
+     */
+    public Duration getDrainTimeout() {
+        return drainTimeout;
+    }
+
+    @Override
+    public void start() {
+        accepting = true;
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (pending.get() > 0 || accepting) {
+            drain(drainTimeout);
+        }
+        running = false;
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    /**
+     * Concurrency limit and latency objective of a lane
+     * @param concurrency Maximum number of updates of the lane handled at the same time
+     * @param slo Latency objective, exported as a histogram bucket of the lane latency timer
+     */
+    public record LaneSettings(int concurrency, Duration slo) {
+    }
+
+    /**
+     * How forwarded-message bursts are coalesced
+     * @param window How long the first update of a burst waits for the rest
+     * @param maxBatch Maximum number of updates handed over as one batch
+     */
+    public record Coalescing(Duration window, int maxBatch) {
+        boolean enabled() {
+            return maxBatch > 1;
+        }
+    }
+
+    private record DispatchTask(Update update, UpdateHandler handler, Runnable onHandled, UpdateLane lane,
+                                Long coalesceKey, long enqueuedAt) {
+        boolean coalescesWith(DispatchTask next) {
+            return coalesceKey != null && coalesceKey.equals(next.coalesceKey) && Objects.equals(handler, next.handler);
+        }
+    }
+
+    private record MailboxKey(long chatId, boolean stateless) {
+    }
+
+    /**
+     * Queue of updates of a single chat, drained by at most one worker at a time
+     */
+    private static final class ChatMailbox {
+        private final MailboxKey key;
+        private final ArrayDeque<DispatchTask> queue = new ArrayDeque<>();
+        private boolean running;
+        private boolean retired;
+
+        private ChatMailbox(MailboxKey key) {
+            this.key = key;
+        }
+    }
+}
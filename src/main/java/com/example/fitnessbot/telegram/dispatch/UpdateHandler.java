@@ -0,0 +1,28 @@
+package com.example.fitnessbot.telegram.dispatch;
+
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.List;
+
+/**
+ * Callback invoked by the {@link UpdateDispatcher} on a worker thread for each dispatched update
+ */
+@FunctionalInterface
+public interface UpdateHandler {
+    /**
+     * Handle a single update
+     * @param update The update to handle
+     */
+    void handle(Update update);
+
+    /**
+     * Handle a burst of coalesced updates of one chat and sender, in arrival order.
+     * Handlers that can process a burst more cheaply than one by one override this.
+     * @param updates The updates to handle
+     */
+    default void handleBatch(List<Update> updates) {
+        for (Update update : updates) {
+            handle(update);
+        }
+    }
+}
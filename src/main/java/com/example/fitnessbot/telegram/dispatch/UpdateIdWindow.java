@@ -0,0 +1,84 @@
+package com.example.fitnessbot.telegram.dispatch;
+
+import java.util.Arrays;
+
+/**
+ * Sliding window of recently seen update ids, stored as a ring-buffer bitmap.
+ * Telegram assigns increasing update ids, so remembering the last {@code size} ids
+ * is enough to recognise webhook retries and re-fetched polling batches.
+ */
+public class UpdateIdWindow {
+
+    private final long[] words;
+    private final long size;
+    private long highest = Long.MIN_VALUE;
+
+    /**
+     * @param sizeBits log2 of the number of ids the window remembers
+     */
+    public UpdateIdWindow(int sizeBits) {
+        if (sizeBits < 6 || sizeBits > 30) {
+            throw new IllegalArgumentException("sizeBits must be between 6 and 30");
+        }
+        this.size = 1L << sizeBits;
+        this.words = new long[(int) (size >>> 6)];
+    }
+
+    /**
+     * Record an update id
+     * @param updateId The update id
+     * @return true if the id was not seen before, false for a duplicate
+     */
+    public synchronized boolean markSeen(long updateId) {
+        if (highest == Long.MIN_VALUE || updateId - highest >= size || highest - updateId >= size) {
+            // First id, a jump past the whole window, or an id far behind it.
+            // Telegram picks a random new sequence after a week without updates,
+            // so an id that old is treated as a restarted sequence, not a retry.
+            Arrays.fill(words, 0L);
+            highest = updateId;
+            set(updateId);
+            return true;
+        }
+
+        if (updateId > highest) {
+            // Slots between the old and the new highest id still hold bits from a lap ago
+            for (long id = highest + 1; id < updateId; id++) {
+                clear(id);
+            }
+            highest = updateId;
+            set(updateId);
+            return true;
+        }
+
+        int index = wordIndex(updateId);
+        long mask = 1L << updateId;
+        if ((words[index] & mask) != 0) {
+            return false;
+        }
+        words[index] |= mask;
+        return true;
+    }
+
+    /**
+     * Forget an update id, e.g. because the update was refused and will be delivered again
+     * @param updateId The update id
+     */
+    public synchronized void unmark(long updateId) {
+        if (highest != Long.MIN_VALUE && updateId <= highest && highest - updateId < size) {
+            clear(updateId);
+        }
+    }
+
+    private void set(long updateId) {
+        words[wordIndex(updateId)] |= 1L << updateId;
+    }
+
+    private void clear(long updateId) {
+        words[wordIndex(updateId)] &= ~(1L << updateId);
+    }
+
+    private int wordIndex(long updateId) {
+        // Shifts by a long use only the low 6 bits, which selects the bit inside the word
+        return (int) ((updateId & (size - 1)) >>> 6);
+    }
+}
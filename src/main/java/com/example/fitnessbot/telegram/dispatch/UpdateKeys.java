@@ -0,0 +1,47 @@
+package com.example.fitnessbot.telegram.dispatch;
+
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+/**
+ * Extracts the ordering key (chat id, or user id when there is no chat) from an update
+ */
+public final class UpdateKeys {
+
+    /**
+     * Key used for updates that carry neither a chat nor a user
+     */
+    public static final long NO_CHAT = 0L;
+
+    private UpdateKeys() {
+    }
+
+    /**
+     * Get the chat id the update belongs to
+     * @param update The update
+     * @return The chat id, the sender id when the update has no chat, or {@link #NO_CHAT}
+     */
+    public static long chatKey(Update update) {
+        if (update.hasMessage()) {
+            return update.getMessage().getChatId();
+        }
+        if (update.hasCallbackQuery()) {
+            var callbackQuery = update.getCallbackQuery();
+            if (callbackQuery.getMessage() != null) {
+                return callbackQuery.getMessage().getChatId();
+            }
+            if (callbackQuery.getFrom() != null) {
+                return callbackQuery.getFrom().getId();
+            }
+        }
+        if (update.hasEditedMessage()) {
+            return update.getEditedMessage().getChatId();
+        }
+        if (update.hasChannelPost()) {
+            return update.getChannelPost().getChatId();
+        }
+        if (update.hasEditedChannelPost()) {
+            return update.getEditedChannelPost().getChatId();
+        }
+        return NO_CHAT;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.fitnessbot.telegram.dispatch;
+
+/**
+ * Priority lane an update is scheduled on. Each lane has its own concurrency limit and latency metrics.
+ */
+public enum UpdateLane {
+    /**
+     * Button presses and cheap commands a user is actively waiting for
+     */
+    INTERACTIVE,
+    /**
+     * Other commands
+     */
+    COMMAND,
+    /**
+     * Forwarded training days and other bulk text that is parsed and persisted
+     */
+    INGEST;
+
+    /**
+     * Get the lane name used in configuration and metric tags
+     * @return The lower-case lane name
+     */
+    public String tag() {
+        return name().toLowerCase();
+    }
+}
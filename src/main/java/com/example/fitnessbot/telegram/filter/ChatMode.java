@@ -0,0 +1,19 @@
+package com.example.fitnessbot.telegram.filter;
+
+/**
+ * What the bot reacts to in a chat
+ */
+public enum ChatMode {
+    /**
+     * Commands, callbacks and forwarded training days; the default for private chats
+     */
+    FULL,
+    /**
+     * Only commands and callbacks; the default for groups, supergroups and channels
+     */
+    COMMANDS_ONLY,
+    /**
+     * Nothing at all
+     */
+    IGNORED
+}
@@ -0,0 +1,43 @@
+package com.example.fitnessbot.telegram.filter;
+
+/**
+ * Why the pre-filter dropped an update
+ */
+public enum DropReason {
+    /**
+     * Update type the bot has no handler for
+     */
+    UNSUPPORTED_TYPE,
+    /**
+     * Sent by another bot
+     */
+    FROM_BOT,
+    /**
+     * Service message such as members joining or a pinned message
+     */
+    SERVICE_MESSAGE,
+    /**
+     * Message without text, e.g. a photo or sticker
+     */
+    NO_TEXT,
+    /**
+     * Chat the bot is configured to ignore
+     */
+    CHAT_IGNORED,
+    /**
+     * Group message that is not a command
+     */
+    GROUP_CHATTER,
+    /**
+     * Command addressed to another bot with /command@other_bot
+     */
+    OTHER_BOT_COMMAND;
+
+    /**
+     * Get the reason as used in metric tags
+     * @return The lower-case reason
+     */
+    public String tag() {
+        return name().toLowerCase();
+    }
+}
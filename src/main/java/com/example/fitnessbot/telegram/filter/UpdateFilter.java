@@ -0,0 +1,168 @@
+package com.example.fitnessbot.telegram.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cheap first stage in front of the dispatcher that drops updates the bot will never act on.
+ * It only looks at fields already present on the update and at per-chat mode overrides kept in memory,
+ * so its cost does not depend on the database or on the traffic of busy groups.
+ */
+@Component
+public class UpdateFilter {
+
+    private final String botUsername;
+    private final ChatMode groupMode;
+    private final boolean channelPostsEnabled;
+    // Maps chat id to its configured or overridden mode; other chats take theirs from the chat type, so the map
+    // only grows with the overrides and not with every chat the bot is added to
+    private final Map<Long, ChatMode> chatModes = new ConcurrentHashMap<>();
+    private final Map<DropReason, Counter> dropped = new EnumMap<>(DropReason.class);
+
+    @Autowired
+    public UpdateFilter(@Value("${telegram.bot.username:}") String botUsername,
+                        @Value("${telegram.filter.group-mode:COMMANDS_ONLY}") ChatMode groupMode,
+                        @Value("${telegram.filter.full-chats:}") List<Long> fullChats,
+                        @Value("${telegram.filter.ignored-chats:}") List<Long> ignoredChats,
+                        @Value("${telegram.bot.channel-posts.enabled:false}") boolean channelPostsEnabled,
+                        MeterRegistry meterRegistry) {
+        this.botUsername = botUsername;
+        this.groupMode = groupMode;
+        this.channelPostsEnabled = channelPostsEnabled;
+        fullChats.forEach(chatId -> chatModes.put(chatId, ChatMode.FULL));
+        ignoredChats.forEach(chatId -> chatModes.put(chatId, ChatMode.IGNORED));
+        for (DropReason reason : DropReason.values()) {
+            dropped.put(reason, Counter.builder("telegram.updates.dropped")
+                    .description("Updates dropped by the pre-filter before dispatch")
+                    .tag("reason", reason.tag())
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Decide whether an update should be dispatched, counting it if not
+     * @param update The update to check
+     * @return null if the update should be dispatched, otherwise the reason it was dropped
+     */
+    public DropReason check(Update update) {
+        return check(update, botUsername);
+    }
+
+    /**
+     * Decide whether an update received by a tenant's bot should be dispatched, counting it if not
+     * @param update The update to check
+     * @param botUsername Username of the receiving bot, which commands in groups must be addressed to
+     * @return null if the update should be dispatched, otherwise the reason it was dropped
+     */
+    public DropReason check(Update update, String botUsername) {
+        DropReason reason = dropReason(update, botUsername);
+        if (reason != null) {
+            dropped.get(reason).increment();
+        }
+        return reason;
+    }
+
+    /**
+     * Override the mode of a chat
+     * @param chatId The chat id
+     * @param mode The new mode
+     */
+    public void setChatMode(long chatId, ChatMode mode) {
+        chatModes.put(chatId, mode);
+    }
+
+    private DropReason dropReason(Update update, String botUsername) {
+        if (update.hasCallbackQuery()) {
+            return null;
+        }
+        if (update.hasChannelPost()) {
+            return channelPostDropReason(update.getChannelPost());
+        }
+        if (update.hasEditedChannelPost()) {
+            return channelPostDropReason(update.getEditedChannelPost());
+        }
+        Message message = update.hasEditedMessage() ? update.getEditedMessage() : update.getMessage();
+        if (message == null) {
+            return DropReason.UNSUPPORTED_TYPE;
+        }
+        if (message.getFrom() != null && Boolean.TRUE.equals(message.getFrom().getIsBot())) {
+            return DropReason.FROM_BOT;
+        }
+        if (!message.hasText()) {
+            return isServiceMessage(message) ? DropReason.SERVICE_MESSAGE : DropReason.NO_TEXT;
+        }
+
+        ChatMode mode = chatMode(message.getChat());
+        if (mode == ChatMode.IGNORED) {
+            return DropReason.CHAT_IGNORED;
+        }
+        if (mode == ChatMode.COMMANDS_ONLY) {
+            String text = message.getText();
+            if (!text.startsWith("/")) {
+                return DropReason.GROUP_CHATTER;
+            }
+            if (isAddressedToOtherBot(text, botUsername)) {
+                return DropReason.OTHER_BOT_COMMAND;
+            }
+        }
+        return null;
+    }
+
+    private DropReason channelPostDropReason(Message channelPost) {
+        if (!channelPostsEnabled) {
+            return DropReason.UNSUPPORTED_TYPE;
+        }
+        if (!channelPost.hasText()) {
+            return DropReason.NO_TEXT;
+        }
+        return chatModes.get(channelPost.getChatId()) == ChatMode.IGNORED ? DropReason.CHAT_IGNORED : null;
+    }
+
+    private ChatMode chatMode(Chat chat) {
+        if (chat == null) {
+            return ChatMode.FULL;
+        }
+        ChatMode mode = chatModes.get(chat.getId());
+        if (mode != null) {
+            return mode;
+        }
+        return chat.isUserChat() ? ChatMode.FULL : groupMode;
+    }
+
+    private static boolean isAddressedToOtherBot(String text, String botUsername) {
+        int commandEnd = 1;
+        while (commandEnd < text.length() && !Character.isWhitespace(text.charAt(commandEnd))) {
+            commandEnd++;
+        }
+        // Only an "@" inside the command word names a bot, e.g. /start@fitness_bot
+        int at = text.lastIndexOf('@', commandEnd - 1);
+        if (at < 0) {
+            return false;
+        }
+        int nameLength = commandEnd - at - 1;
+        return nameLength != botUsername.length() || !text.regionMatches(true, at + 1, botUsername, 0, nameLength);
+    }
+
+    private static boolean isServiceMessage(Message message) {
+        return (message.getNewChatMembers() != null && !message.getNewChatMembers().isEmpty())
+                || message.getLeftChatMember() != null
+                || message.getNewChatTitle() != null
+                || message.getNewChatPhoto() != null
+                || Boolean.TRUE.equals(message.getDeleteChatPhoto())
+                || Boolean.TRUE.equals(message.getGroupchatCreated())
+                || Boolean.TRUE.equals(message.getSuperGroupCreated())
+                || message.getMigrateToChatId() != null
+                || message.getPinnedMessage() != null;
+    }
+}
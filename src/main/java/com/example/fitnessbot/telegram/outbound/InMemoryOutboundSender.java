@@ -0,0 +1,36 @@
+package com.example.fitnessbot.telegram.outbound;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sender that keeps the methods in memory instead of sending them, completing each with a null result.
+ * Used when replaying recorded updates, whose anonymized chats do not exist, and in tests.
+ */
+@Component
+@ConditionalOnProperty(name = "telegram.bot.mode", havingValue = "replay")
+public class InMemoryOutboundSender implements OutboundSender {
+
+    private final List<BotApiMethod<?>> sent = new ArrayList<>();
+
+    @Override
+    public synchronized <T extends Serializable> CompletableFuture<T> send(AbsSender bot, BotApiMethod<T> method) {
+        sent.add(method);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Get the methods sent so far
+     * @return A copy of the methods, in the order they were sent
+     */
+    public synchronized List<BotApiMethod<?>> getSent() {
+        return List.copyOf(sent);
+    }
+}
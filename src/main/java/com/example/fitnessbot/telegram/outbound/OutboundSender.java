@@ -0,0 +1,41 @@
+package com.example.fitnessbot.telegram.outbound;
+
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageReplyMarkup;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+
+import java.io.Serializable;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends Bot API methods to Telegram on behalf of a bot. The bot and its handlers go through it for every
+ * reply, edit and callback answer instead of calling the API themselves.
+ */
+public interface OutboundSender {
+
+    /**
+     * Queue a method for sending. Methods for the same chat are sent in the order they were queued.
+     * @param bot The bot to send as
+     * @param method The method to send
+     * @return A future completed with the result of the method, or exceptionally with the failure of sending it
+     */
+    <T extends Serializable> CompletableFuture<T> send(AbsSender bot, BotApiMethod<T> method);
+
+    /**
+     * Get the chat a method posts to or edits in
+     * @param method The method
+     * @return The chat id, or null for methods that act on no chat, like callback answers
+     */
+    static String chatOf(BotApiMethod<?> method) {
+        return switch (method) {
+            case SendMessage sendMessage -> sendMessage.getChatId();
+            case EditMessageText editMessageText -> editMessageText.getChatId();
+            case EditMessageReplyMarkup editMessageReplyMarkup -> editMessageReplyMarkup.getChatId();
+            case DeleteMessage deleteMessage -> deleteMessage.getChatId();
+            default -> null;
+        };
+    }
+}
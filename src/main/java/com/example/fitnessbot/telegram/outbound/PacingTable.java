@@ -0,0 +1,59 @@
+package com.example.fitnessbot.telegram.outbound;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size table of rate limits that hand out send times instead of refusing.
+ * Each stripe keeps the theoretical arrival time of the generic cell rate algorithm: a caller reserves the
+ * next slot of its key and is told how long to wait for it, so queued sends leave at an even pace.
+ * Keys are hashed onto 2^bits stripes; keys that share a stripe share a pace.
+ */
+class PacingTable {
+
+    private final AtomicLongArray arrivals;
+    private final int mask;
+    private final long intervalNanos;
+    private final long toleranceNanos;
+
+    /**
+     * @param bits Log2 of the number of stripes, 0 for a single pace shared by all keys
+     * @param intervalNanos Time between two sends of a key once its burst is used
+     * @param burst Sends a key may make at once after being idle
+     */
+    PacingTable(int bits, long intervalNanos, int burst) {
+        if (bits < 0 || bits > 24) {
+            throw new IllegalArgumentException("Stripe bits must be between 0 and 24: " + bits);
+        }
+        if (intervalNanos < 1 || burst < 1) {
+            throw new IllegalArgumentException("Interval and burst must be positive: " + intervalNanos + ", " + burst);
+        }
+        this.arrivals = new AtomicLongArray(1 << bits);
+        this.mask = (1 << bits) - 1;
+        this.intervalNanos = intervalNanos;
+        this.toleranceNanos = intervalNanos * (burst - 1);
+    }
+
+    /**
+     * Reserve the next send slot of a key
+     * @param key The key, e.g. a chat id
+     * @param nowNanos Current time in nanoseconds, positive and never decreasing
+     * @return Nanoseconds to wait before sending, 0 to send now
+     */
+    long reserve(long key, long nowNanos) {
+        int stripe = stripe(key);
+        while (true) {
+            // 0 means the stripe was never used
+            long arrival = arrivals.get(stripe);
+            long start = Math.max(arrival, nowNanos);
+            if (arrivals.compareAndSet(stripe, arrival, start + intervalNanos)) {
+                return Math.max(0, arrival - toleranceNanos - nowNanos);
+            }
+        }
+    }
+
+    private int stripe(long key) {
+        // Spread consecutive ids over the table
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
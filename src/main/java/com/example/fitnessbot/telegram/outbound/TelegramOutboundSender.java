@@ -0,0 +1,196 @@
+package com.example.fitnessbot.telegram.outbound;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends Bot API methods at the pace Telegram accepts instead of in bursts answered with 429.
+ * Each chat of each bot has a queue of its own, drained on a virtual thread, so a chat waiting for its pace never
+ * holds up another one. Before sending, a method waits for a slot of its chat, about one message a second with a
+ * short burst, or 20 a minute in groups, and then for a slot of its bot's pace of about 30 messages a second.
+ * Telegram applies these limits to every bot on its own, so the paces are kept per bot: the bots of different
+ * tenants, even writing to the same chat, never wait for each other. A 429 that still happens is retried after
+ * the time Telegram asks for.
+ * Methods of no chat, like callback answers and command registration, are sent at once.
+ */
+@Component
+@ConditionalOnExpression("'${telegram.bot.mode:polling}' != 'replay'")
+public class TelegramOutboundSender implements OutboundSender, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(TelegramOutboundSender.class);
+
+    static final int MAX_ATTEMPTS = 3;
+
+    private final Executor executor;
+    private final int queueCapacity;
+    private final Limits limits;
+    // Keyed by bot instance; tenant bots live as long as the application
+    private final Map<AbsSender, PacingTable> botPaces = new ConcurrentHashMap<>();
+    private final PacingTable chatPace;
+    private final PacingTable groupPace;
+    private final long origin = System.nanoTime();
+    private final Map<ChatQueueKey, CompletableFuture<Void>> chatQueues = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Counter rejected;
+    private final Counter throttled;
+    private final Timer queueTime;
+
+    @Autowired
+    public TelegramOutboundSender(@Value("${telegram.outbound.queue-capacity:10000}") int queueCapacity,
+                                  @Value("${telegram.outbound.stripe-bits:16}") int stripeBits,
+                                  @Value("${telegram.outbound.global.per-second:30}") int globalPerSecond,
+                                  @Value("${telegram.outbound.chat.per-second:1}") int chatPerSecond,
+                                  @Value("${telegram.outbound.chat.burst:3}") int chatBurst,
+                                  @Value("${telegram.outbound.group.per-minute:20}") int groupPerMinute,
+                                  MeterRegistry meterRegistry) {
+        this(Executors.newVirtualThreadPerTaskExecutor(), queueCapacity, stripeBits,
+                new Limits(Duration.ofSeconds(1).dividedBy(globalPerSecond), globalPerSecond,
+                        Duration.ofSeconds(1).dividedBy(chatPerSecond), chatBurst,
+                        Duration.ofMinutes(1).dividedBy(groupPerMinute)),
+                meterRegistry);
+    }
+
+    public TelegramOutboundSender(Executor executor, int queueCapacity, int stripeBits, Limits limits,
+                                  MeterRegistry meterRegistry) {
+        this.executor = executor;
+        this.queueCapacity = queueCapacity;
+        this.limits = limits;
+        this.chatPace = new PacingTable(stripeBits, limits.chatInterval().toNanos(), limits.chatBurst());
+        this.groupPace = new PacingTable(stripeBits, limits.groupInterval().toNanos(), limits.chatBurst());
+        this.rejected = Counter.builder("telegram.outbound.rejected")
+                .description("Methods not sent because the outbound queue was full")
+                .register(meterRegistry);
+        this.throttled = Counter.builder("telegram.outbound.throttled")
+                .description("Methods Telegram answered with 429 and that were retried after the requested delay")
+                .register(meterRegistry);
+        this.queueTime = Timer.builder("telegram.outbound.queue.time")
+                .description("Time methods waited for their chat and their bot's pace")
+                .register(meterRegistry);
+        Gauge.builder("telegram.outbound.queued", queued, AtomicInteger::get)
+                .description("Methods queued or being sent")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public <T extends Serializable> CompletableFuture<T> send(AbsSender bot, BotApiMethod<T> method) {
+        String chatId = OutboundSender.chatOf(method);
+        if (chatId == null) {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return bot.execute(method);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+        }
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            rejected.increment();
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Outbound queue is full"));
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long queuedAt = System.nanoTime();
+        // Append to the queue of the bot's chat; delivery never fails the chain, the failure goes to the result
+        ChatQueueKey queueKey = new ChatQueueKey(bot, chatId);
+        CompletableFuture<Void> sent = chatQueues.compute(queueKey, (key, tail) ->
+                (tail != null ? tail : CompletableFuture.<Void>completedFuture(null))
+                        .thenRunAsync(() -> deliver(bot, method, chatId, queuedAt, result), executor));
+        sent.whenComplete((ignored, failure) -> chatQueues.remove(queueKey, sent));
+        return result;
+    }
+
+    private <T extends Serializable> void deliver(AbsSender bot, BotApiMethod<T> method, String chatId, long queuedAt,
+                                                 CompletableFuture<T> result) {
+        try {
+            PacingTable pace = chatId.startsWith("-") ? groupPace : chatPace;
+            sleep(pace.reserve(31L * System.identityHashCode(bot) + chatId.hashCode(), now()));
+            sleep(botPace(bot).reserve(0, now()));
+            queueTime.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    result.complete(bot.execute(method));
+                    return;
+                } catch (TelegramApiRequestException e) {
+                    Integer retryAfter = e.getParameters() != null ? e.getParameters().getRetryAfter() : null;
+                    if (e.getErrorCode() == null || e.getErrorCode() != 429 || retryAfter == null || attempt == MAX_ATTEMPTS) {
+                        throw e;
+                    }
+                    throttled.increment();
+                    log.warn("Telegram asked to retry in {}s sending to chat {}", retryAfter, chatId);
+                    sleep(TimeUnit.SECONDS.toNanos(retryAfter));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(e);
+        } catch (Throwable e) {
+            result.completeExceptionally(e);
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    private PacingTable botPace(AbsSender bot) {
+        return botPaces.computeIfAbsent(bot,
+                key -> new PacingTable(0, limits.globalInterval().toNanos(), limits.globalBurst()));
+    }
+
+    private long now() {
+        // Pacing tables take positive times
+        return System.nanoTime() - origin + 1;
+    }
+
+    private static void sleep(long nanos) throws InterruptedException {
+        if (nanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Pace of sending of each bot
+     * @param globalInterval Time between two sends of a bot to all its chats together
+     * @param globalBurst Sends of a bot to all its chats at once after being idle
+     * @param chatInterval Time between two sends of a bot to a private chat
+     * @param chatBurst Sends of a bot to one chat at once after being idle
+     * @param groupInterval Time between two sends of a bot to a group
+     */
+    public record Limits(Duration globalInterval, int globalBurst, Duration chatInterval, int chatBurst,
+                         Duration groupInterval) {
+    }
+
+    private record ChatQueueKey(AbsSender bot, String chatId) {
+    }
+}
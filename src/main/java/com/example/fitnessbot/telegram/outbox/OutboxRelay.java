@@ -0,0 +1,164 @@
+package com.example.fitnessbot.telegram.outbox;
+
+import com.example.fitnessbot.model.OutboxMessage;
+import com.example.fitnessbot.service.OutboxService;
+import com.example.fitnessbot.telegram.FitnessTelegramBot;
+import com.example.fitnessbot.telegram.outbound.OutboundSender;
+import com.example.fitnessbot.tenant.TenantContext;
+import com.example.fitnessbot.tenant.TenantRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Sends the outbox messages their handlers did not: those whose send failed and those left behind by a
+ * process that died between committing a change and sending its reply. Messages are claimed in batches,
+ * so several replicas can relay at once, and sent at least once; a message is sent twice only if the relay
+ * dies between sending it and confirming it.
+ */
+@Component
+@ConditionalOnProperty(name = "telegram.bot.token")
+public class OutboxRelay implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final OutboxService outboxService;
+    private final OutboundSender outboundSender;
+    private final FitnessTelegramBot defaultBot;
+    private final ObjectProvider<TenantRegistry> tenantRegistry;
+    private final Duration interval;
+    private final int batchSize;
+    private final Duration retention;
+    private final Counter relayed;
+    private final Counter failed;
+    private final Counter givenUp;
+
+    private volatile boolean running;
+    private Thread relayThread;
+
+    public OutboxRelay(OutboxService outboxService,
+                       OutboundSender outboundSender,
+                       FitnessTelegramBot defaultBot,
+                       ObjectProvider<TenantRegistry> tenantRegistry,
+                       MeterRegistry meterRegistry,
+                       @Value("${telegram.outbox.relay.interval:5s}") Duration interval,
+                       @Value("${telegram.outbox.relay.batch-size:100}") int batchSize,
+                       @Value("${telegram.outbox.retention:7d}") Duration retention) {
+        this.outboxService = outboxService;
+        this.outboundSender = outboundSender;
+        this.defaultBot = defaultBot;
+        this.tenantRegistry = tenantRegistry;
+        this.interval = interval;
+        this.batchSize = batchSize;
+        this.retention = retention;
+        this.relayed = Counter.builder("telegram.outbox.relayed")
+                .description("Outbox messages sent by the relay")
+                .register(meterRegistry);
+        this.failed = Counter.builder("telegram.outbox.failed")
+                .description("Failed attempts of the relay to send an outbox message")
+                .register(meterRegistry);
+        this.givenUp = Counter.builder("telegram.outbox.given.up")
+                .description("Outbox messages no longer retried")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        relayThread = Thread.ofPlatform()
+                .name("telegram-outbox-relay")
+                .daemon()
+                .start(this::relayLoop);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (relayThread != null) {
+            relayThread.interrupt();
+            try {
+                relayThread.join(interval.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void relayLoop() {
+        while (running) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                relayDue();
+                outboxService.deleteFinished(retention);
+            } catch (Exception e) {
+                // Typically the database is unavailable; the messages wait in the outbox
+                log.error("Outbox relay failed", e);
+            }
+        }
+    }
+
+    /**
+     * Send the due messages, in batches between which shutdown is checked
+     */
+    void relayDue() {
+        List<OutboxMessage> batch;
+        do {
+            batch = outboxService.claimDue(batchSize);
+            for (OutboxMessage message : batch) {
+                relay(message);
+            }
+        } while (running && batch.size() == batchSize);
+    }
+
+    private void relay(OutboxMessage message) {
+        Optional<FitnessTelegramBot> bot = TenantContext.DEFAULT_TENANT.equals(message.getTenantId())
+                ? Optional.of(defaultBot)
+                : Optional.ofNullable(tenantRegistry.getIfAvailable()).flatMap(registry -> registry.getBot(message.getTenantId()));
+        if (bot.isEmpty()) {
+            // Claimed again once the claim expires, in case the tenant is started by then
+            log.warn("Tenant {} of outbox message {} is not running", message.getTenantId(), message.getId());
+            return;
+        }
+
+        SendMessage sendMessage = new SendMessage();
+        sendMessage.setChatId(message.getChatId());
+        sendMessage.setText(message.getText());
+        try {
+            outboundSender.send(bot.get(), sendMessage).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            failed.increment();
+            if (outboxService.markFailed(message.getId(), cause)) {
+                givenUp.increment();
+                log.error("Giving up outbox message {} to chat {}", message.getId(), message.getChatId(), cause);
+            } else {
+                log.warn("Failed to send outbox message {} to chat {}, will retry", message.getId(), message.getChatId(), cause);
+            }
+            return;
+        }
+        outboxService.markSent(message.getId());
+        relayed.increment();
+    }
+}
@@ -0,0 +1,347 @@
+package com.example.fitnessbot.telegram.polling;
+
+import com.example.fitnessbot.service.UpdateOffsetService;
+import com.example.fitnessbot.telegram.FitnessTelegramBot;
+import com.example.fitnessbot.telegram.dispatch.UpdateDispatcher;
+import com.example.fitnessbot.tenant.TenantContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.telegram.telegrambots.meta.api.methods.updates.GetUpdates;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Long-polling loop replacing the library's DefaultBotSession.
+ * It only asks for the update types the bot handles, sizes each getUpdates batch
+ * to the free room in the dispatch queue and persists the last confirmed offset.
+ * Only fully handled updates are confirmed: both the getUpdates offset and the persisted offset
+ * stop at the low watermark below which every fetched update has been handled, so a crash
+ * or a drain timeout makes Telegram redeliver the rest after restart instead of losing it.
+ * Updates above the watermark that were already handled come back with every batch until it moves;
+ * they are skipped here, so the deduplicator only ever sees real redeliveries.
+ * The confirmed offset is written to the database off the polling thread and on a best-effort basis: while the
+ * database is down polling goes on, so updates keep reaching the spool, and Telegram itself still forgets only
+ * the updates below the getUpdates offset.
+ */
+public class AdaptiveLongPollingSession implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveLongPollingSession.class);
+
+    // Telegram never returns more than 100 updates per call
+    public static final int MAX_BATCH_SIZE = 100;
+    private static final long FULL_QUEUE_BACKOFF_MS = 200;
+    private static final long MAX_ERROR_BACKOFF_MS = 30_000;
+    private static final long STOP_JOIN_MS = 1_000;
+
+    private final FitnessTelegramBot bot;
+    private final UpdateDispatcher updateDispatcher;
+    private final UpdateOffsetService updateOffsetService;
+    private final List<String> allowedUpdates;
+    private final int timeoutSeconds;
+    private final DistributionSummary batchSize;
+    private final Counter pollErrors;
+    private final Counter refetched;
+    private final Counter offsetWriteErrors;
+
+    // Ids of fetched updates that were not handled yet
+    private final NavigableSet<Integer> inFlight = new ConcurrentSkipListSet<>();
+    // Ids of handled updates above the confirmed watermark, which Telegram still returns
+    private final NavigableSet<Integer> handledAhead = new ConcurrentSkipListSet<>();
+    // Confirmed update id not yet written to the database
+    private final AtomicReference<Integer> unwrittenUpdateId = new AtomicReference<>();
+    private final AtomicBoolean writing = new AtomicBoolean();
+    private final Object offsetWrite = new Object();
+
+    private volatile boolean running;
+    private volatile boolean stopping;
+    private Thread pollingThread;
+    private Integer nextOffset;
+    private Integer lastFetchedUpdateId;
+    private Integer lastConfirmedUpdateId;
+
+    public AdaptiveLongPollingSession(FitnessTelegramBot bot,
+                                      UpdateDispatcher updateDispatcher,
+                                      UpdateOffsetService updateOffsetService,
+                                      List<String> allowedUpdates,
+                                      int timeoutSeconds,
+                                      MeterRegistry meterRegistry) {
+        this.bot = bot;
+        this.updateDispatcher = updateDispatcher;
+        this.updateOffsetService = updateOffsetService;
+        this.allowedUpdates = List.copyOf(allowedUpdates);
+        this.timeoutSeconds = timeoutSeconds;
+        String tenant = Objects.requireNonNullElse(bot.getTenantId(), TenantContext.DEFAULT_TENANT);
+        this.batchSize = DistributionSummary.builder("telegram.polling.batch.size")
+                .description("Number of updates returned by a getUpdates call")
+                .tag("tenant", tenant)
+                .register(meterRegistry);
+        this.pollErrors = Counter.builder("telegram.polling.errors")
+                .description("Failed getUpdates calls")
+                .tag("tenant", tenant)
+                .register(meterRegistry);
+        this.refetched = Counter.builder("telegram.polling.refetched")
+                .description("Already handled updates returned again because an earlier update was still in flight")
+                .tag("tenant", tenant)
+                .register(meterRegistry);
+        this.offsetWriteErrors = Counter.builder("telegram.polling.offset.write.errors")
+                .description("Failed writes of the confirmed offset, retried with the next confirmation")
+                .tag("tenant", tenant)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        // A registered webhook makes getUpdates fail
+        try {
+            bot.clearWebhook();
+        } catch (TelegramApiException e) {
+            log.warn("Failed to clear webhook before polling", e);
+        }
+        try {
+            nextOffset = updateOffsetService.getNextOffset(bot.getBotUsername());
+        } catch (RuntimeException e) {
+            // Telegram keeps the offset of the last getUpdates call, so polling can start without ours
+            log.warn("Failed to load the stored offset of {}, polling from Telegram's", bot.getBotUsername(), e);
+        }
+        running = true;
+        stopping = false;
+        // A virtual thread keeps an idle long poll cheap when many tenant bots poll from one process
+        pollingThread = Thread.ofVirtual()
+                .name("telegram-poller-" + bot.getBotUsername())
+                .start(this::pollLoop);
+        log.info("Started long polling for {} from offset {}", bot.getBotUsername(), nextOffset);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        stopping = true;
+        if (pollingThread != null) {
+            pollingThread.interrupt();
+            try {
+                pollingThread.join(STOP_JOIN_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // Let in-flight updates finish, then persist how far we got
+        drainDelivered();
+        confirmHandled();
+        writeUnwritten();
+        log.info("Stopped long polling for {} at confirmed update {}", bot.getBotUsername(), lastConfirmedUpdateId);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void pollLoop() {
+        long errorBackoff = 0;
+        while (running) {
+            try {
+                if (pollOnce() < 0) {
+                    Thread.sleep(FULL_QUEUE_BACKOFF_MS);
+                }
+                errorBackoff = 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                pollErrors.increment();
+                errorBackoff = Math.min(MAX_ERROR_BACKOFF_MS, Math.max(500, errorBackoff * 2));
+                log.error("getUpdates failed, retrying in {} ms", errorBackoff, e);
+                try {
+                    Thread.sleep(errorBackoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Fetch and dispatch one batch of updates
+     * @return The number of newly dispatched updates, or -1 if the dispatch queue had no room
+     * or the batch only repeated updates that are still being handled
+     */
+    int pollOnce() throws TelegramApiException {
+        confirmHandled();
+
+        int room = freeRoom();
+        if (room <= 0) {
+            return -1;
+        }
+
+        GetUpdates getUpdates = new GetUpdates();
+        getUpdates.setOffset(nextOffset);
+        getUpdates.setLimit(Math.min(room, MAX_BATCH_SIZE));
+        getUpdates.setTimeout(timeoutSeconds);
+        getUpdates.setAllowedUpdates(allowedUpdates);
+
+        List<Update> updates = bot.execute(getUpdates);
+        batchSize.record(updates.size());
+        // A batch arriving after stop() is left unconfirmed and redelivered after restart
+        if (updates.isEmpty() || stopping) {
+            return 0;
+        }
+
+        if (lastConfirmedUpdateId == null) {
+            // Whatever precedes the first batch is already confirmed, or unknown on a fresh start
+            int firstUpdateId = updates.stream().mapToInt(Update::getUpdateId).min().getAsInt();
+            lastConfirmedUpdateId = nextOffset == null ? firstUpdateId - 1 : nextOffset - 1;
+        }
+
+        int dispatched = 0;
+        for (Update update : updates) {
+            Integer updateId = update.getUpdateId();
+            // Telegram keeps returning updates above the confirmed offset until they are all handled
+            if (updateId <= lastConfirmedUpdateId || !inFlight.add(updateId)) {
+                continue;
+            }
+            // Checked after claiming it, as an update is marked handled before it leaves the in-flight set
+            if (handledAhead.contains(updateId)) {
+                inFlight.remove(updateId);
+                refetched.increment();
+                continue;
+            }
+            try {
+                deliver(update, () -> {
+                    handledAhead.add(updateId);
+                    inFlight.remove(updateId);
+                });
+            } catch (RuntimeException e) {
+                // Not delivered: keep the watermark below it so it is fetched again
+                inFlight.remove(updateId);
+                throw e;
+            }
+            lastFetchedUpdateId = lastFetchedUpdateId == null ? updateId : Math.max(lastFetchedUpdateId, updateId);
+            dispatched++;
+        }
+
+        confirmHandled();
+        return dispatched > 0 ? dispatched : -1;
+    }
+
+    /**
+     * How many more updates can be taken right now
+     */
+    protected int freeRoom() {
+        return updateDispatcher.getQueueCapacity() - updateDispatcher.getPendingCount();
+    }
+
+    /**
+     * Hand a fetched update over for handling
+     * @param update The update
+     * @param onHandled Must be called once the update no longer needs to be redelivered
+     */
+    protected void deliver(Update update, Runnable onHandled) {
+        bot.onUpdateReceived(update, onHandled);
+    }
+
+    /**
+     * Wait for delivered updates to finish before the final offset is confirmed on stop
+     */
+    protected void drainDelivered() {
+        updateDispatcher.drain(updateDispatcher.getDrainTimeout());
+    }
+
+    /**
+     * Wait until every update delivered by this session was handled
+     * @param timeout How long to wait at most
+     * @return true if nothing is in flight anymore
+     */
+    protected boolean awaitInFlight(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!inFlight.isEmpty() && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return inFlight.isEmpty();
+    }
+
+    /**
+     * Move the getUpdates offset right after the highest update id below which every fetched update
+     * has been handled, and persist that id
+     */
+    synchronized void confirmHandled() {
+        Integer fetched = lastFetchedUpdateId;
+        if (fetched == null) {
+            return;
+        }
+        int watermark = fetched;
+        if (!inFlight.isEmpty()) {
+            watermark = Math.min(watermark, inFlight.first() - 1);
+        }
+        if (lastConfirmedUpdateId == null || watermark > lastConfirmedUpdateId) {
+            lastConfirmedUpdateId = watermark;
+            handledAhead.headSet(watermark, true).clear();
+            // Telegram forgets every update below the offset, so it must not pass unhandled ones
+            nextOffset = watermark + 1;
+            unwrittenUpdateId.set(watermark);
+        }
+        // Also retries a write that failed before
+        if (unwrittenUpdateId.get() != null && writing.compareAndSet(false, true)) {
+            writeOffset(() -> {
+                try {
+                    writeUnwritten();
+                } finally {
+                    writing.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Run a write of the confirmed offset, off the polling thread so a slow or unavailable database cannot stall it
+     * @param write The write
+     */
+    protected void writeOffset(Runnable write) {
+        Thread.ofVirtual().name("telegram-offset-writer-" + bot.getBotUsername()).start(write);
+    }
+
+    /**
+     * Write the last confirmed update id unless it was written already; a failure leaves it for the next attempt
+     */
+    private void writeUnwritten() {
+        // Writes run one at a time, so an older id never overwrites a newer one
+        synchronized (offsetWrite) {
+            Integer updateId = unwrittenUpdateId.get();
+            if (updateId == null) {
+                return;
+            }
+            try {
+                updateOffsetService.confirm(bot.getBotUsername(), updateId);
+                unwrittenUpdateId.compareAndSet(updateId, null);
+            } catch (RuntimeException e) {
+                offsetWriteErrors.increment();
+                log.warn("Failed to store offset {} of {}, retrying with the next confirmation", updateId,
+                        bot.getBotUsername(), e);
+            }
+        }
+    }
+
+    Integer getNextOffset() {
+        return nextOffset;
+    }
+}
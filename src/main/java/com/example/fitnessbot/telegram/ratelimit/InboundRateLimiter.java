@@ -0,0 +1,129 @@
+package com.example.fitnessbot.telegram.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.User;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-user budgets for inbound messages, commands and callbacks, checked before any handler runs.
+ * Lock-free and of fixed size regardless of how many distinct users write to the bot.
+ */
+@Component
+public class InboundRateLimiter {
+
+    /**
+     * Outcome of a rate limit check
+     */
+    public enum Decision {
+        /**
+         * Within budget, handle the update
+         */
+        ALLOWED,
+        /**
+         * Over budget, drop the update silently
+         */
+        LIMITED,
+        /**
+         * Over budget, drop the update and tell the user once
+         */
+        LIMITED_NOTIFY
+    }
+
+    public static final Map<RateLimitCategory, Budget> DEFAULT_BUDGETS = Map.of(
+            RateLimitCategory.MESSAGE, new Budget(10, 20),
+            RateLimitCategory.COMMAND, new Budget(10, 30),
+            RateLimitCategory.CALLBACK, new Budget(20, 60));
+
+    private final Map<RateLimitCategory, StripedTokenBuckets> buckets = new EnumMap<>(RateLimitCategory.class);
+    private final Map<RateLimitCategory, Counter> limited = new EnumMap<>(RateLimitCategory.class);
+    private final long noticeIntervalMillis;
+    private final LongSupplier clock;
+
+    @Autowired
+    public InboundRateLimiter(@Value("${telegram.ratelimit.stripe-bits:16}") int stripeBits,
+                              @Value("${telegram.ratelimit.messages.burst:10}") int messageBurst,
+                              @Value("${telegram.ratelimit.messages.per-minute:20}") int messagesPerMinute,
+                              @Value("${telegram.ratelimit.commands.burst:10}") int commandBurst,
+                              @Value("${telegram.ratelimit.commands.per-minute:30}") int commandsPerMinute,
+                              @Value("${telegram.ratelimit.callbacks.burst:20}") int callbackBurst,
+                              @Value("${telegram.ratelimit.callbacks.per-minute:60}") int callbacksPerMinute,
+                              @Value("${telegram.ratelimit.notice-interval:60s}") Duration noticeInterval,
+                              MeterRegistry meterRegistry) {
+        this(stripeBits,
+                Map.of(RateLimitCategory.MESSAGE, new Budget(messageBurst, messagesPerMinute),
+                        RateLimitCategory.COMMAND, new Budget(commandBurst, commandsPerMinute),
+                        RateLimitCategory.CALLBACK, new Budget(callbackBurst, callbacksPerMinute)),
+                noticeInterval, System::currentTimeMillis, meterRegistry);
+    }
+
+    public InboundRateLimiter(int stripeBits, Map<RateLimitCategory, Budget> budgets, Duration noticeInterval,
+                              LongSupplier clock, MeterRegistry meterRegistry) {
+        for (RateLimitCategory category : RateLimitCategory.values()) {
+            Budget budget = budgets.get(category);
+            buckets.put(category, new StripedTokenBuckets(stripeBits, budget.burst(), budget.perMinute()));
+            limited.put(category, Counter.builder("telegram.updates.rate.limited")
+                    .description("Updates dropped because the sender exceeded their budget")
+                    .tag("category", category.tag())
+                    .register(meterRegistry));
+        }
+        this.noticeIntervalMillis = noticeInterval.toMillis();
+        this.clock = clock;
+    }
+
+    /**
+     * Charge an update to its sender's budget
+     * @param update The update to check
+     * @return Whether to handle the update, and whether to tell the user they are limited
+     */
+    public Decision check(Update update) {
+        User sender = sender(update);
+        if (sender == null) {
+            // Channel posts have no sender and are not limited
+            return Decision.ALLOWED;
+        }
+        RateLimitCategory category = category(update);
+        StripedTokenBuckets categoryBuckets = buckets.get(category);
+        long now = clock.getAsLong();
+        if (categoryBuckets.tryAcquire(sender.getId(), now)) {
+            return Decision.ALLOWED;
+        }
+        limited.get(category).increment();
+        return categoryBuckets.tryNotify(sender.getId(), now, noticeIntervalMillis) ? Decision.LIMITED_NOTIFY : Decision.LIMITED;
+    }
+
+    private static User sender(Update update) {
+        if (update.hasCallbackQuery()) {
+            return update.getCallbackQuery().getFrom();
+        }
+        Message message = update.hasEditedMessage() ? update.getEditedMessage() : update.getMessage();
+        return message == null ? null : message.getFrom();
+    }
+
+    private static RateLimitCategory category(Update update) {
+        if (update.hasCallbackQuery()) {
+            return RateLimitCategory.CALLBACK;
+        }
+        Message message = update.hasEditedMessage() ? update.getEditedMessage() : update.getMessage();
+        boolean command = message.hasText() && message.getText().startsWith("/")
+                && message.getForwardFrom() == null && message.getForwardFromChat() == null;
+        return command ? RateLimitCategory.COMMAND : RateLimitCategory.MESSAGE;
+    }
+
+    /**
+     * Budget of one category
+     * @param burst Updates a user may send at once after being idle
+     * @param perMinute Sustained updates per minute
+     */
+    public record Budget(int burst, int perMinute) {
+    }
+}
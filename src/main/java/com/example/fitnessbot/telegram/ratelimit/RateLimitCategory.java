@@ -0,0 +1,18 @@
+package com.example.fitnessbot.telegram.ratelimit;
+
+/**
+ * Kind of inbound update a user budget is kept for
+ */
+public enum RateLimitCategory {
+    MESSAGE,
+    COMMAND,
+    CALLBACK;
+
+    /**
+     * Get the category name used in configuration and metric tags
+     * @return The lower-case category name
+     */
+    public String tag() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.fitnessbot.telegram.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size table of token buckets updated with compare-and-set only.
+ * Keys are hashed onto 2^bits stripes, so memory does not grow with the number of distinct keys;
+ * keys that share a stripe share a budget. Each stripe is one long holding the time of the last
+ * refill in its upper bits and the remaining tokens in micro-tokens in its lower bits.
+ */
+class StripedTokenBuckets {
+
+    static final long MICROS_PER_TOKEN = 1_000_000;
+    private static final int TOKEN_BITS = 28;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    // Time is stored in milliseconds modulo 2^36 (about two years); differences are taken modulo the same
+    private static final long TIME_MASK = (1L << (Long.SIZE - TOKEN_BITS)) - 1;
+
+    private final AtomicLongArray buckets;
+    private final AtomicLongArray notices;
+    private final int mask;
+    private final long capacity;
+    private final long refillPerMinute;
+
+    /**
+     * @param bits Log2 of the number of stripes
+     * @param burst Tokens available to a key that has been idle
+     * @param perMinute Tokens added per minute
+     */
+    StripedTokenBuckets(int bits, int burst, int perMinute) {
+        if (bits < 1 || bits > 24) {
+            throw new IllegalArgumentException("Stripe bits must be between 1 and 24: " + bits);
+        }
+        if (burst < 1 || burst * MICROS_PER_TOKEN > TOKEN_MASK) {
+            throw new IllegalArgumentException("Burst must be between 1 and " + TOKEN_MASK / MICROS_PER_TOKEN + ": " + burst);
+        }
+        if (perMinute < 1 || perMinute > 60_000) {
+            throw new IllegalArgumentException("Refill per minute must be between 1 and 60000: " + perMinute);
+        }
+        this.buckets = new AtomicLongArray(1 << bits);
+        this.notices = new AtomicLongArray(1 << bits);
+        this.mask = (1 << bits) - 1;
+        this.capacity = burst * MICROS_PER_TOKEN;
+        this.refillPerMinute = perMinute;
+    }
+
+    /**
+     * Take one token from the bucket of a key
+     * @param key The key, e.g. a Telegram user id
+     * @param nowMillis Current time in milliseconds
+     * @return true if a token was available
+     */
+    boolean tryAcquire(long key, long nowMillis) {
+        int stripe = stripe(key);
+        long now = nowMillis & TIME_MASK;
+        while (true) {
+            long word = buckets.get(stripe);
+            long tokens;
+            if (word == 0) {
+                // Unused stripe
+                tokens = capacity;
+            } else {
+                long elapsed = (now - (word >>> TOKEN_BITS)) & TIME_MASK;
+                tokens = refill(word & TOKEN_MASK, elapsed);
+            }
+            if (tokens < MICROS_PER_TOKEN) {
+                return false;
+            }
+            long updated = (now << TOKEN_BITS) | (tokens - MICROS_PER_TOKEN);
+            if (buckets.compareAndSet(stripe, word, updated)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Claim the right to notify a key that it is being limited
+     * @param key The key
+     * @param nowMillis Current time in milliseconds
+     * @param intervalMillis Minimum time between two notices for the same stripe
+     * @return true if the caller should send a notice
+     */
+    boolean tryNotify(long key, long nowMillis, long intervalMillis) {
+        int stripe = stripe(key);
+        long last = notices.get(stripe);
+        // Stored times are shifted by one so that 0 means "never notified"
+        if (last != 0 && nowMillis + 1 - last < intervalMillis) {
+            return false;
+        }
+        return notices.compareAndSet(stripe, last, nowMillis + 1);
+    }
+
+    private long refill(long tokens, long elapsedMillis) {
+        // Avoid overflow for long idle periods: a minute per token of capacity fills any bucket
+        if (elapsedMillis >= 60_000L * (capacity / MICROS_PER_TOKEN)) {
+            return capacity;
+        }
+        long added = elapsedMillis * refillPerMinute * MICROS_PER_TOKEN / 60_000;
+        return Math.min(capacity, tokens + added);
+    }
+
+    private int stripe(long key) {
+        // Spread consecutive ids over the table
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.fitnessbot.telegram.replay;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Outcome of replaying an update log
+ * @param elapsed Time from the first update being fed until the last one was handled
+ * @param types Throughput and latency per update type, for the types present in the log
+ * @param unfinished Updates still not handled when the replay stopped waiting
+ */
+public record ReplayReport(Duration elapsed, Map<UpdateType, TypeStats> types, long unfinished) {
+
+    /**
+     * Updates replayed, of every type
+     */
+    public long getCount() {
+        return types.values().stream().mapToLong(TypeStats::count).sum();
+    }
+
+    /**
+     * Format the report as a table for the log
+     */
+    public String format() {
+        StringBuilder table = new StringBuilder(String.format("%-15s %8s %10s %9s %9s %9s %9s%n",
+                "type", "updates", "updates/s", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+        types.forEach((type, stats) -> table.append(String.format("%-15s %8d %10.1f %9.2f %9.2f %9.2f %9.2f%n",
+                type.tag(), stats.count(), throughput(stats.count()), millis(stats.p50Nanos()),
+                millis(stats.p90Nanos()), millis(stats.p99Nanos()), millis(stats.maxNanos()))));
+        table.append(String.format("%d updates in %.1f s (%.1f updates/s)", getCount(), elapsed.toNanos() / 1e9,
+                throughput(getCount())));
+        if (unfinished > 0) {
+            table.append(String.format(", %d not handled in time", unfinished));
+        }
+        return table.toString();
+    }
+
+    private double throughput(long count) {
+        return elapsed.isZero() ? 0 : count / (elapsed.toNanos() / 1e9);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * Latency from handing an update to the bot until it was handled or dropped
+     */
+    public record TypeStats(long count, long p50Nanos, long p90Nanos, long p99Nanos, long maxNanos) {
+    }
+}
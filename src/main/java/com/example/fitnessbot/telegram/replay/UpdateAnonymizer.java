@@ -0,0 +1,122 @@
+package com.example.fitnessbot.telegram.replay;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Strips personal data from an update before it is recorded, keeping what drives the bot's behaviour.
+ * User and chat ids are replaced by a keyed hash, so that one user's or chat's updates still belong together
+ * within a log but cannot be linked to the real account; the key is never written anywhere. Names, usernames,
+ * titles, signatures, contacts, locations and file ids are removed, including the name a forward from a user who
+ * hides their account shows instead (forward_sender_name, forward_origin.sender_user_name). In texts and captions every letter is replaced while
+ * length, digits, punctuation and line breaks are kept, so training days parse into the same shape;
+ * the command of a command message and URL schemes stay readable.
+ */
+public class UpdateAnonymizer {
+
+    private static final Set<String> ID_FIELDS = Set.of("id", "user_id", "chat_id", "migrate_to_chat_id",
+            "migrate_from_chat_id");
+    private static final Set<String> TEXT_FIELDS = Set.of("text", "caption", "quote");
+    private static final Set<String> REMOVED_FIELDS = Set.of("first_name", "last_name", "username", "title",
+            "bio", "description", "phone_number", "invite_link", "url", "contact", "location", "venue",
+            "file_id", "file_unique_id", "forward_sender_name", "sender_user_name", "author_signature",
+            "forward_signature");
+    private static final Pattern KEPT_TEXT = Pattern.compile("^/[^\\s@]+|https?://");
+
+    private final Mac mac;
+
+    /**
+     * Create an anonymizer with a random key
+     */
+    public UpdateAnonymizer() {
+        this(randomKey());
+    }
+
+    UpdateAnonymizer(byte[] key) {
+        try {
+            mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    /**
+     * Anonymize an update in place
+     * @param update The update as a JSON tree
+     * @return The same tree
+     */
+    public synchronized JsonNode anonymize(JsonNode update) {
+        walk(update);
+        return update;
+    }
+
+    private void walk(JsonNode node) {
+        if (node instanceof ArrayNode array) {
+            array.forEach(this::walk);
+        } else if (node instanceof ObjectNode object) {
+            Iterator<Map.Entry<String, JsonNode>> fields = object.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                String name = field.getKey();
+                JsonNode value = field.getValue();
+                if (REMOVED_FIELDS.contains(name)) {
+                    fields.remove();
+                } else if (ID_FIELDS.contains(name) && value.isIntegralNumber()) {
+                    field.setValue(object.numberNode(hashId(value.asLong())));
+                } else if (TEXT_FIELDS.contains(name) && value.isTextual()) {
+                    field.setValue(object.textNode(maskText(value.asText())));
+                } else {
+                    walk(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Replace an id by a positive keyed hash, keeping the sign that tells groups and channels from users
+     */
+    long hashId(long id) {
+        byte[] digest = mac.doFinal(ByteBuffer.allocate(Long.BYTES).putLong(id).array());
+        long hash = (ByteBuffer.wrap(digest).getLong() & Long.MAX_VALUE) % 1_000_000_000_000L + 1;
+        return id < 0 ? -hash : hash;
+    }
+
+    static String maskText(String text) {
+        char[] masked = text.toCharArray();
+        Matcher kept = KEPT_TEXT.matcher(text);
+        int from = 0;
+        while (from < masked.length) {
+            boolean found = kept.find(from);
+            int until = found ? kept.start() : masked.length;
+            for (int i = from; i < until; i++) {
+                if (Character.isLetter(masked[i])) {
+                    masked[i] = Character.isUpperCase(masked[i]) ? 'X' : 'x';
+                }
+            }
+            if (!found) {
+                break;
+            }
+            from = kept.end();
+        }
+        return new String(masked);
+    }
+
+    private static byte[] randomKey() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return key;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.fitnessbot.telegram.replay;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads a log written by {@link UpdateLogWriter}. A record cut short, as left by a recorder that was killed,
+ * ends the log.
+ */
+public class UpdateLogReader implements Closeable {
+
+    private final InputStream input;
+
+    public UpdateLogReader(InputStream input) throws IOException {
+        this.input = new BufferedInputStream(input, 64 * 1024);
+        byte[] header = this.input.readNBytes(UpdateLogWriter.MAGIC.length + 1);
+        if (header.length != UpdateLogWriter.MAGIC.length + 1
+                || !Arrays.equals(header, 0, UpdateLogWriter.MAGIC.length, UpdateLogWriter.MAGIC, 0, UpdateLogWriter.MAGIC.length)) {
+            throw new IOException("Not an update log");
+        }
+        if (header[UpdateLogWriter.MAGIC.length] != UpdateLogWriter.VERSION) {
+            throw new IOException("Unsupported update log version " + header[UpdateLogWriter.MAGIC.length]);
+        }
+    }
+
+    /**
+     * Read the next record
+     * @return The record, or null at the end of the log
+     */
+    public Record next() throws IOException {
+        try {
+            long delayMicros = readVarint(true);
+            if (delayMicros < 0) {
+                return null;
+            }
+            int length = Math.toIntExact(readVarint(false));
+            byte[] payload = input.readNBytes(length);
+            return payload.length == length ? new Record(delayMicros, payload) : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    private long readVarint(boolean endAllowed) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int b = input.read();
+            if (b < 0) {
+                if (shift == 0 && endAllowed) {
+                    return -1;
+                }
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in update log");
+    }
+
+    /**
+     * A recorded update
+     * @param delayMicros Time since the previous record
+     * @param payload The update encoded as Smile
+     */
+    public record Record(long delayMicros, byte[] payload) {
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.fitnessbot.telegram.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes an update log: a header followed by one record per update. A record is the time since the previous
+ * record in microseconds and the payload length, both as unsigned varints, then the update encoded as Smile.
+ */
+public class UpdateLogWriter implements Closeable {
+
+    static final byte[] MAGIC = {'T', 'G', 'U', 'L'};
+    static final int VERSION = 1;
+
+    private final OutputStream output;
+    private long lastNanos;
+    private long size;
+
+    /**
+     * @param output Stream the log is written to
+     * @param startNanos {@link System#nanoTime()} the first record's delay is measured from
+     */
+    public UpdateLogWriter(OutputStream output, long startNanos) throws IOException {
+        this.output = new BufferedOutputStream(output, 64 * 1024);
+        this.lastNanos = startNanos;
+        this.output.write(MAGIC);
+        this.output.write(VERSION);
+        this.size = MAGIC.length + 1;
+    }
+
+    /**
+     * Append a record
+     * @param nanos {@link System#nanoTime()} at which the update was received
+     * @param payload The update encoded as Smile
+     */
+    public void write(long nanos, byte[] payload) throws IOException {
+        long delayMicros = Math.max(0, (nanos - lastNanos) / 1_000);
+        lastNanos = nanos;
+        size += writeVarint(delayMicros) + writeVarint(payload.length) + payload.length;
+        output.write(payload);
+    }
+
+    /**
+     * Bytes written so far
+     */
+    public long getSize() {
+        return size;
+    }
+
+    public void flush() throws IOException {
+        output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+
+    private int writeVarint(long value) throws IOException {
+        int bytes = 1;
+        while ((value & ~0x7FL) != 0) {
+            output.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+            bytes++;
+        }
+        output.write((int) value);
+        return bytes;
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.fitnessbot.telegram.replay;
+
+import com.example.fitnessbot.telegram.decode.LazyUpdate;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Records anonymized updates as they are received, with their timing, so that the traffic can be replayed
+ * against another build with {@link UpdateReplayer}. Recording is off unless enabled and stops by itself
+ * once the log reaches its maximum size.
+ */
+@Component
+public class UpdateRecorder implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(UpdateRecorder.class);
+
+    private static final DateTimeFormatter FILE_NAME_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper smileMapper;
+    private final UpdateAnonymizer anonymizer;
+    private final long maxSize;
+    private final Counter recorded;
+
+    private UpdateLogWriter writer;
+
+    @Autowired
+    public UpdateRecorder(@Value("${telegram.recording.enabled:false}") boolean enabled,
+                          @Value("${telegram.recording.directory:recordings}") Path directory,
+                          @Value("${telegram.recording.max-size:512MB}") DataSize maxSize,
+                          ObjectMapper objectMapper,
+                          MeterRegistry meterRegistry) throws IOException {
+        this(enabled ? open(directory) : null, new UpdateAnonymizer(), maxSize.toBytes(), objectMapper, meterRegistry);
+    }
+
+    /**
+     * @param writer Writer of the log, or null to disable recording
+     */
+    public UpdateRecorder(UpdateLogWriter writer, UpdateAnonymizer anonymizer, long maxSize,
+                          ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.writer = writer;
+        this.anonymizer = anonymizer;
+        this.maxSize = maxSize;
+        this.objectMapper = objectMapper;
+        this.smileMapper = objectMapper.copyWith(new SmileFactory());
+        this.recorded = Counter.builder("telegram.recording.updates")
+                .description("Updates written to the recording log")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Record a received update
+     */
+    public void record(Update update) {
+        if (writer == null) {
+            return;
+        }
+        long receivedNanos = System.nanoTime();
+        try {
+            JsonNode tree = anonymizer.anonymize(objectMapper.valueToTree(LazyUpdate.complete(update)));
+            byte[] payload = smileMapper.writeValueAsBytes(tree);
+            write(receivedNanos, payload);
+        } catch (Exception e) {
+            log.warn("Failed to record update {}", update.getUpdateId(), e);
+        }
+    }
+
+    private synchronized void write(long receivedNanos, byte[] payload) throws IOException {
+        if (writer == null) {
+            return;
+        }
+        writer.write(receivedNanos, payload);
+        recorded.increment();
+        if (writer.getSize() >= maxSize) {
+            log.info("Update recording reached {} bytes, stopping", writer.getSize());
+            writer.close();
+            writer = null;
+        }
+    }
+
+    @Override
+    public synchronized void destroy() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private static UpdateLogWriter open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve("updates-" + LocalDateTime.now().format(FILE_NAME_TIME) + ".tgul");
+        log.info("Recording anonymized updates to {}", file);
+        return new UpdateLogWriter(Files.newOutputStream(file), System.nanoTime());
+    }
+}
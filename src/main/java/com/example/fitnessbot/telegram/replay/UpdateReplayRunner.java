@@ -0,0 +1,46 @@
+package com.example.fitnessbot.telegram.replay;
+
+import com.example.fitnessbot.telegram.FitnessTelegramBot;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Replays the update log given in telegram.replay.file through the bot's dispatcher once the application
+ * has started, and logs throughput and latency per update type.
+ */
+@Component
+@ConditionalOnProperty(name = "telegram.replay.file")
+public class UpdateReplayRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(UpdateReplayRunner.class);
+
+    private final UpdateReplayer replayer;
+    private final Path logFile;
+    private final double speed;
+
+    public UpdateReplayRunner(FitnessTelegramBot fitnessTelegramBot,
+                              ObjectMapper objectMapper,
+                              @Value("${telegram.replay.file}") Path logFile,
+                              @Value("${telegram.replay.speed:1}") String speed,
+                              @Value("${telegram.replay.completion-timeout:60s}") Duration completionTimeout) {
+        this.replayer = new UpdateReplayer(fitnessTelegramBot::onUpdateReceived, objectMapper, completionTimeout);
+        this.logFile = logFile;
+        this.speed = UpdateReplayer.parseSpeed(speed);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        log.info("Replaying {} at {} speed", logFile, speed == UpdateReplayer.MAX_SPEED ? "max" : speed + "x");
+        ReplayReport report = replayer.replay(logFile, speed);
+        log.info("Replay of {} finished:\n{}", logFile, report.format());
+    }
+}
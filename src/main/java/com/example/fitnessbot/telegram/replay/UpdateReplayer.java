@@ -0,0 +1,144 @@
+package com.example.fitnessbot.telegram.replay;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
+/**
+ * Feeds a recorded update log back through the bot, at the recorded pace, N times faster or as fast as the
+ * dispatcher accepts updates, and measures how long each update takes to be handled.
+ * Updates get fresh ids so that a log can be replayed repeatedly without being deduplicated.
+ */
+public class UpdateReplayer {
+
+    /**
+     * Speed at which updates are fed without waiting between them
+     */
+    public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+
+    private final BiConsumer<Update, Runnable> target;
+    private final ObjectMapper smileMapper;
+    private final Duration completionTimeout;
+
+    private int nextUpdateId = 1;
+
+    /**
+     * @param target Receives each update and a callback to run once it was handled, failed or was dropped
+     * @param objectMapper Mapper the updates were recorded with
+     * @param completionTimeout How long to wait for the last updates to be handled
+     */
+    public UpdateReplayer(BiConsumer<Update, Runnable> target, ObjectMapper objectMapper, Duration completionTimeout) {
+        this.target = target;
+        this.smileMapper = objectMapper.copyWith(new SmileFactory());
+        this.completionTimeout = completionTimeout;
+    }
+
+    /**
+     * Parse a replay speed
+     * @param speed "max", or a factor such as "1", "10" or "10x"
+     */
+    public static double parseSpeed(String speed) {
+        if ("max".equalsIgnoreCase(speed.trim())) {
+            return MAX_SPEED;
+        }
+        double factor = Double.parseDouble(speed.trim().replaceFirst("[xX]$", ""));
+        if (factor <= 0) {
+            throw new IllegalArgumentException("Replay speed must be positive: " + speed);
+        }
+        return factor;
+    }
+
+    /**
+     * Replay a log and wait until its updates were handled
+     * @param logFile The log
+     * @param speed 1 for the recorded pace, N for N times faster, or {@link #MAX_SPEED}
+     * @return Throughput and latency per update type
+     */
+    public ReplayReport replay(Path logFile, double speed) throws IOException, InterruptedException {
+        Map<UpdateType, Latencies> latencies = new EnumMap<>(UpdateType.class);
+        Phaser pending = new Phaser(1);
+        long startNanos = System.nanoTime();
+
+        try (UpdateLogReader reader = new UpdateLogReader(Files.newInputStream(logFile))) {
+            long recordedMicros = 0;
+            UpdateLogReader.Record record;
+            while ((record = reader.next()) != null) {
+                recordedMicros += record.delayMicros();
+                if (speed != MAX_SPEED) {
+                    waitUntil(startNanos + (long) (recordedMicros * 1_000 / speed));
+                }
+                Update update = smileMapper.readValue(record.payload(), Update.class);
+                update.setUpdateId(nextUpdateId++);
+                Latencies typeLatencies = latencies.computeIfAbsent(UpdateType.of(update), type -> new Latencies());
+
+                pending.register();
+                long fedNanos = System.nanoTime();
+                target.accept(update, () -> {
+                    typeLatencies.add(System.nanoTime() - fedNanos);
+                    pending.arriveAndDeregister();
+                });
+            }
+        }
+
+        long unfinished = 0;
+        try {
+            pending.awaitAdvanceInterruptibly(pending.arrive(), completionTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            unfinished = pending.getUnarrivedParties();
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+
+        Map<UpdateType, ReplayReport.TypeStats> stats = new EnumMap<>(UpdateType.class);
+        latencies.forEach((type, typeLatencies) -> stats.put(type, typeLatencies.stats()));
+        return new ReplayReport(elapsed, stats, unfinished);
+    }
+
+    private static void waitUntil(long dueNanos) throws InterruptedException {
+        long waitNanos = dueNanos - System.nanoTime();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Latencies of one update type, kept in full for exact percentiles
+     */
+    private static class Latencies {
+
+        private long[] nanos = new long[1024];
+        private int count;
+
+        synchronized void add(long latencyNanos) {
+            if (count == nanos.length) {
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            nanos[count++] = latencyNanos;
+        }
+
+        synchronized ReplayReport.TypeStats stats() {
+            long[] sorted = Arrays.copyOf(nanos, count);
+            Arrays.sort(sorted);
+            return new ReplayReport.TypeStats(count, percentile(sorted, 0.50), percentile(sorted, 0.90),
+                    percentile(sorted, 0.99), count == 0 ? 0 : sorted[count - 1]);
+        }
+
+        private static long percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            return sorted[Math.max(0, (int) Math.ceil(quantile * sorted.length) - 1)];
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.fitnessbot.telegram.replay;
+
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+/**
+ * Kind of update a replay reports throughput and latency for
+ */
+public enum UpdateType {
+    /**
+     * Forwarded training day
+     */
+    FORWARDED,
+    COMMAND,
+    /**
+     * Text that is neither forwarded nor a command
+     */
+    TEXT,
+    CALLBACK_QUERY,
+    CHANNEL_POST,
+    /**
+     * Edit of a message or channel post
+     */
+    EDIT,
+    OTHER;
+
+    /**
+     * Get the type of an update
+     */
+    public static UpdateType of(Update update) {
+        if (update.hasCallbackQuery()) {
+            return CALLBACK_QUERY;
+        }
+        if (update.hasChannelPost()) {
+            return CHANNEL_POST;
+        }
+        if (update.hasEditedMessage() || update.hasEditedChannelPost()) {
+            return EDIT;
+        }
+        Message message = update.getMessage();
+        if (message == null || !message.hasText()) {
+            return OTHER;
+        }
+        if (message.getForwardFrom() != null || message.getForwardFromChat() != null) {
+            return FORWARDED;
+        }
+        return message.getText().startsWith("/") ? COMMAND : TEXT;
+    }
+
+    /**
+     * Get the type name as shown in replay reports
+     * @return The lower-case type name
+     */
+    public String tag() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.fitnessbot.telegram.spool;
+
+import org.hibernate.exception.JDBCConnectionException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * Tells failures caused by the database being unreachable apart from failures of the update itself.
+ * Only the former are worth handling again later.
+ */
+public final class DatabaseOutages {
+
+    // SQLSTATE class 08 is "connection exception"
+    private static final String CONNECTION_EXCEPTION_CLASS = "08";
+
+    private DatabaseOutages() {
+    }
+
+    /**
+     * Check whether an exception, or any of its causes, means the database could not be reached
+     */
+    public static boolean isOutage(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CannotCreateTransactionException
+                    || cause instanceof DataAccessResourceFailureException
+                    || cause instanceof TransientDataAccessResourceException
+                    || cause instanceof JDBCConnectionException
+                    || cause instanceof SQLTransientConnectionException
+                    || cause instanceof SQLNonTransientConnectionException) {
+                return true;
+            }
+            if (cause instanceof SQLException sqlException && sqlException.getSQLState() != null
+                    && sqlException.getSQLState().startsWith(CONNECTION_EXCEPTION_CLASS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.fitnessbot.telegram.spool;
+
+import com.example.fitnessbot.telegram.FitnessTelegramBot;
+import com.example.fitnessbot.tenant.TenantContext;
+import com.example.fitnessbot.tenant.TenantRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Hands spooled updates back to their bots once the database accepts connections again.
+ * Each update goes through the dispatcher, and the next one is handed over only after it was handled, so they are
+ * handled in the order they were spooled and in order with the updates of their chat.
+ */
+@Component
+@ConditionalOnProperty(name = "telegram.bot.token")
+public class SpoolReplayer implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(SpoolReplayer.class);
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final UpdateSpool updateSpool;
+    private final FitnessTelegramBot defaultBot;
+    private final ObjectProvider<TenantRegistry> tenantRegistry;
+    private final DataSource dataSource;
+    private final Duration interval;
+    private final int batchSize;
+
+    private volatile boolean running;
+    private Thread replayThread;
+
+    public SpoolReplayer(UpdateSpool updateSpool,
+                         FitnessTelegramBot defaultBot,
+                         ObjectProvider<TenantRegistry> tenantRegistry,
+                         DataSource dataSource,
+                         @Value("${telegram.spool.replay.interval:5s}") Duration interval,
+                         @Value("${telegram.spool.replay.batch-size:100}") int batchSize) {
+        this.updateSpool = updateSpool;
+        this.defaultBot = defaultBot;
+        this.tenantRegistry = tenantRegistry;
+        this.dataSource = dataSource;
+        this.interval = interval;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (!updateSpool.isEnabled()) {
+            return;
+        }
+        replayThread = Thread.ofPlatform()
+                .name("telegram-spool-replay")
+                .daemon()
+                .start(this::replayLoop);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (replayThread != null) {
+            replayThread.interrupt();
+            try {
+                replayThread.join(interval.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void replayLoop() {
+        while (running) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                replayPending();
+            } catch (Exception e) {
+                log.error("Spool replay failed", e);
+            }
+        }
+    }
+
+    /**
+     * Replay spooled updates while the database is available, in batches between which shutdown is checked
+     */
+    void replayPending() throws IOException {
+        if (updateSpool.getPendingUpdates() == 0 || !isDatabaseAvailable()) {
+            return;
+        }
+        log.info("Database available, replaying {} spooled updates", updateSpool.getPendingUpdates());
+        int replayed;
+        do {
+            replayed = updateSpool.replay(batchSize, this::replay);
+        } while (running && replayed == batchSize);
+    }
+
+    private void replay(String tenantId, Update update) {
+        Optional<FitnessTelegramBot> bot = TenantContext.DEFAULT_TENANT.equals(tenantId)
+                ? Optional.of(defaultBot)
+                : Optional.ofNullable(tenantRegistry.getIfAvailable()).flatMap(registry -> registry.getBot(tenantId));
+        bot.ifPresentOrElse(tenantBot -> awaitHandled(tenantBot.replaySpooledUpdate(update)),
+                () -> log.warn("Dropping spooled update {} of tenant {} which is not running", update.getUpdateId(), tenantId));
+    }
+
+    /**
+     * Wait for a replayed update, rethrowing its failure so that the spool can keep it while the database is down
+     */
+    private static void awaitHandled(CompletableFuture<Void> handled) {
+        try {
+            handled.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private boolean isDatabaseAvailable() {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
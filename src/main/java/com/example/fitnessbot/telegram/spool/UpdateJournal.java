@@ -0,0 +1,271 @@
+package com.example.fitnessbot.telegram.spool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of records in memory-mapped segment files of a fixed size.
+ * A record is its length, the CRC32 of its payload and the payload; a zero length marks the end of the
+ * written part of a segment. Records are consumed in order from a read position that is persisted in a
+ * cursor file, and segments are deleted once every record in them is consumed. A record whose checksum
+ * does not match, like one torn by a crash while it was written, ends its segment.
+ */
+public class UpdateJournal implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(UpdateJournal.class);
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+    private static final int CURSOR_SIZE = Long.BYTES + Integer.BYTES;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final MappedByteBuffer cursor;
+
+    private long writeSegment;
+    private MappedByteBuffer writeBuffer;
+    private int writePosition;
+
+    private long readSegment;
+    private MappedByteBuffer readBuffer;
+    private int readPosition;
+
+    private long pendingRecords;
+    private long pendingBytes;
+
+    /**
+     * Open the journal in a directory, creating it if needed
+     * @param directory Directory holding the segment and cursor files
+     * @param segmentSize Size of each segment file in bytes
+     */
+    public UpdateJournal(Path directory, int segmentSize) throws IOException {
+        if (segmentSize <= HEADER_SIZE * 2) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        this.cursor = map(directory.resolve("cursor"), CURSOR_SIZE);
+
+        List<Long> segments = segments();
+        long firstSegment = segments.isEmpty() ? 0 : segments.get(0);
+        writeSegment = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+        writeBuffer = map(segmentPath(writeSegment), segmentSize);
+        writePosition = endOf(writeBuffer);
+
+        // Segments before the first one left were consumed completely
+        readSegment = Math.max(cursor.getLong(0), firstSegment);
+        readPosition = readSegment == cursor.getLong(0) ? cursor.getInt(Long.BYTES) : 0;
+        if (readSegment > writeSegment || (readSegment == writeSegment && readPosition > writePosition)) {
+            readSegment = writeSegment;
+            readPosition = writePosition;
+        }
+        readBuffer = readSegment == writeSegment ? writeBuffer : map(segmentPath(readSegment), segmentSize);
+        countPending(segments);
+    }
+
+    /**
+     * Append a record and flush it to disk
+     * @param payload The record
+     */
+    public synchronized void append(byte[] payload) throws IOException {
+        int size = HEADER_SIZE + payload.length;
+        if (size > segmentSize - Integer.BYTES) {
+            throw new IOException("Record of " + payload.length + " bytes does not fit a segment of " + segmentSize + " bytes");
+        }
+        if (writePosition + size > segmentSize - Integer.BYTES) {
+            rotate();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        writeBuffer.putInt(writePosition + Integer.BYTES, (int) crc.getValue());
+        writeBuffer.put(writePosition + HEADER_SIZE, payload);
+        // End marker first, so that a leftover of an earlier torn record never follows this one
+        writeBuffer.putInt(writePosition + size, 0);
+        writeBuffer.putInt(writePosition, payload.length);
+        writeBuffer.force(writePosition, size + Integer.BYTES);
+        writePosition += size;
+
+        pendingRecords++;
+        pendingBytes += size;
+    }
+
+    /**
+     * Get the oldest record that is not consumed yet, without consuming it
+     * @return The record, or null if every record was consumed
+     */
+    public synchronized byte[] peek() throws IOException {
+        while (true) {
+            int length = readBuffer.getInt(readPosition);
+            if (length > 0 && readPosition + HEADER_SIZE + length <= segmentSize) {
+                byte[] payload = new byte[length];
+                readBuffer.get(readPosition + HEADER_SIZE, payload);
+                if (checksum(payload) == readBuffer.getInt(readPosition + Integer.BYTES)) {
+                    return payload;
+                }
+                log.warn("Skipping corrupt record at {} of segment {}", readPosition, readSegment);
+            }
+            if (readSegment == writeSegment) {
+                return null;
+            }
+            // Everything left in this segment is consumed or corrupt
+            long consumedSegment = readSegment;
+            readSegment++;
+            readBuffer = readSegment == writeSegment ? writeBuffer : map(segmentPath(readSegment), segmentSize);
+            readPosition = 0;
+            saveCursor();
+            Files.deleteIfExists(segmentPath(consumedSegment));
+        }
+    }
+
+    /**
+     * Consume the record returned by the last {@link #peek()}
+     */
+    public synchronized void advance() {
+        int length = readBuffer.getInt(readPosition);
+        if (length <= 0) {
+            throw new IllegalStateException("No record to consume");
+        }
+        readPosition += HEADER_SIZE + length;
+        saveCursor();
+        pendingRecords--;
+        pendingBytes -= HEADER_SIZE + length;
+    }
+
+    /**
+     * Pass the records that are not consumed yet to a consumer, oldest first, without consuming them
+     * @param consumer Receives each record
+     */
+    public synchronized void forEachPending(Consumer<byte[]> consumer) throws IOException {
+        for (long segment : segments()) {
+            if (segment < readSegment) {
+                continue;
+            }
+            MappedByteBuffer buffer = segment == readSegment ? readBuffer
+                    : segment == writeSegment ? writeBuffer : map(segmentPath(segment), segmentSize);
+            int position = segment == readSegment ? readPosition : 0;
+            int end = segment == writeSegment ? writePosition : endOf(buffer);
+            while (position < end) {
+                byte[] payload = new byte[buffer.getInt(position)];
+                buffer.get(position + HEADER_SIZE, payload);
+                consumer.accept(payload);
+                position += HEADER_SIZE + payload.length;
+            }
+        }
+    }
+
+    /**
+     * Number of records not consumed yet
+     */
+    public synchronized long getPendingRecords() {
+        return pendingRecords;
+    }
+
+    /**
+     * Size of the records not consumed yet, headers included
+     */
+    public synchronized long getPendingBytes() {
+        return pendingBytes;
+    }
+
+    @Override
+    public synchronized void close() {
+        writeBuffer.force();
+        cursor.force();
+    }
+
+    private void rotate() throws IOException {
+        writeBuffer.force();
+        writeSegment++;
+        writeBuffer = map(segmentPath(writeSegment), segmentSize);
+        writePosition = 0;
+        log.info("Rotated update journal to segment {}", writeSegment);
+    }
+
+    private void saveCursor() {
+        cursor.putLong(0, readSegment);
+        cursor.putInt(Long.BYTES, readPosition);
+        cursor.force();
+    }
+
+    private void countPending(List<Long> segments) throws IOException {
+        for (long segment : segments) {
+            if (segment < readSegment) {
+                continue;
+            }
+            MappedByteBuffer buffer = segment == writeSegment ? writeBuffer : map(segmentPath(segment), segmentSize);
+            int position = segment == readSegment ? readPosition : 0;
+            int end = segment == writeSegment ? writePosition : endOf(buffer);
+            while (position < end) {
+                int size = HEADER_SIZE + buffer.getInt(position);
+                pendingRecords++;
+                pendingBytes += size;
+                position += size;
+            }
+        }
+    }
+
+    /**
+     * Find the end of the valid records of a segment
+     */
+    private int endOf(MappedByteBuffer buffer) {
+        int position = 0;
+        while (position + HEADER_SIZE <= segmentSize) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_SIZE + length > segmentSize - Integer.BYTES) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(position + HEADER_SIZE, payload);
+            if (checksum(payload) != buffer.getInt(position + Integer.BYTES)) {
+                break;
+            }
+            position += HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    private List<Long> segments() throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .forEach(segments::add);
+        }
+        return segments;
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(SEGMENT_PREFIX + String.format("%020d", segment) + SEGMENT_SUFFIX);
+    }
+
+    private static MappedByteBuffer map(Path file, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
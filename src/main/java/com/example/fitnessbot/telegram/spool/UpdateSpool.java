@@ -0,0 +1,247 @@
+package com.example.fitnessbot.telegram.spool;
+
+import com.example.fitnessbot.telegram.dispatch.UpdateKeys;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Keeps updates whose handling failed because the database was unavailable on local disk, so that the
+ * user's training days are not lost. Spooled updates are handled again in the order they were spooled,
+ * by {@link SpoolReplayer} once the database is back. Until then, new updates of chats with spooled updates
+ * are spooled behind them, so a chat's updates are never handled out of order.
+ */
+@Component
+public class UpdateSpool implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(UpdateSpool.class);
+
+    private static final ThreadLocal<Boolean> REPLAYING = ThreadLocal.withInitial(() -> false);
+
+    private final UpdateJournal journal;
+    private final ObjectMapper objectMapper;
+    private final Counter spooled;
+    private final Counter replayed;
+    private final Counter held;
+    // Maps tenant and chat to the number of its updates that are spooled; changed under its own lock
+    private final Map<SpooledChat, Integer> spooledChats = new ConcurrentHashMap<>();
+
+    @Autowired
+    public UpdateSpool(@Value("${telegram.spool.enabled:true}") boolean enabled,
+                       @Value("${telegram.spool.directory:spool}") Path directory,
+                       @Value("${telegram.spool.segment-size:16MB}") DataSize segmentSize,
+                       ObjectMapper objectMapper,
+                       MeterRegistry meterRegistry) throws IOException {
+        this(enabled ? new UpdateJournal(directory, Math.toIntExact(segmentSize.toBytes())) : null,
+                objectMapper, meterRegistry);
+    }
+
+    /**
+     * @param journal Journal the updates are kept in, or null to disable spooling
+     */
+    public UpdateSpool(UpdateJournal journal, ObjectMapper objectMapper, MeterRegistry meterRegistry) throws IOException {
+        this.journal = journal;
+        this.objectMapper = objectMapper;
+        this.spooled = Counter.builder("telegram.spool.spooled")
+                .description("Updates spooled while the database was unavailable")
+                .register(meterRegistry);
+        this.replayed = Counter.builder("telegram.spool.replayed")
+                .description("Spooled updates handled again")
+                .register(meterRegistry);
+        this.held = Counter.builder("telegram.spool.held")
+                .description("Updates spooled behind earlier spooled updates of their chat")
+                .register(meterRegistry);
+        Gauge.builder("telegram.spool.updates", this, UpdateSpool::getPendingUpdates)
+                .description("Spooled updates waiting for the database")
+                .register(meterRegistry);
+        Gauge.builder("telegram.spool.size", this, UpdateSpool::getPendingBytes)
+                .description("Size of the spooled updates waiting for the database")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        if (journal != null) {
+            // Updates spooled before a restart still hold back their chats
+            journal.forEachPending(record -> {
+                try {
+                    SpooledChat chat = decode(record).chat();
+                    spooledChats.merge(chat, 1, Integer::sum);
+                } catch (IOException e) {
+                    // Dropped when it is replayed
+                }
+            });
+        }
+    }
+
+    public boolean isEnabled() {
+        return journal != null;
+    }
+
+    /**
+     * Check whether the current thread is handling a spooled update. Handlers rethrow database failures
+     * then instead of spooling the update a second time.
+     */
+    public static boolean isReplaying() {
+        return REPLAYING.get();
+    }
+
+    /**
+     * Mark the current thread as handling a spooled update while running an action
+     * @param action The action, e.g. handling the update on a dispatcher worker
+     */
+    public static void runReplaying(Runnable action) {
+        REPLAYING.set(true);
+        try {
+            action.run();
+        } finally {
+            REPLAYING.remove();
+        }
+    }
+
+    /**
+     * Spool an update if earlier updates of its chat are still spooled, so that it is handled after them
+     * @param tenantId Tenant whose bot received the update
+     * @param update The update
+     * @return true if the update was spooled and will be handled on replay
+     */
+    public boolean spoolIfChatSpooled(String tenantId, Update update) {
+        if (spooledChats.isEmpty()) {
+            return false;
+        }
+        SpooledChat chat = new SpooledChat(tenantId, UpdateKeys.chatKey(update));
+        synchronized (spooledChats) {
+            if (!spooledChats.containsKey(chat) || !spool(tenantId, List.of(update))) {
+                return false;
+            }
+        }
+        held.increment();
+        return true;
+    }
+
+    /**
+     * Spool updates of a tenant, keeping their order
+     * @param tenantId Tenant whose bot received the updates
+     * @param updates The updates
+     * @return true if all of them were written to disk, false if spooling is disabled or failed
+     */
+    public boolean spool(String tenantId, List<Update> updates) {
+        if (journal == null) {
+            return false;
+        }
+        try {
+            for (Update update : updates) {
+                synchronized (spooledChats) {
+                    journal.append(encode(tenantId, update));
+                    spooledChats.merge(new SpooledChat(tenantId, UpdateKeys.chatKey(update)), 1, Integer::sum);
+                }
+                spooled.increment();
+            }
+            return true;
+        } catch (IOException e) {
+            log.error("Failed to spool updates of tenant {}", tenantId, e);
+            return false;
+        }
+    }
+
+    /**
+     * Handle spooled updates again in order. An update stays spooled and replay stops at the first update
+     * that fails because the database is unavailable; updates that fail for another reason are dropped.
+     * @param maxUpdates Maximum number of updates to handle
+     * @param handler Receives the tenant id and the update
+     * @return Number of updates taken off the spool
+     */
+    public synchronized int replay(int maxUpdates, BiConsumer<String, Update> handler) throws IOException {
+        if (journal == null) {
+            return 0;
+        }
+        int count = 0;
+        byte[] record;
+        while (count < maxUpdates && (record = journal.peek()) != null) {
+            boolean handled = false;
+            SpooledChat chat = null;
+            try {
+                SpooledUpdate spooledUpdate = decode(record);
+                chat = spooledUpdate.chat();
+                runReplaying(() -> handler.accept(spooledUpdate.tenantId(), spooledUpdate.update()));
+                handled = true;
+            } catch (IOException e) {
+                log.error("Dropping spooled update that cannot be read", e);
+            } catch (RuntimeException e) {
+                if (DatabaseOutages.isOutage(e)) {
+                    log.warn("Database still unavailable, {} updates stay spooled", journal.getPendingRecords());
+                    return count;
+                }
+                log.error("Dropping spooled update that failed to be handled", e);
+            }
+            synchronized (spooledChats) {
+                journal.advance();
+                if (chat != null) {
+                    spooledChats.computeIfPresent(chat, (key, spooledCount) -> spooledCount == 1 ? null : spooledCount - 1);
+                }
+            }
+            count++;
+            if (handled) {
+                replayed.increment();
+            }
+        }
+        return count;
+    }
+
+    public long getPendingUpdates() {
+        return journal == null ? 0 : journal.getPendingRecords();
+    }
+
+    public long getPendingBytes() {
+        return journal == null ? 0 : journal.getPendingBytes();
+    }
+
+    @Override
+    public void destroy() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private SpooledUpdate decode(byte[] record) throws IOException {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(record))) {
+            String tenantId = input.readUTF();
+            return new SpooledUpdate(tenantId, objectMapper.readValue(input.readAllBytes(), Update.class));
+        }
+    }
+
+    private byte[] encode(String tenantId, Update update) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeUTF(tenantId);
+            output.write(objectMapper.writeValueAsBytes(update));
+        }
+        return bytes.toByteArray();
+    }
+
+    private record SpooledUpdate(String tenantId, Update update) {
+        SpooledChat chat() {
+            return new SpooledChat(tenantId, UpdateKeys.chatKey(update));
+        }
+    }
+
+    private record SpooledChat(String tenantId, long chatKey) {
+    }
+}
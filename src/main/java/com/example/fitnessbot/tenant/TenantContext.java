@@ -0,0 +1,61 @@
+package com.example.fitnessbot.tenant;
+
+import java.util.function.Supplier;
+
+/**
+ * Tenant (white-label bot) the current thread works for.
+ * Set around the handling of each update; repositories and sessions read it to keep tenants apart.
+ */
+public final class TenantContext {
+
+    /**
+     * Tenant of the bot configured with telegram.bot.token, and of work done outside any update
+     */
+    public static final String DEFAULT_TENANT = "default";
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private TenantContext() {
+    }
+
+    /**
+     * Get the tenant of the current thread
+     * @return The tenant id, or {@link #DEFAULT_TENANT} if none is set
+     */
+    public static String current() {
+        String tenantId = CURRENT.get();
+        return tenantId != null ? tenantId : DEFAULT_TENANT;
+    }
+
+    /**
+     * Run an action on behalf of a tenant, restoring the previous tenant afterwards
+     * @param tenantId The tenant id
+     * @param action The action to run
+     */
+    public static void run(String tenantId, Runnable action) {
+        call(tenantId, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Compute a result on behalf of a tenant, restoring the previous tenant afterwards
+     * @param tenantId The tenant id
+     * @param action The action to run
+     * @return The result of the action
+     */
+    public static <T> T call(String tenantId, Supplier<T> action) {
+        String previous = CURRENT.get();
+        CURRENT.set(tenantId);
+        try {
+            return action.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+}
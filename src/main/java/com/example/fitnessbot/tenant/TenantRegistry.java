@@ -0,0 +1,172 @@
+package com.example.fitnessbot.tenant;
+
+import com.example.fitnessbot.model.BotTenant;
+import com.example.fitnessbot.repository.BotTenantRepository;
+import com.example.fitnessbot.service.UpdateOffsetService;
+import com.example.fitnessbot.telegram.FitnessTelegramBot;
+import com.example.fitnessbot.telegram.TelegramBotConfig;
+import com.example.fitnessbot.telegram.dispatch.UpdateDispatcher;
+import com.example.fitnessbot.telegram.polling.AdaptiveLongPollingSession;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hosts the bots of white-label tenants next to the default bot in one process.
+ * Tenants are stored in bot_tenants and can be registered while the application runs. Every tenant bot
+ * shares the default bot's handlers, dispatcher, database pool and caches; only its token, its long-polling
+ * session and the tenant id stamped on its data are its own.
+ */
+@Component
+@ConditionalOnProperty(name = "telegram.tenants.enabled", havingValue = "true")
+public class TenantRegistry implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(TenantRegistry.class);
+
+    private final FitnessTelegramBot defaultBot;
+    private final BotTenantRepository botTenantRepository;
+    private final UpdateDispatcher updateDispatcher;
+    private final UpdateOffsetService updateOffsetService;
+    private final MeterRegistry meterRegistry;
+    private final List<String> allowedUpdates;
+    private final int timeoutSeconds;
+    private final Map<String, TenantBot> tenants = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+
+    public TenantRegistry(FitnessTelegramBot defaultBot,
+                          BotTenantRepository botTenantRepository,
+                          UpdateDispatcher updateDispatcher,
+                          UpdateOffsetService updateOffsetService,
+                          MeterRegistry meterRegistry,
+                          @Value("${telegram.bot.mode:polling}") String mode,
+                          @Value("${telegram.bot.allowed-updates:message,callback_query}") List<String> allowedUpdates,
+                          @Value("${telegram.bot.channel-posts.enabled:false}") boolean channelPosts,
+                          @Value("${telegram.bot.polling.timeout-seconds:50}") int timeoutSeconds) {
+        if (!"polling".equals(mode)) {
+            throw new IllegalStateException("Tenant bots are only supported with telegram.bot.mode=polling");
+        }
+        this.defaultBot = defaultBot;
+        this.botTenantRepository = botTenantRepository;
+        this.updateDispatcher = updateDispatcher;
+        this.updateOffsetService = updateOffsetService;
+        this.meterRegistry = meterRegistry;
+        this.allowedUpdates = TelegramBotConfig.allowedUpdates(allowedUpdates, channelPosts);
+        this.timeoutSeconds = timeoutSeconds;
+        Gauge.builder("telegram.tenants.active", tenants, Map::size)
+                .description("Tenant bots polling in this process")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        for (BotTenant tenant : botTenantRepository.findByEnabledTrue()) {
+            startTenant(tenant);
+        }
+        log.info("Started {} tenant bots", tenants.size());
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        tenants.values().forEach(tenantBot -> tenantBot.session().stop());
+        tenants.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Add a tenant and start its bot
+     * @param tenantId Id stamped on the tenant's data
+     * @param botToken Token of the tenant's bot
+     * @param botUsername Username of the tenant's bot
+     * @return The tenant's bot
+     */
+    public FitnessTelegramBot register(String tenantId, String botToken, String botUsername) {
+        if (tenantId == null || tenantId.isBlank() || TenantContext.DEFAULT_TENANT.equals(tenantId)) {
+            throw new IllegalArgumentException("Invalid tenant id: " + tenantId);
+        }
+        if (botTenantRepository.existsById(tenantId) || botTenantRepository.existsByBotUsername(botUsername)
+                || botUsername.equals(defaultBot.getBotUsername())) {
+            throw new IllegalArgumentException("Tenant " + tenantId + " or bot " + botUsername + " is already registered");
+        }
+
+        BotTenant tenant = new BotTenant();
+        tenant.setTenantId(tenantId);
+        tenant.setBotToken(botToken);
+        tenant.setBotUsername(botUsername);
+        botTenantRepository.save(tenant);
+        return startTenant(tenant);
+    }
+
+    /**
+     * Stop a tenant's bot and keep it from starting again; its data is kept
+     * @param tenantId The tenant id
+     */
+    public void unregister(String tenantId) {
+        TenantBot tenantBot = tenants.remove(tenantId);
+        if (tenantBot != null) {
+            tenantBot.session().stop();
+        }
+        botTenantRepository.findById(tenantId).ifPresent(tenant -> {
+            tenant.setEnabled(false);
+            botTenantRepository.save(tenant);
+        });
+    }
+
+    /**
+     * Get the bot of a running tenant
+     */
+    public Optional<FitnessTelegramBot> getBot(String tenantId) {
+        return Optional.ofNullable(tenants.get(tenantId)).map(TenantBot::bot);
+    }
+
+    private FitnessTelegramBot startTenant(BotTenant tenant) {
+        FitnessTelegramBot bot = defaultBot.forTenant(tenant.getTenantId(), tenant.getBotToken(), tenant.getBotUsername());
+        bot.registerCommands();
+        AdaptiveLongPollingSession session = new TenantPollingSession(bot, updateDispatcher, updateOffsetService,
+                allowedUpdates, timeoutSeconds, meterRegistry);
+        session.start();
+        tenants.put(tenant.getTenantId(), new TenantBot(bot, session));
+        log.info("Started bot {} of tenant {}", tenant.getBotUsername(), tenant.getTenantId());
+        return bot;
+    }
+
+    private record TenantBot(FitnessTelegramBot bot, AdaptiveLongPollingSession session) {
+    }
+
+    /**
+     * Polling session that, when stopped alone, waits only for its own updates instead of draining
+     * the dispatcher shared with the other bots
+     */
+    private static class TenantPollingSession extends AdaptiveLongPollingSession {
+
+        private final UpdateDispatcher updateDispatcher;
+
+        TenantPollingSession(FitnessTelegramBot bot, UpdateDispatcher updateDispatcher,
+                             UpdateOffsetService updateOffsetService, List<String> allowedUpdates,
+                             int timeoutSeconds, MeterRegistry meterRegistry) {
+            super(bot, updateDispatcher, updateOffsetService, allowedUpdates, timeoutSeconds, meterRegistry);
+            this.updateDispatcher = updateDispatcher;
+        }
+
+        @Override
+        protected void drainDelivered() {
+            awaitInFlight(updateDispatcher.getDrainTimeout());
+        }
+    }
+}
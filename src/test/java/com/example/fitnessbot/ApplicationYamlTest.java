@@ -0,0 +1,30 @@
+package com.example.fitnessbot;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.FileSystemResource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Parses the shipped application.yml without starting the context, which needs a database.
+ * The test resources have an application.yml of their own, so the file is read from the main sources.
+ */
+class ApplicationYamlTest {
+
+    @Test
+    void testApplicationYamlParses() throws Exception {
+        List<PropertySource<?>> sources = new YamlPropertySourceLoader()
+                .load("application.yml", new FileSystemResource("src/main/resources/application.yml"));
+
+        assertEquals(1, sources.size());
+        PropertySource<?> properties = sources.getFirst();
+        assertEquals("/start,/menu,/help", properties.getProperty("telegram.dispatch.lanes.interactive.commands"));
+        assertEquals("10s", properties.getProperty("telegram.bulkheads.default.timeout"));
+        // The last section stays commented out
+        assertNull(properties.getProperty("telegram.async-reads.concurrency"));
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.fitnessbot.controller;
+
+import com.example.fitnessbot.telegram.FitnessTelegramBot;
+import com.example.fitnessbot.telegram.decode.UpdateDecoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.mockito.ArgumentCaptor;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TelegramWebhookControllerTest {
+
+    private static final String SECRET = "s3cret";
+    private static final byte[] UPDATE = "{\"update_id\":5,\"message\":{\"message_id\":1,\"chat\":{\"id\":42,\"type\":\"private\"},\"text\":\"/menu\"}}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Mock
+    private FitnessTelegramBot fitnessTelegramBot;
+
+    private TelegramWebhookController controller;
+
+    @BeforeEach
+    void setUp() {
+        controller = new TelegramWebhookController(fitnessTelegramBot, new UpdateDecoder(new ObjectMapper()), SECRET);
+    }
+
+    @Test
+    void testAcceptedUpdateReturnsOk() {
+        when(fitnessTelegramBot.offerUpdate(any(Update.class))).thenReturn(true);
+
+        ResponseEntity<Void> response = controller.onUpdate(SECRET, UPDATE);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        ArgumentCaptor<Update> captor = ArgumentCaptor.forClass(Update.class);
+        verify(fitnessTelegramBot).offerUpdate(captor.capture());
+        assertEquals(5, captor.getValue().getUpdateId());
+        assertEquals("/menu", captor.getValue().getMessage().getText());
+    }
+
+    @Test
+    void testWrongSecretIsRejectedWithoutQueueing() {
+        ResponseEntity<Void> response = controller.onUpdate("wrong", UPDATE);
+
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+        verifyNoInteractions(fitnessTelegramBot);
+    }
+
+    @Test
+    void testMissingSecretIsRejected() {
+        ResponseEntity<Void> response = controller.onUpdate(null, UPDATE);
+
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+        verifyNoInteractions(fitnessTelegramBot);
+    }
+
+    @Test
+    void testFullQueueAsksTelegramToRetry() {
+        when(fitnessTelegramBot.offerUpdate(any(Update.class))).thenReturn(false);
+
+        ResponseEntity<Void> response = controller.onUpdate(SECRET, UPDATE);
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+    }
+
+    @Test
+    void testMalformedBodyIsRejected() {
+        ResponseEntity<Void> response = controller.onUpdate(SECRET, "[1,2]".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verifyNoInteractions(fitnessTelegramBot);
+    }
+
+    @Test
+    void testBlankSecretIsRefusedAtStartup() {
+        assertThrows(IllegalStateException.class, () -> new TelegramWebhookController(fitnessTelegramBot, new UpdateDecoder(new ObjectMapper()), " "));
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.fitnessbot.integration;
+
+import com.example.fitnessbot.telegram.FitnessTelegramBot;
+import com.example.fitnessbot.telegram.cluster.RedisLease;
+import com.example.fitnessbot.telegram.cluster.UpdateStreamConsumer;
+import com.example.fitnessbot.telegram.cluster.UpdateStreams;
+import com.example.fitnessbot.telegram.dispatch.UpdateDispatcher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@Testcontainers
+class ClusterModeIntegrationTest {
+
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>("redis:7-alpine")
+            .withExposedPorts(6379);
+
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate redisTemplate;
+    private UpdateStreams updateStreams;
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(redis.getHost(), redis.getMappedPort(6379)));
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate.getConnectionFactory().getConnection().serverCommands().flushAll();
+        updateStreams = new UpdateStreams(redisTemplate, new ObjectMapper(), "test_bot", 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void testOnlyOneNodeHoldsTheLease() {
+        RedisLease first = new RedisLease(redisTemplate, "tg:poller:test_bot", "node-a", Duration.ofSeconds(10));
+        RedisLease second = new RedisLease(redisTemplate, "tg:poller:test_bot", "node-b", Duration.ofSeconds(10));
+
+        assertThat(first.tryAcquire()).isTrue();
+        assertThat(second.tryAcquire()).isFalse();
+        assertThat(second.renew()).isFalse();
+        assertThat(first.renew()).isTrue();
+
+        first.release();
+        assertThat(second.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void testWorkersHandleEachChatInOrderAndTakeOverUnacknowledgedEntries() throws Exception {
+        for (int i = 1; i <= 5; i++) {
+            updateStreams.publish(createUpdate(i, 42L));
+        }
+        int partition = updateStreams.partitionOf(createUpdate(0, 42L));
+
+        // A replica that crashes after reading two entries leaves them unacknowledged
+        updateStreams.createGroup(partition);
+        assertThat(updateStreams.read(partition, ReadOffset.lastConsumed(), 2, Duration.ofMillis(100))).hasSize(2);
+
+        List<Integer> handled = new CopyOnWriteArrayList<>();
+        FitnessTelegramBot bot = mock(FitnessTelegramBot.class);
+        when(bot.getBotUsername()).thenReturn("test_bot");
+        doAnswer(invocation -> {
+            handled.add(invocation.getArgument(0, Update.class).getUpdateId());
+            invocation.getArgument(1, Runnable.class).run();
+            return null;
+        }).when(bot).onUpdateReceived(any(Update.class), any(Runnable.class));
+        UpdateDispatcher dispatcher = new UpdateDispatcher(Runnable::run, new SimpleMeterRegistry());
+        UpdateStreamConsumer consumer = new UpdateStreamConsumer(bot, dispatcher, updateStreams, redisTemplate,
+                "node-b", Duration.ofSeconds(3), 10, new SimpleMeterRegistry());
+
+        consumer.start();
+        try {
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (handled.size() < 5 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+        } finally {
+            consumer.stop();
+        }
+
+        assertThat(handled).containsExactly(1, 2, 3, 4, 5);
+        assertThat(redisTemplate.opsForStream().size(updateStreams.streamKey(partition))).isZero();
+    }
+
+    private static Update createUpdate(int updateId, long chatId) {
+        Chat chat = new Chat();
+        chat.setId(chatId);
+        Message message = new Message();
+        message.setChat(chat);
+        message.setText("Day " + updateId);
+        Update update = new Update();
+        update.setUpdateId(updateId);
+        update.setMessage(message);
+        return update;
+    }
+}
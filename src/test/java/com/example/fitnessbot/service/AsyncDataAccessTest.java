@@ -0,0 +1,80 @@
+package com.example.fitnessbot.service;
+
+import com.example.fitnessbot.tenant.TenantContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncDataAccessTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testReadRunsOffTheCallerForItsTenant() {
+        AsyncDataAccess dataAccess = new AsyncDataAccess(null, executor, 4);
+        AtomicReference<Thread> readThread = new AtomicReference<>();
+
+        String tenant = TenantContext.call("gym-a", () -> dataAccess.read(() -> {
+            readThread.set(Thread.currentThread());
+            return TenantContext.current();
+        }).join());
+
+        assertEquals("gym-a", tenant);
+        assertNotSame(Thread.currentThread(), readThread.get());
+        assertTrue(readThread.get().isVirtual());
+    }
+
+    @Test
+    void testConcurrentReadsAreLimited() throws Exception {
+        AsyncDataAccess dataAccess = new AsyncDataAccess(null, executor, 2);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        List<CompletableFuture<Integer>> reads = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            reads.add(dataAccess.read(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                return 1;
+            }));
+        }
+        Thread.sleep(100);
+        release.countDown();
+
+        assertEquals(10, reads.stream().mapToInt(CompletableFuture::join).sum());
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    void testFailureCompletesTheFuture() {
+        CompletableFuture<Object> read = AsyncDataAccess.direct().read(() -> {
+            throw new IllegalStateException("no connection");
+        });
+
+        CompletionException e = assertThrows(CompletionException.class, read::join);
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.fitnessbot.service;
+
+import com.example.fitnessbot.model.OutboxMessage;
+import com.example.fitnessbot.repository.OutboxMessageRepository;
+import com.example.fitnessbot.tenant.TenantContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxServiceTest {
+
+    @Mock
+    private OutboxMessageRepository outboxMessageRepository;
+
+    private OutboxService outboxService;
+
+    @BeforeEach
+    void setUp() {
+        outboxService = new OutboxService(outboxMessageRepository, TransactionOperations.withoutTransaction(),
+                Duration.ofSeconds(30), Duration.ofSeconds(5), 3);
+    }
+
+    @Test
+    void testReplyIsStoredWithTheChangeAndClaimedByTheCaller() {
+        when(outboxMessageRepository.existsByTenantIdAndIdempotencyKey("gym-a", "forward:1:10")).thenReturn(false);
+        when(outboxMessageRepository.saveAndFlush(any(OutboxMessage.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        OutboxMessage reply = TenantContext.call("gym-a",
+                () -> outboxService.saveWithReply("forward:1:10", "1", () -> "✅ Saved")).orElseThrow();
+
+        assertEquals("gym-a", reply.getTenantId());
+        assertEquals("1", reply.getChatId());
+        assertEquals("✅ Saved", reply.getText());
+        // The relay leaves it to the caller until the claim expires
+        assertTrue(reply.getNextAttemptAt().isAfter(LocalDateTime.now().plusSeconds(20)));
+    }
+
+    @Test
+    void testUpdateHandledBeforeIsNotChangedAgain() {
+        when(outboxMessageRepository.existsByTenantIdAndIdempotencyKey(TenantContext.DEFAULT_TENANT, "forward:1:10")).thenReturn(true);
+        AtomicBoolean changed = new AtomicBoolean();
+
+        Optional<OutboxMessage> reply = outboxService.saveWithReply("forward:1:10", "1", () -> {
+            changed.set(true);
+            return "✅ Saved";
+        });
+
+        assertTrue(reply.isEmpty());
+        assertFalse(changed.get());
+        verify(outboxMessageRepository, never()).saveAndFlush(any(OutboxMessage.class));
+    }
+
+    @Test
+    void testUpdateHandledConcurrentlyCountsAsHandledBefore() {
+        when(outboxMessageRepository.existsByTenantIdAndIdempotencyKey(TenantContext.DEFAULT_TENANT, "forward:1:10")).thenReturn(false);
+        when(outboxMessageRepository.saveAndFlush(any(OutboxMessage.class))).thenThrow(new DataIntegrityViolationException(
+                "could not execute statement", new SQLException("ERROR: duplicate key value violates unique constraint \""
+                        + OutboxService.IDEMPOTENCY_KEY_CONSTRAINT + "\"", "23505")));
+
+        assertTrue(outboxService.saveWithReply("forward:1:10", "1", () -> "✅ Saved").isEmpty());
+    }
+
+    @Test
+    void testOtherIntegrityViolationsFailTheChange() {
+        when(outboxMessageRepository.existsByTenantIdAndIdempotencyKey(TenantContext.DEFAULT_TENANT, "forward:1:10")).thenReturn(false);
+
+        assertThrows(DataIntegrityViolationException.class, () -> outboxService.saveWithReply("forward:1:10", "1", () -> {
+            throw new DataIntegrityViolationException("could not execute statement",
+                    new SQLException("ERROR: duplicate key value violates unique constraint \"uk_user_training_days\"", "23505"));
+        }));
+    }
+
+    @Test
+    void testBurstStoresAKeyPerUpdateAndOneReply() {
+        List<String> keys = List.of("forward:1:10", "forward:1:11", "forward:1:12");
+        when(outboxMessageRepository.findIdempotencyKeys(TenantContext.DEFAULT_TENANT, keys)).thenReturn(List.of());
+        when(outboxMessageRepository.saveAndFlush(any(OutboxMessage.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        OutboxMessage reply = outboxService.saveWithReply(keys, "1", newKeys -> "✅ Saved " + newKeys.size()).orElseThrow();
+
+        assertEquals("forward:1:12", reply.getIdempotencyKey());
+        assertEquals("✅ Saved 3", reply.getText());
+        assertNull(reply.getSentAt());
+        ArgumentCaptor<OutboxMessage> recorded = ArgumentCaptor.forClass(OutboxMessage.class);
+        verify(outboxMessageRepository, times(2)).save(recorded.capture());
+        assertEquals(List.of("forward:1:10", "forward:1:11"),
+                recorded.getAllValues().stream().map(OutboxMessage::getIdempotencyKey).toList());
+        // Only the reply is left for sending
+        assertTrue(recorded.getAllValues().stream().allMatch(message -> message.getSentAt() != null));
+    }
+
+    @Test
+    void testBurstGroupedDifferentlyIsOnlyChangedForItsNewUpdates() {
+        List<String> keys = List.of("forward:1:11", "forward:1:12");
+        when(outboxMessageRepository.findIdempotencyKeys(TenantContext.DEFAULT_TENANT, keys)).thenReturn(List.of("forward:1:11"));
+        when(outboxMessageRepository.saveAndFlush(any(OutboxMessage.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        List<String> changed = new ArrayList<>();
+
+        OutboxMessage reply = outboxService.saveWithReply(keys, "1", newKeys -> {
+            changed.addAll(newKeys);
+            return "✅ Saved";
+        }).orElseThrow();
+
+        assertEquals(List.of("forward:1:12"), changed);
+        assertEquals("forward:1:12", reply.getIdempotencyKey());
+        verify(outboxMessageRepository, never()).save(any(OutboxMessage.class));
+    }
+
+    @Test
+    void testBurstHandledBeforeIsNotChangedAgain() {
+        List<String> keys = List.of("forward:1:10", "forward:1:11");
+        when(outboxMessageRepository.findIdempotencyKeys(TenantContext.DEFAULT_TENANT, keys)).thenReturn(keys);
+
+        assertTrue(outboxService.saveWithReply(keys, "1", newKeys -> fail("changed again")).isEmpty());
+        verify(outboxMessageRepository, never()).saveAndFlush(any(OutboxMessage.class));
+    }
+
+    @Test
+    void testDueMessagesAreClaimed() {
+        OutboxMessage message = new OutboxMessage();
+        message.setNextAttemptAt(LocalDateTime.now().minusMinutes(1));
+        when(outboxMessageRepository.lockDue(any(LocalDateTime.class), eq(10))).thenReturn(List.of(message));
+
+        assertEquals(List.of(message), outboxService.claimDue(10));
+        assertTrue(message.getNextAttemptAt().isAfter(LocalDateTime.now().plusSeconds(20)));
+    }
+
+    @Test
+    void testFailedMessageIsRetriedWithBackoffThenGivenUp() {
+        OutboxMessage message = new OutboxMessage();
+        when(outboxMessageRepository.findById(1L)).thenReturn(Optional.of(message));
+
+        assertFalse(outboxService.markFailed(1L, new IllegalStateException("Bad Gateway")));
+        assertRetryIn(Duration.ofSeconds(5), message);
+        assertFalse(outboxService.markFailed(1L, new IllegalStateException("Bad Gateway")));
+        assertRetryIn(Duration.ofSeconds(10), message);
+        assertEquals("Bad Gateway", message.getLastError());
+        assertNull(message.getFailedAt());
+
+        assertTrue(outboxService.markFailed(1L, new IllegalStateException("Bad Gateway")));
+        assertEquals(3, message.getAttempts());
+        assertNotNull(message.getFailedAt());
+    }
+
+    @Test
+    void testSentMessageIsConfirmed() {
+        OutboxMessage message = new OutboxMessage();
+        when(outboxMessageRepository.findById(1L)).thenReturn(Optional.of(message));
+
+        outboxService.markSent(1L);
+
+        assertNotNull(message.getSentAt());
+    }
+
+    private static void assertRetryIn(Duration delay, OutboxMessage message) {
+        Duration remaining = Duration.between(LocalDateTime.now(), message.getNextAttemptAt());
+        assertTrue(remaining.compareTo(delay) <= 0 && remaining.compareTo(delay.minusSeconds(1)) > 0, remaining::toString);
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.fitnessbot.service;
 
 import com.example.fitnessbot.model.Program;
+import com.example.fitnessbot.model.ProgramTrainingDay;
+import com.example.fitnessbot.model.TrainingDay;
 import com.example.fitnessbot.model.User;
 import com.example.fitnessbot.repository.ProgramRepository;
 import com.example.fitnessbot.repository.ProgramTrainingDayRepository;
@@ -17,6 +19,7 @@ import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -169,4 +172,97 @@ class ProgramServiceTest {
         verify(userRepository).findByTelegramId(telegramUserId);
         verify(programRepository).findFirstByUserIdOrderByCreatedAtDesc(userId);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testAddTrainingDaysToProgramLinksAllDaysInOrder() {
+        // Given
+        User user = new User();
+        user.setId(1L);
+        Program program = new Program();
+        program.setId(10L);
+        program.setUser(user);
+        TrainingDay first = createTrainingDay(100L, user);
+        TrainingDay second = createTrainingDay(101L, user);
+
+        when(programRepository.findById(10L)).thenReturn(Optional.of(program));
+        when(trainingDayRepository.findAllById(List.of(101L, 100L))).thenReturn(List.of(first, second));
+        when(programTrainingDayRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        List<ProgramTrainingDay> result = programService.addTrainingDaysToProgram(10L, List.of(101L, 100L));
+
+        // Then
+        assertEquals(2, result.size());
+        assertEquals(second, result.get(0).getTrainingDay());
+        assertEquals(1, result.get(0).getPosition());
+        assertEquals(first, result.get(1).getTrainingDay());
+        assertEquals(2, result.get(1).getPosition());
+    }
+
+    @Test
+    void testAddTrainingDaysToProgramSavesNothingWhenOneDayBelongsToAnotherUser() {
+        // Given
+        User owner = new User();
+        owner.setId(1L);
+        User stranger = new User();
+        stranger.setId(2L);
+        Program program = new Program();
+        program.setId(10L);
+        program.setUser(owner);
+
+        when(programRepository.findById(10L)).thenReturn(Optional.of(program));
+        when(trainingDayRepository.findAllById(List.of(100L, 101L)))
+                .thenReturn(List.of(createTrainingDay(100L, owner), createTrainingDay(101L, stranger)));
+
+        // When / Then
+        assertThrows(RuntimeException.class, () -> programService.addTrainingDaysToProgram(10L, List.of(100L, 101L)));
+        verify(programTrainingDayRepository, never()).saveAll(anyList());
+    }
+
+    private static TrainingDay createTrainingDay(Long id, User user) {
+        TrainingDay trainingDay = new TrainingDay();
+        trainingDay.setId(id);
+        trainingDay.setUser(user);
+        return trainingDay;
+    }
+
+    @Test
+    void testUserContextLoadsEachFactOnce() {
+        // Given
+        Long telegramUserId = 123L;
+        User user = new User();
+        user.setId(1L);
+        Program program = new Program();
+        program.setId(7L);
+        when(userRepository.findByTelegramId(telegramUserId)).thenReturn(Optional.of(user));
+        when(programRepository.findFirstByUserIdOrderByCreatedAtDesc(1L)).thenReturn(Optional.of(program));
+        when(sessionManager.getSession(telegramUserId)).thenReturn(null);
+
+        // When
+        UserContext context = programService.getUserContext(telegramUserId);
+
+        // Then
+        assertTrue(context.hasActiveProgram());
+        assertEquals(7L, context.getActiveProgramId());
+        assertSame(user, context.getUser());
+        assertFalse(context.hasActiveSession());
+        assertFalse(context.hasActiveSession());
+        verify(userRepository, times(1)).findByTelegramId(telegramUserId);
+        verify(programRepository, times(1)).findFirstByUserIdOrderByCreatedAtDesc(1L);
+        verify(sessionManager, times(1)).getSession(telegramUserId);
+    }
+
+    @Test
+    void testUserContextOfUnknownUserSkipsProgramLookup() {
+        // Given
+        when(userRepository.findByTelegramId(123L)).thenReturn(Optional.empty());
+
+        // When
+        UserContext context = programService.getUserContext(123L);
+
+        // Then
+        assertNull(context.getUser());
+        assertFalse(context.hasActiveProgram());
+        verifyNoInteractions(programRepository);
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.fitnessbot.service;
+
+import com.example.fitnessbot.model.Exercise;
+import com.example.fitnessbot.model.TrainingDay;
+import com.example.fitnessbot.model.User;
+import com.example.fitnessbot.model.UserTrainingDay;
+import com.example.fitnessbot.parser.TrainingDayParser;
+import com.example.fitnessbot.repository.ExerciseRepository;
+import com.example.fitnessbot.repository.TrainingDayRepository;
+import com.example.fitnessbot.repository.UserRepository;
+import com.example.fitnessbot.repository.UserTrainingDayRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TrainingDayServiceTest {
+
+    private static final long CHANNEL_ID = -1001L;
+
+    @Mock
+    private TrainingDayParser parser;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private TrainingDayRepository trainingDayRepository;
+
+    @Mock
+    private ExerciseRepository exerciseRepository;
+
+    @Mock
+    private UserTrainingDayRepository userTrainingDayRepository;
+
+    private TrainingDayService trainingDayService;
+
+    @BeforeEach
+    void setUp() {
+        trainingDayService = new TrainingDayService(parser, userRepository, trainingDayRepository, exerciseRepository,
+                userTrainingDayRepository);
+    }
+
+    @Test
+    void testChannelPostIsStoredOnceAsSharedDay() {
+        // Given
+        when(trainingDayRepository.findBySourceChatIdAndSourceMessageId(CHANNEL_ID, 7)).thenReturn(Optional.empty());
+        when(parser.parse("Day 1\nSquats 5x5")).thenReturn(new TrainingDay());
+        when(trainingDayRepository.save(any(TrainingDay.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        TrainingDay result = trainingDayService.processChannelPost(CHANNEL_ID, 7, "Day 1\nSquats 5x5");
+
+        // Then
+        assertTrue(result.isShared());
+        assertEquals(CHANNEL_ID, result.getSourceChatId());
+        assertEquals(7, result.getSourceMessageId());
+        assertEquals("Day 1", result.getTitle());
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void testRepeatedChannelPostIsNotParsedAgain() {
+        // Given
+        TrainingDay shared = new TrainingDay();
+        when(trainingDayRepository.findBySourceChatIdAndSourceMessageId(CHANNEL_ID, 7)).thenReturn(Optional.of(shared));
+
+        // When
+        TrainingDay result = trainingDayService.processChannelPost(CHANNEL_ID, 7, "Day 1");
+
+        // Then
+        assertSame(shared, result);
+        verifyNoInteractions(parser);
+        verify(trainingDayRepository, never()).save(any(TrainingDay.class));
+    }
+
+    @Test
+    void testForwardedChannelPostReferencesSharedDay() {
+        // Given
+        TrainingDay shared = new TrainingDay();
+        User user = new User();
+        when(userRepository.findByTelegramId(42L)).thenReturn(Optional.of(user));
+        when(trainingDayRepository.findBySourceChatIdAndSourceMessageId(CHANNEL_ID, 7)).thenReturn(Optional.of(shared));
+        when(parser.parse("Day 2")).thenReturn(new TrainingDay());
+
+        // When
+        List<TrainingDay> result = trainingDayService.processForwardedMessages(42L,
+                List.of(new ForwardedMessage("Day 1", CHANNEL_ID, 7), ForwardedMessage.of("Day 2")));
+
+        // Then
+        assertSame(shared, result.get(0));
+        assertSame(user, result.get(1).getUser());
+        verify(parser, never()).parse("Day 1");
+        verify(trainingDayRepository).saveAll(List.of(result.get(1)));
+        ArgumentCaptor<UserTrainingDay> reference = ArgumentCaptor.forClass(UserTrainingDay.class);
+        verify(userTrainingDayRepository).save(reference.capture());
+        assertSame(user, reference.getValue().getUser());
+        assertSame(shared, reference.getValue().getTrainingDay());
+    }
+
+    @Test
+    void testSharedDayForwardedAgainIsReferencedOnce() {
+        // Given
+        TrainingDay shared = new TrainingDay();
+        shared.setId(5L);
+        User user = new User();
+        user.setId(3L);
+        when(userRepository.findByTelegramId(42L)).thenReturn(Optional.of(user));
+        when(trainingDayRepository.findBySourceChatIdAndSourceMessageId(CHANNEL_ID, 7)).thenReturn(Optional.of(shared));
+        when(userTrainingDayRepository.existsByUserIdAndTrainingDayId(3L, 5L)).thenReturn(true);
+
+        // When
+        TrainingDay result = trainingDayService.processForwardedMessage(42L, new ForwardedMessage("Day 1", CHANNEL_ID, 7));
+
+        // Then
+        assertSame(shared, result);
+        verify(userTrainingDayRepository, never()).save(any(UserTrainingDay.class));
+        verify(trainingDayRepository, never()).save(any(TrainingDay.class));
+    }
+
+    @Test
+    void testTrainingDaysOfUserIncludeReferencedSharedDays() {
+        // Given
+        User user = new User();
+        user.setId(3L);
+        TrainingDay own = new TrainingDay();
+        TrainingDay shared = new TrainingDay();
+        when(userRepository.findByTelegramId(42L)).thenReturn(Optional.of(user));
+        when(trainingDayRepository.findAllOfUser(3L)).thenReturn(List.of(own, shared));
+
+        // When / Then
+        assertEquals(List.of(own, shared), trainingDayService.getTrainingDaysOfUser(42L));
+    }
+
+    @Test
+    void testEditTouchesOnlyChangedExercises() {
+        // Given
+        TrainingDay stored = new TrainingDay();
+        stored.setRawText("Day 1\nSquats 5x5\nBench 3x8\nRows 3x10");
+        Exercise squats = createExercise(1, "Squats", "5");
+        squats.setLastWeightKg(100.0);
+        Exercise bench = createExercise(2, "Bench", "8");
+        Exercise rows = createExercise(3, "Rows", "10");
+        stored.setExercises(new ArrayList<>(List.of(squats, bench, rows)));
+        when(trainingDayRepository.findBySourceChatIdAndSourceMessageId(CHANNEL_ID, 7)).thenReturn(Optional.of(stored));
+
+        TrainingDay parsed = new TrainingDay();
+        parsed.setExercises(new ArrayList<>(List.of(
+                createExercise(1, "Squats", "3"),
+                createExercise(2, "Deadlift", "5"),
+                createExercise(3, "Bench", "8"))));
+        when(parser.parse(anyString())).thenReturn(parsed);
+
+        // When
+        TrainingDayEdit edit = trainingDayService.processEditedMessage(CHANNEL_ID, 7, "Day 1 fixed\nSquats 5x3\nDeadlift 3x5\nBench 3x8")
+                .orElseThrow();
+
+        // Then
+        assertEquals(1, edit.inserted());
+        assertEquals(2, edit.updated());
+        assertEquals(1, edit.deleted());
+        assertEquals("Day 1 fixed", stored.getTitle());
+        assertEquals("3", squats.getRepsOrDuration());
+        assertEquals(100.0, squats.getLastWeightKg());
+        assertEquals(3, bench.getPosition());
+        assertFalse(stored.getExercises().contains(rows));
+        assertTrue(stored.getExercises().stream().anyMatch(exercise -> "Deadlift".equals(exercise.getName())));
+    }
+
+    @Test
+    void testRenamedExerciseIsUpdatedInPlace() {
+        // Given
+        TrainingDay stored = new TrainingDay();
+        stored.setRawText("Day 1\nSquats 5x5\nBnech 3x8");
+        Exercise squats = createExercise(1, "Squats", "5");
+        Exercise bench = createExercise(2, "Bnech", "8");
+        bench.setLastWeightKg(60.0);
+        bench.setVideoUrls(new ArrayList<>(List.of("https://example.com/bench")));
+        stored.setExercises(new ArrayList<>(List.of(squats, bench)));
+        when(trainingDayRepository.findBySourceChatIdAndSourceMessageId(CHANNEL_ID, 7)).thenReturn(Optional.of(stored));
+
+        TrainingDay parsed = new TrainingDay();
+        Exercise fixed = createExercise(2, "Bench", "8");
+        fixed.setVideoUrls(List.of("https://example.com/bench"));
+        parsed.setExercises(new ArrayList<>(List.of(createExercise(1, "Squats", "5"), fixed)));
+        when(parser.parse(anyString())).thenReturn(parsed);
+
+        // When
+        TrainingDayEdit edit = trainingDayService.processEditedMessage(CHANNEL_ID, 7, "Day 1\nSquats 5x5\nBench 3x8")
+                .orElseThrow();
+
+        // Then
+        assertEquals(0, edit.inserted());
+        assertEquals(1, edit.updated());
+        assertEquals(0, edit.deleted());
+        assertSame(bench, stored.getExercises().get(1));
+        assertEquals("Bench", bench.getName());
+        assertEquals(60.0, bench.getLastWeightKg());
+    }
+
+    @Test
+    void testEditOfUnknownMessageIsIgnored() {
+        // Given
+        when(trainingDayRepository.findBySourceChatIdAndSourceMessageId(CHANNEL_ID, 8)).thenReturn(Optional.empty());
+
+        // When / Then
+        assertTrue(trainingDayService.processEditedMessage(CHANNEL_ID, 8, "Day 1").isEmpty());
+        verifyNoInteractions(parser);
+    }
+
+    private static Exercise createExercise(int position, String name, String repsOrDuration) {
+        Exercise exercise = new Exercise();
+        exercise.setPosition(position);
+        exercise.setName(name);
+        exercise.setRepsOrDuration(repsOrDuration);
+        return exercise;
+    }
+}
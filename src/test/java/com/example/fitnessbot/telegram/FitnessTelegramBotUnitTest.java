@@ -1,22 +1,58 @@
 package com.example.fitnessbot.telegram;
 
+import com.example.fitnessbot.model.Exercise;
+import com.example.fitnessbot.model.OutboxMessage;
+import com.example.fitnessbot.model.Program;
+import com.example.fitnessbot.model.TrainingDay;
+import com.example.fitnessbot.service.AsyncDataAccess;
+import com.example.fitnessbot.service.ForwardedMessage;
+import com.example.fitnessbot.service.OutboxService;
 import com.example.fitnessbot.service.ProgramCreationSessionManager;
+import com.example.fitnessbot.service.ProgramService;
 import com.example.fitnessbot.service.TrainingDayService;
+import com.example.fitnessbot.telegram.bulkhead.HandlerBulkheads;
 import com.example.fitnessbot.telegram.commands.*;
 import com.example.fitnessbot.telegram.commands.CommandRegistryService;
+import com.example.fitnessbot.telegram.dispatch.UpdateDeduplicator;
+import com.example.fitnessbot.telegram.dispatch.UpdateDispatcher;
+import com.example.fitnessbot.telegram.filter.ChatMode;
+import com.example.fitnessbot.telegram.filter.UpdateFilter;
+import com.example.fitnessbot.telegram.outbound.InMemoryOutboundSender;
+import com.example.fitnessbot.telegram.ratelimit.InboundRateLimiter;
+import com.example.fitnessbot.telegram.replay.UpdateAnonymizer;
+import com.example.fitnessbot.telegram.replay.UpdateRecorder;
+import com.example.fitnessbot.telegram.spool.UpdateJournal;
+import com.example.fitnessbot.telegram.spool.UpdateSpool;
+import com.example.fitnessbot.tenant.TenantContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Chat;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -24,14 +60,27 @@ class FitnessTelegramBotUnitTest {
 
     private static final long USER_ID = 12345;
     private static final long CHAT_ID = 6789;
+    private static final long REPLY_ID = 1;
 
     @Mock
     private TrainingDayService trainingDayService;
 
+    @Mock
+    private ProgramService programService;
+
+    @Mock
+    private OutboxService outboxService;
+
+    @TempDir
+    private Path spoolDirectory;
+
+    private UpdateSpool updateSpool;
+    private InMemoryOutboundSender outboundSender;
+    private ProgramCreationSessionManager sessionManager;
     private FitnessTelegramBot fitnessTelegramBot;
 
     @BeforeEach
-    void setUp() {
+    void setUp() throws IOException {
         List<CommandHandler> commandHandlers = List.of(
             new StartCommandHandler(),
             new HelpCommandHandler(new CommandRegistryService()),
@@ -39,10 +88,13 @@ class FitnessTelegramBotUnitTest {
         );
 
         List<CallbackQueryHandler> callbackQueryHandlers = List.of(
-            new ShowDayCommandHandler(trainingDayService)
+            new ShowDayCommandHandler(trainingDayService, AsyncDataAccess.direct())
         );
 
-        FitnessTelegramBot bot = new FitnessTelegramBot(trainingDayService, new ProgramCreationSessionManager(), commandHandlers, callbackQueryHandlers, new CommandRegistryService(), "test-token", "test-username");
+        outboundSender = new InMemoryOutboundSender();
+        sessionManager = new ProgramCreationSessionManager();
+        updateSpool = new UpdateSpool(new UpdateJournal(spoolDirectory, 64 * 1024), new ObjectMapper(), new SimpleMeterRegistry());
+        FitnessTelegramBot bot = new FitnessTelegramBot(trainingDayService, sessionManager, programService, outboxService, commandHandlers, callbackQueryHandlers, new CommandRegistryService(), new UpdateDispatcher(Runnable::run, new SimpleMeterRegistry()), new UpdateDeduplicator(16, null, new SimpleMeterRegistry()), new UpdateFilter("test-username", ChatMode.COMMANDS_ONLY, List.of(), List.of(), false, new SimpleMeterRegistry()), new InboundRateLimiter(16, InboundRateLimiter.DEFAULT_BUDGETS, Duration.ofMinutes(1), System::currentTimeMillis, new SimpleMeterRegistry()), updateSpool, new UpdateRecorder(null, new UpdateAnonymizer(), 0, new ObjectMapper(), new SimpleMeterRegistry()), new HandlerBulkheads(HandlerBulkheads.DEFAULT_SETTINGS, new SimpleMeterRegistry()), outboundSender, "test-token", "test-username");
         fitnessTelegramBot = spy(bot);
     }
 
@@ -51,6 +103,17 @@ class FitnessTelegramBotUnitTest {
         assertEquals("test-username", fitnessTelegramBot.getBotUsername());
     }
 
+    @Test
+    void testTenantBotKeepsItsOwnIdentity() {
+        FitnessTelegramBot tenantBot = fitnessTelegramBot.forTenant("gym-a", "gym-token", "gym_a_bot");
+
+        assertEquals("gym-a", tenantBot.getTenantId());
+        assertEquals("gym_a_bot", tenantBot.getBotUsername());
+        // Requests of the tenant's bot go to the Bot API under its own token
+        assertTrue(tenantBot.getBaseUrl().endsWith("/botgym-token/"), tenantBot.getBaseUrl());
+        assertEquals(TenantContext.DEFAULT_TENANT, fitnessTelegramBot.getTenantId());
+    }
+
     @Test
     void testHandleStartCommand() throws Exception {
         Update update = createMockUpdateWithCommand("/start");
@@ -88,6 +151,33 @@ class FitnessTelegramBotUnitTest {
         verify(fitnessTelegramBot, times(1)).sendTelegramMessage(any(SendMessage.class));
     }
 
+    @Test
+    void testRedeliveredUpdateIsHandledOnce() throws Exception {
+        Update update = createMockUpdateWithCommand("/start");
+        when(update.getUpdateId()).thenReturn(77);
+        doNothing().when(fitnessTelegramBot).sendTelegramMessage(any(SendMessage.class));
+
+        fitnessTelegramBot.onUpdateReceived(update);
+        fitnessTelegramBot.onUpdateReceived(update);
+
+        verify(fitnessTelegramBot, times(1)).sendTelegramMessage(any(SendMessage.class));
+    }
+
+    @Test
+    void testCommandSpamIsLimitedWithOneNotice() throws Exception {
+        doNothing().when(fitnessTelegramBot).sendTelegramMessage(any(SendMessage.class));
+
+        // The command budget allows a burst of 10
+        for (int i = 0; i < 12; i++) {
+            Update update = createMockUpdateWithCommand("/unknown");
+            when(update.getUpdateId()).thenReturn(100 + i);
+            fitnessTelegramBot.onUpdateReceived(update);
+        }
+
+        verify(fitnessTelegramBot, times(10)).handleUpdate(any(Update.class));
+        verify(fitnessTelegramBot, times(1)).sendRateLimitNotice(any(Update.class));
+    }
+
     @Test
     void testHandleUnknownCommand() throws Exception {
         Update update = createMockUpdateWithCommand("/unknown");
@@ -129,6 +219,249 @@ class FitnessTelegramBotUnitTest {
         verify(fitnessTelegramBot, atLeastOnce()).sendTelegramMessage(any(SendMessage.class));
     }
 
+    @Test
+    void testSuggestedCommandRunsInTheButtonsChatWithTheAnswer() throws Exception {
+        Update update = createMockUpdateWithCallbackQuery("cmd:/start");
+        doNothing().when(fitnessTelegramBot).sendTelegramMessage(any(SendMessage.class));
+
+        fitnessTelegramBot.onUpdateReceived(update);
+
+        verify(fitnessTelegramBot).sendTelegramMessage(argThat(message -> String.valueOf(CHAT_ID).equals(message.getChatId())
+                && message.getText().startsWith("Welcome")));
+        AnswerCallbackQuery answer = (AnswerCallbackQuery) outboundSender.getSent().stream()
+                .filter(AnswerCallbackQuery.class::isInstance)
+                .findFirst().orElseThrow();
+        assertEquals("test_callback_id", answer.getCallbackQueryId());
+        assertEquals("Executing: /start", answer.getText());
+    }
+
+    @Test
+    void testButtonIsAnsweredBeforeTheHandlerReadsItsData() throws Exception {
+        Update update = createMockUpdateWithCallbackQuery("show_day_1");
+        List<Object> sentBeforeRead = new ArrayList<>();
+        when(trainingDayService.getTrainingDayById(1L)).thenAnswer(invocation -> {
+            sentBeforeRead.addAll(outboundSender.getSent());
+            return null;
+        });
+        doNothing().when(fitnessTelegramBot).sendTelegramMessage(any(SendMessage.class));
+
+        fitnessTelegramBot.onUpdateReceived(update);
+
+        assertEquals(1, sentBeforeRead.size());
+        assertEquals("test_callback_id", assertInstanceOf(AnswerCallbackQuery.class, sentBeforeRead.get(0)).getCallbackQueryId());
+        verify(fitnessTelegramBot).sendTelegramMessage(argThat(message -> "Training day not found.".equals(message.getText())));
+        // Only the follow-up is left for the handler's batch
+        assertEquals(1, outboundSender.getSent().size());
+    }
+
+    @Test
+    void testForwardedBurstIsSavedAtOnceWithOneReply() throws Exception {
+        List<Update> burst = List.of(createForwardedUpdate("Day 1", 1), createForwardedUpdate("Day 2", 2));
+        TrainingDay first = new TrainingDay();
+        first.setExercises(List.of(new Exercise(), new Exercise()));
+        TrainingDay second = new TrainingDay();
+        second.setExercises(List.of(new Exercise()));
+        when(trainingDayService.processForwardedMessages(USER_ID, List.of(ForwardedMessage.of("Day 1"), ForwardedMessage.of("Day 2")))).thenReturn(List.of(first, second));
+        replyToBurstThroughOutbox();
+        doNothing().when(fitnessTelegramBot).sendTelegramMessage(any(SendMessage.class));
+
+        fitnessTelegramBot.handleUpdates(burst);
+
+        SendMessage message = new SendMessage();
+        message.setChatId(CHAT_ID);
+        message.setText("✅ 2 training days received and processed successfully! Saved 3 exercises.");
+        verify(fitnessTelegramBot, times(1)).sendTelegramMessage(any(SendMessage.class));
+        verify(fitnessTelegramBot).sendTelegramMessage(message);
+        verify(trainingDayService, never()).processForwardedMessage(anyLong(), any(ForwardedMessage.class));
+        verify(outboxService).markSent(REPLY_ID);
+    }
+
+    @Test
+    void testBurstRedeliveredInAnotherGroupingSavesOnlyItsNewMessages() throws Exception {
+        // Day 1 and Day 2 were saved in an earlier burst, Day 3 arrives with them after a redelivery
+        List<Update> burst = List.of(createForwardedUpdate("Day 2", 2), createForwardedUpdate("Day 3", 3));
+        String handledKey = "forward:" + CHAT_ID + ":2";
+        TrainingDay third = new TrainingDay();
+        third.setExercises(List.of(new Exercise()));
+        when(trainingDayService.processForwardedMessages(USER_ID, List.of(ForwardedMessage.of("Day 3")))).thenReturn(List.of(third));
+        when(outboxService.saveWithReply(eq(List.of(handledKey, "forward:" + CHAT_ID + ":3")), eq(String.valueOf(CHAT_ID)), any()))
+                .thenAnswer(invocation -> {
+                    List<String> keys = invocation.getArgument(0);
+                    OutboxMessage reply = new OutboxMessage();
+                    reply.setId(REPLY_ID);
+                    reply.setChatId(invocation.getArgument(1));
+                    reply.setText(invocation.<Function<List<String>, String>>getArgument(2)
+                            .apply(keys.stream().filter(key -> !key.equals(handledKey)).toList()));
+                    return Optional.of(reply);
+                });
+        doNothing().when(fitnessTelegramBot).sendTelegramMessage(any(SendMessage.class));
+
+        fitnessTelegramBot.handleUpdates(burst);
+
+        verify(fitnessTelegramBot).sendTelegramMessage(argThat(message ->
+                "✅ 1 training days received and processed successfully! Saved 1 exercises.".equals(message.getText())));
+    }
+
+    @Test
+    void testForwardedMessageHandledBeforeIsNotSavedAgain() throws Exception {
+        when(outboxService.saveWithReply(eq("forward:" + CHAT_ID + ":42"), eq(String.valueOf(CHAT_ID)), any())).thenReturn(Optional.empty());
+        Update update = createForwardedUpdate("Day 1");
+        update.getMessage().setMessageId(42);
+
+        fitnessTelegramBot.handleUpdate(update);
+
+        verify(trainingDayService, never()).processForwardedMessage(anyLong(), any(ForwardedMessage.class));
+        verify(fitnessTelegramBot, never()).sendTelegramMessage(any(SendMessage.class));
+    }
+
+    @Test
+    void testDayForwardedDuringProgramCreationJoinsTheSessionOnceSaved() throws Exception {
+        sessionManager.startSession(USER_ID, new Program());
+        TrainingDay trainingDay = new TrainingDay();
+        trainingDay.setId(7L);
+        when(trainingDayService.processForwardedMessage(USER_ID, ForwardedMessage.of("Day 1"))).thenReturn(trainingDay);
+        replyThroughOutbox();
+        doNothing().when(fitnessTelegramBot).sendTelegramMessage(any(SendMessage.class));
+
+        fitnessTelegramBot.handleUpdate(createForwardedUpdate("Day 1"));
+
+        assertEquals(List.of(trainingDay), sessionManager.getSession(USER_ID).getTrainingDays());
+        verify(fitnessTelegramBot).sendTelegramMessage(argThat(message -> message.getText().endsWith("(Total: 1 days)")));
+    }
+
+    @Test
+    void testDayOfUpdateHandledConcurrentlyStaysOutOfTheSession() throws Exception {
+        sessionManager.startSession(USER_ID, new Program());
+        TrainingDay trainingDay = new TrainingDay();
+        trainingDay.setId(7L);
+        when(trainingDayService.processForwardedMessage(USER_ID, ForwardedMessage.of("Day 1"))).thenReturn(trainingDay);
+        // The change is made, but rolled back because another replica recorded the update first
+        when(outboxService.saveWithReply(anyString(), anyString(), any())).thenAnswer(invocation -> {
+            invocation.<Supplier<String>>getArgument(2).get();
+            return Optional.empty();
+        });
+
+        fitnessTelegramBot.handleUpdate(createForwardedUpdate("Day 1"));
+
+        assertEquals(0, sessionManager.getSession(USER_ID).getTrainingDaysCount());
+        verify(fitnessTelegramBot, never()).sendTelegramMessage(any(SendMessage.class));
+    }
+
+    @Test
+    void testReplyThatCouldNotBeSentIsLeftToTheRelay() throws Exception {
+        TrainingDay trainingDay = new TrainingDay();
+        trainingDay.setExercises(List.of(new Exercise()));
+        when(trainingDayService.processForwardedMessage(USER_ID, ForwardedMessage.of("Day 1"))).thenReturn(trainingDay);
+        replyThroughOutbox();
+        TelegramApiException failure = new TelegramApiException("Bad Gateway");
+        doThrow(failure).when(fitnessTelegramBot).sendTelegramMessage(any(SendMessage.class));
+
+        fitnessTelegramBot.handleUpdate(createForwardedUpdate("Day 1"));
+
+        verify(outboxService).markFailed(REPLY_ID, failure);
+        verify(outboxService, never()).markSent(anyLong());
+    }
+
+    @Test
+    void testForwardedMessageIsSpooledWhileDatabaseIsDownAndSavedLater() throws Exception {
+        Update update = createForwardedUpdate("Day 1");
+        TrainingDay trainingDay = new TrainingDay();
+        trainingDay.setExercises(List.of(new Exercise()));
+        when(trainingDayService.processForwardedMessage(USER_ID, ForwardedMessage.of("Day 1")))
+                .thenThrow(new CannotCreateTransactionException("Could not open JPA EntityManager for transaction"))
+                .thenReturn(trainingDay);
+        replyThroughOutbox();
+        doNothing().when(fitnessTelegramBot).sendTelegramMessage(any(SendMessage.class));
+
+        fitnessTelegramBot.handleUpdate(update);
+
+        assertEquals(1, updateSpool.getPendingUpdates());
+        verify(fitnessTelegramBot).sendTelegramMessage(argThat(message -> message.getText().startsWith("⏳")));
+
+        assertEquals(1, updateSpool.replay(10, (tenantId, spooled) -> fitnessTelegramBot.replaySpooledUpdate(spooled).join()));
+
+        assertEquals(0, updateSpool.getPendingUpdates());
+        verify(fitnessTelegramBot).sendTelegramMessage(argThat(message -> message.getText().startsWith("✅")));
+    }
+
+    @Test
+    void testLiveUpdateOfChatWithSpooledUpdatesIsHandledAfterThem() throws Exception {
+        Update spooled = createForwardedUpdate("Day 1");
+        spooled.setUpdateId(1);
+        Update live = createForwardedUpdate("Day 2");
+        live.setUpdateId(2);
+        live.getMessage().getChat().setType("private");
+        TrainingDay trainingDay = new TrainingDay();
+        trainingDay.setExercises(List.of(new Exercise()));
+        when(trainingDayService.processForwardedMessage(USER_ID, ForwardedMessage.of("Day 1")))
+                .thenThrow(new CannotCreateTransactionException("Could not open JPA EntityManager for transaction"))
+                .thenReturn(trainingDay);
+        when(trainingDayService.processForwardedMessage(USER_ID, ForwardedMessage.of("Day 2"))).thenReturn(trainingDay);
+        replyThroughOutbox();
+        doNothing().when(fitnessTelegramBot).sendTelegramMessage(any(SendMessage.class));
+
+        fitnessTelegramBot.handleUpdate(spooled);
+        fitnessTelegramBot.onUpdateReceived(live);
+
+        // The live update waits behind the spooled one instead of being saved before it
+        assertEquals(2, updateSpool.getPendingUpdates());
+        verify(trainingDayService, never()).processForwardedMessage(USER_ID, ForwardedMessage.of("Day 2"));
+
+        assertEquals(2, updateSpool.replay(10, (tenantId, update) -> fitnessTelegramBot.replaySpooledUpdate(update).join()));
+
+        InOrder inOrder = inOrder(trainingDayService);
+        inOrder.verify(trainingDayService, times(2)).processForwardedMessage(USER_ID, ForwardedMessage.of("Day 1"));
+        inOrder.verify(trainingDayService).processForwardedMessage(USER_ID, ForwardedMessage.of("Day 2"));
+        assertEquals(0, updateSpool.getPendingUpdates());
+    }
+
+    /**
+     * Let the outbox make the change and return its reply as stored
+     */
+    private void replyThroughOutbox() {
+        when(outboxService.saveWithReply(anyString(), anyString(), any())).thenAnswer(invocation -> {
+            OutboxMessage reply = new OutboxMessage();
+            reply.setId(REPLY_ID);
+            reply.setChatId(invocation.getArgument(1));
+            reply.setText(invocation.<Supplier<String>>getArgument(2).get());
+            return Optional.of(reply);
+        });
+    }
+
+    /**
+     * Let the outbox make the change for every message of a burst and return its reply as stored
+     */
+    private void replyToBurstThroughOutbox() {
+        when(outboxService.saveWithReply(anyList(), anyString(), any())).thenAnswer(invocation -> {
+            OutboxMessage reply = new OutboxMessage();
+            reply.setId(REPLY_ID);
+            reply.setChatId(invocation.getArgument(1));
+            reply.setText(invocation.<Function<List<String>, String>>getArgument(2).apply(invocation.getArgument(0)));
+            return Optional.of(reply);
+        });
+    }
+
+    private static Update createForwardedUpdate(String text, int messageId) {
+        Update update = createForwardedUpdate(text);
+        update.getMessage().setMessageId(messageId);
+        return update;
+    }
+
+    private static Update createForwardedUpdate(String text) {
+        org.telegram.telegrambots.meta.api.objects.User user = new org.telegram.telegrambots.meta.api.objects.User();
+        user.setId(USER_ID);
+        Chat chat = new Chat();
+        chat.setId(CHAT_ID);
+        Message message = new Message();
+        message.setFrom(user);
+        message.setForwardFrom(user);
+        message.setChat(chat);
+        message.setText(text);
+        Update update = new Update();
+        update.setMessage(message);
+        return update;
+    }
+
     private Update createMockUpdateWithCommand(String command) {
         Update update = mock(Update.class);
         Message message = mock(Message.class);
@@ -0,0 +1,109 @@
+package com.example.fitnessbot.telegram;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageReplyMarkup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseBatchTest {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testSequencesKeepTheOrderWithinAChat() {
+        SendMessage first = message("1", "first");
+        SendMessage other = message("2", "other");
+        EditMessageReplyMarkup edit = edit("1");
+        AnswerCallbackQuery answer = answer();
+
+        List<List<BotApiMethod<?>>> sequences = ResponseBatch.sequences(List.of(first, other, answer, edit));
+
+        assertEquals(List.of(List.of(first, edit), List.of(other), List.of(answer)), sequences);
+    }
+
+    @Test
+    void testChatsRunInParallel() throws Exception {
+        // Each chat's only message waits for the other one, so the batch only completes if both run at once
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        List<String> executed = Collections.synchronizedList(new ArrayList<>());
+
+        ResponseBatch.execute(List.of(message("1", "a"), message("2", "b")), method -> {
+            bothStarted.countDown();
+            assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+            executed.add(((SendMessage) method).getText());
+        }, executor);
+
+        assertEquals(2, executed.size());
+    }
+
+    @Test
+    void testMethodsOfOneChatRunInOrderOnTheCaller() throws Exception {
+        List<BotApiMethod<?>> executed = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        SendMessage reply = message("1", "reply");
+        EditMessageReplyMarkup edit = edit("1");
+
+        ResponseBatch.execute(List.of(reply, edit), method -> {
+            executed.add(method);
+            threads.add(Thread.currentThread());
+        }, executor);
+
+        assertEquals(List.of(reply, edit), executed);
+        assertEquals(List.of(Thread.currentThread(), Thread.currentThread()), threads);
+    }
+
+    @Test
+    void testFirstFailureIsRethrownAfterTheOthersRan() {
+        List<BotApiMethod<?>> executed = Collections.synchronizedList(new ArrayList<>());
+        SendMessage failing = message("1", "fails");
+        SendMessage other = message("2", "other");
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> ResponseBatch.execute(List.of(failing, other), method -> {
+                    if (method == failing) {
+                        throw new IllegalStateException("rejected");
+                    }
+                    executed.add(method);
+                }, executor));
+
+        assertEquals("rejected", e.getMessage());
+        assertEquals(List.of(other), executed);
+    }
+
+    private static SendMessage message(String chatId, String text) {
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId);
+        message.setText(text);
+        return message;
+    }
+
+    private static EditMessageReplyMarkup edit(String chatId) {
+        EditMessageReplyMarkup edit = new EditMessageReplyMarkup();
+        edit.setChatId(chatId);
+        edit.setMessageId(1);
+        return edit;
+    }
+
+    private static AnswerCallbackQuery answer() {
+        AnswerCallbackQuery answer = new AnswerCallbackQuery();
+        answer.setCallbackQueryId("query");
+        return answer;
+    }
+}
@@ -1,6 +1,9 @@
 package com.example.fitnessbot.telegram;
 
 import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 class TelegramBotConfigTest {
@@ -11,4 +14,12 @@ class TelegramBotConfigTest {
         TelegramBotConfig config = new TelegramBotConfig();
         assertEquals(TelegramBotConfig.class, config.getClass());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testChannelPostsAreRequestedWhenEnabled() {
+        assertEquals(List.of("message", "callback_query", "channel_post", "edited_channel_post"),
+                TelegramBotConfig.allowedUpdates(List.of("message", "callback_query"), true));
+        assertEquals(List.of("message", "callback_query"),
+                TelegramBotConfig.allowedUpdates(List.of("message", "callback_query"), false));
+    }
+}
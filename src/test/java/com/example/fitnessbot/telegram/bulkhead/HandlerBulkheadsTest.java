@@ -0,0 +1,128 @@
+package com.example.fitnessbot.telegram.bulkhead;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HandlerBulkheadsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private HandlerBulkheads bulkheads;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        bulkheads = new HandlerBulkheads(Map.of(
+                BulkheadGroup.STATIC, new HandlerBulkheads.Settings(4, 4, Duration.ofSeconds(1), "static busy"),
+                BulkheadGroup.READS, new HandlerBulkheads.Settings(1, 0, Duration.ofMillis(100), "reads busy"),
+                BulkheadGroup.DEFAULT, new HandlerBulkheads.Settings(1, 1, Duration.ofMillis(100), "busy")),
+                meterRegistry);
+    }
+
+    @Test
+    void testHandlerResponsesArePassedThrough() {
+        List<BotApiMethod<?>> responses = join(bulkheads.call(BulkheadGroup.STATIC, 1L, () -> reply(1L, "Welcome")));
+
+        assertEquals("Welcome", text(responses));
+    }
+
+    @Test
+    void testFullQueueIsRejectedWithTheFallback() {
+        CompletableFuture<List<BotApiMethod<?>>> slowRead = new CompletableFuture<>();
+        bulkheads.call(BulkheadGroup.READS, 1L, () -> slowRead);
+
+        List<BotApiMethod<?>> responses = join(bulkheads.call(BulkheadGroup.READS, 2L, () -> reply(2L, "Program")));
+
+        assertEquals("reads busy", text(responses));
+        assertEquals(1.0, meterRegistry.get("telegram.handlers.bulkhead.rejected").tag("group", "reads").counter().count());
+    }
+
+    @Test
+    void testOtherGroupsAreNotAffected() {
+        bulkheads.call(BulkheadGroup.READS, 1L, CompletableFuture::new);
+
+        List<BotApiMethod<?>> responses = join(bulkheads.call(BulkheadGroup.STATIC, 2L, () -> reply(2L, "Menu")));
+
+        assertEquals("Menu", text(responses));
+    }
+
+    @Test
+    void testSlowHandlerTimesOutAndKeepsItsSlot() {
+        CompletableFuture<List<BotApiMethod<?>>> slowRead = new CompletableFuture<>();
+
+        List<BotApiMethod<?>> responses = join(bulkheads.call(BulkheadGroup.READS, 1L, () -> slowRead));
+
+        assertEquals("reads busy", text(responses));
+        assertEquals(1.0, meterRegistry.get("telegram.handlers.bulkhead.timeouts").tag("group", "reads").counter().count());
+        assertEquals(1.0, meterRegistry.get("telegram.handlers.bulkhead.active").tag("group", "reads").gauge().value());
+
+        slowRead.complete(List.of());
+        assertEquals(0.0, meterRegistry.get("telegram.handlers.bulkhead.active").tag("group", "reads").gauge().value());
+        assertEquals("Program", text(join(bulkheads.call(BulkheadGroup.READS, 2L, () -> reply(2L, "Program")))));
+    }
+
+    @Test
+    void testQueuedUpdateTimesOutWaitingForASlot() {
+        CompletionStage<List<BotApiMethod<?>>> slow = bulkheads.call(BulkheadGroup.DEFAULT, 1L, CompletableFuture::new);
+
+        List<BotApiMethod<?>> responses = join(bulkheads.call(BulkheadGroup.DEFAULT, 2L, () -> reply(2L, "Saved")));
+
+        assertEquals("busy", text(responses));
+        // The running handler timed out as well
+        assertEquals("busy", text(join(slow)));
+        assertEquals(2.0, meterRegistry.get("telegram.handlers.bulkhead.timeouts").tag("group", "default").counter().count());
+        assertEquals(0.0, meterRegistry.get("telegram.handlers.bulkhead.queued").tag("group", "default").gauge().value());
+    }
+
+    @Test
+    void testSynchronousHandlerIsOnlyBoundedInItsWaitForASlot() {
+        List<BotApiMethod<?>> responses = join(bulkheads.call(BulkheadGroup.DEFAULT, 1L, () -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return reply(1L, "Saved");
+        }));
+
+        // Its work is done by the time it returns, so its reply is kept
+        assertEquals("Saved", text(responses));
+        assertEquals(0.0, meterRegistry.get("telegram.handlers.bulkhead.timeouts").tag("group", "default").counter().count());
+    }
+
+    @Test
+    void testHandlerFailureIsNotReplacedByTheFallback() {
+        CompletionStage<List<BotApiMethod<?>>> responses = bulkheads.call(BulkheadGroup.STATIC, 1L,
+                () -> CompletableFuture.failedFuture(new IllegalStateException("broken")));
+
+        CompletionException e = assertThrows(CompletionException.class, () -> responses.toCompletableFuture().join());
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertEquals(0.0, meterRegistry.get("telegram.handlers.bulkhead.active").tag("group", "static").gauge().value());
+    }
+
+    private static CompletionStage<List<BotApiMethod<?>>> reply(Long chatId, String text) {
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId.toString());
+        message.setText(text);
+        return CompletableFuture.completedFuture(List.of(message));
+    }
+
+    private static List<BotApiMethod<?>> join(CompletionStage<List<BotApiMethod<?>>> responses) {
+        return responses.toCompletableFuture().join();
+    }
+
+    private static String text(List<BotApiMethod<?>> responses) {
+        return ((SendMessage) responses.getFirst()).getText();
+    }
+}
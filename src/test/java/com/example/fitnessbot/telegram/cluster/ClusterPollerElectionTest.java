@@ -0,0 +1,79 @@
+package com.example.fitnessbot.telegram.cluster;
+
+import com.example.fitnessbot.telegram.polling.AdaptiveLongPollingSession;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ClusterPollerElectionTest {
+
+    @Mock
+    private RedisLease lease;
+
+    @Mock
+    private AdaptiveLongPollingSession session;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ClusterPollerElection election;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        election = new ClusterPollerElection(lease, () -> session, Duration.ofMillis(150), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        election.stop();
+    }
+
+    @Test
+    void testLeaseHolderPollsAndReleasesOnStop() {
+        when(lease.tryAcquire()).thenReturn(true);
+        when(lease.renew()).thenReturn(true);
+
+        election.start();
+
+        verify(session, timeout(1_000)).start();
+        verify(lease, timeout(1_000)).renew();
+        assertTrue(election.isLeader());
+        assertEquals(1.0, meterRegistry.get("telegram.cluster.poller.leader").gauge().value());
+
+        election.stop();
+        verify(session).stop();
+        verify(lease).release();
+        assertFalse(election.isLeader());
+    }
+
+    @Test
+    void testReplicaWithoutLeaseDoesNotPoll() {
+        when(lease.tryAcquire()).thenReturn(false);
+
+        election.start();
+
+        verify(lease, timeout(1_000).atLeast(2)).tryAcquire();
+        verify(session, never()).start();
+        assertFalse(election.isLeader());
+    }
+
+    @Test
+    void testPollingStopsWhenLeaseIsLost() {
+        when(lease.tryAcquire()).thenReturn(true).thenReturn(false);
+        when(lease.renew()).thenReturn(false);
+
+        election.start();
+
+        verify(session, timeout(1_000)).stop();
+        assertFalse(election.isLeader());
+    }
+}
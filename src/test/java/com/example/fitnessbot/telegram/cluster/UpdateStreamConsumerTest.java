@@ -0,0 +1,115 @@
+package com.example.fitnessbot.telegram.cluster;
+
+import com.example.fitnessbot.telegram.FitnessTelegramBot;
+import com.example.fitnessbot.telegram.dispatch.UpdateDispatcher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UpdateStreamConsumerTest {
+
+    @Mock
+    private FitnessTelegramBot bot;
+
+    @Mock
+    private UpdateDispatcher updateDispatcher;
+
+    @Mock
+    private UpdateStreams updateStreams;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+
+    @Mock
+    private RedisLease firstLease;
+
+    @Mock
+    private RedisLease secondLease;
+
+    private UpdateStreamConsumer consumer;
+
+    @BeforeEach
+    void setUp() {
+        when(bot.getBotUsername()).thenReturn("test_bot");
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        consumer = new UpdateStreamConsumer(bot, updateDispatcher, updateStreams, redisTemplate,
+                partition -> partition == 0 ? firstLease : secondLease,
+                "node-a", Duration.ofSeconds(15), 10, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        consumer.stop();
+    }
+
+    @Test
+    void testPartitionIsGivenUpOnlyAfterItsEntriesAreHandled() throws Exception {
+        when(updateStreams.getPartitions()).thenReturn(2);
+        when(updateDispatcher.getQueueCapacity()).thenReturn(100);
+        for (RedisLease lease : List.of(firstLease, secondLease)) {
+            when(lease.tryAcquire()).thenReturn(true);
+            when(lease.renew()).thenReturn(true);
+        }
+        // Each partition has one entry, then nothing new
+        Set<Integer> served = ConcurrentHashMap.newKeySet();
+        when(updateStreams.read(anyInt(), any(), anyInt(), any(Duration.class))).thenAnswer(invocation -> {
+            int partition = invocation.getArgument(0);
+            if (served.add(partition)) {
+                return List.of(StreamRecords.newRecord()
+                        .in("tg:updates:" + partition)
+                        .withId(RecordId.of(partition + 1 + "-0"))
+                        .ofMap(Map.<Object, Object>of("update", "{}")));
+            }
+            Thread.sleep(50);
+            return List.of();
+        });
+        when(updateStreams.decode(any())).thenAnswer(invocation -> new Update());
+
+        // Alone, the replica reads both partitions
+        when(zSetOperations.zCard(anyString())).thenReturn(1L);
+        consumer.start();
+        ArgumentCaptor<Runnable> handled = ArgumentCaptor.forClass(Runnable.class);
+        verify(bot, timeout(1_000).times(2)).onUpdateReceived(any(Update.class), handled.capture());
+
+        // A second replica joins while the entries are still being handled
+        when(zSetOperations.zCard(anyString())).thenReturn(2L);
+        consumer.rebalance();
+        consumer.rebalance();
+        assertEquals(Set.of(0, 1), consumer.getOwnedPartitions());
+        verify(firstLease, never()).release();
+        verify(secondLease, never()).release();
+
+        handled.getAllValues().forEach(Runnable::run);
+        consumer.rebalance();
+
+        verify(updateStreams, times(2)).acknowledge(anyInt(), any(RecordId.class));
+        assertEquals(1, consumer.getOwnedPartitions().size());
+        verify(consumer.getOwnedPartitions().contains(0) ? secondLease : firstLease).release();
+    }
+}
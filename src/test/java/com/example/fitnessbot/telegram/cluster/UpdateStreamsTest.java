@@ -0,0 +1,126 @@
+package com.example.fitnessbot.telegram.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.lettuce.core.RedisBusyException;
+import io.lettuce.core.RedisCommandExecutionException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.User;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UpdateStreamsTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private StreamOperations<String, Object, Object> streamOperations;
+
+    private UpdateStreams updateStreams;
+
+    @BeforeEach
+    void setUp() {
+        updateStreams = new UpdateStreams(redisTemplate, new ObjectMapper(), "test_bot", 8);
+    }
+
+    @Test
+    void testUpdatesOfOneChatShareAPartition() {
+        assertEquals(updateStreams.partitionOf(createUpdate(1, 42L, "a")),
+                updateStreams.partitionOf(createUpdate(2, 42L, "b")));
+        assertEquals(2, updateStreams.partitionOf(createUpdate(3, 42L, "c")));
+        // Group chat ids are negative
+        int groupPartition = updateStreams.partitionOf(createUpdate(4, -1001234567890L, "d"));
+        assertTrue(groupPartition >= 0 && groupPartition < 8);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPublishedUpdateDecodesToTheSameUpdate() {
+        when(redisTemplate.opsForStream()).thenReturn(streamOperations);
+        when(streamOperations.add(any(MapRecord.class))).thenReturn(RecordId.of("1-0"));
+        Update update = createUpdate(77, 42L, "Day 1\nSquat 3x5");
+
+        updateStreams.publish(update);
+
+        ArgumentCaptor<MapRecord<String, String, String>> captor = ArgumentCaptor.forClass(MapRecord.class);
+        verify(streamOperations).add(captor.capture());
+        assertEquals("tg:updates:test_bot:2", captor.getValue().getStream());
+
+        MapRecord<String, Object, Object> stored = MapRecord.create(captor.getValue().getStream(),
+                Map.<Object, Object>copyOf(captor.getValue().getValue())).withId(RecordId.of("1-0"));
+        Update decoded = updateStreams.decode(stored);
+        assertEquals(77, decoded.getUpdateId());
+        assertEquals(42L, decoded.getMessage().getChatId());
+        assertEquals(5L, decoded.getMessage().getFrom().getId());
+        assertEquals("Day 1\nSquat 3x5", decoded.getMessage().getText());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCreatingAnExistingGroupSucceeds() {
+        when(redisTemplate.execute(any(RedisCallback.class)))
+                .thenReturn("OK")
+                .thenThrow(new RedisSystemException("Error in execution",
+                        new RedisBusyException("BUSYGROUP Consumer Group name already exists")));
+
+        updateStreams.createGroup(3);
+        updateStreams.createGroup(3);
+
+        verify(redisTemplate, times(2)).execute(any(RedisCallback.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testOtherErrorsCreatingAGroupAreThrown() {
+        RedisSystemException failure = new RedisSystemException("Error in execution",
+                new RedisCommandExecutionException("WRONGTYPE Operation against a key holding the wrong kind of value"));
+        when(redisTemplate.execute(any(RedisCallback.class))).thenThrow(failure);
+
+        assertSame(failure, assertThrows(RedisSystemException.class, () -> updateStreams.createGroup(3)));
+    }
+
+    @Test
+    void testAtLeastOnePartitionIsRequired() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new UpdateStreams(redisTemplate, new ObjectMapper(), "test_bot", 0));
+    }
+
+    private static Update createUpdate(int updateId, long chatId, String text) {
+        Chat chat = new Chat();
+        chat.setId(chatId);
+        chat.setType("private");
+        User user = new User();
+        user.setId(5L);
+        user.setFirstName("Test");
+        user.setIsBot(false);
+        Message message = new Message();
+        message.setMessageId(10);
+        message.setChat(chat);
+        message.setFrom(user);
+        message.setText(text);
+        message.setDate(1_700_000_000);
+        Update update = new Update();
+        update.setUpdateId(updateId);
+        update.setMessage(message);
+        return update;
+    }
+}
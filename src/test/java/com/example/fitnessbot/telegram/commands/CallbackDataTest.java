@@ -0,0 +1,54 @@
+package com.example.fitnessbot.telegram.commands;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallbackDataTest {
+
+    @Test
+    void testValuesRoundTrip() {
+        String data = CallbackData.encode("pg", 0, 1, -1, 300, Long.MAX_VALUE, Long.MIN_VALUE);
+
+        CallbackData decoded = CallbackData.decode(data);
+
+        assertNotNull(decoded);
+        assertEquals("pg", decoded.getTag());
+        assertEquals(6, decoded.size());
+        assertEquals(0, decoded.getLong(0));
+        assertEquals(1, decoded.getLong(1));
+        assertEquals(-1, decoded.getLong(2));
+        assertEquals(300, decoded.getLong(3));
+        assertEquals(Long.MAX_VALUE, decoded.getLong(4));
+        assertEquals(Long.MIN_VALUE, decoded.getLong(5));
+    }
+
+    @Test
+    void testSmallIdsStayShort() {
+        assertEquals("d.Ag", CallbackData.encode("d", 1));
+        assertTrue(CallbackData.encode("d", 123456).length() < "show_day_123456".length());
+        assertEquals("menu.", CallbackData.encode("menu"));
+        assertEquals(0, CallbackData.decode("menu.").size());
+    }
+
+    @Test
+    void testInvalidTagsAndOversizedDataAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> CallbackData.encode("", 1));
+        assertThrows(IllegalArgumentException.class, () -> CallbackData.encode("show.day", 1));
+        assertThrows(IllegalArgumentException.class, () -> CallbackData.encode("too_long_tag", 1));
+        // Five values of ten varint bytes each encode to 67 base64 characters
+        assertThrows(IllegalArgumentException.class, () -> CallbackData.encode("d",
+                Long.MIN_VALUE, Long.MIN_VALUE, Long.MIN_VALUE, Long.MIN_VALUE, Long.MIN_VALUE));
+    }
+
+    @Test
+    void testLegacyAndMalformedDataIsNotDecoded() {
+        assertNull(CallbackData.decode("show_day_1"));
+        assertNull(CallbackData.decode("cmd:/start"));
+        assertNull(CallbackData.decode(".Ag"));
+        assertNull(CallbackData.decode("d.!!"));
+        // A varint whose last byte has the continuation bit set
+        assertNull(CallbackData.decode("d.gA"));
+        assertNull(CallbackData.decode(null));
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.fitnessbot.telegram.commands;
+
+import com.example.fitnessbot.service.AsyncDataAccess;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallbackRoutingTableTest {
+
+    private final ShowDayCommandHandler showDay = new ShowDayCommandHandler(null, AsyncDataAccess.direct());
+    private final CallbackRoutingTable table = new CallbackRoutingTable(List.of(showDay));
+
+    @Test
+    void testTaggedDataResolvesByTag() {
+        assertSame(showDay, table.resolve(callbackQuery(ShowDayCommandHandler.callbackData(42))));
+        assertNull(table.resolve(callbackQuery(CallbackData.encode("pg", 2))));
+    }
+
+    @Test
+    void testLegacyDataFallsBackToHandlers() {
+        assertSame(showDay, table.resolve(callbackQuery("show_day_42")));
+        assertNull(table.resolve(callbackQuery("start_menu")));
+        assertNull(table.resolve(callbackQuery("cmd:/start")));
+        assertNull(table.resolve(callbackQuery(null)));
+    }
+
+    @Test
+    void testDuplicateTagIsRejected() {
+        CallbackQueryHandler other = new CallbackQueryHandler() {
+            @Override
+            public boolean canHandle(CallbackQuery callbackQuery) {
+                return false;
+            }
+
+            @Override
+            public SendMessage handle(Update update) {
+                return null;
+            }
+
+            @Override
+            public String getCallbackTag() {
+                return ShowDayCommandHandler.CALLBACK_TAG;
+            }
+        };
+
+        assertThrows(IllegalStateException.class, () -> new CallbackRoutingTable(List.of(showDay, other)));
+    }
+
+    private static CallbackQuery callbackQuery(String data) {
+        CallbackQuery callbackQuery = new CallbackQuery();
+        callbackQuery.setData(data);
+        return callbackQuery;
+    }
+}
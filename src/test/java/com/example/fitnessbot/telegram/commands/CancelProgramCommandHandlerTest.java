@@ -1,6 +1,9 @@
 package com.example.fitnessbot.telegram.commands;
 
+import com.example.fitnessbot.model.Program;
 import com.example.fitnessbot.service.ProgramCreationSessionManager;
+import com.example.fitnessbot.service.ProgramCreationSessionManager.ProgramCreationSession;
+import com.example.fitnessbot.service.UserContext;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -37,14 +40,14 @@ class CancelProgramCommandHandlerTest {
 
     @Test
     void testIsAvailableWithActiveSession() {
-        when(sessionManager.hasActiveSession(12345L)).thenReturn(true);
-        assertTrue(handler.isAvailable(12345L, sessionManager));
+        when(sessionManager.getSession(12345L)).thenReturn(new ProgramCreationSession(new Program()));
+        assertTrue(handler.isAvailable(new UserContext(12345L, null, sessionManager)));
     }
 
     @Test
     void testIsAvailableWithoutActiveSession() {
-        when(sessionManager.hasActiveSession(12345L)).thenReturn(false);
-        assertFalse(handler.isAvailable(12345L, sessionManager));
+        when(sessionManager.getSession(12345L)).thenReturn(null);
+        assertFalse(handler.isAvailable(new UserContext(12345L, null, sessionManager)));
     }
 
     @Test
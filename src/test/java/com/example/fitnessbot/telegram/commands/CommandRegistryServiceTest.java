@@ -0,0 +1,66 @@
+package com.example.fitnessbot.telegram.commands;
+
+import com.example.fitnessbot.service.ProgramCreationSessionManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandRegistryServiceTest {
+
+    private CommandRegistryService registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new CommandRegistryService();
+        ProgramCreationSessionManager sessionManager = new ProgramCreationSessionManager();
+        List.of(new StartCommandHandler(),
+                new HelpCommandHandler(registry),
+                new MenuCommandHandler(),
+                new CreateProgramCommandHandler(null, sessionManager),
+                new CancelProgramCommandHandler(sessionManager))
+                .forEach(registry::registerHandler);
+    }
+
+    @Test
+    void testMetadataComesFromHandlers() {
+        CommandMetadata createProgram = registry.getCommandMetadata("/create_program");
+
+        assertEquals("Start creating a new workout program", createProgram.getDescription());
+        assertEquals("/create_program My Workout Plan", createProgram.getUsageExample());
+        assertEquals(List.of("/start", "/help", "/menu", "/create_program", "/cancel_program"), commands(registry.getAllCommands()));
+    }
+
+    @Test
+    void testPrefixMatchesNamesAndAliases() {
+        assertEquals(List.of("/cancel_program", "/create_program"), commands(registry.findCommandsByPrefix("/c")));
+        assertEquals(List.of("/create_program"), commands(registry.findCommandsByPrefix("/NEW")));
+        assertEquals(List.of("/cancel_program"), commands(registry.findCommandsByPrefix("/отм")));
+        assertTrue(registry.findCommandsByPrefix("/x").isEmpty());
+    }
+
+    @Test
+    void testTyposSuggestClosestCommandsFirst() {
+        assertEquals(List.of("/start"), commands(registry.findSimilarCommands("/strat")));
+        assertEquals(List.of("/help"), commands(registry.findSimilarCommands("/hlep")));
+        assertEquals(List.of("/help"), commands(registry.findSimilarCommands("/помошь")));
+        assertEquals(List.of("/create_program"), commands(registry.findSimilarCommands("/cxeate_program")));
+        assertEquals(List.of("/menu"), commands(registry.findSimilarCommands("/meny")));
+        assertEquals(List.of("/start"), commands(registry.findSimilarCommands("/Strat@zil_fit_bot now")));
+        assertTrue(registry.findSimilarCommands("/unknown").isEmpty());
+    }
+
+    @Test
+    void testBoundedDistanceGivesUpEarly() {
+        assertEquals(2, CommandNameIndex.distance("/strat", "/start", 3));
+        assertEquals(0, CommandNameIndex.distance("/menu", "/menu", 0));
+        assertEquals(2, CommandNameIndex.distance("/create_program", "/menu", 1));
+        assertEquals(4, CommandNameIndex.distance("/abcdefg", "/hijklmn", 3));
+    }
+
+    private static List<String> commands(List<CommandMetadata> metadata) {
+        return metadata.stream().map(CommandMetadata::getCommand).toList();
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.fitnessbot.telegram.commands;
+
+import com.example.fitnessbot.service.ProgramCreationSessionManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandRoutingTableTest {
+
+    private StartCommandHandler start;
+    private MenuCommandHandler menu;
+    private CreateProgramCommandHandler createProgram;
+    private CancelProgramCommandHandler cancelProgram;
+    private CommandRoutingTable table;
+
+    @BeforeEach
+    void setUp() {
+        start = new StartCommandHandler();
+        menu = new MenuCommandHandler();
+        createProgram = new CreateProgramCommandHandler(null, new ProgramCreationSessionManager());
+        cancelProgram = new CancelProgramCommandHandler(new ProgramCreationSessionManager());
+        table = new CommandRoutingTable(List.of(start, menu, createProgram, cancelProgram), "zil_fit_bot");
+    }
+
+    @Test
+    void testExactCommandsResolve() {
+        assertSame(start, table.resolve("/start"));
+        assertSame(menu, table.resolve("/menu"));
+        assertSame(cancelProgram, table.resolve("/cancel_program"));
+        assertSame(start, table.resolve("/start  "));
+    }
+
+    @Test
+    void testArgumentsOnlyReachHandlersThatAcceptThem() {
+        assertSame(createProgram, table.resolve("/create_program"));
+        assertSame(createProgram, table.resolve("/create_program Summer Plan"));
+        assertNull(table.resolve("/start now"));
+        assertNull(table.resolve("/create_programme"));
+    }
+
+    @Test
+    void testBotMentionMustNameThisBot() {
+        assertSame(start, table.resolve("/start@zil_fit_bot"));
+        assertSame(start, table.resolve("/start@Zil_Fit_Bot"));
+        assertSame(createProgram, table.resolve("/create_program@zil_fit_bot Summer Plan"));
+        assertNull(table.resolve("/start@other_bot"));
+        assertNull(table.resolve("/start@zil_fit_bot_two"));
+    }
+
+    @Test
+    void testUnknownAndPartialCommandsDoNotResolve() {
+        assertNull(table.resolve("/"));
+        assertNull(table.resolve("/sta"));
+        assertNull(table.resolve("/finish_program"));
+        assertNull(table.resolve("start"));
+        assertNull(table.resolve(null));
+    }
+
+    @Test
+    void testDuplicateCommandIsRejected() {
+        assertThrows(IllegalStateException.class,
+                () -> new CommandRoutingTable(List.of(start, new StartCommandHandler()), "zil_fit_bot"));
+    }
+}
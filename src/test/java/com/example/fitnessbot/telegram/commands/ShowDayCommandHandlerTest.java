@@ -3,6 +3,7 @@ package com.example.fitnessbot.telegram.commands;
 import com.example.fitnessbot.model.Exercise;
 import com.example.fitnessbot.model.TrainingDay;
 import com.example.fitnessbot.model.User;
+import com.example.fitnessbot.service.AsyncDataAccess;
 import com.example.fitnessbot.service.TrainingDayService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -31,7 +32,7 @@ class ShowDayCommandHandlerTest {
 
     @BeforeEach
     void setUp() {
-        handler = new ShowDayCommandHandler(trainingDayService);
+        handler = new ShowDayCommandHandler(trainingDayService, AsyncDataAccess.direct());
     }
 
     @Test
@@ -50,6 +51,20 @@ class ShowDayCommandHandlerTest {
         assertFalse(handler.canHandle(callbackQuery));
     }
 
+    @Test
+    void testHandleTypedCallbackData() {
+        Update update = createMockUpdate(ShowDayCommandHandler.callbackData(1));
+        TrainingDay trainingDay = new TrainingDay();
+        trainingDay.setId(1L);
+        User user = new User();
+        user.setTelegramId(99999L);
+        trainingDay.setUser(user);
+        when(trainingDayService.getTrainingDayById(1L)).thenReturn(trainingDay);
+
+        assertTrue(handler.canHandle(update.getCallbackQuery()));
+        assertEquals("You don't have permission to view this training day.", handler.handle(update).getText());
+    }
+
     @Test
     void testHandleWithValidTrainingDay() {
         // Given
@@ -4,8 +4,11 @@ import com.example.fitnessbot.model.Program;
 import com.example.fitnessbot.model.ProgramTrainingDay;
 import com.example.fitnessbot.model.TrainingDay;
 import com.example.fitnessbot.model.User;
+import com.example.fitnessbot.service.AsyncDataAccess;
 import com.example.fitnessbot.service.ProgramCreationSessionManager;
+import com.example.fitnessbot.service.ProgramCreationSessionManager.ProgramCreationSession;
 import com.example.fitnessbot.service.ProgramService;
+import com.example.fitnessbot.service.UserContext;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -20,6 +23,7 @@ import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKe
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -37,7 +41,7 @@ class ShowProgramCommandHandlerTest {
 
     @BeforeEach
     void setUp() {
-        handler = new ShowProgramCommandHandler(programService);
+        handler = new ShowProgramCommandHandler(programService, AsyncDataAccess.direct());
     }
 
     @Test
@@ -50,24 +54,43 @@ class ShowProgramCommandHandlerTest {
 
     @Test
     void testIsAvailableWithActiveProgram() {
-        when(programService.getActiveProgram(12345L)).thenReturn(new Program());
-        // We don't need to stub sessionManager.hasActiveSession here because the method should return true
+        stubActiveProgramId(1L);
+        // We don't need to stub sessionManager here because the method should return true
         // regardless of the session manager state when there's an active program
-        assertTrue(handler.isAvailable(12345L, sessionManager));
+        assertTrue(handler.isAvailable(userContext()));
     }
 
     @Test
     void testIsAvailableWithActiveSession() {
-        when(programService.getActiveProgram(12345L)).thenReturn(null);
-        when(sessionManager.hasActiveSession(12345L)).thenReturn(true);
-        assertTrue(handler.isAvailable(12345L, sessionManager));
+        when(programService.findUser(12345L)).thenReturn(Optional.empty());
+        when(sessionManager.getSession(12345L)).thenReturn(new ProgramCreationSession(new Program()));
+        assertTrue(handler.isAvailable(userContext()));
     }
 
     @Test
     void testIsAvailableWithoutActiveProgramOrSession() {
-        when(programService.getActiveProgram(12345L)).thenReturn(null);
-        when(sessionManager.hasActiveSession(12345L)).thenReturn(false);
-        assertFalse(handler.isAvailable(12345L, sessionManager));
+        stubActiveProgramId(null);
+        when(sessionManager.getSession(12345L)).thenReturn(null);
+        assertFalse(handler.isAvailable(userContext()));
+    }
+
+    @Test
+    void testAvailabilityCheckAndHandlingShareOneLookup() {
+        Update update = createMockUpdate();
+        Program program = new Program();
+        program.setName("My Workout Program");
+        program.setProgramTrainingDays(Collections.emptyList());
+        stubActiveProgramId(1L);
+        when(programService.getProgramWithTrainingDays(1L)).thenReturn(program);
+
+        UserContext context = userContext();
+        assertTrue(handler.isAvailable(context));
+        handler.handle(update, context);
+
+        verify(programService).findUser(12345L);
+        verify(programService).getActiveProgramId(1L);
+        verify(programService).getProgramWithTrainingDays(1L);
+        verifyNoMoreInteractions(programService);
     }
 
     @Test
@@ -84,10 +107,10 @@ class ShowProgramCommandHandlerTest {
     void testHandleWithoutActiveProgram() {
         // Given
         Update update = createMockUpdate();
-        when(programService.getActiveProgram(12345L)).thenReturn(null);
+        stubActiveProgramId(null);
 
         // When
-        SendMessage response = handler.handle(update);
+        SendMessage response = handler.handle(update, userContext());
 
         // Then
         assertNotNull(response);
@@ -97,7 +120,8 @@ class ShowProgramCommandHandlerTest {
         assertNull(response.getReplyMarkup()); // No keyboard for this case
 
         // Verify interactions
-        verify(programService).getActiveProgram(12345L);
+        verify(programService).findUser(12345L);
+        verify(programService).getActiveProgramId(1L);
         verifyNoMoreInteractions(programService);
     }
 
@@ -114,10 +138,11 @@ class ShowProgramCommandHandlerTest {
         program.setUser(user);
         program.setProgramTrainingDays(Collections.emptyList());
 
-        when(programService.getActiveProgram(12345L)).thenReturn(program);
+        stubActiveProgramId(1L);
+        when(programService.getProgramWithTrainingDays(1L)).thenReturn(program);
 
         // When
-        SendMessage response = handler.handle(update);
+        SendMessage response = handler.handle(update, userContext());
 
         // Then
         assertNotNull(response);
@@ -128,8 +153,7 @@ class ShowProgramCommandHandlerTest {
         assertNull(response.getReplyMarkup()); // No keyboard when no training days
 
         // Verify interactions
-        verify(programService).getActiveProgram(12345L);
-        verifyNoMoreInteractions(programService);
+        verify(programService).getProgramWithTrainingDays(1L);
     }
 
     @Test
@@ -164,10 +188,11 @@ class ShowProgramCommandHandlerTest {
 
         program.setProgramTrainingDays(Arrays.asList(ptd1, ptd2));
 
-        when(programService.getActiveProgram(12345L)).thenReturn(program);
+        stubActiveProgramId(1L);
+        when(programService.getProgramWithTrainingDays(1L)).thenReturn(program);
 
         // When
-        SendMessage response = handler.handle(update);
+        SendMessage response = handler.handle(update, userContext());
 
         // Then
         assertNotNull(response);
@@ -191,15 +216,25 @@ class ShowProgramCommandHandlerTest {
 
         InlineKeyboardButton button1 = keyboard.get(0).getFirst();
         assertEquals("Upper Body", button1.getText());
-        assertEquals("show_day_1", button1.getCallbackData());
+        assertEquals(ShowDayCommandHandler.callbackData(1), button1.getCallbackData());
 
         InlineKeyboardButton button2 = keyboard.get(1).getFirst();
         assertEquals("Lower Body", button2.getText());
-        assertEquals("show_day_2", button2.getCallbackData());
+        assertEquals(ShowDayCommandHandler.callbackData(2), button2.getCallbackData());
 
         // Verify interactions
-        verify(programService).getActiveProgram(12345L);
-        verifyNoMoreInteractions(programService);
+        verify(programService).getProgramWithTrainingDays(1L);
+    }
+
+    private UserContext userContext() {
+        return new UserContext(12345L, programService, sessionManager);
+    }
+
+    private void stubActiveProgramId(Long programId) {
+        User user = new User();
+        user.setId(1L);
+        when(programService.findUser(12345L)).thenReturn(Optional.of(user));
+        when(programService.getActiveProgramId(1L)).thenReturn(programId);
     }
 
     private Update createMockUpdate() {
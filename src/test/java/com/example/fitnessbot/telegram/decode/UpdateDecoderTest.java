@@ -0,0 +1,95 @@
+package com.example.fitnessbot.telegram.decode;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdateDecoderTest {
+
+    private final UpdateDecoder decoder = new UpdateDecoder(new ObjectMapper());
+
+    @Test
+    void testForwardedMessageKeepsDispatchFieldsOnly() throws IOException {
+        LazyUpdate update = decoder.decode(json("""
+                {"update_id": 101, "message": {"message_id": 7, "date": 1700000000,
+                  "from": {"id": 5, "is_bot": false, "first_name": "Ann"},
+                  "chat": {"id": 5, "type": "private", "first_name": "Ann"},
+                  "forward_from_chat": {"id": -100200, "type": "channel", "title": "Coach"},
+                  "forward_from_message_id": 12,
+                  "text": "Day 1\\n- Squat 3 x 5",
+                  "entities": [{"type": "bold", "offset": 0, "length": 5}],
+                  "reply_to_message": {"message_id": 3, "chat": {"id": 5, "type": "private"}, "text": "old"}}}
+                """));
+
+        assertEquals(101, update.getUpdateId());
+        assertEquals(5L, update.getMessage().getChatId());
+        assertTrue(update.getMessage().getChat().isUserChat());
+        assertEquals(5L, update.getMessage().getFrom().getId());
+        assertEquals(-100200L, update.getMessage().getForwardFromChat().getId());
+        assertEquals(12, update.getMessage().getForwardFromMessageId());
+        assertEquals("Day 1\n- Squat 3 x 5", update.getMessage().getText());
+        assertNull(update.getMessage().getEntities());
+        assertNull(update.getMessage().getReplyToMessage());
+        assertNull(update.getMessage().getFrom().getFirstName());
+    }
+
+    @Test
+    void testCompleteUpdateHasEveryField() throws IOException {
+        LazyUpdate update = decoder.decode(json("""
+                {"update_id": 102, "message": {"message_id": 8, "date": 1700000000,
+                  "chat": {"id": 5, "type": "private"}, "text": "/menu",
+                  "entities": [{"type": "bot_command", "offset": 0, "length": 5}]}}
+                """));
+
+        Update complete = LazyUpdate.complete(update);
+
+        assertNotSame(update, complete);
+        assertEquals(1, complete.getMessage().getEntities().size());
+        assertSame(complete, LazyUpdate.complete(update));
+    }
+
+    @Test
+    void testCallbackQueryAndServiceMessages() throws IOException {
+        LazyUpdate callback = decoder.decode(json("""
+                {"update_id": 103, "callback_query": {"id": "cb1", "chat_instance": "x", "data": "show_day_1",
+                  "from": {"id": 5, "is_bot": false},
+                  "message": {"message_id": 9, "chat": {"id": 5, "type": "private"},
+                    "reply_markup": {"inline_keyboard": [[{"text": "A", "callback_data": "a"}]]}}}}
+                """));
+        LazyUpdate joined = decoder.decode(json("""
+                {"update_id": 104, "message": {"message_id": 10, "chat": {"id": -1, "type": "group"},
+                  "new_chat_members": [{"id": 6, "is_bot": false, "first_name": "Bob"}]}}
+                """));
+
+        assertEquals("cb1", callback.getCallbackQuery().getId());
+        assertEquals("show_day_1", callback.getCallbackQuery().getData());
+        assertEquals(5L, callback.getCallbackQuery().getMessage().getChatId());
+        assertFalse(joined.getMessage().hasText());
+        assertFalse(joined.getMessage().getNewChatMembers().isEmpty());
+    }
+
+    @Test
+    void testUnhandledUpdateTypesAreSkipped() throws IOException {
+        LazyUpdate update = decoder.decode(json("""
+                {"update_id": 105, "my_chat_member": {"chat": {"id": 5, "type": "private"}, "date": 1}}
+                """));
+
+        assertEquals(105, update.getUpdateId());
+        assertFalse(update.hasMessage());
+        assertFalse(update.hasCallbackQuery());
+    }
+
+    @Test
+    void testNonObjectBodyIsRejected() {
+        assertThrows(IOException.class, () -> decoder.decode(json("[]")));
+    }
+
+    private static byte[] json(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
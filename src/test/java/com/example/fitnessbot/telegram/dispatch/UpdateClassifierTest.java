@@ -0,0 +1,63 @@
+package com.example.fitnessbot.telegram.dispatch;
+
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.User;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdateClassifierTest {
+
+    private final UpdateClassifier classifier = new UpdateClassifier();
+
+    @Test
+    void testCallbackQueryIsInteractive() {
+        Update update = new Update();
+        update.setCallbackQuery(new CallbackQuery());
+
+        assertEquals(UpdateLane.INTERACTIVE, classifier.classify(update));
+    }
+
+    @Test
+    void testCheapCommandsAreInteractive() {
+        assertEquals(UpdateLane.INTERACTIVE, classifier.classify(createTextUpdate("/start")));
+        assertEquals(UpdateLane.INTERACTIVE, classifier.classify(createTextUpdate("/help@fitness_bot")));
+        assertEquals(UpdateLane.INTERACTIVE, classifier.classify(createTextUpdate("/menu now")));
+    }
+
+    @Test
+    void testOtherCommandsUseCommandLane() {
+        assertEquals(UpdateLane.COMMAND, classifier.classify(createTextUpdate("/finish_program")));
+        assertEquals(UpdateLane.COMMAND, classifier.classify(createTextUpdate("/startle")));
+    }
+
+    @Test
+    void testForwardedAndPlainTextAreIngested() {
+        Update forwarded = createTextUpdate("/start looks like a command");
+        forwarded.getMessage().setForwardFrom(new User());
+
+        assertEquals(UpdateLane.INGEST, classifier.classify(forwarded));
+        assertEquals(UpdateLane.INGEST, classifier.classify(createTextUpdate("Day 1: squats 5x5")));
+    }
+
+    @Test
+    void testOnlyCheapCommandsAreStateless() {
+        Update callback = new Update();
+        callback.setCallbackQuery(new CallbackQuery());
+
+        assertTrue(classifier.isStateless(createTextUpdate("/menu")));
+        assertFalse(classifier.isStateless(callback));
+        assertFalse(classifier.isStateless(createTextUpdate("/finish_program")));
+        assertFalse(classifier.isStateless(createTextUpdate("Day 1: squats 5x5")));
+    }
+
+    private static Update createTextUpdate(String text) {
+        Message message = new Message();
+        message.setText(text);
+        Update update = new Update();
+        update.setMessage(message);
+        return update;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.fitnessbot.telegram.dispatch;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UpdateDeduplicatorTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Test
+    void testRedeliveryIsADuplicateUntilReleased() {
+        UpdateDeduplicator deduplicator = new UpdateDeduplicator(10, null, new SimpleMeterRegistry());
+
+        assertFalse(deduplicator.isDuplicate("test_bot", 1));
+        assertTrue(deduplicator.isDuplicate("test_bot", 1));
+        assertFalse(deduplicator.isDuplicate("other_bot", 1));
+
+        deduplicator.release("test_bot", 1);
+
+        assertFalse(deduplicator.isDuplicate("test_bot", 1));
+    }
+
+    @Test
+    void testUpdateIsRecordedInRedisOnlyOnceHandled() {
+        when(redisTemplate.hasKey("tg:dedup:test_bot:1")).thenReturn(false);
+        UpdateDeduplicator deduplicator = new UpdateDeduplicator(10, redisTemplate, new SimpleMeterRegistry());
+
+        assertFalse(deduplicator.isDuplicate("test_bot", 1));
+        verify(redisTemplate, never()).opsForValue();
+
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        deduplicator.markHandled("test_bot", 1);
+
+        verify(valueOperations).set("tg:dedup:test_bot:1", "1", Duration.ofHours(24));
+    }
+
+    @Test
+    void testUpdateAdmittedButNotHandledIsHandledByTheNextReplica() {
+        when(redisTemplate.hasKey("tg:dedup:test_bot:1")).thenReturn(false);
+        UpdateDeduplicator crashed = new UpdateDeduplicator(10, redisTemplate, new SimpleMeterRegistry());
+        UpdateDeduplicator nextOwner = new UpdateDeduplicator(10, redisTemplate, new SimpleMeterRegistry());
+
+        assertFalse(crashed.isDuplicate("test_bot", 1));
+
+        assertFalse(nextOwner.isDuplicate("test_bot", 1));
+    }
+
+    @Test
+    void testUpdateHandledByAnotherReplicaIsADuplicate() {
+        when(redisTemplate.hasKey("tg:dedup:test_bot:1")).thenReturn(true);
+        UpdateDeduplicator deduplicator = new UpdateDeduplicator(10, redisTemplate, new SimpleMeterRegistry());
+
+        assertTrue(deduplicator.isDuplicate("test_bot", 1));
+    }
+
+    @Test
+    void testUpdateIsHandledWhileRedisIsUnavailable() {
+        when(redisTemplate.hasKey(anyString())).thenThrow(new RedisConnectionFailureException("Connection refused"));
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        doThrow(new RedisConnectionFailureException("Connection refused"))
+                .when(valueOperations).set(anyString(), anyString(), any(Duration.class));
+        UpdateDeduplicator deduplicator = new UpdateDeduplicator(10, redisTemplate, new SimpleMeterRegistry());
+
+        assertFalse(deduplicator.isDuplicate("test_bot", 1));
+        assertDoesNotThrow(() -> deduplicator.markHandled("test_bot", 1));
+    }
+}
@@ -0,0 +1,295 @@
+package com.example.fitnessbot.telegram.dispatch;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.User;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdateDispatcherTest {
+
+    private ExecutorService executor;
+    private SimpleMeterRegistry meterRegistry;
+    private UpdateDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        meterRegistry = new SimpleMeterRegistry();
+        dispatcher = new UpdateDispatcher(executor, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testUpdatesOfOneChatAreHandledInOrder() throws Exception {
+        List<Integer> handled = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(100);
+
+        for (int i = 0; i < 100; i++) {
+            dispatcher.dispatch(createUpdate(i, 42L), update -> {
+                handled.add(update.getUpdateId());
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, handled.get(i));
+        }
+    }
+
+    @Test
+    void testSlowChatDoesNotBlockOtherChats() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherChatHandled = new CountDownLatch(1);
+
+        dispatcher.dispatch(createUpdate(1, 1L), update -> awaitQuietly(release));
+        dispatcher.dispatch(createUpdate(2, 2L), update -> otherChatHandled.countDown());
+
+        assertTrue(otherChatHandled.await(5, TimeUnit.SECONDS));
+
+        release.countDown();
+    }
+
+    @Test
+    void testMetricsReflectQueuedUpdates() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch allHandled = new CountDownLatch(3);
+
+        for (int i = 0; i < 3; i++) {
+            dispatcher.dispatch(createUpdate(i, 7L), update -> {
+                awaitQuietly(release);
+                allHandled.countDown();
+            });
+        }
+
+        assertEquals(3.0, meterRegistry.get("telegram.dispatch.queue.depth").gauge().value());
+        assertEquals(1.0, meterRegistry.get("telegram.dispatch.chats.active").gauge().value());
+
+        release.countDown();
+        assertTrue(allHandled.await(5, TimeUnit.SECONDS));
+        assertEquals(3, meterRegistry.get("telegram.dispatch.chat.lag").timer().count());
+    }
+
+    @Test
+    void testFailingHandlerDoesNotStopChatQueue() throws Exception {
+        CountDownLatch secondHandled = new CountDownLatch(1);
+
+        dispatcher.dispatch(createUpdate(1, 5L), update -> {
+            throw new IllegalStateException("boom");
+        });
+        dispatcher.dispatch(createUpdate(2, 5L), update -> secondHandled.countDown());
+
+        assertTrue(secondHandled.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testTryDispatchRejectsWhenQueueIsFull() throws Exception {
+        UpdateDispatcher boundedDispatcher = new UpdateDispatcher(executor, 2, meterRegistry);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch allHandled = new CountDownLatch(2);
+        UpdateHandler blockingHandler = update -> {
+            awaitQuietly(release);
+            allHandled.countDown();
+        };
+
+        assertTrue(boundedDispatcher.tryDispatch(createUpdate(1, 1L), blockingHandler));
+        assertTrue(boundedDispatcher.tryDispatch(createUpdate(2, 2L), blockingHandler));
+        assertFalse(boundedDispatcher.tryDispatch(createUpdate(3, 3L), blockingHandler));
+        assertEquals(1.0, meterRegistry.get("telegram.dispatch.rejected").counter().count());
+
+        release.countDown();
+        assertTrue(allHandled.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testDrainWaitsForQueuedUpdatesAndClosesIntake() throws Exception {
+        List<Integer> handled = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            dispatcher.dispatch(createUpdate(i, 3L), update -> {
+                sleepQuietly(10);
+                handled.add(update.getUpdateId());
+            });
+        }
+
+        assertTrue(dispatcher.drain(Duration.ofSeconds(5)));
+
+        assertEquals(5, handled.size());
+        assertFalse(dispatcher.tryDispatch(createUpdate(6, 3L), update -> { }));
+        assertEquals(1, meterRegistry.get("telegram.dispatch.drain.time").timer().count());
+    }
+
+    @Test
+    void testDrainCountsUpdatesLeftAtDeadline() {
+        CountDownLatch release = new CountDownLatch(1);
+        dispatcher.dispatch(createUpdate(1, 4L), update -> awaitQuietly(release));
+        dispatcher.dispatch(createUpdate(2, 4L), update -> { });
+
+        assertFalse(dispatcher.drain(Duration.ofMillis(50)));
+
+        assertEquals(2.0, meterRegistry.get("telegram.dispatch.drain.dropped").counter().count());
+        release.countDown();
+    }
+
+    @Test
+    void testCallbackRunsAfterQueuedIngestionOfSameChat() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> handled = new CopyOnWriteArrayList<>();
+
+        dispatcher.dispatch(createUpdate(1, 9L), update -> {
+            awaitQuietly(release);
+            handled.add(update.getUpdateId());
+        });
+        dispatcher.dispatch(createCallbackUpdate(2, 9L), update -> handled.add(update.getUpdateId()));
+
+        sleepQuietly(50);
+        assertTrue(handled.isEmpty());
+
+        release.countDown();
+        assertTrue(dispatcher.drain(Duration.ofSeconds(5)));
+        assertEquals(List.of(1, 2), handled);
+        assertEquals(1, meterRegistry.get("telegram.dispatch.lane.latency").tag("lane", "interactive").timer().count());
+        assertEquals(1, meterRegistry.get("telegram.dispatch.lane.latency").tag("lane", "ingest").timer().count());
+    }
+
+    @Test
+    void testStatelessCommandIsNotQueuedBehindIngestionOfSameChat() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch menuHandled = new CountDownLatch(1);
+
+        dispatcher.dispatch(createUpdate(1, 9L), update -> awaitQuietly(release));
+        Update menu = createUpdate(2, 9L);
+        menu.getMessage().setText("/menu");
+        dispatcher.dispatch(menu, update -> menuHandled.countDown());
+
+        assertTrue(menuHandled.await(5, TimeUnit.SECONDS));
+
+        release.countDown();
+        assertTrue(dispatcher.drain(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    void testLaneConcurrencyIsLimited() throws Exception {
+        Map<UpdateLane, UpdateDispatcher.LaneSettings> lanes = new EnumMap<>(UpdateDispatcher.DEFAULT_LANE_SETTINGS);
+        lanes.put(UpdateLane.INGEST, new UpdateDispatcher.LaneSettings(1, Duration.ofSeconds(1)));
+        UpdateDispatcher limitedDispatcher = new UpdateDispatcher(executor, 100, Duration.ofSeconds(1),
+                new UpdateClassifier(), lanes, UpdateDispatcher.NO_COALESCING, meterRegistry);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch allHandled = new CountDownLatch(4);
+
+        for (int i = 0; i < 4; i++) {
+            limitedDispatcher.dispatch(createUpdate(i, 100L + i), update -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleepQuietly(20);
+                running.decrementAndGet();
+                allHandled.countDown();
+            });
+        }
+
+        assertTrue(allHandled.await(5, TimeUnit.SECONDS));
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    void testForwardedBurstIsHandledAsOneBatch() throws Exception {
+        UpdateDispatcher coalescingDispatcher = new UpdateDispatcher(executor, 100, Duration.ofSeconds(1),
+                new UpdateClassifier(), UpdateDispatcher.DEFAULT_LANE_SETTINGS,
+                new UpdateDispatcher.Coalescing(Duration.ofMillis(200), 20), meterRegistry);
+        List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+        CountDownLatch allHandled = new CountDownLatch(3);
+        UpdateHandler handler = new UpdateHandler() {
+            @Override
+            public void handle(Update update) {
+                batches.add(List.of(update.getUpdateId()));
+            }
+
+            @Override
+            public void handleBatch(List<Update> updates) {
+                batches.add(updates.stream().map(Update::getUpdateId).toList());
+            }
+        };
+
+        for (int i = 1; i <= 3; i++) {
+            coalescingDispatcher.dispatch(createForwardedUpdate(i, 11L), handler, allHandled::countDown);
+        }
+
+        assertTrue(allHandled.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(List.of(1, 2, 3)), batches);
+        // The handled callbacks run just before the pending count drops
+        assertTrue(coalescingDispatcher.drain(Duration.ofSeconds(1)));
+        assertEquals(0, coalescingDispatcher.getPendingCount());
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Update createForwardedUpdate(int updateId, long chatId) {
+        Update update = createUpdate(updateId, chatId);
+        User sender = new User();
+        sender.setId(chatId);
+        update.getMessage().setFrom(sender);
+        update.getMessage().setForwardFrom(sender);
+        return update;
+    }
+
+    private static Update createCallbackUpdate(int updateId, long chatId) {
+        Chat chat = new Chat();
+        chat.setId(chatId);
+        Message message = new Message();
+        message.setChat(chat);
+        CallbackQuery callbackQuery = new CallbackQuery();
+        callbackQuery.setMessage(message);
+        callbackQuery.setData("show_day_1");
+        Update update = new Update();
+        update.setUpdateId(updateId);
+        update.setCallbackQuery(callbackQuery);
+        return update;
+    }
+
+    private static Update createUpdate(int updateId, long chatId) {
+        Chat chat = new Chat();
+        chat.setId(chatId);
+        Message message = new Message();
+        message.setChat(chat);
+        message.setText("text");
+        Update update = new Update();
+        update.setUpdateId(updateId);
+        update.setMessage(message);
+        return update;
+    }
+}
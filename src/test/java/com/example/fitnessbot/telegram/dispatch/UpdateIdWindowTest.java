@@ -0,0 +1,60 @@
+package com.example.fitnessbot.telegram.dispatch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdateIdWindowTest {
+
+    @Test
+    void testRepeatedIdIsDuplicate() {
+        UpdateIdWindow window = new UpdateIdWindow(10);
+
+        assertTrue(window.markSeen(100));
+        assertTrue(window.markSeen(101));
+        assertFalse(window.markSeen(100));
+        assertFalse(window.markSeen(101));
+    }
+
+    @Test
+    void testOutOfOrderIdsInsideWindowAreAccepted() {
+        UpdateIdWindow window = new UpdateIdWindow(10);
+
+        assertTrue(window.markSeen(500));
+        assertTrue(window.markSeen(498));
+        assertTrue(window.markSeen(499));
+        assertFalse(window.markSeen(498));
+    }
+
+    @Test
+    void testSlotsAreReusedAfterAFullLap() {
+        UpdateIdWindow window = new UpdateIdWindow(6);
+
+        for (int id = 0; id < 64; id++) {
+            assertTrue(window.markSeen(id));
+        }
+        // Ids 64..127 map onto the same slots as 0..63 and must not look like duplicates
+        for (int id = 64; id < 128; id++) {
+            assertTrue(window.markSeen(id));
+        }
+        assertFalse(window.markSeen(127));
+    }
+
+    @Test
+    void testRestartedSequenceIsAccepted() {
+        UpdateIdWindow window = new UpdateIdWindow(6);
+
+        assertTrue(window.markSeen(1_000_000));
+        assertTrue(window.markSeen(17));
+        assertFalse(window.markSeen(17));
+    }
+
+    @Test
+    void testUnmarkedIdIsAcceptedAgain() {
+        UpdateIdWindow window = new UpdateIdWindow(10);
+
+        assertTrue(window.markSeen(7));
+        window.unmark(7);
+        assertTrue(window.markSeen(7));
+    }
+}
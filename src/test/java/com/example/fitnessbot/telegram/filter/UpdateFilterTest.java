@@ -0,0 +1,126 @@
+package com.example.fitnessbot.telegram.filter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.User;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.InlineQuery;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdateFilterTest {
+
+    private static final long PRIVATE_CHAT_ID = 1L;
+    private static final long GROUP_CHAT_ID = -100L;
+    private static final long COACH_GROUP_ID = -200L;
+    private static final long IGNORED_GROUP_ID = -300L;
+
+    private SimpleMeterRegistry meterRegistry;
+    private UpdateFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new UpdateFilter("fitness_bot", ChatMode.COMMANDS_ONLY,
+                List.of(COACH_GROUP_ID), List.of(IGNORED_GROUP_ID), true, meterRegistry);
+    }
+
+    @Test
+    void testPrivateChatTextPasses() {
+        assertNull(filter.check(createTextUpdate(PRIVATE_CHAT_ID, "private", "Day 1: squats")));
+    }
+
+    @Test
+    void testGroupChatterIsDroppedAndCounted() {
+        assertEquals(DropReason.GROUP_CHATTER, filter.check(createTextUpdate(GROUP_CHAT_ID, "supergroup", "hi all")));
+        assertEquals(1.0, meterRegistry.get("telegram.updates.dropped").tag("reason", "group_chatter").counter().count());
+    }
+
+    @Test
+    void testGroupCommandsPassUnlessAddressedToAnotherBot() {
+        assertNull(filter.check(createTextUpdate(GROUP_CHAT_ID, "group", "/menu")));
+        assertNull(filter.check(createTextUpdate(GROUP_CHAT_ID, "group", "/menu@Fitness_Bot")));
+        assertNull(filter.check(createTextUpdate(GROUP_CHAT_ID, "group", "/create_program Legs @ gym")));
+        assertEquals(DropReason.OTHER_BOT_COMMAND, filter.check(createTextUpdate(GROUP_CHAT_ID, "group", "/menu@other_bot")));
+    }
+
+    @Test
+    void testGroupCommandsAreMatchedAgainstTheReceivingBot() {
+        assertNull(filter.check(createTextUpdate(GROUP_CHAT_ID, "group", "/menu@gym_bot"), "gym_bot"));
+        assertEquals(DropReason.OTHER_BOT_COMMAND,
+                filter.check(createTextUpdate(GROUP_CHAT_ID, "group", "/menu@fitness_bot"), "gym_bot"));
+    }
+
+    @Test
+    void testConfiguredChatModesOverrideChatType() {
+        assertNull(filter.check(createTextUpdate(COACH_GROUP_ID, "group", "Day 1: squats")));
+        assertEquals(DropReason.CHAT_IGNORED, filter.check(createTextUpdate(IGNORED_GROUP_ID, "group", "/menu")));
+
+        filter.setChatMode(GROUP_CHAT_ID, ChatMode.FULL);
+        assertNull(filter.check(createTextUpdate(GROUP_CHAT_ID, "group", "Day 1: squats")));
+    }
+
+    @Test
+    void testBotsServiceMessagesAndOtherTypesAreDropped() {
+        Update fromBot = createTextUpdate(PRIVATE_CHAT_ID, "private", "/start");
+        fromBot.getMessage().getFrom().setIsBot(true);
+        Update joined = createTextUpdate(GROUP_CHAT_ID, "group", null);
+        joined.getMessage().setNewChatMembers(List.of(new User()));
+        Update inlineQuery = new Update();
+        inlineQuery.setInlineQuery(new InlineQuery());
+
+        assertEquals(DropReason.FROM_BOT, filter.check(fromBot));
+        assertEquals(DropReason.SERVICE_MESSAGE, filter.check(joined));
+        assertEquals(DropReason.NO_TEXT, filter.check(createTextUpdate(PRIVATE_CHAT_ID, "private", null)));
+        assertEquals(DropReason.UNSUPPORTED_TYPE, filter.check(inlineQuery));
+    }
+
+    @Test
+    void testChannelPostsPassUnlessChannelIsIgnored() {
+        Update post = new Update();
+        post.setChannelPost(createTextUpdate(-500L, "channel", "Day 1: squats").getMessage());
+        Update ignoredPost = new Update();
+        ignoredPost.setChannelPost(createTextUpdate(IGNORED_GROUP_ID, "channel", "Day 1: squats").getMessage());
+
+        assertNull(filter.check(post));
+        assertEquals(DropReason.CHAT_IGNORED, filter.check(ignoredPost));
+    }
+
+    @Test
+    void testEditedChannelPostFollowsChannelPostRules() {
+        Update edit = new Update();
+        edit.setEditedChannelPost(createTextUpdate(-500L, "channel", "Day 1: squats 5x3").getMessage());
+
+        assertNull(filter.check(edit));
+    }
+
+    @Test
+    void testCallbackQueryPasses() {
+        Update update = new Update();
+        update.setCallbackQuery(new CallbackQuery());
+
+        assertNull(filter.check(update));
+    }
+
+    private static Update createTextUpdate(long chatId, String chatType, String text) {
+        Chat chat = new Chat();
+        chat.setId(chatId);
+        chat.setType(chatType);
+        User user = new User();
+        user.setId(42L);
+        user.setIsBot(false);
+        Message message = new Message();
+        message.setChat(chat);
+        message.setFrom(user);
+        message.setText(text);
+        Update update = new Update();
+        update.setMessage(message);
+        return update;
+    }
+}
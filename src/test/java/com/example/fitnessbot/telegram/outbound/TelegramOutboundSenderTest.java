@@ -0,0 +1,170 @@
+package com.example.fitnessbot.telegram.outbound;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.ResponseParameters;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TelegramOutboundSenderTest {
+
+    private static final TelegramOutboundSender.Limits LIMITS = new TelegramOutboundSender.Limits(
+            Duration.ofMillis(1), 100, Duration.ofMillis(100), 2, Duration.ofMillis(300));
+
+    @Mock
+    private AbsSender bot;
+
+    @Mock
+    private AbsSender otherBot;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private SimpleMeterRegistry meterRegistry;
+    private TelegramOutboundSender sender;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        sender = new TelegramOutboundSender(executor, 100, 8, LIMITS, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testMessagesOfAChatAreSentInOrderAtItsPace() throws Exception {
+        List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        List<Long> sentAt = Collections.synchronizedList(new ArrayList<>());
+        when(bot.execute(any(SendMessage.class))).thenAnswer(invocation -> {
+            sent.add(invocation.<SendMessage>getArgument(0).getText());
+            sentAt.add(System.nanoTime());
+            return new Message();
+        });
+
+        List<CompletableFuture<Message>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(sender.send(bot, message("1", "reply " + i)));
+        }
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).join();
+
+        assertEquals(List.of("reply 0", "reply 1", "reply 2", "reply 3"), sent);
+        // A burst of two, then one every 100ms
+        assertTrue(sentAt.get(3) - sentAt.get(0) >= Duration.ofMillis(190).toNanos());
+    }
+
+    @Test
+    void testPacedChatDoesNotHoldUpOthers() throws Exception {
+        when(bot.execute(any(SendMessage.class))).thenReturn(new Message());
+        for (int i = 0; i < 5; i++) {
+            sender.send(bot, message("1", "busy chat"));
+        }
+
+        long start = System.nanoTime();
+        sender.send(bot, message("2", "other chat")).join();
+
+        assertTrue(System.nanoTime() - start < Duration.ofMillis(100).toNanos());
+    }
+
+    @Test
+    void testEachBotHasItsOwnPace() throws Exception {
+        // One send a second per bot and chat
+        TelegramOutboundSender slow = new TelegramOutboundSender(executor, 100, 8, new TelegramOutboundSender.Limits(
+                Duration.ofSeconds(1), 1, Duration.ofSeconds(1), 1, Duration.ofSeconds(1)), meterRegistry);
+        when(bot.execute(any(SendMessage.class))).thenReturn(new Message());
+        when(otherBot.execute(any(SendMessage.class))).thenReturn(new Message());
+        slow.send(bot, message("1", "first")).join();
+
+        long start = System.nanoTime();
+        // Another tenant's bot writing to the same chat id waits neither for the chat nor for the first bot
+        slow.send(otherBot, message("1", "other bot")).join();
+
+        assertTrue(System.nanoTime() - start < Duration.ofMillis(500).toNanos());
+    }
+
+    @Test
+    void testTooManyRequestsIsRetriedAfterTheRequestedDelay() throws Exception {
+        TelegramApiRequestException tooManyRequests = mock(TelegramApiRequestException.class);
+        when(tooManyRequests.getErrorCode()).thenReturn(429);
+        when(tooManyRequests.getParameters()).thenReturn(new ResponseParameters(null, 1));
+        Message message = new Message();
+        when(bot.execute(any(SendMessage.class))).thenThrow(tooManyRequests).thenReturn(message);
+
+        assertSame(message, sender.send(bot, message("1", "reply")).join());
+        assertEquals(1.0, meterRegistry.get("telegram.outbound.throttled").counter().count());
+    }
+
+    @Test
+    void testOtherFailuresCompleteTheResult() throws Exception {
+        when(bot.execute(any(SendMessage.class))).thenThrow(new TelegramApiRequestException("chat not found"));
+
+        CompletionException e = assertThrows(CompletionException.class, () -> sender.send(bot, message("1", "reply")).join());
+
+        assertInstanceOf(TelegramApiRequestException.class, e.getCause());
+        // The chat's queue keeps working
+        reset(bot);
+        when(bot.execute(any(SendMessage.class))).thenReturn(new Message());
+        assertNotNull(sender.send(bot, message("1", "next")).join());
+    }
+
+    @Test
+    void testFullQueueRejectsAtOnce() throws Exception {
+        TelegramOutboundSender small = new TelegramOutboundSender(executor, 2, 8, LIMITS, meterRegistry);
+        // Hold the first send, so both stay queued until the third one is offered
+        CountDownLatch release = new CountDownLatch(1);
+        lenient().when(bot.execute(any(SendMessage.class))).thenAnswer(invocation -> {
+            release.await();
+            return new Message();
+        });
+        small.send(bot, message("1", "first"));
+        small.send(bot, message("1", "second"));
+
+        CompletableFuture<Message> third = small.send(bot, message("1", "third"));
+
+        CompletionException e = assertThrows(CompletionException.class, third::join);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        assertEquals(1.0, meterRegistry.get("telegram.outbound.rejected").counter().count());
+        release.countDown();
+    }
+
+    @Test
+    void testMethodsOfNoChatAreNotQueued() throws Exception {
+        when(bot.execute(any(AnswerCallbackQuery.class))).thenReturn(true);
+        AnswerCallbackQuery answer = new AnswerCallbackQuery();
+        answer.setCallbackQueryId("query");
+
+        assertTrue(sender.send(bot, answer).join());
+        assertEquals(0.0, meterRegistry.get("telegram.outbound.queued").gauge().value());
+    }
+
+    private static SendMessage message(String chatId, String text) {
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId);
+        message.setText(text);
+        return message;
+    }
+}
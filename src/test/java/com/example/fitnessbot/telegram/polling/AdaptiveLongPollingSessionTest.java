@@ -0,0 +1,249 @@
+package com.example.fitnessbot.telegram.polling;
+
+import com.example.fitnessbot.service.UpdateOffsetService;
+import com.example.fitnessbot.telegram.FitnessTelegramBot;
+import com.example.fitnessbot.telegram.dispatch.UpdateDispatcher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.telegram.telegrambots.meta.api.methods.updates.GetUpdates;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AdaptiveLongPollingSessionTest {
+
+    @Mock
+    private FitnessTelegramBot bot;
+
+    @Mock
+    private UpdateDispatcher updateDispatcher;
+
+    @Mock
+    private UpdateOffsetService updateOffsetService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private AdaptiveLongPollingSession session;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        session = new AdaptiveLongPollingSession(bot, updateDispatcher, updateOffsetService,
+                List.of("message", "callback_query"), 50, meterRegistry) {
+            @Override
+            protected void writeOffset(Runnable write) {
+                write.run();
+            }
+        };
+    }
+
+    @Test
+    void testBatchIsSizedToFreeQueueRoom() throws Exception {
+        when(updateDispatcher.getQueueCapacity()).thenReturn(1000);
+        when(updateDispatcher.getPendingCount()).thenReturn(990);
+        when(bot.execute(any(GetUpdates.class))).thenReturn(new ArrayList<>());
+
+        session.pollOnce();
+
+        ArgumentCaptor<GetUpdates> captor = ArgumentCaptor.forClass(GetUpdates.class);
+        verify(bot).execute(captor.capture());
+        assertEquals(10, captor.getValue().getLimit());
+        assertEquals(50, captor.getValue().getTimeout());
+        assertEquals(List.of("message", "callback_query"), captor.getValue().getAllowedUpdates());
+    }
+
+    @Test
+    void testBatchNeverExceedsTelegramLimit() throws Exception {
+        when(updateDispatcher.getQueueCapacity()).thenReturn(1000);
+        when(updateDispatcher.getPendingCount()).thenReturn(0);
+        when(bot.execute(any(GetUpdates.class))).thenReturn(new ArrayList<>());
+
+        session.pollOnce();
+
+        ArgumentCaptor<GetUpdates> captor = ArgumentCaptor.forClass(GetUpdates.class);
+        verify(bot).execute(captor.capture());
+        assertEquals(AdaptiveLongPollingSession.MAX_BATCH_SIZE, captor.getValue().getLimit());
+    }
+
+    @Test
+    void testFullQueueSkipsPolling() throws Exception {
+        when(updateDispatcher.getQueueCapacity()).thenReturn(1000);
+        when(updateDispatcher.getPendingCount()).thenReturn(1000);
+
+        assertEquals(-1, session.pollOnce());
+
+        verify(bot, never()).execute(any(GetUpdates.class));
+    }
+
+    @Test
+    void testOffsetIsConfirmedOnlyForHandledUpdates() throws Exception {
+        when(updateDispatcher.getQueueCapacity()).thenReturn(1000);
+        when(updateDispatcher.getPendingCount()).thenReturn(0);
+        when(bot.getBotUsername()).thenReturn("test_bot");
+        Update first = createUpdate(41);
+        Update second = createUpdate(42);
+        when(bot.execute(any(GetUpdates.class))).thenReturn(new ArrayList<>(List.of(first, second)));
+
+        assertEquals(2, session.pollOnce());
+
+        ArgumentCaptor<Runnable> firstHandled = ArgumentCaptor.forClass(Runnable.class);
+        ArgumentCaptor<Runnable> secondHandled = ArgumentCaptor.forClass(Runnable.class);
+        verify(bot).onUpdateReceived(eq(first), firstHandled.capture());
+        verify(bot).onUpdateReceived(eq(second), secondHandled.capture());
+        verify(updateOffsetService, never()).confirm(anyString(), anyLong());
+        assertNull(session.getNextOffset());
+
+        // The later update finishing first must not move the watermark past the earlier one
+        secondHandled.getValue().run();
+        session.confirmHandled();
+        verify(updateOffsetService, never()).confirm(anyString(), anyLong());
+
+        firstHandled.getValue().run();
+        session.confirmHandled();
+        verify(updateOffsetService).confirm("test_bot", 42);
+        assertEquals(43, session.getNextOffset());
+    }
+
+    @Test
+    void testRefetchedInFlightUpdateIsNotDispatchedAgain() throws Exception {
+        when(updateDispatcher.getQueueCapacity()).thenReturn(1000);
+        when(updateDispatcher.getPendingCount()).thenReturn(0);
+        Update update = createUpdate(41);
+        when(bot.execute(any(GetUpdates.class))).thenReturn(new ArrayList<>(List.of(update)));
+
+        assertEquals(1, session.pollOnce());
+        assertEquals(-1, session.pollOnce());
+
+        verify(bot, times(1)).onUpdateReceived(eq(update), any(Runnable.class));
+    }
+
+    @Test
+    void testRefetchedHandledUpdateIsSkippedWhileAnEarlierOneIsInFlight() throws Exception {
+        when(updateDispatcher.getQueueCapacity()).thenReturn(1000);
+        when(updateDispatcher.getPendingCount()).thenReturn(0);
+        Update first = createUpdate(41);
+        Update second = createUpdate(42);
+        when(bot.execute(any(GetUpdates.class))).thenReturn(new ArrayList<>(List.of(first, second)));
+
+        assertEquals(2, session.pollOnce());
+        ArgumentCaptor<Runnable> secondHandled = ArgumentCaptor.forClass(Runnable.class);
+        verify(bot).onUpdateReceived(eq(second), secondHandled.capture());
+        secondHandled.getValue().run();
+
+        // Both come back, as the offset is still held by the first one
+        assertEquals(-1, session.pollOnce());
+
+        verify(bot, times(1)).onUpdateReceived(eq(second), any(Runnable.class));
+        assertEquals(1.0, meterRegistry.get("telegram.polling.refetched").counter().count());
+    }
+
+    @Test
+    void testUndeliveredUpdateIsFetchedAgain() throws Exception {
+        when(updateDispatcher.getQueueCapacity()).thenReturn(1000);
+        when(updateDispatcher.getPendingCount()).thenReturn(0);
+        Update update = createUpdate(41);
+        when(bot.execute(any(GetUpdates.class))).thenReturn(new ArrayList<>(List.of(update)));
+        doThrow(new IllegalStateException("down")).doNothing()
+                .when(bot).onUpdateReceived(eq(update), any(Runnable.class));
+
+        assertThrows(IllegalStateException.class, () -> session.pollOnce());
+        assertEquals(1, session.pollOnce());
+
+        verify(bot, times(2)).onUpdateReceived(eq(update), any(Runnable.class));
+        verify(updateOffsetService, never()).confirm(anyString(), anyLong());
+    }
+
+    @Test
+    void testStopDrainsBeforeConfirmingOffset() throws Exception {
+        when(updateDispatcher.getQueueCapacity()).thenReturn(1000);
+        when(updateDispatcher.getPendingCount()).thenReturn(0);
+        when(updateDispatcher.getDrainTimeout()).thenReturn(Duration.ofSeconds(5));
+        when(bot.getBotUsername()).thenReturn("test_bot");
+        Update update = createUpdate(7);
+        when(bot.execute(any(GetUpdates.class))).thenReturn(new ArrayList<>(List.of(update)));
+        ArgumentCaptor<Runnable> handled = ArgumentCaptor.forClass(Runnable.class);
+
+        session.pollOnce();
+        verify(bot).onUpdateReceived(eq(update), handled.capture());
+        when(updateDispatcher.drain(Duration.ofSeconds(5))).thenAnswer(invocation -> {
+            handled.getValue().run();
+            return true;
+        });
+
+        session.stop();
+
+        InOrder inOrder = inOrder(updateDispatcher, updateOffsetService);
+        inOrder.verify(updateDispatcher).drain(Duration.ofSeconds(5));
+        inOrder.verify(updateOffsetService).confirm("test_bot", 7);
+    }
+
+    @Test
+    void testPollingGoesOnWhileTheOffsetCannotBeStored() throws Exception {
+        when(updateDispatcher.getQueueCapacity()).thenReturn(1000);
+        when(updateDispatcher.getPendingCount()).thenReturn(0);
+        when(bot.getBotUsername()).thenReturn("test_bot");
+        when(bot.execute(any(GetUpdates.class)))
+                .thenReturn(new ArrayList<>(List.of(createUpdate(41))))
+                .thenReturn(new ArrayList<>(List.of(createUpdate(42))))
+                .thenReturn(new ArrayList<>());
+        // The bot spools the updates while the database is down, which counts as handled
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return null;
+        }).when(bot).onUpdateReceived(any(Update.class), any(Runnable.class));
+        doThrow(new CannotCreateTransactionException("Could not open JPA EntityManager for transaction"))
+                .when(updateOffsetService).confirm(anyString(), anyLong());
+
+        assertEquals(1, session.pollOnce());
+        assertEquals(1, session.pollOnce());
+
+        verify(bot, times(2)).onUpdateReceived(any(Update.class), any(Runnable.class));
+        assertEquals(43, session.getNextOffset());
+        assertTrue(meterRegistry.get("telegram.polling.offset.write.errors").counter().count() > 0);
+
+        // Once the database is back the latest confirmed offset is stored
+        doNothing().when(updateOffsetService).confirm(anyString(), anyLong());
+        session.pollOnce();
+        verify(updateOffsetService, atLeastOnce()).confirm("test_bot", 42);
+    }
+
+    @Test
+    void testPollingStartsWhileTheStoredOffsetCannotBeLoaded() throws Exception {
+        when(bot.getBotUsername()).thenReturn("test_bot");
+        when(updateOffsetService.getNextOffset("test_bot"))
+                .thenThrow(new CannotCreateTransactionException("Could not open JPA EntityManager for transaction"));
+        when(updateDispatcher.getQueueCapacity()).thenReturn(1000);
+        when(updateDispatcher.getPendingCount()).thenReturn(0);
+        when(bot.execute(any(GetUpdates.class))).thenReturn(new ArrayList<>());
+
+        session.start();
+        try {
+            verify(bot, timeout(5_000).atLeastOnce()).execute(any(GetUpdates.class));
+            assertTrue(session.isRunning());
+        } finally {
+            session.stop();
+        }
+    }
+
+    private static Update createUpdate(int updateId) {
+        Update update = new Update();
+        update.setUpdateId(updateId);
+        return update;
+    }
+}
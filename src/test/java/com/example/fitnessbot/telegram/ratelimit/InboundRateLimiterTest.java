@@ -0,0 +1,120 @@
+package com.example.fitnessbot.telegram.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.User;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InboundRateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private SimpleMeterRegistry meterRegistry;
+    private InboundRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        limiter = new InboundRateLimiter(8,
+                Map.of(RateLimitCategory.MESSAGE, new InboundRateLimiter.Budget(3, 60),
+                        RateLimitCategory.COMMAND, new InboundRateLimiter.Budget(2, 60),
+                        RateLimitCategory.CALLBACK, new InboundRateLimiter.Budget(5, 60)),
+                Duration.ofSeconds(30), now::get, meterRegistry);
+    }
+
+    @Test
+    void testBurstIsAllowedThenLimitedWithOneNotice() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(InboundRateLimiter.Decision.ALLOWED, limiter.check(createMessage(1L, "Day 1")));
+        }
+        assertEquals(InboundRateLimiter.Decision.LIMITED_NOTIFY, limiter.check(createMessage(1L, "Day 1")));
+        assertEquals(InboundRateLimiter.Decision.LIMITED, limiter.check(createMessage(1L, "Day 1")));
+        assertEquals(2.0, meterRegistry.get("telegram.updates.rate.limited").tag("category", "message").counter().count());
+    }
+
+    @Test
+    void testTokensRefillOverTime() {
+        for (int i = 0; i < 3; i++) {
+            limiter.check(createMessage(1L, "Day 1"));
+        }
+        assertNotEquals(InboundRateLimiter.Decision.ALLOWED, limiter.check(createMessage(1L, "Day 1")));
+
+        // 60 per minute is one token per second
+        now.addAndGet(1_000);
+        assertEquals(InboundRateLimiter.Decision.ALLOWED, limiter.check(createMessage(1L, "Day 1")));
+        assertNotEquals(InboundRateLimiter.Decision.ALLOWED, limiter.check(createMessage(1L, "Day 1")));
+    }
+
+    @Test
+    void testNoticeIsRepeatedAfterInterval() {
+        for (int i = 0; i < 2; i++) {
+            limiter.check(createMessage(1L, "/menu"));
+        }
+        assertEquals(InboundRateLimiter.Decision.LIMITED_NOTIFY, limiter.check(createMessage(1L, "/menu")));
+
+        now.addAndGet(30_000);
+        for (int i = 0; i < 2; i++) {
+            limiter.check(createMessage(1L, "/menu"));
+        }
+        assertEquals(InboundRateLimiter.Decision.LIMITED_NOTIFY, limiter.check(createMessage(1L, "/menu")));
+    }
+
+    @Test
+    void testCategoriesHaveSeparateBudgets() {
+        for (int i = 0; i < 3; i++) {
+            limiter.check(createMessage(1L, "Day 1"));
+        }
+
+        assertEquals(InboundRateLimiter.Decision.ALLOWED, limiter.check(createMessage(1L, "/menu")));
+        assertEquals(InboundRateLimiter.Decision.ALLOWED, limiter.check(createCallback(1L)));
+    }
+
+    @Test
+    void testChannelPostsAreNotLimited() {
+        Update update = new Update();
+        update.setChannelPost(new Message());
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(InboundRateLimiter.Decision.ALLOWED, limiter.check(update));
+        }
+    }
+
+    @Test
+    void testInvalidBudgetIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new StripedTokenBuckets(8, 0, 10));
+        assertThrows(IllegalArgumentException.class, () -> new StripedTokenBuckets(30, 1, 10));
+    }
+
+    private static Update createMessage(long userId, String text) {
+        User user = new User();
+        user.setId(userId);
+        Chat chat = new Chat();
+        chat.setId(userId);
+        Message message = new Message();
+        message.setFrom(user);
+        message.setChat(chat);
+        message.setText(text);
+        Update update = new Update();
+        update.setMessage(message);
+        return update;
+    }
+
+    private static Update createCallback(long userId) {
+        User user = new User();
+        user.setId(userId);
+        CallbackQuery callbackQuery = new CallbackQuery();
+        callbackQuery.setFrom(user);
+        Update update = new Update();
+        update.setCallbackQuery(callbackQuery);
+        return update;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.fitnessbot.telegram.replay;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdateAnonymizerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final UpdateAnonymizer anonymizer = new UpdateAnonymizer("test-key".getBytes(StandardCharsets.UTF_8));
+
+    @Test
+    void testPersonalDataIsRemovedAndIdsAreHashedConsistently() throws Exception {
+        JsonNode update = anonymizer.anonymize(objectMapper.readTree("""
+                {"update_id": 7, "message": {"message_id": 3, "date": 1700000000,
+                  "from": {"id": 5, "is_bot": false, "first_name": "Ann", "last_name": "Lee", "username": "ann"},
+                  "chat": {"id": 5, "type": "private", "first_name": "Ann", "username": "ann"},
+                  "forward_from_chat": {"id": -100200, "type": "channel", "title": "Coach Kim"},
+                  "text": "Leg Day:\\n- Squat 3 x 5"}}
+                """));
+
+        JsonNode message = update.get("message");
+        long userId = message.get("from").get("id").asLong();
+        assertNotEquals(5, userId);
+        assertTrue(userId > 0);
+        assertEquals(userId, message.get("chat").get("id").asLong());
+        assertTrue(message.get("forward_from_chat").get("id").asLong() < 0);
+        assertFalse(message.get("from").has("first_name"));
+        assertFalse(message.get("from").has("username"));
+        assertFalse(message.get("forward_from_chat").has("title"));
+        assertEquals("Xxx Xxx:\n- Xxxxx 3 x 5", message.get("text").asText());
+        assertEquals(7, update.get("update_id").asInt());
+        assertEquals(3, message.get("message_id").asInt());
+        assertEquals("private", message.get("chat").get("type").asText());
+    }
+
+    @Test
+    void testNamesOfForwardsFromHiddenAccountsAndSignaturesAreRemoved() throws Exception {
+        JsonNode update = anonymizer.anonymize(objectMapper.readTree("""
+                {"update_id": 8, "message": {"message_id": 4, "date": 1700000000,
+                  "from": {"id": 5, "is_bot": false, "first_name": "Ann"},
+                  "chat": {"id": 5, "type": "private"},
+                  "forward_sender_name": "Coach Kim", "forward_signature": "Kim", "forward_date": 1699990000,
+                  "forward_origin": {"type": "hidden_user", "sender_user_name": "Coach Kim", "date": 1699990000},
+                  "author_signature": "Kim",
+                  "text": "Leg Day:\\n- Squat 3 x 5"}}
+                """));
+
+        JsonNode message = update.get("message");
+        assertFalse(message.has("forward_sender_name"));
+        assertFalse(message.has("forward_signature"));
+        assertFalse(message.has("author_signature"));
+        assertFalse(message.get("forward_origin").has("sender_user_name"));
+        assertEquals("hidden_user", message.get("forward_origin").get("type").asText());
+        assertEquals(1699990000, message.get("forward_date").asLong());
+        assertFalse(update.toString().contains("Kim"));
+    }
+
+    @Test
+    void testCommandsAndUrlSchemesStayReadable() {
+        assertEquals("/create_program Xx Xxxx", UpdateAnonymizer.maskText("/create_program My Plan"));
+        assertEquals("- Xxxxx https://xxxxxxx.xxx/xxxxx?x=1", UpdateAnonymizer.maskText("- Squat https://youtube.com/watch?v=1"));
+        // Only the leading command is kept
+        assertEquals("xxxx /xxxxx", UpdateAnonymizer.maskText("type /start"));
+    }
+
+    @Test
+    void testKeysProduceUnlinkableIds() {
+        UpdateAnonymizer other = new UpdateAnonymizer("other-key".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(anonymizer.hashId(42), anonymizer.hashId(42));
+        assertNotEquals(anonymizer.hashId(42), other.hashId(42));
+    }
+}
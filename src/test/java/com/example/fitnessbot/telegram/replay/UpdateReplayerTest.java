@@ -0,0 +1,144 @@
+package com.example.fitnessbot.telegram.replay;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.User;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdateReplayerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void testRecordedUpdatesAreReplayedWithReportPerType() throws Exception {
+        Path logFile = directory.resolve("updates.tgul");
+        UpdateRecorder recorder = new UpdateRecorder(new UpdateLogWriter(Files.newOutputStream(logFile), System.nanoTime()),
+                new UpdateAnonymizer("test-key".getBytes(StandardCharsets.UTF_8)), 1024 * 1024, objectMapper,
+                new SimpleMeterRegistry());
+        recorder.record(message(100, "/start"));
+        recorder.record(message(101, "/help"));
+        recorder.record(callback(102, "show_day_1"));
+        recorder.destroy();
+        List<Update> replayed = Collections.synchronizedList(new ArrayList<>());
+
+        UpdateReplayer replayer = new UpdateReplayer((update, onHandled) -> {
+            replayed.add(update);
+            onHandled.run();
+        }, objectMapper, Duration.ofSeconds(5));
+        ReplayReport report = replayer.replay(logFile, UpdateReplayer.MAX_SPEED);
+
+        assertEquals(3, report.getCount());
+        assertEquals(2, report.types().get(UpdateType.COMMAND).count());
+        assertEquals(1, report.types().get(UpdateType.CALLBACK_QUERY).count());
+        assertEquals(0, report.unfinished());
+        assertEquals(List.of(1, 2, 3), replayed.stream().map(Update::getUpdateId).toList());
+        assertEquals("/start", replayed.get(0).getMessage().getText());
+        assertNotEquals(5L, replayed.get(0).getMessage().getChatId());
+        assertEquals("show_day_1", replayed.get(2).getCallbackQuery().getData());
+        assertTrue(report.format().contains("callback_query"));
+
+        // Replaying the same log again gives the updates new ids
+        replayer.replay(logFile, UpdateReplayer.MAX_SPEED);
+        assertEquals(4, replayed.get(3).getUpdateId());
+    }
+
+    @Test
+    void testRecordedPaceIsScaledBySpeed() throws Exception {
+        Path logFile = directory.resolve("paced.tgul");
+        byte[] payload = new ObjectMapper(new SmileFactory())
+                .writeValueAsBytes(message(1, "/start"));
+        try (UpdateLogWriter writer = new UpdateLogWriter(Files.newOutputStream(logFile), 0)) {
+            writer.write(0, payload);
+            writer.write(400_000_000L, payload);
+        }
+        UpdateReplayer replayer = new UpdateReplayer((update, onHandled) -> onHandled.run(), objectMapper, Duration.ofSeconds(5));
+
+        ReplayReport report = replayer.replay(logFile, UpdateReplayer.parseSpeed("4x"));
+
+        assertEquals(2, report.getCount());
+        assertTrue(report.elapsed().toMillis() >= 100, "elapsed " + report.elapsed());
+        assertTrue(report.elapsed().toMillis() < 400, "elapsed " + report.elapsed());
+    }
+
+    @Test
+    void testTruncatedLogEndsAtLastCompleteRecord() throws Exception {
+        Path logFile = directory.resolve("truncated.tgul");
+        byte[] payload = new ObjectMapper(new SmileFactory())
+                .writeValueAsBytes(message(1, "/start"));
+        try (UpdateLogWriter writer = new UpdateLogWriter(Files.newOutputStream(logFile), 0)) {
+            writer.write(0, payload);
+            writer.write(0, payload);
+        }
+        byte[] bytes = Files.readAllBytes(logFile);
+        Files.write(logFile, Arrays.copyOf(bytes, bytes.length - 3));
+        List<Update> replayed = new ArrayList<>();
+
+        new UpdateReplayer((update, onHandled) -> {
+            replayed.add(update);
+            onHandled.run();
+        }, objectMapper, Duration.ofSeconds(5)).replay(logFile, UpdateReplayer.MAX_SPEED);
+
+        assertEquals(1, replayed.size());
+    }
+
+    @Test
+    void testNotAnUpdateLogIsRejected() throws IOException {
+        Path logFile = directory.resolve("other.bin");
+        Files.writeString(logFile, "{\"update_id\": 1}");
+        UpdateReplayer replayer = new UpdateReplayer((update, onHandled) -> onHandled.run(), objectMapper, Duration.ofSeconds(5));
+
+        assertThrows(IOException.class, () -> replayer.replay(logFile, 1));
+    }
+
+    private static Update message(int updateId, String text) {
+        User user = new User();
+        user.setId(5L);
+        user.setFirstName("Ann");
+        user.setIsBot(false);
+        Chat chat = new Chat();
+        chat.setId(5L);
+        chat.setType("private");
+        Message message = new Message();
+        message.setMessageId(updateId);
+        message.setFrom(user);
+        message.setChat(chat);
+        message.setText(text);
+        Update update = new Update();
+        update.setUpdateId(updateId);
+        update.setMessage(message);
+        return update;
+    }
+
+    private static Update callback(int updateId, String data) {
+        Update update = message(updateId, "Your program");
+        CallbackQuery callbackQuery = new CallbackQuery();
+        callbackQuery.setId("cb" + updateId);
+        callbackQuery.setFrom(update.getMessage().getFrom());
+        callbackQuery.setMessage(update.getMessage());
+        callbackQuery.setData(data);
+        update.setMessage(null);
+        update.setCallbackQuery(callbackQuery);
+        return update;
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.fitnessbot.telegram.spool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdateJournalTest {
+
+    private static final int SEGMENT_SIZE = 256;
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void testRecordsAreConsumedInOrder() throws IOException {
+        UpdateJournal journal = new UpdateJournal(directory, SEGMENT_SIZE);
+        journal.append(bytes("first"));
+        journal.append(bytes("second"));
+
+        assertEquals(2, journal.getPendingRecords());
+        assertEquals("first", string(journal.peek()));
+        assertEquals("first", string(journal.peek()));
+        journal.advance();
+        assertEquals("second", string(journal.peek()));
+        journal.advance();
+
+        assertNull(journal.peek());
+        assertEquals(0, journal.getPendingRecords());
+        assertEquals(0, journal.getPendingBytes());
+    }
+
+    @Test
+    void testSegmentsRotateAndAreDeletedOnceConsumed() throws IOException {
+        UpdateJournal journal = new UpdateJournal(directory, SEGMENT_SIZE);
+        for (int i = 0; i < 10; i++) {
+            journal.append(bytes("record number " + i + " with some padding"));
+        }
+        assertTrue(segmentCount() > 1);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("record number " + i + " with some padding", string(journal.peek()));
+            journal.advance();
+        }
+
+        assertNull(journal.peek());
+        assertEquals(1, segmentCount());
+    }
+
+    @Test
+    void testReopenedJournalContinuesFromCursor() throws IOException {
+        UpdateJournal journal = new UpdateJournal(directory, SEGMENT_SIZE);
+        for (int i = 0; i < 10; i++) {
+            journal.append(bytes("record number " + i + " with some padding"));
+        }
+        for (int i = 0; i < 4; i++) {
+            journal.peek();
+            journal.advance();
+        }
+        journal.close();
+
+        UpdateJournal reopened = new UpdateJournal(directory, SEGMENT_SIZE);
+        assertEquals(6, reopened.getPendingRecords());
+        assertEquals("record number 4 with some padding", string(reopened.peek()));
+
+        reopened.append(bytes("after restart"));
+        assertEquals(7, reopened.getPendingRecords());
+    }
+
+    @Test
+    void testTornRecordEndsTheJournal() throws IOException {
+        UpdateJournal journal = new UpdateJournal(directory, SEGMENT_SIZE);
+        journal.append(bytes("intact"));
+        journal.append(bytes("torn"));
+        journal.close();
+        // Flip a payload byte of the second record, as if the process died while writing it
+        try (FileChannel channel = FileChannel.open(onlySegment(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+            int secondPayload = 8 + "intact".length() + 8;
+            buffer.put(secondPayload, (byte) (buffer.get(secondPayload) ^ 1));
+            buffer.force();
+        }
+
+        UpdateJournal reopened = new UpdateJournal(directory, SEGMENT_SIZE);
+        assertEquals(1, reopened.getPendingRecords());
+        assertEquals("intact", string(reopened.peek()));
+        reopened.advance();
+        reopened.append(bytes("next"));
+        assertEquals("next", string(reopened.peek()));
+    }
+
+    @Test
+    void testRecordLargerThanSegmentIsRefused() throws IOException {
+        UpdateJournal journal = new UpdateJournal(directory, SEGMENT_SIZE);
+
+        assertThrows(IOException.class, () -> journal.append(new byte[SEGMENT_SIZE]));
+        assertEquals(0, journal.getPendingRecords());
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("segment-")).count();
+        }
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("segment-")).findFirst().orElseThrow();
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+}
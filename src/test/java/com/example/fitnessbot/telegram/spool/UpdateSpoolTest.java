@@ -0,0 +1,138 @@
+package com.example.fitnessbot.telegram.spool;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdateSpoolTest {
+
+    @TempDir
+    private Path directory;
+
+    private SimpleMeterRegistry meterRegistry;
+    private UpdateSpool updateSpool;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        updateSpool = new UpdateSpool(new UpdateJournal(directory, 64 * 1024), new ObjectMapper(), meterRegistry);
+    }
+
+    @Test
+    void testUpdatesAreReplayedInOrderWithTheirTenant() throws IOException {
+        assertTrue(updateSpool.spool("default", List.of(update(1, "Day 1"), update(2, "Day 2"))));
+        assertTrue(updateSpool.spool("coach", List.of(update(3, "Day 3"))));
+        List<String> replayed = new ArrayList<>();
+
+        int count = updateSpool.replay(10, (tenantId, update) -> {
+            assertTrue(UpdateSpool.isReplaying());
+            replayed.add(tenantId + ":" + update.getUpdateId() + ":" + update.getMessage().getText());
+        });
+
+        assertEquals(3, count);
+        assertEquals(List.of("default:1:Day 1", "default:2:Day 2", "coach:3:Day 3"), replayed);
+        assertFalse(UpdateSpool.isReplaying());
+        assertEquals(3, meterRegistry.get("telegram.spool.replayed").counter().count());
+        assertEquals(0, meterRegistry.get("telegram.spool.updates").gauge().value());
+    }
+
+    @Test
+    void testReplayStopsWhileDatabaseIsStillDown() throws IOException {
+        updateSpool.spool("default", List.of(update(1, "Day 1"), update(2, "Day 2")));
+
+        int count = updateSpool.replay(10, (tenantId, update) -> {
+            throw new CannotCreateTransactionException("Could not open JPA EntityManager for transaction");
+        });
+
+        assertEquals(0, count);
+        assertEquals(2, updateSpool.getPendingUpdates());
+        assertTrue(meterRegistry.get("telegram.spool.size").gauge().value() > 0);
+    }
+
+    @Test
+    void testUpdateFailingForAnotherReasonIsDropped() throws IOException {
+        updateSpool.spool("default", List.of(update(1, "Day 1"), update(2, "Day 2")));
+        List<Integer> replayed = new ArrayList<>();
+
+        int count = updateSpool.replay(10, (tenantId, update) -> {
+            if (update.getUpdateId() == 1) {
+                throw new DataIntegrityViolationException("duplicate key");
+            }
+            replayed.add(update.getUpdateId());
+        });
+
+        assertEquals(2, count);
+        assertEquals(List.of(2), replayed);
+        assertEquals(1, meterRegistry.get("telegram.spool.replayed").counter().count());
+    }
+
+    @Test
+    void testUpdatesOfSpooledChatsAreHeldUntilReplayed() throws IOException {
+        assertFalse(updateSpool.spoolIfChatSpooled("default", update(1, "Day 1")));
+        updateSpool.spool("default", List.of(update(1, "Day 1")));
+
+        assertTrue(updateSpool.spoolIfChatSpooled("default", update(2, "Day 2")));
+        // Same chat id, but of another tenant's bot
+        assertFalse(updateSpool.spoolIfChatSpooled("coach", update(3, "Day 3")));
+
+        assertEquals(2, updateSpool.replay(10, (tenantId, update) -> { }));
+        assertFalse(updateSpool.spoolIfChatSpooled("default", update(4, "Day 4")));
+        assertEquals(1, meterRegistry.get("telegram.spool.held").counter().count());
+    }
+
+    @Test
+    void testSpooledChatsAreHeldAfterRestart() throws IOException {
+        updateSpool.spool("default", List.of(update(1, "Day 1")));
+
+        UpdateSpool reopened = new UpdateSpool(new UpdateJournal(directory, 64 * 1024), new ObjectMapper(), new SimpleMeterRegistry());
+
+        assertTrue(reopened.spoolIfChatSpooled("default", update(2, "Day 2")));
+        assertEquals(2, reopened.getPendingUpdates());
+    }
+
+    @Test
+    void testDisabledSpoolKeepsNothing() throws IOException {
+        UpdateSpool disabled = new UpdateSpool(null, new ObjectMapper(), new SimpleMeterRegistry());
+
+        assertFalse(disabled.spool("default", List.of(update(1, "Day 1"))));
+        assertEquals(0, disabled.replay(10, (tenantId, update) -> fail()));
+    }
+
+    @Test
+    void testConnectionFailuresAreOutages() {
+        assertTrue(DatabaseOutages.isOutage(new CannotGetJdbcConnectionException("Failed to obtain JDBC Connection")));
+        assertTrue(DatabaseOutages.isOutage(new IllegalStateException(new SQLException("Connection refused", "08001"))));
+        assertFalse(DatabaseOutages.isOutage(new DataIntegrityViolationException("duplicate key")));
+        assertFalse(DatabaseOutages.isOutage(new SQLException("syntax error", "42601")));
+    }
+
+    private static Update update(int updateId, String text) {
+        Chat chat = new Chat();
+        chat.setId(5L);
+        chat.setType("private");
+        Message message = new Message();
+        message.setMessageId(updateId);
+        message.setChat(chat);
+        message.setText(text);
+        Update update = new Update();
+        update.setUpdateId(updateId);
+        update.setMessage(message);
+        return update;
+    }
+}
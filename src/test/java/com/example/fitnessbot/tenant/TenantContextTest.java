@@ -0,0 +1,38 @@
+package com.example.fitnessbot.tenant;
+
+import com.example.fitnessbot.model.Program;
+import com.example.fitnessbot.service.ProgramCreationSessionManager;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TenantContextTest {
+
+    @Test
+    void testTenantIsSetOnlyWhileRunning() {
+        AtomicReference<String> inner = new AtomicReference<>();
+        AtomicReference<String> outer = new AtomicReference<>();
+
+        TenantContext.run("gym-a", () -> {
+            TenantContext.run("gym-b", () -> inner.set(TenantContext.current()));
+            outer.set(TenantContext.current());
+        });
+
+        assertEquals("gym-b", inner.get());
+        assertEquals("gym-a", outer.get());
+        assertEquals(TenantContext.DEFAULT_TENANT, TenantContext.current());
+    }
+
+    @Test
+    void testProgramCreationSessionsAreSeparatedByTenant() {
+        ProgramCreationSessionManager sessionManager = new ProgramCreationSessionManager();
+
+        TenantContext.run("gym-a", () -> sessionManager.startSession(42L, new Program()));
+
+        TenantContext.run("gym-a", () -> assertTrue(sessionManager.hasActiveSession(42L)));
+        TenantContext.run("gym-b", () -> assertFalse(sessionManager.hasActiveSession(42L)));
+        assertFalse(sessionManager.hasActiveSession(42L));
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.fitnessbot.tenant;
+
+import com.example.fitnessbot.repository.BotTenantRepository;
+import com.example.fitnessbot.service.UpdateOffsetService;
+import com.example.fitnessbot.telegram.FitnessTelegramBot;
+import com.example.fitnessbot.telegram.dispatch.UpdateDispatcher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TenantRegistryTest {
+
+    @Mock
+    private FitnessTelegramBot defaultBot;
+
+    @Mock
+    private BotTenantRepository botTenantRepository;
+
+    @Mock
+    private UpdateDispatcher updateDispatcher;
+
+    @Mock
+    private UpdateOffsetService updateOffsetService;
+
+    private TenantRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = createRegistry("polling");
+    }
+
+    @Test
+    void testDefaultTenantIdIsReserved() {
+        assertThrows(IllegalArgumentException.class,
+                () -> registry.register(TenantContext.DEFAULT_TENANT, "token", "gym_bot"));
+        verify(botTenantRepository, never()).save(any());
+    }
+
+    @Test
+    void testBotCannotBeRegisteredTwice() {
+        when(botTenantRepository.existsById("gym-a")).thenReturn(false);
+        when(botTenantRepository.existsByBotUsername("gym_bot")).thenReturn(true);
+
+        assertThrows(IllegalArgumentException.class, () -> registry.register("gym-a", "token", "gym_bot"));
+        verify(botTenantRepository, never()).save(any());
+    }
+
+    @Test
+    void testTenantsRequirePollingMode() {
+        assertThrows(IllegalStateException.class, () -> createRegistry("webhook"));
+    }
+
+    @Test
+    void testUnknownTenantHasNoBot() {
+        assertTrue(registry.getBot("gym-a").isEmpty());
+    }
+
+    private TenantRegistry createRegistry(String mode) {
+        return new TenantRegistry(defaultBot, botTenantRepository, updateDispatcher, updateOffsetService,
+                new SimpleMeterRegistry(), mode, List.of("message", "callback_query"), false, 50);
+    }
+}